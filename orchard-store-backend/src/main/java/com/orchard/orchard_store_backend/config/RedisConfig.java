@@ -1,5 +1,7 @@
 package com.orchard.orchard_store_backend.config;
 
+import com.orchard.orchard_store_backend.modules.auth.service.TokenBlacklistService;
+import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +10,8 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -61,5 +65,19 @@ public class RedisConfig {
     public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
         return new StringRedisTemplate(connectionFactory);
     }
-}
 
+    /**
+     * Lắng nghe pub/sub để invalidate L1 cache (Caffeine) khi node khác ghi/xóa key
+     * và để đồng bộ Bloom filter token bị thu hồi giữa các node
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       CacheService cacheService,
+                                                                       TokenBlacklistService tokenBlacklistService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheService, new ChannelTopic(CacheService.INVALIDATION_CHANNEL));
+        container.addMessageListener(tokenBlacklistService, new ChannelTopic(TokenBlacklistService.REVOCATION_CHANNEL));
+        return container;
+    }
+}
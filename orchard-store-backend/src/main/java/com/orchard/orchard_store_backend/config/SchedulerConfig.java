@@ -1,10 +1,43 @@
 package com.orchard.orchard_store_backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+/**
+ * Configuration cho Scheduled jobs
+ *
+ * Mặc định mọi @Scheduled dùng chung một thread -> job catalog chạy lâu (rebuild listing, backfill search index,
+ * đồng bộ cache attribute...) chặn các job còn lại.
+ * - taskScheduler: pool dùng chung cho các job, kích thước cấu hình được
+ * - outboxTaskScheduler: pool riêng cho poller email_outbox / order_event_outbox (@Scheduled(scheduler = ...))
+ *   để OTP và event đơn hàng không phải chờ job catalog
+ */
 @Configuration
 @EnableScheduling
 public class SchedulerConfig {
-}
 
+    public static final String OUTBOX_SCHEDULER = "outboxTaskScheduler";
+
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.scheduling.pool-size:4}") int poolSize) {
+        return scheduler(poolSize, "scheduling-");
+    }
+
+    @Bean(name = OUTBOX_SCHEDULER)
+    public ThreadPoolTaskScheduler outboxTaskScheduler(@Value("${app.scheduling.outbox-pool-size:2}") int poolSize) {
+        return scheduler(poolSize, "outbox-scheduling-");
+    }
+
+    private ThreadPoolTaskScheduler scheduler(int poolSize, String threadNamePrefix) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.initialize();
+        return scheduler;
+    }
+}
@@ -10,6 +10,8 @@ public class JwtProperties {
     private String secret;
     private Long expirationMs;
     private Long longLivedExpirationMs;
+    private long verifiedCacheMaxSize = 10000;
+    private long verifiedCacheTtlMs = 300000;
 
     public String getSecret() {
         return secret;
@@ -34,5 +36,20 @@ public class JwtProperties {
     public void setLongLivedExpirationMs(Long longLivedExpirationMs) {
         this.longLivedExpirationMs = longLivedExpirationMs;
     }
-}
 
+    public long getVerifiedCacheMaxSize() {
+        return verifiedCacheMaxSize;
+    }
+
+    public void setVerifiedCacheMaxSize(long verifiedCacheMaxSize) {
+        this.verifiedCacheMaxSize = verifiedCacheMaxSize;
+    }
+
+    public long getVerifiedCacheTtlMs() {
+        return verifiedCacheTtlMs;
+    }
+
+    public void setVerifiedCacheTtlMs(long verifiedCacheTtlMs) {
+        this.verifiedCacheTtlMs = verifiedCacheTtlMs;
+    }
+}
@@ -0,0 +1,60 @@
+package com.orchard.orchard_store_backend.dto;
+
+import com.orchard.orchard_store_backend.util.KeysetCursor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang của keyset (cursor) pagination.
+ *
+ * Khác Page: không có số trang, client đi tiếp bằng nextCursor. Tổng số phần tử chỉ được tính
+ * khi được yêu cầu (totalElements = null nếu không).
+ *
+ * @param <T> Type của phần tử
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPage<T> {
+
+    private List<T> content;
+
+    /**
+     * Kích thước trang đã yêu cầu
+     */
+    private int size;
+
+    private boolean hasNext;
+
+    /**
+     * Cursor cho trang tiếp theo (null nếu đây là trang cuối)
+     */
+    private String nextCursor;
+
+    /**
+     * Tổng số phần tử (null nếu không yêu cầu)
+     */
+    private Long totalElements;
+
+    /**
+     * Tạo trang từ kết quả query lấy size + 1 dòng (dòng dư chỉ để biết còn trang sau hay không)
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf, Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? List.copyOf(rows.subList(0, size)) : rows;
+        String nextCursor = hasNext && !content.isEmpty()
+                ? cursorOf.apply(content.get(content.size() - 1)).encode()
+                : null;
+        return new CursorPage<>(content, size, hasNext, nextCursor, totalElements);
+    }
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(content.stream().map(mapper).toList(), size, hasNext, nextCursor, totalElements);
+    }
+}
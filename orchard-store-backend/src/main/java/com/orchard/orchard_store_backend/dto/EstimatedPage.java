@@ -0,0 +1,35 @@
+package com.orchard.orchard_store_backend.dto;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page có totalElements là số ước lượng (planner estimate), không phải COUNT chính xác.
+ *
+ * Dùng khi kết quả vượt ngưỡng đếm chính xác (xem PageCountService): client nên hiển thị
+ * dạng "10,000+" thay vì con số cụ thể.
+ *
+ * @param <T> Type của phần tử
+ */
+public class EstimatedPage<T> extends PageImpl<T> {
+
+    public EstimatedPage(List<T> content, Pageable pageable, long estimatedTotal) {
+        super(content, pageable, estimatedTotal);
+    }
+
+    /**
+     * Luôn true - để client phân biệt với Page đếm chính xác khi serialize
+     */
+    public boolean isTotalEstimated() {
+        return true;
+    }
+
+    @Override
+    public <U> Page<U> map(Function<? super T, ? extends U> converter) {
+        return new EstimatedPage<>(getContent().stream().<U>map(converter).toList(), getPageable(), getTotalElements());
+    }
+}
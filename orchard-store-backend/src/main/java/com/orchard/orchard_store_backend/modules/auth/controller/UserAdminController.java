@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.auth.controller;
 
 import com.orchard.orchard_store_backend.dto.ApiResponse;
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.auth.dto.AdminResetPasswordDTO;
 import com.orchard.orchard_store_backend.modules.auth.dto.EmailChangeInitRequest;
 import com.orchard.orchard_store_backend.modules.auth.dto.EmailChangeVerifyRequest;
@@ -75,6 +76,33 @@ public class UserAdminController {
         return ResponseEntity.ok(ApiResponse.success("Lấy danh sách users thành công", users));
     }
 
+    /**
+     * Lấy danh sách users với keyset (cursor) pagination, mới nhất trước.
+     * 
+     * GET /api/admin/users/cursor?keyword=...&size=20&cursor=...
+     * 
+     * @param keyword Từ khóa tìm kiếm (email, tên, số điện thoại)
+     * @param cursor nextCursor của trang trước (bỏ trống cho trang đầu)
+     * @param size Số lượng items mỗi trang
+     * @param includeTotal Có đếm tổng số users không (mặc định không)
+     * @return CursorPage<UserResponseDTO> wrapped in ApiResponse
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<UserResponseDTO>>> getUsersByCursor(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        log.info("GET /api/admin/users/cursor - keyword: {}, status: {}, size: {}", keyword, status, size);
+
+        CursorPage<UserResponseDTO> users = userAdminService.getUsersByCursor(
+                keyword, status, cursor, Math.max(1, Math.min(size, 100)), includeTotal);
+
+        return ResponseEntity.ok(ApiResponse.success("Lấy danh sách users thành công", users));
+    }
+
     /**
      * Lấy chi tiết một user theo ID.
      * 
@@ -0,0 +1,17 @@
+package com.orchard.orchard_store_backend.modules.auth.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event được publish khi một email được đưa vào email_outbox
+ * Sử dụng để gửi ngay sau khi transaction commit thay vì chờ lượt poll kế tiếp của EmailOutboxJob
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailQueuedEvent {
+
+    private Long outboxId;
+}
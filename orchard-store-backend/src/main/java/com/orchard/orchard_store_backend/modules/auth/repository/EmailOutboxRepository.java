@@ -0,0 +1,219 @@
+package com.orchard.orchard_store_backend.modules.auth.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Truy cập bảng email_outbox (xem V29__add_email_outbox.sql) bằng JDBC.
+ *
+ * claimDue dùng FOR UPDATE SKIP LOCKED nên nhiều node / nhiều lần dispatch chạy song song
+ * không claim trùng dòng.
+ *
+ * Claim trả về locked_until của lease; markSent / markFailed chỉ cập nhật dòng còn SENDING với đúng lease đó.
+ * Worker gửi quá lease (dòng đã được node khác claim lại, có thể đã SENT) không thể đưa dòng về PENDING
+ * hay reset attempts -> không gửi trùng OTP / link reset password.
+ *
+ * params có thể chứa dữ liệu nhạy cảm (OTP, link reset password) -> được xóa về '{}' ngay khi email
+ * ra khỏi trạng thái chờ gửi (SENT, DEAD, hết hạn), không đợi purge.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EmailOutboxRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO email_outbox (template, recipient, params, expires_at)
+        VALUES (:template, :recipient, CAST(:params AS jsonb), :expiresAt)
+        """;
+
+    private static final String CLAIM_SQL = """
+        UPDATE email_outbox o
+        SET status = 'SENDING',
+            locked_until = CURRENT_TIMESTAMP + make_interval(secs => :leaseSeconds)
+        WHERE o.id IN (
+            SELECT id FROM email_outbox
+            WHERE ((status = 'PENDING' AND next_attempt_at <= CURRENT_TIMESTAMP)
+                   OR (status = 'SENDING' AND locked_until < CURRENT_TIMESTAMP))
+              AND (expires_at IS NULL OR expires_at > CURRENT_TIMESTAMP)
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING o.id, o.template, o.recipient, CAST(o.params AS TEXT) AS params, o.attempts, o.locked_until
+        """;
+
+    private static final String MARK_SENT_SQL = """
+        UPDATE email_outbox
+        SET status = 'SENT', sent_at = CURRENT_TIMESTAMP, locked_until = NULL, last_error = NULL,
+            params = CAST('{}' AS jsonb)
+        WHERE status = 'SENDING' AND (id, locked_until) IN (:leases)
+        """;
+
+    private static final String MARK_FAILED_SQL = """
+        UPDATE email_outbox
+        SET attempts = attempts + 1,
+            status = CASE WHEN :dead THEN 'DEAD' ELSE 'PENDING' END,
+            next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => :delaySeconds),
+            locked_until = NULL,
+            last_error = :error,
+            params = CASE WHEN :dead THEN CAST('{}' AS jsonb) ELSE params END
+        WHERE id = :id AND status = 'SENDING' AND locked_until = :lease
+        """;
+
+    private static final String EXPIRE_SQL = """
+        UPDATE email_outbox
+        SET status = 'DEAD', locked_until = NULL, last_error = 'Expired before delivery',
+            params = CAST('{}' AS jsonb)
+        WHERE status IN ('PENDING', 'SENDING')
+          AND expires_at <= CURRENT_TIMESTAMP
+          AND (status = 'PENDING' OR locked_until < CURRENT_TIMESTAMP)
+        """;
+
+    private static final String PURGE_SQL = """
+        DELETE FROM email_outbox
+        WHERE (status = 'SENT' AND created_at < :sentBefore)
+           OR (status = 'DEAD' AND created_at < :deadBefore)
+        """;
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Thêm một email vào outbox (trong transaction hiện tại nếu có)
+     *
+     * @return ID dòng outbox
+     */
+    public Long insert(String template, String recipient, Map<String, String> params, LocalDateTime expiresAt) {
+        MapSqlParameterSource source = new MapSqlParameterSource()
+                .addValue("template", template)
+                .addValue("recipient", recipient)
+                .addValue("params", toJson(params))
+                .addValue("expiresAt", expiresAt);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(INSERT_SQL, source, keyHolder, new String[]{"id"});
+        Number key = keyHolder.getKey();
+        return key != null ? key.longValue() : null;
+    }
+
+    /**
+     * Claim tối đa limit email đến hạn gửi (status -> SENDING, giữ lease leaseSeconds)
+     */
+    public List<OutboxEmail> claimDue(int limit, long leaseSeconds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("limit", limit)
+                .addValue("leaseSeconds", leaseSeconds);
+        return jdbcTemplate.query(CLAIM_SQL, params, (rs, rowNum) -> new OutboxEmail(
+                rs.getLong("id"),
+                rs.getString("template"),
+                rs.getString("recipient"),
+                fromJson(rs.getString("params")),
+                rs.getInt("attempts"),
+                rs.getObject("locked_until", LocalDateTime.class)
+        ));
+    }
+
+    /**
+     * Đánh dấu SENT các email còn giữ lease của lần claim
+     *
+     * @return Số dòng được cập nhật (ít hơn số email nếu có email đã mất lease)
+     */
+    public int markSent(Collection<OutboxEmail> emails) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> leases = emails.stream()
+                .map(email -> new Object[]{email.id(), email.lockedUntil()})
+                .toList();
+        return jdbcTemplate.update(MARK_SENT_SQL, new MapSqlParameterSource("leases", leases));
+    }
+
+    /**
+     * Ghi nhận các lần gửi thất bại (một JDBC batch): retry sau delaySeconds, hoặc DEAD.
+     * Email đã mất lease được bỏ qua.
+     */
+    public void markFailed(List<Failure> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = failures.stream()
+                .map(failure -> new MapSqlParameterSource()
+                        .addValue("id", failure.id())
+                        .addValue("lease", failure.lease())
+                        .addValue("dead", failure.dead())
+                        .addValue("delaySeconds", failure.delaySeconds())
+                        .addValue("error", truncate(failure.error())))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(MARK_FAILED_SQL, batch);
+    }
+
+    /**
+     * Chuyển DEAD các email đã quá expires_at mà chưa gửi được
+     */
+    public int expireOverdue() {
+        return jdbcTemplate.update(EXPIRE_SQL, new MapSqlParameterSource());
+    }
+
+    /**
+     * Xóa email SENT / DEAD cũ hơn mốc tương ứng
+     */
+    public int purge(LocalDateTime sentBefore, LocalDateTime deadBefore) {
+        return jdbcTemplate.update(PURGE_SQL, new MapSqlParameterSource()
+                .addValue("sentBefore", sentBefore)
+                .addValue("deadBefore", deadBefore));
+    }
+
+    private String toJson(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params != null ? params : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize email params", e);
+        }
+    }
+
+    /**
+     * null nếu params hỏng (dòng đã được claim nên không throw ở đây - dispatcher chuyển nó sang DEAD)
+     */
+    private Map<String, String> fromJson(String json) {
+        try {
+            return json == null ? Map.of() : objectMapper.readValue(json, new TypeReference<Map<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Email đã claim, chờ gửi
+     *
+     * @param lockedUntil Lease của lần claim - định danh lần claim này khi ghi kết quả
+     */
+    public record OutboxEmail(long id, String template, String recipient, Map<String, String> params, int attempts,
+                              LocalDateTime lockedUntil) {
+    }
+
+    /**
+     * Kết quả gửi thất bại của một email
+     *
+     * @param lease locked_until của lần claim
+     * @param dead  true nếu đã hết số lần thử (hoặc lỗi không thể retry)
+     */
+    public record Failure(long id, LocalDateTime lease, boolean dead, long delaySeconds, String error) {
+    }
+}
@@ -38,8 +38,9 @@ public interface LoginHistoryRepository extends JpaRepository<LoginHistory, Long
     );
 
     /**
-     * Lấy lịch sử đăng nhập theo User ID, sắp xếp giảm dần theo thời gian
+     * Lấy một trang lịch sử đăng nhập theo User ID, sắp xếp giảm dần theo thời gian.
+     * Trả về List (không kèm COUNT) - tổng số dòng do PageCountService tính.
      */
-    Page<LoginHistory> findByUserIdOrderByLoginAtDesc(Long userId, Pageable pageable);
+    List<LoginHistory> findByUserIdOrderByLoginAtDesc(Long userId, Pageable pageable);
 }
 
@@ -0,0 +1,140 @@
+package com.orchard.orchard_store_backend.modules.auth.repository;
+
+import com.orchard.orchard_store_backend.modules.auth.entity.User;
+import com.orchard.orchard_store_backend.util.PageCountService;
+import com.orchard.orchard_store_backend.util.SqlSearchTerms;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Query phân trang cho danh sách users trong trang admin.
+ *
+ * Tìm theo keyword: prefix full-text trên users.search_vector (họ tên / email, không dấu) hoặc trigram
+ * LIKE trên email / số điện thoại (chuỗi con như "0912"); kết quả xếp theo ts_rank_cd trước sort của pageable.
+ *
+ * Lấy id của trang bằng native SQL (filter + ORDER BY + LIMIT/OFFSET) rồi load entity qua findAllById;
+ * tổng số dòng do PageCountService tính: đếm chính xác khi nhỏ, ước lượng khi vượt ngưỡng,
+ * cache khi không có filter -> bảng users lớn không phải COUNT toàn bảng mỗi lần vẽ pager.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAdminQueryRepository {
+
+    private static final String ALL_USERS_COUNT_KEY = "users:all";
+
+    /**
+     * Trigram cần ít nhất 3 ký tự mới dùng được index
+     */
+    private static final int MIN_PHONE_FRAGMENT_LENGTH = 3;
+
+    /**
+     * Property sort được phép -> cột (whitelist, không nối chuỗi từ client vào SQL)
+     */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "u.created_at",
+            "email", "u.email",
+            "fullName", "u.full_name",
+            "lastLogin", "u.last_login",
+            "id", "u.id"
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final PageCountService pageCountService;
+
+    /**
+     * Một trang users theo keyword (LIKE trên email / họ tên / số điện thoại) và status
+     *
+     * @param keyword Từ khóa (optional)
+     * @param status Status (null = tất cả)
+     * @param pageable Pagination và sort
+     * @return Page<User>, EstimatedPage nếu tổng là số ước lượng
+     */
+    public Page<User> findPage(String keyword, User.Status status, Pageable pageable) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        List<String> conditions = new ArrayList<>();
+        String rankOrder = null;
+        String term = keyword == null ? "" : keyword.trim();
+        if (!term.isEmpty()) {
+            List<String> matches = new ArrayList<>();
+            String tsQuery = SqlSearchTerms.prefixTsQuery(term);
+            if (!tsQuery.isEmpty()) {
+                matches.add("u.search_vector @@ to_tsquery('simple', f_unaccent(:tsQuery))");
+                params.addValue("tsQuery", tsQuery);
+                rankOrder = "ts_rank_cd(u.search_vector, to_tsquery('simple', f_unaccent(:tsQuery))) DESC";
+            }
+            matches.add("lower(u.email) LIKE :emailPattern");
+            params.addValue("emailPattern", "%" + SqlSearchTerms.escapeLike(term.toLowerCase(Locale.ROOT)) + "%");
+            String digits = term.replaceAll("[^0-9]", "");
+            if (digits.length() >= MIN_PHONE_FRAGMENT_LENGTH) {
+                matches.add("u.phone LIKE :phonePattern");
+                params.addValue("phonePattern", "%" + digits + "%");
+            }
+            conditions.add("(" + String.join(" OR ", matches) + ")");
+        }
+        if (status != null) {
+            conditions.add("u.status = :status");
+            params.addValue("status", status.name());
+        }
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+
+        MapSqlParameterSource pagedParams = new MapSqlParameterSource(params.getValues())
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+        String orderBy = rankOrder == null ? orderBy(pageable.getSort()) : rankOrder + ", " + orderBy(pageable.getSort());
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT u.id FROM users u" + where + " ORDER BY " + orderBy + " LIMIT :limit OFFSET :offset",
+                pagedParams, Long.class);
+        List<User> content = loadInOrder(ids);
+
+        String rowsSql = "SELECT 1 FROM users u" + where;
+        return conditions.isEmpty()
+                ? pageCountService.cachedPage(content, pageable, ALL_USERS_COUNT_KEY, rowsSql, params)
+                : pageCountService.page(content, pageable, rowsSql, params);
+    }
+
+    /**
+     * Xóa tổng đã cache của danh sách không filter
+     */
+    public void evictCachedTotal() {
+        pageCountService.evictCachedCount(ALL_USERS_COUNT_KEY);
+    }
+
+    private String orderBy(Sort sort) {
+        List<String> clauses = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column != null && !"u.id".equals(column)) {
+                clauses.add(column + (order.isAscending() ? " ASC" : " DESC"));
+            }
+        }
+        if (clauses.isEmpty()) {
+            clauses.add("u.created_at DESC");
+        }
+        // Tie-breaker để thứ tự giữa các trang ổn định
+        clauses.add("u.id DESC");
+        return String.join(", ", clauses);
+    }
+
+    private List<User> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> users = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+}
@@ -60,56 +60,5 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
      * @return true if phone exists
      */
     boolean existsByPhone(String phone);
-    
-    /**
-     * Search users using PostgreSQL full-text search
-     * This method uses native SQL to leverage GIN indexes for better performance
-     * 
-     * @param keyword Search keyword (will be converted to tsquery)
-     * @param status User status filter (optional)
-     * @param pageable Pagination and sorting
-     * @return Page of users matching the search criteria
-     */
-    @Query(value = """
-        SELECT DISTINCT u.* FROM users u
-        LEFT JOIN user_roles ur ON u.id = ur.user_id
-        LEFT JOIN roles r ON ur.role_id = r.id
-        WHERE 
-            (:keyword IS NULL OR :keyword = '' OR 
-             to_tsvector('english', 
-                 COALESCE(u.email, '') || ' ' || 
-                 COALESCE(u.full_name, '') || ' ' || 
-                 COALESCE(u.phone, '')
-             ) @@ plainto_tsquery('english', :keyword))
-            AND (:status IS NULL OR u.status::text = :status)
-        ORDER BY 
-            CASE WHEN :keyword IS NOT NULL AND :keyword != '' THEN
-                ts_rank(to_tsvector('english', 
-                    COALESCE(u.email, '') || ' ' || 
-                    COALESCE(u.full_name, '') || ' ' || 
-                    COALESCE(u.phone, '')
-                ), plainto_tsquery('english', :keyword))
-            ELSE 0 END DESC,
-            u.created_at DESC
-        """,
-        countQuery = """
-        SELECT COUNT(DISTINCT u.id) FROM users u
-        LEFT JOIN user_roles ur ON u.id = ur.user_id
-        LEFT JOIN roles r ON ur.role_id = r.id
-        WHERE 
-            (:keyword IS NULL OR :keyword = '' OR 
-             to_tsvector('english', 
-                 COALESCE(u.email, '') || ' ' || 
-                 COALESCE(u.full_name, '') || ' ' || 
-                 COALESCE(u.phone, '')
-             ) @@ plainto_tsquery('english', :keyword))
-            AND (:status IS NULL OR u.status::text = :status)
-        """,
-        nativeQuery = true)
-    org.springframework.data.domain.Page<User> searchUsersFullText(
-        @Param("keyword") String keyword,
-        @Param("status") String status,
-        org.springframework.data.domain.Pageable pageable
-    );
 }
 
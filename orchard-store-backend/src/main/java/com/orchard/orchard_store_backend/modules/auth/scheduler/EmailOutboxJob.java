@@ -0,0 +1,42 @@
+package com.orchard.orchard_store_backend.modules.auth.scheduler;
+
+import com.orchard.orchard_store_backend.modules.auth.service.EmailOutboxDispatcher;
+import com.orchard.orchard_store_backend.config.SchedulerConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job cho email_outbox
+ *
+ * Email mới được gửi ngay sau commit (EmailQueuedEvent); job này gửi các email retry đến hạn, email có lease
+ * hết hạn (node chết giữa chừng), đóng kết nối SMTP rảnh quá lâu và dọn dòng đã gửi / DEAD cũ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxJob {
+
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:5000}", initialDelay = 10000,
+            scheduler = SchedulerConfig.OUTBOX_SCHEDULER)
+    public void dispatchDueEmails() {
+        try {
+            emailOutboxDispatcher.dispatchDue();
+        } catch (Exception e) {
+            log.error("Failed to dispatch email outbox", e);
+        }
+        emailOutboxDispatcher.closeIdleTransports();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.cleanup-interval-ms:3600000}", initialDelay = 60000)
+    public void cleanupOutbox() {
+        try {
+            emailOutboxDispatcher.cleanup();
+        } catch (Exception e) {
+            log.error("Failed to clean up email outbox", e);
+        }
+    }
+}
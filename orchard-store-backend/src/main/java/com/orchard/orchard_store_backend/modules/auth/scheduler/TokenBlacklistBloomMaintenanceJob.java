@@ -0,0 +1,43 @@
+package com.orchard.orchard_store_backend.modules.auth.scheduler;
+
+import com.orchard.orchard_store_backend.modules.auth.service.TokenBlacklistService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bảo trì Bloom filter của token blacklist:
+ * - Bỏ các bucket đã hết hạn
+ * - Dựng lại filter từ Redis để bù các message pub/sub bị lỡ (mất kết nối, node khởi động lại...)
+ */
+@Component
+public class TokenBlacklistBloomMaintenanceJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBlacklistBloomMaintenanceJob.class);
+
+    private final TokenBlacklistService tokenBlacklistService;
+
+    public TokenBlacklistBloomMaintenanceJob(TokenBlacklistService tokenBlacklistService) {
+        this.tokenBlacklistService = tokenBlacklistService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.blacklist.bloom.evict-interval-ms:60000}")
+    public void evictExpiredBuckets() {
+        try {
+            tokenBlacklistService.evictExpiredBuckets();
+        } catch (Exception ex) {
+            logger.error("Failed to evict expired token blacklist Bloom buckets", ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.blacklist.bloom.resync-interval-ms:600000}",
+            initialDelayString = "${app.jwt.blacklist.bloom.resync-interval-ms:600000}")
+    public void resyncFromRedis() {
+        try {
+            tokenBlacklistService.rebuildFromRedis();
+        } catch (Exception ex) {
+            logger.error("Failed to resync token blacklist Bloom filter", ex);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.orchard.orchard_store_backend.modules.auth.service;
+
+import com.orchard.orchard_store_backend.modules.auth.event.EmailQueuedEvent;
+import com.orchard.orchard_store_backend.modules.auth.repository.EmailOutboxRepository;
+import com.orchard.orchard_store_backend.modules.auth.repository.EmailOutboxRepository.Failure;
+import com.orchard.orchard_store_backend.modules.auth.repository.EmailOutboxRepository.OutboxEmail;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gửi email từ email_outbox.
+ *
+ * Mỗi lượt dispatch claim tối đa batch-size email đến hạn, chia đều cho worker pool (workers thread);
+ * mỗi worker gửi phần của mình qua một kết nối SMTP (Transport) đã connect sẵn. Kết nối được trả về pool
+ * sau mỗi nhóm và dùng lại ở các lượt sau (tối đa một kết nối / worker) thay vì connect / handshake / auth
+ * lại cho từng nhóm; kết nối không dùng quá transport-idle-seconds bị đóng (closeIdleTransports, EmailOutboxJob).
+ * Kết nối bị server đóng giữa chừng được mở lại cho các email còn lại của nhóm.
+ *
+ * Lỗi gửi: retry với exponential backoff (retry-base-delay-seconds * 2^(attempts-1), tối đa
+ * retry-max-delay-seconds); hết max-attempts hoặc lỗi không thể retry (template / params hỏng) -> DEAD.
+ *
+ * Được gọi ngay sau commit khi có email mới (EmailQueuedEvent) và định kỳ bởi EmailOutboxJob
+ * (retry đến hạn, email của node khác / lease hết hạn).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+
+    @Value("${spring.mail.username:no-reply@orchard-store.com}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.workers:2}")
+    private int workers;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${app.mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.retry-base-delay-seconds:30}")
+    private long retryBaseDelaySeconds;
+
+    @Value("${app.mail.outbox.retry-max-delay-seconds:3600}")
+    private long retryMaxDelaySeconds;
+
+    @Value("${app.mail.outbox.sent-retention-hours:24}")
+    private long sentRetentionHours;
+
+    @Value("${app.mail.outbox.dead-retention-days:7}")
+    private long deadRetentionDays;
+
+    @Value("${app.mail.outbox.transport-idle-seconds:30}")
+    private long transportIdleSeconds;
+
+    /**
+     * Chỉ một lượt dispatch mỗi node tại một thời điểm (lượt đang chạy lặp tới khi hết email đến hạn)
+     */
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    /**
+     * Có yêu cầu dispatch (email mới / job) chưa được lượt nào phục vụ: lượt đang chạy claim lại trước khi kết thúc
+     * để email được enqueue trong lúc nó chạy không phải chờ EmailOutboxJob
+     */
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+
+    private ExecutorService workerPool;
+
+    /**
+     * Kết nối SMTP đang rảnh (kết nối đang gửi nằm ở worker, không ở đây)
+     */
+    private final BlockingQueue<SmtpConnection> idleConnections = new LinkedBlockingQueue<>();
+
+    private volatile boolean shuttingDown;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Email đang gửi dở giữ trạng thái SENDING và được claim lại khi lease hết hạn
+        shuttingDown = true;
+        workerPool.shutdown();
+        try {
+            workerPool.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        SmtpConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            close(connection);
+        }
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEmailQueued(EmailQueuedEvent event) {
+        try {
+            dispatchDue();
+        } catch (Exception e) {
+            log.error("Failed to dispatch email outbox after queuing {}", event.getOutboxId(), e);
+        }
+    }
+
+    /**
+     * Gửi mọi email đang đến hạn. Nếu node này đang có lượt dispatch khác, yêu cầu được ghi lại và lượt đó
+     * claim thêm một vòng trước khi kết thúc.
+     *
+     * @return Số email đã gửi thành công bởi lời gọi này (0 nếu lượt khác nhận phục vụ yêu cầu)
+     */
+    public int dispatchDue() {
+        dispatchRequested.set(true);
+        int sent = 0;
+        // Yêu cầu đến sau vòng claim cuối nhưng trước khi nhả cờ dispatching -> lời gọi đó đã trả về 0,
+        // lượt hiện tại phải chạy tiếp thay nó
+        while (dispatchRequested.get() && dispatching.compareAndSet(false, true)) {
+            try {
+                while (dispatchRequested.getAndSet(false)) {
+                    sent += drainDue();
+                }
+            } finally {
+                dispatching.set(false);
+            }
+        }
+        if (sent > 0) {
+            log.info("Sent {} emails from outbox", sent);
+        }
+        return sent;
+    }
+
+    /**
+     * Claim và gửi theo batch tới khi hết email đến hạn
+     */
+    private int drainDue() {
+        int sent = 0;
+        while (true) {
+            List<OutboxEmail> claimed = emailOutboxRepository.claimDue(batchSize, leaseSeconds);
+            if (claimed.isEmpty()) {
+                return sent;
+            }
+            sent += sendInParallel(claimed);
+            if (claimed.size() < batchSize) {
+                return sent;
+            }
+        }
+    }
+
+    /**
+     * Dọn outbox: email quá hạn chưa gửi -> DEAD, xóa SENT / DEAD cũ
+     */
+    public void cleanup() {
+        int expired = emailOutboxRepository.expireOverdue();
+        LocalDateTime now = LocalDateTime.now();
+        int purged = emailOutboxRepository.purge(now.minusHours(sentRetentionHours), now.minusDays(deadRetentionDays));
+        if (expired > 0 || purged > 0) {
+            log.info("Email outbox cleanup: {} expired, {} purged", expired, purged);
+        }
+    }
+
+    /**
+     * Đóng các kết nối SMTP rảnh quá transport-idle-seconds
+     *
+     * @return Số kết nối đã đóng
+     */
+    public int closeIdleTransports() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(transportIdleSeconds);
+        int closed = 0;
+        for (SmtpConnection connection : idleConnections) {
+            if (connection.idleLongerThan(idleNanos) && idleConnections.remove(connection)) {
+                close(connection);
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    private int sendInParallel(List<OutboxEmail> claimed) {
+        int partitions = Math.min(Math.max(1, workers), claimed.size());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            List<OutboxEmail> chunk = new ArrayList<>();
+            for (int i = p; i < claimed.size(); i += partitions) {
+                chunk.add(claimed.get(i));
+            }
+            futures.add(CompletableFuture.supplyAsync(() -> sendChunk(chunk), workerPool));
+        }
+        return futures.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    /**
+     * Gửi một nhóm email qua một kết nối SMTP (lấy từ pool)
+     *
+     * @return Số email gửi thành công
+     */
+    private int sendChunk(List<OutboxEmail> chunk) {
+        List<Failure> failures = new ArrayList<>();
+        Map<MimeMessage, OutboxEmail> messages = new IdentityHashMap<>();
+        for (OutboxEmail email : chunk) {
+            try {
+                messages.put(buildMessage(email), email);
+            } catch (Exception e) {
+                // Template / params / địa chỉ hỏng: retry cũng không khỏi
+                log.error("Cannot build email {} ({}) to {}: {}", email.id(), email.template(), email.recipient(), e.getMessage());
+                failures.add(new Failure(email.id(), email.lockedUntil(), true, 0, e.getMessage()));
+            }
+        }
+
+        List<OutboxEmail> sent = new ArrayList<>();
+        if (!messages.isEmpty() && mailSender instanceof JavaMailSenderImpl sender) {
+            sendOverPooledConnection(sender, messages, sent, failures);
+        } else if (!messages.isEmpty()) {
+            try {
+                mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+                messages.values().forEach(sent::add);
+            } catch (MailSendException e) {
+                Map<Object, Exception> failedMessages = e.getFailedMessages();
+                messages.forEach((message, email) -> {
+                    Exception failure = failedMessages.isEmpty() ? e : failedMessages.get(message);
+                    if (failure == null) {
+                        sent.add(email);
+                    } else {
+                        failures.add(retryOrDead(email, failure));
+                    }
+                });
+            } catch (Exception e) {
+                messages.values().forEach(email -> failures.add(retryOrDead(email, e)));
+            }
+        }
+
+        int marked = emailOutboxRepository.markSent(sent);
+        if (marked < sent.size()) {
+            // Gửi xong sau khi lease hết hạn: dòng đã thuộc lần claim khác, không ghi đè trạng thái của nó
+            log.warn("{} of {} sent emails had lost their outbox lease (lease-seconds {} too short?)",
+                    sent.size() - marked, sent.size(), leaseSeconds);
+        }
+        emailOutboxRepository.markFailed(failures);
+        return sent.size();
+    }
+
+    /**
+     * Gửi từng message qua một kết nối trong pool (như JavaMailSenderImpl.doSend nhưng không đóng Transport).
+     * Kết nối hỏng sau một lỗi -> mở kết nối mới cho các message còn lại; không connect được -> các message
+     * còn lại đều thất bại với cùng lỗi (không thử connect lại cho từng email).
+     */
+    private void sendOverPooledConnection(JavaMailSenderImpl sender, Map<MimeMessage, OutboxEmail> messages,
+                                          List<OutboxEmail> sent, List<Failure> failures) {
+        SmtpConnection connection = null;
+        Exception connectFailure = null;
+        try {
+            for (Map.Entry<MimeMessage, OutboxEmail> entry : messages.entrySet()) {
+                MimeMessage message = entry.getKey();
+                OutboxEmail email = entry.getValue();
+                if (connectFailure != null) {
+                    failures.add(retryOrDead(email, connectFailure));
+                    continue;
+                }
+                try {
+                    if (connection == null) {
+                        connection = acquireConnection(sender);
+                    }
+                } catch (Exception e) {
+                    connectFailure = e;
+                    failures.add(retryOrDead(email, e));
+                    continue;
+                }
+                try {
+                    if (message.getSentDate() == null) {
+                        message.setSentDate(new Date());
+                    }
+                    message.saveChanges();
+                    connection.transport().sendMessage(message, message.getAllRecipients());
+                    sent.add(email);
+                } catch (Exception e) {
+                    failures.add(retryOrDead(email, e));
+                    if (!connection.transport().isConnected()) {
+                        close(connection);
+                        connection = null;
+                    }
+                }
+            }
+        } finally {
+            if (connection != null) {
+                release(connection);
+            }
+        }
+    }
+
+    /**
+     * Kết nối rảnh còn dùng được, hoặc connect mới (cùng host / port / tài khoản với JavaMailSenderImpl)
+     */
+    private SmtpConnection acquireConnection(JavaMailSenderImpl sender) throws MessagingException {
+        long idleNanos = TimeUnit.SECONDS.toNanos(transportIdleSeconds);
+        SmtpConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            if (!connection.idleLongerThan(idleNanos) && connection.transport().isConnected()) {
+                return connection;
+            }
+            close(connection);
+        }
+        String protocol = sender.getProtocol() != null ? sender.getProtocol() : "smtp";
+        Transport transport = sender.getSession().getTransport(protocol);
+        String username = sender.getUsername() == null || sender.getUsername().isEmpty() ? null : sender.getUsername();
+        String password = sender.getPassword() == null || sender.getPassword().isEmpty() ? null : sender.getPassword();
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        return new SmtpConnection(transport);
+    }
+
+    private void release(SmtpConnection connection) {
+        connection.touch();
+        if (shuttingDown || !idleConnections.offer(connection)) {
+            close(connection);
+        }
+    }
+
+    private void close(SmtpConnection connection) {
+        try {
+            connection.transport().close();
+        } catch (Exception e) {
+            log.debug("Failed to close SMTP transport: {}", e.getMessage());
+        }
+    }
+
+    private MimeMessage buildMessage(OutboxEmail email) throws Exception {
+        EmailTemplate template = EmailTemplate.valueOf(email.template());
+        if (email.params() == null) {
+            throw new IllegalStateException("Invalid email params");
+        }
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED, StandardCharsets.UTF_8.name());
+        helper.setFrom((fromEmail == null || fromEmail.isBlank()) ? "no-reply@orchard-store.com" : fromEmail);
+        helper.setTo(email.recipient());
+        helper.setSubject(template.getSubject());
+        helper.setText(template.render(email.params()), true);
+        return message;
+    }
+
+    private Failure retryOrDead(OutboxEmail email, Exception error) {
+        int attempt = email.attempts() + 1;
+        boolean dead = attempt >= maxAttempts;
+        long delay = Math.min(retryMaxDelaySeconds, retryBaseDelaySeconds << Math.min(attempt - 1, 20));
+        if (dead) {
+            log.error("Email {} ({}) to {} is dead after {} attempts: {}",
+                    email.id(), email.template(), email.recipient(), attempt, error.getMessage());
+        } else {
+            log.warn("Failed to send email {} ({}) to {}, retry in {}s: {}",
+                    email.id(), email.template(), email.recipient(), delay, error.getMessage());
+        }
+        return new Failure(email.id(), email.lockedUntil(), dead, delay, error.getMessage());
+    }
+
+    /**
+     * Một kết nối SMTP đã connect và thời điểm dùng gần nhất
+     */
+    private static final class SmtpConnection {
+
+        private final Transport transport;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private SmtpConnection(Transport transport) {
+            this.transport = transport;
+        }
+
+        private Transport transport() {
+            return transport;
+        }
+
+        private void touch() {
+            lastUsedNanos = System.nanoTime();
+        }
+
+        private boolean idleLongerThan(long nanos) {
+            return System.nanoTime() - lastUsedNanos > nanos;
+        }
+    }
+}
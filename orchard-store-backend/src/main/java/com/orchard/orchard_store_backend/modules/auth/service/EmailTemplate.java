@@ -0,0 +1,141 @@
+package com.orchard.orchard_store_backend.modules.auth.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template email gửi qua outbox (EmailOutboxDispatcher).
+ *
+ * Mỗi template được tách sẵn thành các đoạn text cố định và placeholder {{name}} một lần khi class được load;
+ * render chỉ nối chuỗi (không parse / format lại HTML mỗi email). Giá trị được escape HTML.
+ */
+public enum EmailTemplate {
+
+    PASSWORD_RESET("Orchard Store Admin - Đặt lại mật khẩu", """
+            <p>Xin chào,</p>
+            <p>Bạn vừa yêu cầu đặt lại mật khẩu cho tài khoản quản trị Orchard Store.</p>
+            <p>Vui lòng nhấn vào nút bên dưới để đặt lại mật khẩu. Liên kết sẽ hết hạn sau 24 giờ.</p>
+            <p style="margin:24px 0;">
+                <a href="{{url}}" style="background-color:#111827;color:#ffffff;padding:12px 20px;border-radius:6px;text-decoration:none;">
+                    Đặt lại mật khẩu
+                </a>
+            </p>
+            <p>Nếu bạn không thực hiện yêu cầu này, hãy bỏ qua email.</p>
+            <p>Trân trọng,<br/>Orchard Store Team</p>
+            """),
+
+    PASSWORD_RESET_SUCCESS("Orchard Store Admin - Đổi mật khẩu thành công", """
+            <p>Xin chào {{name}},</p>
+            <p>Mật khẩu tài khoản quản trị Orchard Store của bạn đã được thay đổi thành công.</p>
+            <p>Nếu bạn không thực hiện hành động này, hãy liên hệ ngay với quản trị viên để được hỗ trợ.</p>
+            <p>Trân trọng,<br/>Orchard Store Team</p>
+            """),
+
+    LOGIN_OTP("Orchard Store - Mã OTP đăng nhập", """
+            <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; padding: 20px;">
+                <h2 style="color: #111827; margin-bottom: 20px;">Xin chào {{name}},</h2>
+                <p style="color: #374151; font-size: 16px; line-height: 1.6;">
+                    Bạn vừa yêu cầu đăng nhập vào Orchard Store. Mã OTP của bạn là:
+                </p>
+                <div style="background-color: #f3f4f6; border: 2px dashed #9ca3af; border-radius: 8px; padding: 20px; text-align: center; margin: 30px 0;">
+                    <h1 style="color: #111827; font-size: 36px; letter-spacing: 8px; margin: 0; font-family: 'Courier New', monospace;">
+                        {{otp}}
+                    </h1>
+                </div>
+                <p style="color: #6b7280; font-size: 14px; line-height: 1.6;">
+                    <strong>Lưu ý:</strong>
+                </p>
+                <ul style="color: #6b7280; font-size: 14px; line-height: 1.8; padding-left: 20px;">
+                    <li>Mã OTP có hiệu lực trong <strong>5 phút</strong></li>
+                    <li>Không chia sẻ mã OTP với bất kỳ ai</li>
+                    <li>Nếu bạn không yêu cầu mã này, vui lòng bỏ qua email</li>
+                </ul>
+                <p style="color: #374151; font-size: 16px; line-height: 1.6; margin-top: 30px;">
+                    Trân trọng,<br/>
+                    <strong>Orchard Store Team</strong>
+                </p>
+            </div>
+            """),
+
+    EMAIL_CHANGE_OTP("Orchard Store Admin - Xác nhận đổi email", """
+            <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; padding: 20px;">
+                <h2 style="color: #111827; margin-bottom: 20px;">Xin chào {{name}},</h2>
+                <p style="color: #374151; font-size: 16px; line-height: 1.6;">
+                    Bạn (hoặc quản trị viên) vừa yêu cầu đổi email cho tài khoản quản trị Orchard Store ({{currentEmail}}).
+                    Vui lòng xác thực yêu cầu bằng mã OTP bên dưới:
+                </p>
+                <div style="background-color: #f3f4f6; border: 2px dashed #9ca3af; border-radius: 8px; padding: 20px; text-align: center; margin: 30px 0;">
+                    <h1 style="color: #111827; font-size: 36px; letter-spacing: 8px; margin: 0; font-family: 'Courier New', monospace;">
+                        {{otp}}
+                    </h1>
+                </div>
+                <ul style="color: #6b7280; font-size: 14px; line-height: 1.8; padding-left: 20px;">
+                    <li>Mã OTP có hiệu lực trong <strong>5 phút</strong></li>
+                    <li>Chỉ hoàn tất đổi email sau khi nhập OTP trên trang quản trị</li>
+                    <li>Nếu bạn không yêu cầu thao tác này, vui lòng bỏ qua email và liên hệ quản trị viên</li>
+                </ul>
+                <p style="color: #374151; font-size: 16px; line-height: 1.6; margin-top: 30px;">
+                    Trân trọng,<br/>
+                    <strong>Orchard Store Team</strong>
+                </p>
+            </div>
+            """);
+
+    private final String subject;
+
+    /**
+     * Đoạn text cố định: segments[i] đứng trước placeholders[i], phần tử cuối là đoạn sau placeholder cuối
+     */
+    private final String[] segments;
+
+    private final String[] placeholders;
+
+    EmailTemplate(String subject, String body) {
+        this.subject = subject;
+        List<String> segmentList = new ArrayList<>();
+        List<String> placeholderList = new ArrayList<>();
+        Matcher matcher = Placeholder.PATTERN.matcher(body);
+        int last = 0;
+        while (matcher.find()) {
+            segmentList.add(body.substring(last, matcher.start()));
+            placeholderList.add(matcher.group(1));
+            last = matcher.end();
+        }
+        segmentList.add(body.substring(last));
+        this.segments = segmentList.toArray(new String[0]);
+        this.placeholders = placeholderList.toArray(new String[0]);
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Render nội dung HTML; placeholder không có giá trị được thay bằng chuỗi rỗng
+     */
+    public String render(Map<String, String> params) {
+        StringBuilder html = new StringBuilder(2048);
+        for (int i = 0; i < placeholders.length; i++) {
+            html.append(segments[i]);
+            String value = params.get(placeholders[i]);
+            if (value != null) {
+                html.append(HtmlUtils.htmlEscape(value, StandardCharsets.UTF_8.name()));
+            }
+        }
+        html.append(segments[segments.length - 1]);
+        return html.toString();
+    }
+
+    /**
+     * Static field của enum chưa được khởi tạo khi constructor chạy -> đặt Pattern trong holder class
+     */
+    private static final class Placeholder {
+        private static final Pattern PATTERN = Pattern.compile("\\{\\{(\\w+)}}");
+    }
+}
@@ -12,11 +12,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,9 +27,13 @@ public class LoginHistoryServiceImpl implements LoginHistoryService {
     private final LoginHistoryRepository loginHistoryRepository;
     private final UserAgentParser userAgentParser;
     private final LoginHistoryMapper loginHistoryMapper;
+    private final LoginHistoryWriter loginHistoryWriter;
 
+    /**
+     * Ghi lịch sử đăng nhập: chỉ parse User-Agent (có memoize) và đưa vào hàng đợi của LoginHistoryWriter,
+     * INSERT được thực hiện theo batch ở thread nền -> request đăng nhập không chờ database.
+     */
     @Override
-    @Transactional
     public void logLogin(
             User user,
             HttpServletRequest request,
@@ -46,25 +48,23 @@ public class LoginHistoryServiceImpl implements LoginHistoryService {
         try {
             String userAgent = request != null ? request.getHeader("User-Agent") : null;
             String ipAddress = request != null ? userAgentParser.getClientIP(request) : "0.0.0.0";
-            String browser = userAgentParser.parseBrowser(userAgent);
-            String os = userAgentParser.parseOS(userAgent);
-            String deviceType = userAgentParser.parseDeviceType(userAgent);
+            UserAgentParser.UserAgentInfo userAgentInfo = userAgentParser.parse(userAgent);
             LoginHistory.LoginStatus resolvedStatus =
                     status != null ? status : LoginHistory.LoginStatus.FAILED;
 
-            final LoginHistory loginHistory = LoginHistory.builder()
-                    .user(user)
-                    .ipAddress(ipAddress)
-                    .userAgent(userAgent)
-                    .deviceType(deviceType)
-                    .browser(browser)
-                    .os(os)
-                    .location(UNKNOWN_LOCATION)
-                    .loginStatus(resolvedStatus)
-                    .failureReason(failureReason)
-                    .build();
-
-            loginHistoryRepository.save(Objects.requireNonNull(loginHistory));
+            loginHistoryWriter.enqueue(new LoginHistoryWriter.Entry(
+                    user.getId(),
+                    user.getEmail(),
+                    ipAddress,
+                    userAgent,
+                    userAgentInfo.deviceType(),
+                    userAgentInfo.browser(),
+                    userAgentInfo.os(),
+                    UNKNOWN_LOCATION,
+                    resolvedStatus,
+                    failureReason,
+                    LocalDateTime.now()
+            ));
         } catch (Exception ex) {
             log.error("Failed to log login history for user {}: {}", user.getEmail(), ex.getMessage(), ex);
         }
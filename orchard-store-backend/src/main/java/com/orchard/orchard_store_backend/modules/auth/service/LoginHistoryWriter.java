@@ -0,0 +1,233 @@
+package com.orchard.orchard_store_backend.modules.auth.service;
+
+import com.orchard.orchard_store_backend.modules.auth.entity.LoginHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi login_history bất đồng bộ theo batch.
+ *
+ * Request đăng nhập chỉ đưa bản ghi vào hàng đợi in-memory có giới hạn (enqueue); một thread nền
+ * (login-history-writer) lấy tối đa batch-size bản ghi mỗi lần và INSERT bằng JDBC batch. Khi đợt đăng nhập
+ * dồn dập, mỗi round-trip tới database ghi được nhiều dòng thay vì một dòng / request.
+ *
+ * Khi hàng đợi đầy, hành vi theo overflow-policy:
+ * - CALLER_RUNS (mặc định): thread của request tự INSERT bản ghi đó (chậm lại nhưng không mất dữ liệu)
+ * - BLOCK: chờ tối đa block-timeout-ms để có chỗ, hết thời gian thì bỏ bản ghi
+ * - DROP: bỏ bản ghi ngay (có đếm và log warn)
+ *
+ * Khi ứng dụng shutdown, thread nền dừng và phần còn trong hàng đợi được ghi nốt (@PreDestroy).
+ * Bản ghi chỉ nằm trong bộ nhớ: nếu process bị kill đột ngột, các dòng chưa flush sẽ mất.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginHistoryWriter {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO login_history (user_id, email, ip_address, user_agent, device_type, browser, os, location,
+                                   login_status, failure_reason, login_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final int MAX_EMAIL_LENGTH = 255;
+    private static final int MAX_USER_AGENT_LENGTH = 500;
+    private static final int MAX_FAILURE_REASON_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.login-history.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.login-history.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.login-history.writer.poll-timeout-ms:500}")
+    private long pollTimeoutMs;
+
+    @Value("${app.login-history.writer.overflow-policy:CALLER_RUNS}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${app.login-history.writer.block-timeout-ms:100}")
+    private long blockTimeoutMs;
+
+    private final AtomicLong droppedEntries = new AtomicLong();
+
+    private BlockingQueue<Entry> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "login-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Không interrupt: batch đang ghi được hoàn tất, thread tự thoát sau tối đa poll-timeout-ms
+        running = false;
+        try {
+            writerThread.join(pollTimeoutMs + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ghi nốt phần còn lại trong hàng đợi
+        int flushed = 0;
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flushed += write(batch);
+            batch.clear();
+        }
+        log.info("Login history writer stopped (flushed {} pending entries, {} dropped in total)",
+                flushed, droppedEntries.get());
+    }
+
+    /**
+     * Đưa một bản ghi đăng nhập vào hàng đợi (không chạm database, trừ khi hàng đợi đầy và policy là CALLER_RUNS)
+     */
+    public void enqueue(Entry entry) {
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case CALLER_RUNS -> write(List.of(entry));
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(entry, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        drop(entry);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(entry);
+                }
+            }
+            case DROP -> drop(entry);
+        }
+    }
+
+    /**
+     * Số bản ghi đang chờ ghi
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Tổng số bản ghi đã bị bỏ do hàng đợi đầy
+     */
+    public long droppedCount() {
+        return droppedEntries.get();
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Entry first = queue.poll(pollTimeoutMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // Phần còn lại được flush trong stop()
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Login history writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * INSERT một batch (một round-trip JDBC batch)
+     *
+     * @return Số dòng đã ghi (0 nếu batch lỗi - bản ghi của batch đó bị bỏ)
+     */
+    private int write(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            batchArgs.add(new Object[]{
+                    entry.userId(),
+                    truncate(entry.email(), MAX_EMAIL_LENGTH),
+                    entry.ipAddress(),
+                    truncate(entry.userAgent(), MAX_USER_AGENT_LENGTH),
+                    entry.deviceType(),
+                    entry.browser(),
+                    entry.os(),
+                    entry.location(),
+                    entry.loginStatus().name(),
+                    truncate(entry.failureReason(), MAX_FAILURE_REASON_LENGTH),
+                    Timestamp.valueOf(entry.loginAt())
+            });
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+            return entries.size();
+        } catch (Exception e) {
+            log.error("Failed to write {} login history entries: {}", entries.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private void drop(Entry entry) {
+        long dropped = droppedEntries.incrementAndGet();
+        log.warn("Login history queue is full, dropped entry for user {} ({} dropped in total)",
+                entry.userId(), dropped);
+    }
+
+    private String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * Một dòng login_history chờ ghi (thời điểm đăng nhập lấy lúc enqueue, không phải lúc INSERT)
+     */
+    public record Entry(
+            Long userId,
+            String email,
+            String ipAddress,
+            String userAgent,
+            String deviceType,
+            String browser,
+            String os,
+            String location,
+            LoginHistory.LoginStatus loginStatus,
+            String failureReason,
+            LocalDateTime loginAt
+    ) {
+    }
+
+    /**
+     * Hành vi khi hàng đợi đầy
+     */
+    public enum OverflowPolicy {
+        CALLER_RUNS, BLOCK, DROP
+    }
+}
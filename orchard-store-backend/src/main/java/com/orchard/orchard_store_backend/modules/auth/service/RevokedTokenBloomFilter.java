@@ -0,0 +1,118 @@
+package com.orchard.orchard_store_backend.modules.auth.service;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter in-memory cho token đã bị thu hồi, chia theo bucket thời gian hết hạn.
+ *
+ * Mỗi token được thêm vào bucket chứa thời điểm hết hạn của nó; khi bucket đã qua thời điểm kết thúc
+ * thì mọi token trong đó đều đã hết hạn nên cả bucket bị bỏ đi - filter không phình ra theo thời gian
+ * và tỉ lệ false positive không tăng dần như một Bloom filter dùng mãi.
+ *
+ * Không có false negative: mightContain() = false nghĩa là token chắc chắn chưa bị thu hồi (theo những gì
+ * node này biết). Input là digest SHA-256 của token nên dùng trực tiếp các byte digest làm hash (double hashing).
+ */
+final class RevokedTokenBloomFilter {
+
+    private final long bucketMillis;
+    private final int bitsPerBucket;
+    private final int hashFunctions;
+
+    private final ConcurrentSkipListMap<Long, AtomicLongArray> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param bucketMillis Độ rộng mỗi bucket theo thời gian hết hạn
+     * @param expectedInsertionsPerBucket Số token thu hồi dự kiến trong một bucket
+     * @param falsePositiveRate Tỉ lệ false positive mong muốn (ví dụ 0.01)
+     */
+    RevokedTokenBloomFilter(long bucketMillis, int expectedInsertionsPerBucket, double falsePositiveRate) {
+        this.bucketMillis = bucketMillis;
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedInsertionsPerBucket * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // Làm tròn lên bội số 64 để khớp với AtomicLongArray
+        this.bitsPerBucket = (int) Math.max(64, ((Math.min(bits, Integer.MAX_VALUE - 63L) + 63) / 64) * 64);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerBucket / expectedInsertionsPerBucket * ln2));
+    }
+
+    /**
+     * Thêm token (digest) hết hạn tại expiresAtMillis.
+     */
+    void put(byte[] digest, long expiresAtMillis) {
+        long bucketId = Math.floorDiv(expiresAtMillis, bucketMillis);
+        AtomicLongArray bits = buckets.computeIfAbsent(bucketId, id -> new AtomicLongArray(bitsPerBucket / 64));
+        long h1 = hash1(digest);
+        long h2 = hash2(digest);
+        for (int i = 0; i < hashFunctions; i++) {
+            int index = index(h1, h2, i);
+            int word = index >>> 6;
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * @return false nếu token chắc chắn không nằm trong filter; true nếu có thể đã bị thu hồi
+     */
+    boolean mightContain(byte[] digest, long nowMillis) {
+        long currentBucket = Math.floorDiv(nowMillis, bucketMillis);
+        long h1 = hash1(digest);
+        long h2 = hash2(digest);
+        // Chỉ các bucket chưa kết thúc mới có thể chứa token còn hiệu lực
+        for (AtomicLongArray bits : buckets.tailMap(currentBucket, true).values()) {
+            if (containsAll(bits, h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bỏ các bucket đã kết thúc (mọi token trong đó đều đã hết hạn).
+     *
+     * @return Số bucket đã bỏ
+     */
+    int evictExpired(long nowMillis) {
+        long currentBucket = Math.floorDiv(nowMillis, bucketMillis);
+        int removed = 0;
+        Iterator<Map.Entry<Long, AtomicLongArray>> it = buckets.headMap(currentBucket, false).entrySet().iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+            removed++;
+        }
+        return removed;
+    }
+
+    private boolean containsAll(AtomicLongArray bits, long h1, long h2) {
+        for (int i = 0; i < hashFunctions; i++) {
+            int index = index(h1, h2, i);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(long h1, long h2, int i) {
+        return (int) Math.floorMod(h1 + i * h2, (long) bitsPerBucket);
+    }
+
+    private static long hash1(byte[] digest) {
+        return ByteBuffer.wrap(digest, 0, 8).getLong();
+    }
+
+    private static long hash2(byte[] digest) {
+        // Bảo đảm h2 lẻ để các index không lặp lại theo chu kỳ ngắn
+        return ByteBuffer.wrap(digest, 8, 8).getLong() | 1L;
+    }
+}
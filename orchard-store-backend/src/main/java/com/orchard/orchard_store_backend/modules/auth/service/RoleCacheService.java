@@ -24,7 +24,9 @@ public class RoleCacheService {
 
     private static final String ROLE_CACHE_KEY_PREFIX = "role:cache:";
     private static final String ROLES_BY_IDS_CACHE_KEY_PREFIX = "roles:by_ids:";
+    private static final String ROLE_TAG_PREFIX = "role:";
     private static final long CACHE_TTL_SECONDS = 3600; // 1 hour
+    private static final int EVICT_BATCH_SIZE = 500;
 
     /**
      * Get roles by IDs with caching
@@ -65,6 +67,10 @@ public class RoleCacheService {
                     .map(String::valueOf)
                     .collect(Collectors.joining(","));
             redisService.setValue(cacheKey, idsString, CACHE_TTL_SECONDS);
+            // Gắn tag theo từng role để evictRoleCache xóa được mọi tổ hợp chứa role đó
+            redisService.tagKey(cacheKey, CACHE_TTL_SECONDS, roleIds.stream()
+                    .map(id -> ROLE_TAG_PREFIX + id)
+                    .toArray(String[]::new));
         } catch (Exception e) {
             log.warn("Failed to cache roles: {}", e.getMessage());
             // Continue without cache - not critical
@@ -117,12 +123,14 @@ public class RoleCacheService {
      */
     public void evictRoleCache(Long roleId) {
         try {
-            if (roleId != null) {
-                String cacheKey = ROLE_CACHE_KEY_PREFIX + roleId;
-                redisService.deleteKey(cacheKey);
+            if (roleId == null) {
+                evictAllRoleCaches();
+                return;
             }
-            // Note: In production, you might want to evict all role-related caches
-            // For simplicity, we'll let them expire naturally
+            String cacheKey = ROLE_CACHE_KEY_PREFIX + roleId;
+            redisService.deleteKey(cacheKey);
+            // Xóa các key roles:by_ids:* có chứa role này
+            redisService.deleteTag(ROLE_TAG_PREFIX + roleId, EVICT_BATCH_SIZE);
         } catch (Exception e) {
             log.warn("Failed to evict role cache: {}", e.getMessage());
         }
@@ -133,9 +141,9 @@ public class RoleCacheService {
      */
     public void evictAllRoleCaches() {
         try {
-            // In production, use Redis SCAN to find and delete all keys with prefix
-            // For now, we'll just log - keys will expire naturally
-            log.info("Role cache eviction requested - keys will expire naturally");
+            long deleted = redisService.deleteByPattern(ROLE_CACHE_KEY_PREFIX + "*", EVICT_BATCH_SIZE)
+                    + redisService.deleteByPattern(ROLES_BY_IDS_CACHE_KEY_PREFIX + "*", EVICT_BATCH_SIZE);
+            log.info("Evicted {} role cache keys", deleted);
         } catch (Exception e) {
             log.warn("Failed to evict all role caches: {}", e.getMessage());
         }
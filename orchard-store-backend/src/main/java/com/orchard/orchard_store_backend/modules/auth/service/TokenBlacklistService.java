@@ -1,24 +1,71 @@
 package com.orchard.orchard_store_backend.modules.auth.service;
 
 import com.orchard.orchard_store_backend.modules.customer.service.RedisService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Service for managing JWT token blacklist
  * Tokens are blacklisted in Redis until they expire
+ *
+ * Key Redis là token ID ngắn (SHA-256 của token, 128 bit đầu, Base64URL) thay vì cả chuỗi JWT.
+ * Mỗi node giữ một Bloom filter in-memory (chia bucket theo thời điểm hết hạn) các token ID đã thu hồi,
+ * đồng bộ qua Redis pub/sub; chỉ khi Bloom filter báo "có thể" mới GET Redis để xác nhận.
+ * Filter được dựng lại định kỳ từ Redis (SCAN) để bù các message pub/sub bị lỡ.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class TokenBlacklistService {
+public class TokenBlacklistService implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "jwt:blacklist:revoked";
 
-    private final RedisService redisService;
-    
     private static final String BLACKLIST_KEY_PREFIX = "jwt:blacklist:";
+    private static final int TOKEN_ID_BYTES = 16;
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final RedisService redisService;
+
+    @Value("${app.jwt.blacklist.bloom.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${app.jwt.blacklist.bloom.expected-insertions-per-bucket:10000}")
+    private int expectedInsertionsPerBucket;
+
+    @Value("${app.jwt.blacklist.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile RevokedTokenBloomFilter bloomFilter;
+
+    /**
+     * Filter đang được dựng lại (nếu có) - token thu hồi trong lúc rebuild được ghi vào cả hai filter
+     */
+    private volatile RevokedTokenBloomFilter rebuildingFilter;
+
+    /**
+     * false khi chưa dựng được filter từ Redis (ví dụ Redis down lúc khởi động) -> luôn hỏi Redis
+     */
+    private volatile boolean bloomReady;
+
+    @PostConstruct
+    public void init() {
+        bloomFilter = newFilter();
+        rebuildFromRedis();
+    }
 
     /**
      * Blacklist a token until its expiration time
@@ -29,11 +76,14 @@ public class TokenBlacklistService {
         try {
             long now = System.currentTimeMillis();
             long ttl = expirationTime - now;
-            
+
             if (ttl > 0) {
-                // Store token in blacklist with TTL matching token expiration
-                String key = BLACKLIST_KEY_PREFIX + token;
-                redisService.setValue(key, "1", ttl / 1000); // Convert to seconds
+                byte[] tokenId = tokenId(token);
+                String encodedId = encode(tokenId);
+                // Store token in blacklist with TTL matching token expiration (làm tròn lên để không hết hạn sớm hơn token)
+                redisService.setValue(BLACKLIST_KEY_PREFIX + encodedId, "1", (ttl + 999) / 1000);
+                addToFilters(tokenId, expirationTime);
+                redisService.publish(REVOCATION_CHANNEL, encodedId + MESSAGE_SEPARATOR + expirationTime);
                 log.debug("Token blacklisted until: {}", new Date(expirationTime));
             } else {
                 log.debug("Token already expired, no need to blacklist");
@@ -50,9 +100,13 @@ public class TokenBlacklistService {
      * @return true if token is blacklisted
      */
     public boolean isTokenBlacklisted(String token) {
+        byte[] tokenId = tokenId(token);
+        if (bloomReady && !bloomFilter.mightContain(tokenId, System.currentTimeMillis())) {
+            // Bloom filter không có false negative -> chắc chắn chưa bị thu hồi, không cần round trip Redis
+            return false;
+        }
         try {
-            String key = BLACKLIST_KEY_PREFIX + token;
-            String value = redisService.getValue(key);
+            String value = redisService.getValue(BLACKLIST_KEY_PREFIX + encode(tokenId));
             return value != null;
         } catch (Exception e) {
             log.warn("Failed to check token blacklist: {}", e.getMessage());
@@ -63,16 +117,126 @@ public class TokenBlacklistService {
 
     /**
      * Remove token from blacklist (e.g., for testing or manual cleanup)
+     * Bloom filter không hỗ trợ xóa: các lần kiểm tra sau sẽ rơi xuống Redis và trả về false.
      * @param token The JWT token to remove from blacklist
      */
     public void removeFromBlacklist(String token) {
         try {
-            String key = BLACKLIST_KEY_PREFIX + token;
-            redisService.deleteKey(key);
+            redisService.deleteKey(BLACKLIST_KEY_PREFIX + encode(tokenId(token)));
             log.debug("Token removed from blacklist");
         } catch (Exception e) {
             log.warn("Failed to remove token from blacklist: {}", e.getMessage());
         }
     }
-}
 
+    /**
+     * Dựng lại Bloom filter từ các key blacklist trong Redis (SCAN) rồi thay thế filter hiện tại.
+     * Key định dạng cũ (chứa nguyên JWT) được chuyển sang token ID ngắn.
+     */
+    public void rebuildFromRedis() {
+        RevokedTokenBloomFilter fresh = newFilter();
+        rebuildingFilter = fresh;
+        try {
+            long now = System.currentTimeMillis();
+            Map<String, Long> entries = redisService.scanWithTtl(BLACKLIST_KEY_PREFIX + "*", SCAN_BATCH_SIZE);
+            int migrated = 0;
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                String suffix = entry.getKey().substring(BLACKLIST_KEY_PREFIX.length());
+                long ttlMillis = entry.getValue();
+                if (ttlMillis <= 0) {
+                    // Không có TTL: không biết thời điểm hết hạn -> giữ trong bucket xa nhất có thể đạt tới
+                    ttlMillis = bucketMinutes * 60_000L * 24;
+                }
+                byte[] tokenId;
+                if (suffix.indexOf('.') >= 0) {
+                    // Key cũ: jwt:blacklist:{raw JWT}
+                    tokenId = tokenId(suffix);
+                    redisService.setValue(BLACKLIST_KEY_PREFIX + encode(tokenId), "1", (ttlMillis + 999) / 1000);
+                    redisService.deleteKey(entry.getKey());
+                    migrated++;
+                } else {
+                    tokenId = decode(suffix);
+                    if (tokenId == null) {
+                        continue;
+                    }
+                }
+                fresh.put(tokenId, now + ttlMillis);
+            }
+            bloomFilter = fresh;
+            bloomReady = true;
+            log.debug("Token blacklist Bloom filter rebuilt: {} entries, {} migrated from legacy keys", entries.size(), migrated);
+        } catch (Exception e) {
+            log.warn("Failed to rebuild token blacklist Bloom filter, falling back to Redis lookups: {}", e.getMessage());
+            bloomReady = false;
+        } finally {
+            rebuildingFilter = null;
+        }
+    }
+
+    /**
+     * Bỏ các bucket đã hết hạn khỏi Bloom filter
+     */
+    public void evictExpiredBuckets() {
+        int removed = bloomFilter.evictExpired(System.currentTimeMillis());
+        if (removed > 0) {
+            log.debug("Evicted {} expired token blacklist Bloom buckets", removed);
+        }
+    }
+
+    /**
+     * Nhận token ID bị thu hồi từ node khác (message: {tokenId}|{expiresAtMillis})
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0) {
+            log.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        byte[] tokenId = decode(body.substring(0, separator));
+        if (tokenId == null) {
+            log.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        try {
+            addToFilters(tokenId, Long.parseLong(body.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed token revocation message");
+        }
+    }
+
+    private void addToFilters(byte[] tokenId, long expiresAtMillis) {
+        bloomFilter.put(tokenId, expiresAtMillis);
+        RevokedTokenBloomFilter rebuilding = rebuildingFilter;
+        if (rebuilding != null) {
+            rebuilding.put(tokenId, expiresAtMillis);
+        }
+    }
+
+    private RevokedTokenBloomFilter newFilter() {
+        return new RevokedTokenBloomFilter(bucketMinutes * 60_000L, expectedInsertionsPerBucket, falsePositiveRate);
+    }
+
+    private static byte[] tokenId(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(digest, TOKEN_ID_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String encode(byte[] tokenId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenId);
+    }
+
+    private static byte[] decode(String encodedId) {
+        try {
+            byte[] tokenId = Base64.getUrlDecoder().decode(encodedId);
+            return tokenId.length == TOKEN_ID_BYTES ? tokenId : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.orchard.orchard_store_backend.modules.auth.service;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.auth.dto.LoginHistoryResponseDTO;
 import com.orchard.orchard_store_backend.modules.auth.dto.UserCreateRequestDTO;
 import com.orchard.orchard_store_backend.modules.auth.dto.UserResponseDTO;
@@ -9,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 
 public interface UserAdminService {
     Page<UserResponseDTO> getUsers(String keyword, String status, Pageable pageable);
+    CursorPage<UserResponseDTO> getUsersByCursor(String keyword, String status, String cursor, int size, boolean includeTotal);
     UserResponseDTO getUserById(Long id);
     UserResponseDTO createUser(UserCreateRequestDTO request);
     UserResponseDTO updateUser(Long id, UserUpdateRequestDTO request);
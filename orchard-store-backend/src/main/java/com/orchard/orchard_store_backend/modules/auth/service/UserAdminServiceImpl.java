@@ -1,5 +1,6 @@
 package com.orchard.orchard_store_backend.modules.auth.service;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.auth.dto.LoginHistoryResponseDTO;
 import com.orchard.orchard_store_backend.modules.auth.dto.UserCreateRequestDTO;
 import com.orchard.orchard_store_backend.modules.auth.dto.UserResponseDTO;
@@ -12,17 +13,22 @@ import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
 import com.orchard.orchard_store_backend.exception.OperationNotPermittedException;
 import com.orchard.orchard_store_backend.modules.auth.mapper.UserAdminMapper;
 import com.orchard.orchard_store_backend.modules.auth.repository.LoginHistoryRepository;
+import com.orchard.orchard_store_backend.modules.auth.repository.UserAdminQueryRepository;
 import com.orchard.orchard_store_backend.modules.auth.repository.UserRepository;
 import com.orchard.orchard_store_backend.modules.auth.validation.PasswordValidator;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ImageUploadService;
 import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
+import com.orchard.orchard_store_backend.util.KeysetCursor;
+import com.orchard.orchard_store_backend.util.PageCountService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -30,6 +36,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.criteria.Predicate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -49,9 +56,13 @@ public class UserAdminServiceImpl implements UserAdminService {
     private final RoleCacheService roleCacheService;
     private final ImageUploadService imageUploadService;
     private final CacheService cacheService;
+    private final UserAdminQueryRepository userAdminQueryRepository;
+    private final PageCountService pageCountService;
     
     private static final String USER_LIST_CACHE_KEY_PREFIX = "user:list:";
     private static final long USER_LIST_CACHE_TTL_SECONDS = 300; // 5 minutes
+    private static final String USER_KEYSET_SORT = "createdAt,desc";
+    private static final String LOGIN_HISTORY_ROWS_SQL = "SELECT 1 FROM login_history WHERE user_id = :userId";
 
     @Override
     @Transactional(readOnly = true)
@@ -74,9 +85,8 @@ public class UserAdminServiceImpl implements UserAdminService {
             }
         }
 
-        // Luôn dùng Specification với LIKE filters để đảm bảo độ ổn định
-        Specification<User> spec = buildUserSpecification(keyword, status);
-        Page<UserResponseDTO> result = userRepository.findAll(spec, pageable)
+        // Full-text (search_vector) + trigram email / phone, xếp theo độ liên quan; tổng theo PageCountService
+        Page<UserResponseDTO> result = userAdminQueryRepository.findPage(keyword, parseStatusFilter(status), pageable)
                 .map(userAdminMapper::toResponseDTO);
 
         if (isDefaultList && cacheKey != null) {
@@ -87,6 +97,42 @@ public class UserAdminServiceImpl implements UserAdminService {
         return result;
     }
 
+    /**
+     * Danh sách users theo keyset (createdAt DESC, id DESC): trang sau seek theo dòng cuối trang trước,
+     * không OFFSET; COUNT chỉ chạy khi includeTotal = true.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<UserResponseDTO> getUsersByCursor(String keyword, String status, String cursor,
+                                                        int size, boolean includeTotal) {
+        Specification<User> spec = buildUserSpecification(keyword, status);
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor, USER_KEYSET_SORT);
+
+        LocalDateTime cursorCreatedAt = keysetCursor != null ? keysetCursor.timestampValue() : null;
+
+        // createdAt null đứng đầu khi DESC (Postgres): sau dòng null là các dòng null id nhỏ hơn, rồi mọi dòng có createdAt
+        Specification<User> pageSpec = keysetCursor == null ? spec : spec.and((root, query, cb) -> {
+            if (cursorCreatedAt == null) {
+                return cb.or(
+                        cb.isNotNull(root.get("createdAt")),
+                        cb.lessThan(root.get("id"), keysetCursor.id()));
+            }
+            return cb.or(
+                    cb.lessThan(root.get("createdAt"), cursorCreatedAt),
+                    cb.and(cb.equal(root.get("createdAt"), cursorCreatedAt), cb.lessThan(root.get("id"), keysetCursor.id())));
+        });
+        List<User> users = userRepository.findBy(pageSpec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                .limit(size + 1)
+                .all());
+
+        Long total = includeTotal ? userRepository.count(spec) : null;
+        return CursorPage.of(users, size,
+                        user -> KeysetCursor.of(USER_KEYSET_SORT, user.getCreatedAt(), user.getId()),
+                        total)
+                .map(userAdminMapper::toResponseDTO);
+    }
+
     @Override
     @Transactional(readOnly = true)
     @Cacheable(value = "users", key = "#id", unless = "#result == null")
@@ -545,8 +591,13 @@ public class UserAdminServiceImpl implements UserAdminService {
         }
 
         // Lấy lịch sử đăng nhập theo userId, sắp xếp giảm dần theo loginAt
-        return loginHistoryRepository.findByUserIdOrderByLoginAtDesc(userId, pageable)
-                .map(userAdminMapper::toLoginHistoryResponseDTO);
+        List<LoginHistoryResponseDTO> content = loginHistoryRepository.findByUserIdOrderByLoginAtDesc(userId, pageable)
+                .stream()
+                .map(userAdminMapper::toLoginHistoryResponseDTO)
+                .collect(Collectors.toList());
+        // User đăng nhập nhiều có thể có rất nhiều dòng -> đếm có ngưỡng thay vì COUNT toàn bộ
+        return pageCountService.page(content, pageable, LOGIN_HISTORY_ROWS_SQL,
+                new MapSqlParameterSource("userId", userId));
     }
     
     /**
@@ -564,29 +615,37 @@ public class UserAdminServiceImpl implements UserAdminService {
                 predicates.add(cb.or(emailPredicate, fullNamePredicate, phonePredicate));
             }
 
-            if (status != null && !status.trim().isEmpty() && !"ALL".equalsIgnoreCase(status)) {
-                try {
-                    User.Status userStatus = User.Status.valueOf(status.toUpperCase());
-                    predicates.add(cb.equal(root.get("status"), userStatus));
-                } catch (IllegalArgumentException ex) {
-                    log.warn("Invalid status filter: {}", status);
-                }
+            User.Status userStatus = parseStatusFilter(status);
+            if (userStatus != null) {
+                predicates.add(cb.equal(root.get("status"), userStatus));
             }
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
+
+    /**
+     * Status filter từ request (null / rỗng / "ALL" / không hợp lệ -> không filter)
+     */
+    private User.Status parseStatusFilter(String status) {
+        if (status == null || status.trim().isEmpty() || "ALL".equalsIgnoreCase(status)) {
+            return null;
+        }
+        try {
+            return User.Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            log.warn("Invalid status filter: {}", status);
+            return null;
+        }
+    }
     
     /**
      * Evict user list cache
      */
     private void evictUserListCache() {
-        // Xóa cache các trang mặc định của danh sách user
-        int[] pageSizes = {10, 15, 20, 30};
-        for (int size : pageSizes) {
-            String cacheKey = USER_LIST_CACHE_KEY_PREFIX + "ALL:0:" + size;
-            cacheService.evict(cacheKey);
-        }
+        // Xóa cache mọi page size của danh sách user (SCAN, không dùng KEYS)
+        cacheService.evictPattern(USER_LIST_CACHE_KEY_PREFIX + "*");
+        userAdminQueryRepository.evictCachedTotal();
         log.debug("User list cache evicted");
     }
 }
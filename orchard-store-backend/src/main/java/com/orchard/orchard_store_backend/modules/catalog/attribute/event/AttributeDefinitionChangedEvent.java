@@ -0,0 +1,17 @@
+package com.orchard.orchard_store_backend.modules.catalog.attribute.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event được publish khi attribute type / data type của một ProductAttribute thay đổi
+ * Sử dụng để patch cached_attributes của các variant có attribute này sau khi transaction commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttributeDefinitionChangedEvent {
+
+    private Long attributeId;
+}
@@ -0,0 +1,17 @@
+package com.orchard.orchard_store_backend.modules.catalog.attribute.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event được publish khi một ProductAttribute được tạo / xóa hoặc is_filterable / is_searchable / data type thay đổi
+ * Sử dụng để đồng bộ expression index trên product_variants.cached_attributes sau khi transaction commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttributeFilterSettingsChangedEvent {
+
+    private Long attributeId;
+}
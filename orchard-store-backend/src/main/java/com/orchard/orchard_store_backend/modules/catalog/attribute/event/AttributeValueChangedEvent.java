@@ -0,0 +1,18 @@
+package com.orchard.orchard_store_backend.modules.catalog.attribute.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event được publish khi value / display value của một AttributeValue (attribute option) thay đổi
+ * Sử dụng để patch cached_attributes của các variant đang dùng option này sau khi transaction commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttributeValueChangedEvent {
+
+    private Long attributeId;
+    private Long attributeValueId;
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductAttributeValueRepository extends JpaRepository<ProductAttributeValue, Long> {
@@ -17,6 +18,25 @@ public interface ProductAttributeValueRepository extends JpaRepository<ProductAt
 
     List<ProductAttributeValue> findByProductVariantIdAndScope(Long productVariantId, ProductAttributeValue.Scope scope);
 
+    /**
+     * Attribute values của nhiều variant trong một query (kèm attribute và option) - dùng cho bulk sync JSONB
+     */
+    @Query("SELECT pav FROM ProductAttributeValue pav " +
+           "JOIN FETCH pav.attribute " +
+           "LEFT JOIN FETCH pav.attributeValue " +
+           "WHERE pav.productVariant.id IN :variantIds")
+    List<ProductAttributeValue> findWithAttributeByProductVariantIdIn(@Param("variantIds") Collection<Long> variantIds);
+
+    /**
+     * Attribute values theo scope của nhiều product trong một query (kèm attribute và option)
+     */
+    @Query("SELECT pav FROM ProductAttributeValue pav " +
+           "JOIN FETCH pav.attribute " +
+           "LEFT JOIN FETCH pav.attributeValue " +
+           "WHERE pav.product.id IN :productIds AND pav.scope = :scope")
+    List<ProductAttributeValue> findWithAttributeByProductIdInAndScope(@Param("productIds") Collection<Long> productIds,
+                                                                       @Param("scope") ProductAttributeValue.Scope scope);
+
     @Modifying
     @Query("DELETE FROM ProductAttributeValue pav WHERE pav.product.id = :productId")
     void deleteByProductId(Long productId);
@@ -7,6 +7,9 @@ import com.orchard.orchard_store_backend.modules.catalog.attribute.dto.Attribute
 import com.orchard.orchard_store_backend.modules.catalog.attribute.dto.ProductAttributeDTO;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.AttributeValue;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.ProductAttribute;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeDefinitionChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeFilterSettingsChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeValueChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.mapper.AttributeValueMapper;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.mapper.ProductAttributeMapper;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.repository.AttributeValueRepository;
@@ -14,6 +17,7 @@ import com.orchard.orchard_store_backend.modules.catalog.attribute.repository.Pr
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -24,6 +28,7 @@ import org.springframework.util.CollectionUtils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -36,6 +41,7 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
     private final AttributeValueRepository attributeValueRepository;
     private final ProductAttributeMapper productAttributeMapper;
     private final AttributeValueMapper attributeValueMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -118,6 +124,7 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
         }
         ProductAttribute saved = productAttributeRepository.save(attribute);
         log.info("Created attribute: {} with key: {}", saved.getAttributeName(), saved.getAttributeKey());
+        eventPublisher.publishEvent(new AttributeFilterSettingsChangedEvent(saved.getId()));
         return productAttributeMapper.toDTO(saved);
     }
 
@@ -126,6 +133,10 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
     public ProductAttributeDTO updateAttribute(Long id, ProductAttributeDTO dto) {
         ProductAttribute attribute = productAttributeRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("ProductAttribute", id));
+        ProductAttribute.AttributeType previousType = attribute.getAttributeType();
+        ProductAttribute.AttributeDataType previousDataType = attribute.getDataType();
+        Boolean previousFilterable = attribute.getFilterable();
+        Boolean previousSearchable = attribute.getSearchable();
 
         // Cập nhật thông tin attribute cha
         if (dto.getAttributeName() != null) {
@@ -191,12 +202,24 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
         }
 
         // Xử lý nested update cho values
-        if (dto.getValues() != null) {
-            updateAttributeValues(attribute, dto.getValues());
-        }
+        List<Long> changedValueIds = dto.getValues() != null
+                ? updateAttributeValues(attribute, dto.getValues())
+                : List.of();
 
         ProductAttribute saved = productAttributeRepository.save(attribute);
         log.info("Updated attribute: {} with key: {}", saved.getAttributeName(), saved.getAttributeKey());
+
+        // cached_attributes của variants được patch sau khi commit
+        if (saved.getAttributeType() != previousType || saved.getDataType() != previousDataType) {
+            eventPublisher.publishEvent(new AttributeDefinitionChangedEvent(saved.getId()));
+        }
+        changedValueIds.forEach(valueId -> eventPublisher.publishEvent(new AttributeValueChangedEvent(saved.getId(), valueId)));
+        // Expression index trên cached_attributes phụ thuộc is_filterable / is_searchable / data type
+        if (saved.getDataType() != previousDataType
+                || !Objects.equals(saved.getFilterable(), previousFilterable)
+                || !Objects.equals(saved.getSearchable(), previousSearchable)) {
+            eventPublisher.publishEvent(new AttributeFilterSettingsChangedEvent(saved.getId()));
+        }
         return productAttributeMapper.toDTO(saved);
     }
 
@@ -205,8 +228,10 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
      * - Value không có ID => INSERT (mới)
      * - Value có ID và tồn tại trong DB => UPDATE
      * - Value tồn tại trong DB nhưng không có trong payload => DELETE (nếu không bị ràng buộc)
+     *
+     * @return ID các value đã tồn tại có value / display value thay đổi
      */
-    private void updateAttributeValues(ProductAttribute attribute, List<AttributeValueDTO> newValues) {
+    private List<Long> updateAttributeValues(ProductAttribute attribute, List<AttributeValueDTO> newValues) {
         // Lấy danh sách values hiện tại từ DB
         List<AttributeValue> existingValues = new ArrayList<>(attribute.getValues());
         Map<Long, AttributeValue> existingValuesMap = existingValues.stream()
@@ -237,11 +262,18 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
         attribute.getValues().removeAll(toDelete);
 
         // Cập nhật hoặc thêm mới values
+        List<Long> changedValueIds = new ArrayList<>();
         for (AttributeValueDTO dto : newValues) {
             if (dto.getId() != null && existingValuesMap.containsKey(dto.getId())) {
                 // UPDATE: Value có ID và tồn tại trong DB
                 AttributeValue existingValue = existingValuesMap.get(dto.getId());
+                String previousValue = existingValue.getValue();
+                String previousDisplayValue = existingValue.getDisplayValue();
                 updateAttributeValueFields(existingValue, dto);
+                if (!Objects.equals(previousValue, existingValue.getValue())
+                        || !Objects.equals(previousDisplayValue, existingValue.getDisplayValue())) {
+                    changedValueIds.add(existingValue.getId());
+                }
             } else {
                 // INSERT: Value không có ID hoặc ID không tồn tại trong DB
                 AttributeValue newValue = attributeValueMapper.toEntity(dto);
@@ -268,6 +300,7 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
 
         // Validation: Chỉ cho phép 1 giá trị mặc định
         validateOnlyOneDefaultValue(attribute);
+        return changedValueIds;
     }
 
     /**
@@ -336,6 +369,7 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
 
         productAttributeRepository.delete(attribute);
         log.info("Deleted attribute: {} (id: {})", attribute.getAttributeName(), id);
+        eventPublisher.publishEvent(new AttributeFilterSettingsChangedEvent(id));
     }
 
     @Override
@@ -384,6 +418,9 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
             });
         }
 
+        boolean cachedFieldsChanged = !Objects.equals(value.getValue(), dto.getValue())
+                || !Objects.equals(value.getDisplayValue(), dto.getDisplayValue());
+
         value.setValue(dto.getValue());
         value.setDisplayValue(dto.getDisplayValue());
         value.setDisplayValueEn(dto.getDisplayValueEn());
@@ -396,6 +433,10 @@ public class ProductAttributeServiceImpl implements ProductAttributeService {
         value.setSearchKeywords(dto.getSearchKeywords());
 
         AttributeValue saved = attributeValueRepository.save(value);
+        if (cachedFieldsChanged) {
+            // cached_attributes của variants đang dùng value này được patch sau khi commit
+            eventPublisher.publishEvent(new AttributeValueChangedEvent(attributeId, valueId));
+        }
         return attributeValueMapper.toDTO(saved);
     }
 
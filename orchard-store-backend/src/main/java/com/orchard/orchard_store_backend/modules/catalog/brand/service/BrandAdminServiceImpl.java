@@ -11,7 +11,6 @@ import com.orchard.orchard_store_backend.modules.catalog.brand.entity.Brand;
 import com.orchard.orchard_store_backend.modules.catalog.brand.mapper.BrandAdminMapper;
 import com.orchard.orchard_store_backend.modules.catalog.brand.repository.BrandRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ImageUploadService;
-import com.orchard.orchard_store_backend.modules.customer.service.RedisService;
 import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -38,7 +37,6 @@ public class BrandAdminServiceImpl implements BrandAdminService {
     private final BrandRepository brandRepository;
     private final BrandAdminMapper brandAdminMapper;
     private final ImageUploadService imageUploadService;
-    private final RedisService redisService;
     private final CacheService cacheService;
     private final SimpMessagingTemplate messagingTemplate;
     
@@ -362,7 +360,7 @@ public class BrandAdminServiceImpl implements BrandAdminService {
      */
     private void evictBrandDetailCache(Long brandId) {
         try {
-            redisService.deleteKey(BRAND_DETAIL_CACHE_KEY_PREFIX + brandId);
+            cacheService.evict(BRAND_DETAIL_CACHE_KEY_PREFIX + brandId);
             log.debug("Brand detail cache evicted for ID: {}", brandId);
         } catch (Exception e) {
             log.warn("Failed to evict brand detail cache: {}", e.getMessage());
@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.catalog.category.controller;
 
 import com.orchard.orchard_store_backend.dto.ApiResponse;
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
 import com.orchard.orchard_store_backend.modules.catalog.category.dto.CategoryCreateRequest;
 import com.orchard.orchard_store_backend.modules.catalog.category.dto.CategoryDTO;
@@ -45,6 +46,23 @@ public class CategoryAdminController {
         return ResponseEntity.ok(ApiResponse.success("Lấy danh sách danh mục thành công", categories));
     }
 
+    /**
+     * Danh sách danh mục với keyset (cursor) pagination, thứ tự level, displayOrder, name
+     * Trang tiếp theo: gửi lại nextCursor của trang trước
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<CategoryDTO>>> getCategoriesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "15") int size,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        CursorPage<CategoryDTO> categories = categoryAdminService.getCategoriesByCursor(
+                keyword, status, cursor, Math.max(1, Math.min(size, 100)), includeTotal);
+        return ResponseEntity.ok(ApiResponse.success("Lấy danh sách danh mục thành công", categories));
+    }
+
     @GetMapping("/tree")
     public ResponseEntity<ApiResponse<List<CategoryDTO>>> getCategoriesTree() {
         List<CategoryDTO> tree = categoryAdminService.getCategoriesTree();
@@ -78,4 +78,24 @@ public interface CategoryRepository extends JpaRepository<Category, Long>, JpaSp
     Page<Category> searchCategories(@Param("keyword") String keyword,
                                     @Param("status") Category.Status status,
                                     Pageable pageable);
+
+    /**
+     * Keyset pagination theo (level, displayOrder, name, id) tăng dần - cùng filter với searchCategories,
+     * không COUNT. afterLevel = null -> trang đầu.
+     */
+    @EntityGraph(attributePaths = {"parent"})
+    @Query("SELECT c FROM Category c WHERE " +
+           "(:keyword IS NULL OR :keyword = '' OR LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(c.slug) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+           "(:status IS NULL OR c.status = :status) AND " +
+           "(:afterLevel IS NULL OR COALESCE(c.level, 0) > :afterLevel OR (COALESCE(c.level, 0) = :afterLevel AND (" +
+           "COALESCE(c.displayOrder, 0) > :afterDisplayOrder OR (COALESCE(c.displayOrder, 0) = :afterDisplayOrder AND (" +
+           "c.name > :afterName OR (c.name = :afterName AND c.id > :afterId)))))) " +
+           "ORDER BY COALESCE(c.level, 0) ASC, COALESCE(c.displayOrder, 0) ASC, c.name ASC, c.id ASC")
+    List<Category> searchCategoriesAfter(@Param("keyword") String keyword,
+                                         @Param("status") Category.Status status,
+                                         @Param("afterLevel") Integer afterLevel,
+                                         @Param("afterDisplayOrder") Integer afterDisplayOrder,
+                                         @Param("afterName") String afterName,
+                                         @Param("afterId") Long afterId,
+                                         Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package com.orchard.orchard_store_backend.modules.catalog.category.service;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.catalog.category.dto.CategoryCreateRequest;
 import com.orchard.orchard_store_backend.modules.catalog.category.dto.CategoryDTO;
 import com.orchard.orchard_store_backend.modules.catalog.category.dto.CategoryUpdateRequest;
@@ -12,6 +13,8 @@ public interface CategoryAdminService {
 
     Page<CategoryDTO> getCategories(String keyword, String status, Pageable pageable);
 
+    CursorPage<CategoryDTO> getCategoriesByCursor(String keyword, String status, String cursor, int size, boolean includeTotal);
+
     List<CategoryDTO> getCategoriesTree(); // Trả về cây danh mục (Tree structure)
 
     CategoryDTO getCategoryById(Long id);
@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.catalog.category.service;
 
 import com.github.slugify.Slugify;
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.exception.OperationNotPermittedException;
 import com.orchard.orchard_store_backend.exception.ResourceAlreadyExistsException;
 import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
@@ -12,14 +13,14 @@ import com.orchard.orchard_store_backend.modules.catalog.category.mapper.Categor
 import com.orchard.orchard_store_backend.modules.catalog.category.repository.CategoryRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ImageUploadService;
 import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
+import com.orchard.orchard_store_backend.util.KeysetCursor;
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -46,7 +47,9 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
     
     private static final String CATEGORY_TREE_CACHE_KEY = "category:tree";
     private static final String CATEGORY_LIST_CACHE_KEY_PREFIX = "category:list:";
+    private static final String CATEGORY_LIST_CACHE_TAG = "category:list";
     private static final long CACHE_TTL_SECONDS = 1800; // 30 minutes
+    private static final String CATEGORY_KEYSET_SORT = "level,displayOrder,name";
 
     /**
      * Slugify instance để tạo slug từ tên
@@ -113,12 +116,61 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
         if ((keyword == null || keyword.trim().isEmpty()) && 
             (status == null || status.equalsIgnoreCase("ALL")) && 
             pageable.getPageNumber() == 0) {
-            cacheService.cachePage(cacheKey, result, CACHE_TTL_SECONDS);
+            cacheService.cachePage(cacheKey, result, CACHE_TTL_SECONDS, CATEGORY_LIST_CACHE_TAG);
         }
         
         return result;
     }
 
+    /**
+     * Danh sách danh mục theo keyset (level, displayOrder, name, id): trang sau seek theo dòng cuối trang trước,
+     * không OFFSET; COUNT chỉ chạy khi includeTotal = true.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CategoryDTO> getCategoriesByCursor(String keyword, String status, String cursor,
+                                                         int size, boolean includeTotal) {
+        String normalizedKeyword = (keyword != null && !keyword.trim().isEmpty())
+                ? keyword.trim()
+                : null;
+
+        Category.Status statusEnum = null;
+        if (status != null && !status.trim().isEmpty() && !status.equalsIgnoreCase("ALL")) {
+            try {
+                statusEnum = Category.Status.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid status filter: {}", status);
+            }
+        }
+
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor, CATEGORY_KEYSET_SORT);
+        List<Category> categories;
+        try {
+            categories = categoryRepository.searchCategoriesAfter(
+                    normalizedKeyword,
+                    statusEnum,
+                    keysetCursor != null ? Integer.valueOf(keysetCursor.values().get(0)) : null,
+                    keysetCursor != null ? Integer.valueOf(keysetCursor.values().get(1)) : null,
+                    keysetCursor != null ? keysetCursor.values().get(2) : null,
+                    keysetCursor != null ? keysetCursor.id() : null,
+                    PageRequest.of(0, size + 1)
+            );
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+
+        Long total = includeTotal
+                ? categoryRepository.searchCategories(normalizedKeyword, statusEnum, PageRequest.of(0, 1)).getTotalElements()
+                : null;
+        return CursorPage.of(categories, size,
+                        category -> new KeysetCursor(CATEGORY_KEYSET_SORT, List.of(
+                                String.valueOf(category.getLevel() != null ? category.getLevel() : 0),
+                                String.valueOf(category.getDisplayOrder() != null ? category.getDisplayOrder() : 0),
+                                category.getName()), category.getId()),
+                        total)
+                .map(categoryAdminMapper::toDTO);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<CategoryDTO> getCategoriesTree() {
@@ -249,74 +301,10 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
     
     /**
      * Evict category list cache
+     * Mọi trang list (mọi page size) đều được gắn tag khi cache nên một lần evictTag là đủ
      */
-    private void updateCachedList(Category category, boolean isCreate, boolean isDelete) {
-        if (category == null || category.getId() == null) {
-            return;
-        }
-        // Chỉ áp dụng cho cache list trang đầu với filter mặc định (keyword rỗng, status ALL)
-        int[] pageSizes = {10, 15, 20, 30};
-        for (int size : pageSizes) {
-            String cacheKey = CATEGORY_LIST_CACHE_KEY_PREFIX + ":ALL:0:" + size;
-            try {
-                Optional<Page<CategoryDTO>> cachedPageOpt =
-                        cacheService.getCachedPage(cacheKey, PageRequest.of(0, size), CategoryDTO.class);
-                if (cachedPageOpt.isEmpty()) {
-                    continue;
-                }
-                Page<CategoryDTO> cachedPage = cachedPageOpt.get();
-                List<CategoryDTO> content = new ArrayList<>(cachedPage.getContent());
-                boolean modified = false;
-
-                if (isDelete) {
-                    modified = content.removeIf(dto ->
-                            dto.getId() != null && dto.getId().equals(category.getId()));
-                } else {
-                    // create or update
-                    CategoryDTO dto = categoryAdminMapper.toDTO(category);
-                    int index = -1;
-                    for (int i = 0; i < content.size(); i++) {
-                        CategoryDTO current = content.get(i);
-                        if (current.getId() != null && current.getId().equals(dto.getId())) {
-                            index = i;
-                            break;
-                        }
-                    }
-                    if (index >= 0) {
-                        content.set(index, dto);
-                        modified = true;
-                    } else {
-                        // thêm vào list rồi sort, sau đó cắt theo page size
-                        content.add(dto);
-                        modified = true;
-                    }
-                    // sort theo cùng logic với tree
-                    content.sort(this::compareCategories);
-                    if (content.size() > size) {
-                        content = new ArrayList<>(content.subList(0, size));
-                    }
-                }
-
-                if (!modified) {
-                    continue;
-                }
-
-                long totalElements = cachedPage.getTotalElements();
-                if (isCreate) {
-                    totalElements++;
-                } else if (isDelete && totalElements > 0) {
-                    totalElements--;
-                }
-
-                Page<CategoryDTO> updatedPage =
-                        new PageImpl<>(content, cachedPage.getPageable(), totalElements);
-                cacheService.cachePage(cacheKey, updatedPage, CACHE_TTL_SECONDS);
-            } catch (Exception e) {
-                log.warn("Failed to update category list cache incrementally for key {}: {}", cacheKey, e.getMessage());
-                // Fallback: evict danh sách nếu có lỗi
-                cacheService.evict(cacheKey);
-            }
-        }
+    private void evictCategoryListCache() {
+        cacheService.evictTag(CATEGORY_LIST_CACHE_TAG);
     }
 
     private void updateCachedTree(Category category, boolean isCreate) {
@@ -557,9 +545,9 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
         log.info("Created category: {} with slug: {}, level: {}, path: {}",
                 saved.getName(), saved.getSlug(), saved.getLevel(), saved.getPath());
 
-        // Update caches (tree + list incremental)
+        // Update caches (tree incremental, list evict theo tag)
         updateCachedTree(saved, true);
-        updateCachedList(saved, true, false);
+        evictCategoryListCache();
 
         CategoryDTO dto = categoryAdminMapper.toDTO(saved);
         // Clear children để tránh circular reference khi serialize
@@ -695,9 +683,9 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
 
         log.info("Updated category: {}", id);
         
-        // Update caches (tree + list incremental)
+        // Update caches (tree incremental, list evict theo tag)
         updateCachedTree(updated, false);
-        updateCachedList(updated, false, false);
+        evictCategoryListCache();
         
         CategoryDTO dto = categoryAdminMapper.toDTO(updated);
         // Clear children để tránh circular reference khi serialize
@@ -725,9 +713,9 @@ public class CategoryAdminServiceImpl implements CategoryAdminService {
         // Xóa category khỏi database
         categoryRepository.delete(category);
         
-        // Update caches (tree + list incremental)
+        // Update caches (tree incremental, list evict theo tag)
         removeCategoryFromCachedTree(id);
-        updateCachedList(category, false, true);
+        evictCategoryListCache();
         
         log.info("Deleted category: {}", id);
     }
@@ -7,9 +7,11 @@ import com.orchard.orchard_store_backend.modules.catalog.pricing.entity.ProductP
 import com.orchard.orchard_store_backend.modules.catalog.pricing.mapper.ProductPriceHistoryMapper;
 import com.orchard.orchard_store_backend.modules.catalog.pricing.repository.ProductPriceHistoryRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductListingChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -30,6 +32,7 @@ public class ProductPriceHistoryServiceImpl implements ProductPriceHistoryServic
     private final ProductVariantRepository variantRepository;
     private final UserRepository userRepository;
     private final ProductPriceHistoryMapper priceHistoryMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -149,6 +152,7 @@ public class ProductPriceHistoryServiceImpl implements ProductPriceHistoryServic
         }
 
         priceHistoryRepository.save(newHistory);
+        eventPublisher.publishEvent(ProductListingChangedEvent.of(variant.getProduct().getId()));
         log.debug("Recorded price change for variant {}: {} -> {}", variantId, oldPrice, newPrice);
     }
 
@@ -2,13 +2,16 @@ package com.orchard.orchard_store_backend.modules.catalog.product.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.orchard.orchard_store_backend.dto.ApiResponse;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.AttributeCacheSyncStatusDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductCreateRequestDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDetailDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductImageDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductUpdateRequestDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.service.AttributeCacheSyncJobService;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ImageUploadService;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductAdminService;
+import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductListingService;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -47,6 +50,8 @@ public class ProductAdminController {
 
     private final ProductAdminService productAdminService;
     private final ProductService productService;
+    private final ProductListingService productListingService;
+    private final AttributeCacheSyncJobService attributeCacheSyncJobService;
     private final ImageUploadService imageUploadService;
     private final ObjectMapper objectMapper;
 
@@ -395,5 +400,53 @@ public class ProductAdminController {
                     .body(ApiResponse.error(HttpStatus.BAD_REQUEST.value(), "Lỗi khi upload ảnh: " + e.getMessage()));
         }
     }
-}
 
+    /**
+     * Dựng lại toàn bộ bảng read model product_listing (storefront listing).
+     * 
+     * Endpoint: POST /api/admin/products/listing/rebuild
+     * 
+     * @return ApiResponse<Integer> số dòng listing đã ghi
+     */
+    @PostMapping("/listing/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Integer>> rebuildListing() {
+        try {
+            int rows = productListingService.rebuildAll();
+            return ResponseEntity.ok(ApiResponse.success("Dựng lại product listing thành công", rows));
+        } catch (Exception e) {
+            log.error("Lỗi khi dựng lại product listing", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Lỗi khi dựng lại product listing: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Lên lịch đồng bộ EAV -> cached_attributes (JSONB) cho toàn bộ variants.
+     * Job chạy nền theo chunk, trả về ngay trạng thái job (job đang chạy nếu đã có).
+     * 
+     * Endpoint: POST /api/admin/products/attribute-cache/sync
+     * 
+     * @return ApiResponse<AttributeCacheSyncStatusDTO>
+     */
+    @PostMapping("/attribute-cache/sync")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<AttributeCacheSyncStatusDTO>> requestAttributeCacheSync() {
+        AttributeCacheSyncStatusDTO status = attributeCacheSyncJobService.requestSync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Đã lên lịch đồng bộ attribute cache", status));
+    }
+
+    /**
+     * Trạng thái job đồng bộ attribute cache gần nhất.
+     * 
+     * Endpoint: GET /api/admin/products/attribute-cache/sync
+     * 
+     * @return ApiResponse<AttributeCacheSyncStatusDTO> (null nếu chưa từng chạy)
+     */
+    @GetMapping("/attribute-cache/sync")
+    public ResponseEntity<ApiResponse<AttributeCacheSyncStatusDTO>> getAttributeCacheSyncStatus() {
+        AttributeCacheSyncStatusDTO status = attributeCacheSyncJobService.getLatestStatus().orElse(null);
+        return ResponseEntity.ok(ApiResponse.success("Lấy trạng thái đồng bộ attribute cache thành công", status));
+    }
+}
@@ -3,22 +3,34 @@ package com.orchard.orchard_store_backend.modules.catalog.product.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.orchard.orchard_store_backend.dto.ApiResponse;
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDetailDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFacetsDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFilterDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductFacetService;
 import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductStoreService;
+import com.orchard.orchard_store_backend.modules.catalog.search.dto.SuggestResponseDTO;
+import com.orchard.orchard_store_backend.modules.catalog.search.service.ProductSuggestService;
+import com.orchard.orchard_store_backend.modules.catalog.search.service.SearchQueryService;
+import com.orchard.orchard_store_backend.util.UserAgentParser;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Controller cho Public Product Store API.
@@ -33,6 +45,10 @@ import java.util.Map;
 public class ProductStoreController {
 
     private final ProductStoreService productStoreService;
+    private final ProductFacetService productFacetService;
+    private final SearchQueryService searchQueryService;
+    private final ProductSuggestService productSuggestService;
+    private final UserAgentParser userAgentParser;
     private final ObjectMapper objectMapper;
 
     /**
@@ -46,20 +62,22 @@ public class ProductStoreController {
      * - minPrice: BigDecimal - Giá tối thiểu
      * - maxPrice: BigDecimal - Giá tối đa
      * - attrs: String - Filter theo Attributes
-     *   - Format 1: "color:Red,size:XL" (key:value pairs)
-     *   - Format 2: JSON string: "{\"color\":\"Red\",\"size\":\"XL\"}"
+     *   - Format 1: "color:Red|Blue,size:XL" (key:value pairs, nhiều giá trị ngăn cách bởi '|' là OR)
+     *   - Format 2: JSON string: "{\"color\":[\"Red\",\"Blue\"],\"size\":\"XL\"}"
+     * - attrRanges: String - Khoảng giá trị attribute số, format "longevity:6..12,sillage:2.." (bỏ trống một đầu)
      * - page: int (default: 0)
      * - size: int (default: 20)
      * - sort: String (default: "createdAt,desc")
      * 
      * Example:
-     * GET /api/products?brandId=1&categoryId=2&minPrice=1000000&maxPrice=5000000&attrs=color:Red,gender:MALE
+     * GET /api/products?brandId=1&categoryId=2&minPrice=1000000&maxPrice=5000000&attrs=color:Red|Blue,gender:MALE
      * 
      * @param brandIds List Brand IDs
      * @param categoryId Category ID
      * @param minPrice Giá tối thiểu
      * @param maxPrice Giá tối đa
      * @param attrs Attributes filter string
+     * @param attrRanges Attribute ranges filter string
      * @param page Page number (0-based)
      * @param size Page size
      * @param sort Sort string (field,direction)
@@ -72,25 +90,13 @@ public class ProductStoreController {
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) String attrs,
+            @RequestParam(required = false) String attrRanges,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt,desc") String sort
     ) {
         try {
-            // Build filter DTO
-            ProductFilterDTO filter = ProductFilterDTO.builder()
-                    .brandIds(brandIds != null ? brandIds : List.of())
-                    .categoryId(categoryId)
-                    .minPrice(minPrice)
-                    .maxPrice(maxPrice)
-                    .status("ACTIVE") // Only active products for public store
-                    .build();
-
-            // Parse attributes
-            if (attrs != null && !attrs.trim().isEmpty()) {
-                Map<String, String> attributes = parseAttributes(attrs);
-                filter.setAttributes(attributes);
-            }
+            ProductFilterDTO filter = buildFilter(brandIds, categoryId, minPrice, maxPrice, attrs, attrRanges);
 
             // Build pageable
             Pageable pageable = buildPageable(page, size, sort);
@@ -107,6 +113,112 @@ public class ProductStoreController {
         }
     }
 
+    /**
+     * Danh sách sản phẩm với keyset (cursor) pagination - cùng filter với GET /api/store/products.
+     * 
+     * Endpoint: GET /api/store/products/cursor
+     * 
+     * Query Parameters (ngoài các filter):
+     * - cursor: String - nextCursor của trang trước (bỏ trống cho trang đầu)
+     * - size: int (default: 20)
+     * - sort: String (default: "createdAt,desc") - createdAt / name / id
+     * - includeTotal: boolean (default: false) - có đếm tổng số sản phẩm không
+     * 
+     * Example:
+     * GET /api/store/products/cursor?brandIds=1&size=20&cursor=eyJzb3J0Ijoi...
+     * 
+     * @return ApiResponse<CursorPage<ProductDTO>>
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<ProductDTO>>> getProductsByCursor(
+            @RequestParam(required = false) List<Long> brandIds,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String attrs,
+            @RequestParam(required = false) String attrRanges,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt,desc") String sort,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        try {
+            ProductFilterDTO filter = buildFilter(brandIds, categoryId, minPrice, maxPrice, attrs, attrRanges);
+            Sort keysetSort = buildPageable(0, 1, sort).getSort();
+            CursorPage<ProductDTO> products = productStoreService.searchProductsKeyset(
+                    filter, keysetSort, cursor, Math.max(1, Math.min(size, 100)), includeTotal);
+            return ResponseEntity.ok(ApiResponse.success("Lấy danh sách sản phẩm thành công", products));
+        } catch (IllegalArgumentException e) {
+            // Cursor hỏng / thuộc kiểu sort khác
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(400, e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error searching products by cursor", e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "Lỗi khi tìm kiếm sản phẩm: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Facet counts cho sidebar filter (brand, category, khoảng giá, attributes).
+     * 
+     * Endpoint: GET /api/store/products/facets
+     * 
+     * Nhận cùng filter parameters với GET /api/store/products, counts được tính trên filter hiện tại
+     * trong một query và cache ngắn hạn.
+     * 
+     * Example:
+     * GET /api/store/products/facets?brandIds=1&attrs=gender:MALE
+     * 
+     * @return ApiResponse<ProductFacetsDTO>
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<ApiResponse<ProductFacetsDTO>> getFacets(
+            @RequestParam(required = false) List<Long> brandIds,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String attrs,
+            @RequestParam(required = false) String attrRanges
+    ) {
+        try {
+            ProductFilterDTO filter = buildFilter(brandIds, categoryId, minPrice, maxPrice, attrs, attrRanges);
+            ProductFacetsDTO facets = productFacetService.getFacets(filter);
+            return ResponseEntity.ok(ApiResponse.success("Lấy bộ lọc sản phẩm thành công", facets));
+        } catch (Exception e) {
+            log.error("Error computing product facets", e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "Lỗi khi lấy bộ lọc sản phẩm: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Autocomplete khi người dùng đang gõ (search-as-you-type).
+     * 
+     * Endpoint: GET /api/store/products/suggest
+     * 
+     * Trả về từ khóa phổ biến, tên sản phẩm và brand khớp prefix (không dấu, không phân biệt hoa thường).
+     * Đọc hoàn toàn từ index in-memory, không query DB.
+     * 
+     * Example:
+     * GET /api/store/products/suggest?q=cha&limit=5
+     * 
+     * @param q Prefix đang gõ
+     * @param limit Số gợi ý tối đa mỗi nhóm (tối đa 10)
+     * @return ApiResponse<SuggestResponseDTO>
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<SuggestResponseDTO>> suggest(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "5") int limit
+    ) {
+        if (q == null || q.trim().isEmpty()) {
+            return ResponseEntity.ok(ApiResponse.success("Gợi ý tìm kiếm", new SuggestResponseDTO()));
+        }
+        SuggestResponseDTO suggestions = productSuggestService.suggest(q, limit);
+        return ResponseEntity.ok(ApiResponse.success("Gợi ý tìm kiếm", suggestions));
+    }
+
     /**
      * Xem chi tiết sản phẩm theo slug (SEO friendly).
      * 
@@ -128,7 +240,7 @@ public class ProductStoreController {
     }
 
     /**
-     * Full-text search theo tên sản phẩm.
+     * Full-text search theo tên sản phẩm, brand và attributes (xếp theo độ liên quan).
      * 
      * Endpoint: GET /api/products/search
      * 
@@ -144,7 +256,8 @@ public class ProductStoreController {
      * @param keyword Từ khóa tìm kiếm
      * @param page Page number
      * @param size Page size
-     * @param sort Sort string
+     * @param sort Sort string (bỏ qua - kết quả xếp theo độ liên quan)
+     * @param request HTTP request (ghi nhận search_queries)
      * @return ApiResponse<Page<ProductDTO>>
      */
     @GetMapping("/search")
@@ -152,7 +265,8 @@ public class ProductStoreController {
             @RequestParam(required = false) String q,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "createdAt,desc") String sort
+            @RequestParam(defaultValue = "createdAt,desc") String sort,
+            HttpServletRequest request
     ) {
         try {
             if (q == null || q.trim().isEmpty()) {
@@ -163,6 +277,22 @@ public class ProductStoreController {
             Pageable pageable = buildPageable(page, size, sort);
             Page<ProductDTO> products = productStoreService.searchProductsByName(q, pageable);
 
+            // Ghi nhận lượt tìm kiếm (chỉ trang đầu để không đếm trùng khi phân trang)
+            if (page == 0) {
+                try {
+                    searchQueryService.recordSearch(
+                            q,
+                            products.getTotalElements(),
+                            null,
+                            request.getHeader("User-Agent"),
+                            userAgentParser.getClientIP(request)
+                    );
+                } catch (TaskRejectedException e) {
+                    // @Async: queue của taskExecutor đầy -> bỏ lượt ghi nhận, kết quả tìm kiếm vẫn trả về
+                    log.warn("Search query recording rejected, dropping it: {}", e.getMessage());
+                }
+            }
+
             return ResponseEntity.ok(ApiResponse.success("Tìm kiếm sản phẩm thành công", products));
 
         } catch (Exception e) {
@@ -172,14 +302,37 @@ public class ProductStoreController {
         }
     }
 
+    /**
+     * Build filter DTO từ query parameters (chỉ sản phẩm ACTIVE cho public store).
+     */
+    private ProductFilterDTO buildFilter(List<Long> brandIds, Long categoryId,
+                                         BigDecimal minPrice, BigDecimal maxPrice, String attrs,
+                                         String attrRanges) {
+        ProductFilterDTO filter = ProductFilterDTO.builder()
+                .brandIds(brandIds != null ? brandIds : List.of())
+                .categoryId(categoryId)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .status("ACTIVE") // Only active products for public store
+                .build();
+
+        // Parse attributes
+        if (attrs != null && !attrs.trim().isEmpty()) {
+            Map<String, List<String>> attributes = parseAttributes(attrs);
+            filter.setAttributes(attributes);
+        }
+        filter.setAttributeRanges(ProductFilterDTO.parseAttributeRangesString(attrRanges));
+        return filter;
+    }
+
     /**
      * Parse attributes từ string.
      * 
-     * Hỗ trợ 2 formats:
-     * 1. Key:value pairs: "color:Red,size:XL"
-     * 2. JSON string: "{\"color\":\"Red\",\"size\":\"XL\"}"
+     * Hỗ trợ 2 formats (nhiều giá trị của một attribute là OR):
+     * 1. Key:value pairs: "color:Red|Blue,size:XL"
+     * 2. JSON string: "{\"color\":[\"Red\",\"Blue\"],\"size\":\"XL\"}"
      */
-    private Map<String, String> parseAttributes(String attrs) {
+    private Map<String, List<String>> parseAttributes(String attrs) {
         if (attrs == null || attrs.trim().isEmpty()) {
             return Map.of();
         }
@@ -187,7 +340,16 @@ public class ProductStoreController {
         // Try JSON format first
         if (attrs.trim().startsWith("{")) {
             try {
-                return objectMapper.readValue(attrs, new TypeReference<Map<String, String>>() {});
+                Map<String, Object> json = objectMapper.readValue(attrs, new TypeReference<Map<String, Object>>() {});
+                Map<String, List<String>> attributes = new HashMap<>();
+                json.forEach((key, value) -> {
+                    if (value instanceof Collection<?> values) {
+                        values.forEach(item -> ProductFilterDTO.addAttributeValue(attributes, key, Objects.toString(item, null)));
+                    } else {
+                        ProductFilterDTO.addAttributeValue(attributes, key, Objects.toString(value, null));
+                    }
+                });
+                return attributes;
             } catch (Exception e) {
                 log.warn("Failed to parse attributes as JSON, trying key:value format", e);
             }
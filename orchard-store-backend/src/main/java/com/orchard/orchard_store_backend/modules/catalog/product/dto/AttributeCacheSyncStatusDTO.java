@@ -0,0 +1,39 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái job đồng bộ EAV -> cached_attributes toàn catalog
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttributeCacheSyncStatusDTO {
+
+    private Long id;
+
+    /**
+     * PENDING, RUNNING, COMPLETED, FAILED
+     */
+    private String status;
+
+    /**
+     * Variant cuối cùng đã xử lý - job tiếp tục từ sau variant này
+     */
+    private Long lastVariantId;
+
+    private Long processedCount;
+    private Long updatedCount;
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime finishedAt;
+}
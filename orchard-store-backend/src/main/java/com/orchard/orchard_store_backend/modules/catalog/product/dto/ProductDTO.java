@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -47,6 +48,21 @@ public class ProductDTO {
      */
     private String primaryImageUrl;
 
+    /**
+     * Khoảng giá hiệu lực (sale_price nếu > 0, ngược lại price) của các variant ACTIVE
+     * Chỉ có trong listing (ProductListingRepository)
+     */
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    /**
+     * Tồn kho, rating, số lượng đã bán - chỉ có khi đọc từ bảng product_listing (storefront)
+     */
+    private Integer totalStock;
+    private BigDecimal averageRating;
+    private Integer totalReviews;
+    private Integer totalSold;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
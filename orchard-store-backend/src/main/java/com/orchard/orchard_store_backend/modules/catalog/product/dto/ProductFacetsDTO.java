@@ -0,0 +1,53 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet counts cho sidebar filter của storefront.
+ *
+ * Mỗi count là số sản phẩm (không phải số variant) khớp filter hiện tại và có giá trị facet đó.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductFacetsDTO {
+
+    @Builder.Default
+    private List<FacetValue> brands = new ArrayList<>();
+
+    @Builder.Default
+    private List<FacetValue> categories = new ArrayList<>();
+
+    @Builder.Default
+    private List<PriceBucket> priceBuckets = new ArrayList<>();
+
+    /**
+     * attributeKey -> các giá trị của attribute (theo cached_attributes)
+     */
+    @Builder.Default
+    private Map<String, List<FacetValue>> attributes = new LinkedHashMap<>();
+
+    /**
+     * @param value Giá trị dùng để filter (brandId, categoryId hoặc attribute value)
+     * @param label Tên hiển thị
+     * @param count Số sản phẩm
+     */
+    public record FacetValue(String value, String label, long count) {}
+
+    /**
+     * @param minPrice Giá từ (inclusive), null = không giới hạn dưới
+     * @param maxPrice Giá đến (exclusive), null = không giới hạn trên
+     * @param count Số sản phẩm
+     */
+    public record PriceBucket(BigDecimal minPrice, BigDecimal maxPrice, long count) {}
+}
@@ -19,6 +19,7 @@ import java.util.Map;
  * - Filter theo Category
  * - Filter theo Price range
  * - Filter theo Attributes (JSONB) - Dynamic attributes
+ * - Filter theo khoảng giá trị của attribute số (NUMBER / DECIMAL)
  */
 @Data
 @NoArgsConstructor
@@ -49,19 +50,29 @@ public class ProductFilterDTO {
     private BigDecimal maxPrice;
 
     /**
-     * Attributes filter - Map<attributeKey, attributeValue>
+     * Attributes filter - Map<attributeKey, danh sách giá trị>
+     * 
+     * Các giá trị trong cùng một attribute là OR, giữa các attribute là AND.
      * 
      * Có thể nhận từ:
-     * 1. Query params: ?attrs=color:Red,size:XL
-     * 2. JSON string: ?attrs={"color":"Red","size":"XL"}
+     * 1. Query params: ?attrs=color:Red|Blue,size:XL
+     * 2. JSON string: ?attrs={"color":["Red","Blue"],"size":"XL"}
      * 
      * Ví dụ:
-     * - color: Red
-     * - gender: MALE
-     * - fragrance_group: woody
+     * - color: [Red, Blue]
+     * - gender: [MALE]
+     * - fragrance_group: [woody]
+     */
+    @Builder.Default
+    private Map<String, List<String>> attributes = new HashMap<>();
+
+    /**
+     * Khoảng giá trị attribute số - Map<attributeKey, khoảng>, AND với các filter khác
+     *
+     * Nhận từ query param: ?attrRanges=longevity:6..12,sillage:2..
      */
     @Builder.Default
-    private Map<String, String> attributes = new HashMap<>();
+    private Map<String, AttributeRange> attributeRanges = new HashMap<>();
 
     /**
      * Status filter (mặc định: ACTIVE cho public store)
@@ -70,10 +81,11 @@ public class ProductFilterDTO {
     private String status = "ACTIVE";
 
     /**
-     * Parse attributes từ string format: "color:Red,size:XL"
+     * Parse attributes từ string format: "color:Red|Blue,size:XL"
+     * (key lặp lại, ví dụ "color:Red,color:Blue", cũng được gộp thành một nhóm)
      */
-    public static Map<String, String> parseAttributesString(String attrsString) {
-        Map<String, String> attrs = new HashMap<>();
+    public static Map<String, List<String>> parseAttributesString(String attrsString) {
+        Map<String, List<String>> attrs = new HashMap<>();
         if (attrsString == null || attrsString.trim().isEmpty()) {
             return attrs;
         }
@@ -88,16 +100,78 @@ public class ProductFilterDTO {
             }
         }
 
-        // Parse as key:value pairs separated by comma
+        // Parse as key:value1|value2 pairs separated by comma
         String[] pairs = attrsString.split(",");
         for (String pair : pairs) {
             String[] keyValue = pair.split(":", 2);
             if (keyValue.length == 2) {
-                attrs.put(keyValue[0].trim(), keyValue[1].trim());
+                for (String value : keyValue[1].split("\\|")) {
+                    addAttributeValue(attrs, keyValue[0], value);
+                }
             }
         }
 
         return attrs;
     }
-}
 
+    /**
+     * Parse khoảng attribute từ string format: "longevity:6..12,sillage:2.." (bỏ trống một đầu = không giới hạn)
+     */
+    public static Map<String, AttributeRange> parseAttributeRangesString(String rangesString) {
+        Map<String, AttributeRange> ranges = new HashMap<>();
+        if (rangesString == null || rangesString.isBlank()) {
+            return ranges;
+        }
+        for (String pair : rangesString.split(",")) {
+            String[] keyValue = pair.split(":", 2);
+            // Key được ghi literal vào SQL (expression index) -> chỉ nhận chữ, số, '_' và '-'
+            if (keyValue.length != 2 || !keyValue[0].trim().matches("[A-Za-z0-9_-]+")) {
+                continue;
+            }
+            String[] bounds = keyValue[1].split("\\.\\.", -1);
+            if (bounds.length != 2) {
+                continue;
+            }
+            AttributeRange range = new AttributeRange(parseBound(bounds[0]), parseBound(bounds[1]));
+            if (range.getMin() != null || range.getMax() != null) {
+                ranges.put(keyValue[0].trim(), range);
+            }
+        }
+        return ranges;
+    }
+
+    private static BigDecimal parseBound(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Thêm một giá trị vào nhóm của attribute (bỏ qua giá trị rỗng / trùng)
+     */
+    public static void addAttributeValue(Map<String, List<String>> attrs, String key, String value) {
+        if (key == null || value == null || key.isBlank() || value.isBlank()) {
+            return;
+        }
+        List<String> values = attrs.computeIfAbsent(key.trim(), k -> new ArrayList<>());
+        if (!values.contains(value.trim())) {
+            values.add(value.trim());
+        }
+    }
+
+    /**
+     * Khoảng [min, max] của một attribute số (null = không giới hạn)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AttributeRange {
+        private BigDecimal min;
+        private BigDecimal max;
+    }
+}
@@ -14,6 +14,7 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 import io.hypersistence.utils.hibernate.type.json.JsonType;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -34,6 +35,7 @@ import java.util.Map;
 @Builder
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @ToString(exclude = {"product", "category", "concentration", "createdBy", "updatedBy", "images"})
+@DynamicUpdate
 public class ProductVariant {
 
     @Id
@@ -0,0 +1,22 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event được publish khi Product được tạo / cập nhật / xóa
+ * Sử dụng để cập nhật các index in-memory (autocomplete) sau khi transaction commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    private Long productId;
+    private ChangeType changeType;
+
+    public enum ChangeType {
+        UPSERTED, DELETED
+    }
+}
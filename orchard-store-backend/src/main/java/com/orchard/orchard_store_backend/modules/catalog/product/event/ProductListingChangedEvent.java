@@ -0,0 +1,25 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Event được publish khi dữ liệu hiển thị trong listing của Product thay đổi
+ * ngoài luồng admin Product (tồn kho, review, giá).
+ * Sử dụng để cập nhật bảng product_listing sau khi transaction commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductListingChangedEvent {
+
+    private Collection<Long> productIds;
+
+    public static ProductListingChangedEvent of(Long productId) {
+        return new ProductListingChangedEvent(List.of(productId));
+    }
+}
@@ -28,6 +28,12 @@ public interface ProductMapper {
     @Mapping(target = "status", expression = "java(product.getStatus().name())")
     @Mapping(target = "thumbnailUrl", ignore = true)
     @Mapping(target = "primaryImageUrl", ignore = true)
+    @Mapping(target = "minPrice", ignore = true)
+    @Mapping(target = "maxPrice", ignore = true)
+    @Mapping(target = "totalStock", ignore = true)
+    @Mapping(target = "averageRating", ignore = true)
+    @Mapping(target = "totalReviews", ignore = true)
+    @Mapping(target = "totalSold", ignore = true)
     ProductDTO toDTO(Product product);
 
     /**
@@ -0,0 +1,143 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.repository;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.util.ProductSearchQueryBuilder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read model cho product listing: MỘT câu SQL mỗi trang trả về đúng các cột của ProductDTO
+ * (brand name, ảnh primary/thumbnail, min/max price) - không load entity, không lazy loading.
+ *
+ * Storefront (status ACTIVE) đọc thẳng từ bảng read model product_listing (findListingPage) - một bảng,
+ * không JOIN. Admin listing (mọi status) dùng findPage, gồm 2 tầng:
+ * - Tầng trong ("page SQL"): filter + ORDER BY + LIMIT/OFFSET trên products, chỉ chọn PAGE_COLUMNS
+ * - Tầng ngoài: JOIN brand và LATERAL (ảnh, khoảng giá) chỉ cho các dòng của trang hiện tại
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductListingRepository {
+
+    /**
+     * Các cột products mà page SQL phải chọn (alias p)
+     */
+    public static final String PAGE_COLUMNS = """
+        p.id, p.name, p.brand_id, p.status, p.published_at, p.archived_at,
+        p.created_by, p.updated_by, p.created_at, p.updated_at
+        """;
+
+    private static final String LISTING_SQL_TEMPLATE = """
+        SELECT pg.id, pg.name, pg.brand_id, b.name AS brand_name, pg.status,
+               pg.published_at, pg.archived_at, pg.created_by, pg.updated_by,
+               img.image_url, img.thumbnail_url, pr.min_price, pr.max_price,
+               pg.created_at, pg.updated_at
+        FROM (%s) pg
+        JOIN brands b ON b.id = pg.brand_id
+        LEFT JOIN LATERAL (
+            SELECT pi.image_url, COALESCE(pi.thumbnail_url, pi.image_url) AS thumbnail_url
+            FROM product_images pi
+            WHERE pi.product_id = pg.id
+            ORDER BY pi.is_primary DESC NULLS LAST, pi.display_order NULLS LAST, pi.id
+            LIMIT 1
+        ) img ON TRUE
+        LEFT JOIN LATERAL (
+            SELECT MIN(%s) AS min_price, MAX(%s) AS max_price
+            FROM product_variants pv
+            WHERE pv.product_id = pg.id AND pv.status = 'ACTIVE'
+        ) pr ON TRUE
+        ORDER BY %s
+        """;
+
+    private static final RowMapper<ProductDTO> LISTING_ROW_MAPPER = (rs, rowNum) -> ProductDTO.builder()
+            .id(rs.getLong("id"))
+            .name(rs.getString("name"))
+            .brandId(rs.getLong("brand_id"))
+            .brandName(rs.getString("brand_name"))
+            .status(rs.getString("status"))
+            .publishedAt(toLocalDateTime(rs.getTimestamp("published_at")))
+            .archivedAt(toLocalDateTime(rs.getTimestamp("archived_at")))
+            .createdById(rs.getObject("created_by", Long.class))
+            .updatedById(rs.getObject("updated_by", Long.class))
+            .primaryImageUrl(rs.getString("image_url"))
+            .thumbnailUrl(rs.getString("thumbnail_url"))
+            .minPrice(rs.getBigDecimal("min_price"))
+            .maxPrice(rs.getBigDecimal("max_price"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+            .build();
+
+    private static final RowMapper<ProductDTO> LISTING_TABLE_ROW_MAPPER = (rs, rowNum) -> ProductDTO.builder()
+            .id(rs.getLong("id"))
+            .name(rs.getString("name"))
+            .brandId(rs.getLong("brand_id"))
+            .brandName(rs.getString("brand_name"))
+            .status("ACTIVE")
+            .publishedAt(toLocalDateTime(rs.getTimestamp("published_at")))
+            .primaryImageUrl(rs.getString("primary_image_url"))
+            .thumbnailUrl(rs.getString("thumbnail_url"))
+            .minPrice(rs.getBigDecimal("min_price"))
+            .maxPrice(rs.getBigDecimal("max_price"))
+            .totalStock(rs.getInt("total_stock"))
+            .averageRating(rs.getBigDecimal("average_rating"))
+            .totalReviews(rs.getInt("total_reviews"))
+            .totalSold(rs.getInt("total_sold"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+            .build();
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Lấy một trang từ bảng product_listing.
+     *
+     * @param sql Câu SELECT p.* FROM product_listing p ... (ProductSearchQueryBuilder.selectListingPageSql)
+     */
+    public List<ProductDTO> findListingPage(String sql, MapSqlParameterSource params) {
+        return jdbcTemplate.query(sql, params, LISTING_TABLE_ROW_MAPPER);
+    }
+
+    /**
+     * Lấy một trang listing.
+     *
+     * @param pageSql Câu SELECT {@link #PAGE_COLUMNS} (có thể thêm cột sort) FROM products p ... LIMIT ... OFFSET ...
+     * @param outerOrderBy ORDER BY của tầng ngoài, viết trên alias pg, phải cùng thứ tự với page SQL
+     * @param params Params của page SQL
+     */
+    public List<ProductDTO> findPage(String pageSql, String outerOrderBy, MapSqlParameterSource params) {
+        String effectivePrice = ProductSearchQueryBuilder.EFFECTIVE_PRICE_SQL;
+        String sql = LISTING_SQL_TEMPLATE.formatted(pageSql, effectivePrice, effectivePrice, outerOrderBy);
+        return jdbcTemplate.query(sql, params, LISTING_ROW_MAPPER);
+    }
+
+    /**
+     * Listing toàn bộ products (admin), sort theo pageable.
+     */
+    public Page<ProductDTO> findAll(Pageable pageable) {
+        String pageSql = "SELECT " + PAGE_COLUMNS + " FROM products p"
+                + " ORDER BY " + ProductSearchQueryBuilder.orderBy(pageable.getSort(), "p")
+                + " LIMIT :limit OFFSET :offset";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+
+        List<ProductDTO> content = findPage(pageSql, ProductSearchQueryBuilder.orderBy(pageable.getSort(), "pg"), params);
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", new MapSqlParameterSource(), Long.class);
+            return total != null ? total : 0L;
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Điều kiện filter variant theo giá trị attribute đọc bằng ->> (khoảng số, IN) trên cached_attributes.
+ *
+ * Expression index của từng attribute filterable (V25, AttributeExpressionIndexService) chỉ được planner dùng
+ * khi key trong query là hằng số giống hệt biểu thức của index. Vì vậy attribute key được ghi thẳng vào SQL
+ * dạng literal (sau khi kiểm tra chỉ gồm chữ, số, '_' và '-'), còn giá trị filter vẫn là bind parameter.
+ *
+ * Storefront search (ProductSearchQueryBuilder) lấy điều kiện khoảng số (numericRangeCondition) và IN
+ * (valueInCondition, cho attribute có index idx_pv_attr_val_* trong attribute_expression_index_specs) từ đây;
+ * danh sách attribute có index được giữ trong bộ nhớ, reload sau mỗi lần AttributeExpressionIndexService.reconcile
+ * hoặc sau refresh-seconds.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductVariantAttributeQueryRepository {
+
+    private static final Pattern ATTRIBUTE_KEY_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private static final String INDEXED_ATTRIBUTES_SQL = """
+        SELECT s.attribute_key
+        FROM attribute_expression_index_specs s
+        JOIN pg_class c ON c.relname = s.index_name
+        JOIN pg_index i ON i.indexrelid = c.oid AND i.indisvalid
+        WHERE s.index_name LIKE 'idx\\_pv\\_attr\\_val\\_%'
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Value("${app.store.attribute-index.refresh-seconds:300}")
+    private long indexedAttributesRefreshSeconds;
+
+    private volatile IndexedAttributes indexedAttributes;
+
+    /**
+     * Điều kiện khoảng số trên alias pv, khớp biểu thức của index idx_pv_attr_num_<id>.
+     * Bound null được bỏ qua; thêm bind parameter paramPrefix + "Min" / "Max" vào params.
+     */
+    public String numericRangeCondition(String attributeKey, BigDecimal minValue, BigDecimal maxValue,
+                                        String paramPrefix, MapSqlParameterSource params) {
+        String expression = "CAST(pv.cached_attributes -> " + keyLiteral(attributeKey) + " ->> 'numericValue' AS numeric)";
+        List<String> bounds = new ArrayList<>(2);
+        if (minValue != null) {
+            bounds.add(expression + " >= :" + paramPrefix + "Min");
+            params.addValue(paramPrefix + "Min", minValue);
+        }
+        if (maxValue != null) {
+            bounds.add(expression + " <= :" + paramPrefix + "Max");
+            params.addValue(paramPrefix + "Max", maxValue);
+        }
+        return bounds.isEmpty() ? expression + " IS NOT NULL" : String.join(" AND ", bounds);
+    }
+
+    /**
+     * Điều kiện IN trên alias pv, khớp biểu thức của index idx_pv_attr_val_<id>
+     */
+    public String valueInCondition(String attributeKey, Collection<String> values, String paramName,
+                                   MapSqlParameterSource params) {
+        params.addValue(paramName, values);
+        return "pv.cached_attributes -> " + keyLiteral(attributeKey) + " ->> 'value' IN (:" + paramName + ")";
+    }
+
+    /**
+     * Attribute có index btree trên giá trị (IN / =) hay không
+     */
+    public boolean hasValueIndex(String attributeKey) {
+        return indexedAttributes().valueKeys().contains(attributeKey);
+    }
+
+    /**
+     * Bỏ danh sách attribute có index đang giữ, lần gọi sau đọc lại view (sau khi index được tạo / xóa)
+     */
+    public void refreshIndexedAttributes() {
+        indexedAttributes = null;
+    }
+
+    private IndexedAttributes indexedAttributes() {
+        IndexedAttributes current = indexedAttributes;
+        if (current == null
+                || current.loadedAt() + indexedAttributesRefreshSeconds * 1000 < System.currentTimeMillis()) {
+            Set<String> valueKeys = new HashSet<>(
+                    jdbcTemplate.queryForList(INDEXED_ATTRIBUTES_SQL, new MapSqlParameterSource(), String.class));
+            current = new IndexedAttributes(Set.copyOf(valueKeys), System.currentTimeMillis());
+            indexedAttributes = current;
+        }
+        return current;
+    }
+
+    private String keyLiteral(String attributeKey) {
+        if (attributeKey == null || !ATTRIBUTE_KEY_PATTERN.matcher(attributeKey).matches()) {
+            throw new IllegalArgumentException("Invalid attribute key: " + attributeKey);
+        }
+        return "'" + attributeKey + "'";
+    }
+
+    private record IndexedAttributes(Set<String> valueKeys, long loadedAt) {
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,11 +31,24 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
      */
     boolean existsBySlug(String slug);
 
+    /**
+     * Các slug đang dùng có dạng baseSlug hoặc baseSlug-N (một query thay vì gọi existsBySlug cho từng N)
+     */
+    @Query("SELECT v.slug FROM ProductVariant v WHERE v.slug = :baseSlug OR v.slug LIKE CONCAT(:baseSlug, '-%')")
+    List<String> findSlugsWithBase(@Param("baseSlug") String baseSlug);
+
     /**
      * Tìm ProductVariant theo slug
      */
     Optional<ProductVariant> findBySlug(String slug);
 
+    /**
+     * Load nhiều variant kèm Product trong một câu query duy nhất.
+     * Dùng cho checkout để tránh gọi findById cho từng dòng giỏ hàng.
+     */
+    @Query("SELECT pv FROM ProductVariant pv JOIN FETCH pv.product WHERE pv.id IN :ids")
+    List<ProductVariant> findAllWithProductByIdIn(@Param("ids") Collection<Long> ids);
+
     // =============================================================================
     // JSONB QUERIES - Fast attribute filtering using cached_attributes
     // =============================================================================
@@ -84,86 +98,6 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
         Pageable pageable
     );
 
-    /**
-     * Filter variants where attribute value is in a list (IN clause) - OPTIMIZED
-     * Example: Find variants with color IN ('Red', 'Blue', 'Green')
-     * 
-     * ⚠️ NOTE: This uses OR with multiple @> operators for better index usage
-     * Alternative: Use multiple separate queries and combine results if needed
-     */
-    @Query(value = """
-        SELECT * FROM product_variants pv
-        WHERE pv.status = 'ACTIVE'
-          AND (
-            pv.cached_attributes @> CAST(:attributeJson1 AS jsonb)
-            OR pv.cached_attributes @> CAST(:attributeJson2 AS jsonb)
-            OR pv.cached_attributes @> CAST(:attributeJson3 AS jsonb)
-          )
-        """, nativeQuery = true)
-    Page<ProductVariant> findByAttributeValueIn(
-        @Param("attributeJson1") String attributeJson1, // e.g., "{\"color\": {\"value\": \"Red\"}}"
-        @Param("attributeJson2") String attributeJson2, // e.g., "{\"color\": {\"value\": \"Blue\"}}"
-        @Param("attributeJson3") String attributeJson3, // e.g., "{\"color\": {\"value\": \"Green\"}}"
-        Pageable pageable
-    );
-
-    /**
-     * Filter variants where attribute value is in a list - Alternative approach using ANY
-     * ⚠️ WARNING: This uses ->> operator which may not use GIN index efficiently
-     * Use only if you have expression index for specific attribute key
-     */
-    @Query(value = """
-        SELECT * FROM product_variants pv
-        WHERE pv.status = 'ACTIVE'
-          AND pv.cached_attributes->:attributeKey->>'value' = ANY(STRING_TO_ARRAY(:attributeValues, ','))
-        """, nativeQuery = true)
-    Page<ProductVariant> findByAttributeValueInLegacy(
-        @Param("attributeKey") String attributeKey,
-        @Param("attributeValues") String attributeValues, // Comma-separated values
-        Pageable pageable
-    );
-
-    /**
-     * Filter variants by numeric attribute range
-     * Example: Find variants with longevity BETWEEN 6 AND 12
-     * 
-     * ⚠️ WARNING: This uses ->> operator which may not use GIN index efficiently
-     * Consider creating expression index for numeric attributes if this query is used frequently:
-     * CREATE INDEX idx_variants_longevity ON product_variants 
-     *   ((cached_attributes->'longevity'->>'numericValue')::numeric) 
-     *   WHERE status = 'ACTIVE';
-     */
-    @Query(value = """
-        SELECT * FROM product_variants pv
-        WHERE pv.status = 'ACTIVE'
-          AND (pv.cached_attributes->:attributeKey->>'numericValue')::numeric BETWEEN :minValue AND :maxValue
-        """, nativeQuery = true)
-    Page<ProductVariant> findByNumericAttributeRange(
-        @Param("attributeKey") String attributeKey,
-        @Param("minValue") BigDecimal minValue,
-        @Param("maxValue") BigDecimal maxValue,
-        Pageable pageable
-    );
-
-    /**
-     * Filter variants by attribute value with LIKE pattern (text search)
-     * Example: Find variants where fragrance_group contains "woody"
-     * 
-     * ⚠️ WARNING: This uses ->> operator which may not use GIN index efficiently
-     * Consider using full-text search or creating expression index for better performance
-     * For exact match, prefer findByAttributeKeyValue with @> operator
-     */
-    @Query(value = """
-        SELECT * FROM product_variants pv
-        WHERE pv.status = 'ACTIVE'
-          AND LOWER(pv.cached_attributes->:attributeKey->>'value') LIKE LOWER(CONCAT('%', :pattern, '%'))
-        """, nativeQuery = true)
-    Page<ProductVariant> findByAttributeValueLike(
-        @Param("attributeKey") String attributeKey,
-        @Param("pattern") String pattern,
-        Pageable pageable
-    );
-
     /**
      * Filter variants by multiple attributes with price range
      * Example: Find variants with gender='MALE', price BETWEEN 1000000 AND 5000000
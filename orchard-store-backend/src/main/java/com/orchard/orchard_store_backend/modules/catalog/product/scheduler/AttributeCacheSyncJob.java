@@ -0,0 +1,29 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.scheduler;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.service.AttributeCacheSyncJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job chạy các yêu cầu đồng bộ cached_attributes toàn catalog
+ *
+ * Khi không có job PENDING, mỗi lần chạy chỉ là một câu UPDATE không khớp dòng nào.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AttributeCacheSyncJob {
+
+    private final AttributeCacheSyncJobService attributeCacheSyncJobService;
+
+    @Scheduled(fixedDelayString = "${app.attribute-cache.sync.poll-interval-ms:30000}", initialDelay = 30000)
+    public void runPendingSync() {
+        try {
+            attributeCacheSyncJobService.runNextJob();
+        } catch (Exception e) {
+            log.error("Failed to run attribute cache sync job", e);
+        }
+    }
+}
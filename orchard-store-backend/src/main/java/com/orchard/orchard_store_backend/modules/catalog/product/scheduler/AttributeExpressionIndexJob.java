@@ -0,0 +1,30 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.scheduler;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.service.AttributeExpressionIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job đồng bộ expression index của attribute filterable
+ *
+ * Thay đổi attribute được xử lý ngay sau commit (AttributeExpressionIndexService); job này bù trường hợp
+ * event bị lỡ hoặc CREATE INDEX CONCURRENTLY thất bại.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AttributeExpressionIndexJob {
+
+    private final AttributeExpressionIndexService attributeExpressionIndexService;
+
+    @Scheduled(fixedDelayString = "${app.attribute-cache.index.reconcile-interval-ms:3600000}", initialDelay = 60000)
+    public void reconcileAttributeIndexes() {
+        try {
+            attributeExpressionIndexService.reconcile();
+        } catch (Exception e) {
+            log.error("Failed to reconcile attribute expression indexes", e);
+        }
+    }
+}
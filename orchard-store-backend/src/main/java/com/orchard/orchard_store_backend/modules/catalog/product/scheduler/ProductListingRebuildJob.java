@@ -0,0 +1,29 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.scheduler;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductListingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job dựng lại toàn bộ bảng product_listing
+ *
+ * Cập nhật thường ngày là incremental (ProductListingService); job này chỉ bù các thay đổi bị lỡ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductListingRebuildJob {
+
+    private final ProductListingService productListingService;
+
+    @Scheduled(fixedDelayString = "${app.store.listing.rebuild-interval-ms:3600000}", initialDelay = 60000)
+    public void rebuildProductListing() {
+        try {
+            productListingService.rebuildAll();
+        } catch (Exception e) {
+            log.error("Failed to rebuild product listing", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.scheduler;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.service.ProductSearchIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job backfill search document cho các product chưa được index
+ *
+ * Sau khi backfill xong, mỗi lần chạy chỉ là một index lookup rỗng (partial index idx_products_search_pending).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndexBackfillJob {
+
+    private static final int MAX_BATCHES_PER_RUN = 200;
+
+    private final ProductSearchIndexService productSearchIndexService;
+
+    @Value("${app.search.backfill.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.search.backfill.interval-ms:300000}", initialDelay = 30000)
+    public void backfillSearchIndex() {
+        try {
+            int total = 0;
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                int indexed = productSearchIndexService.backfillBatch(batchSize);
+                total += indexed;
+                if (indexed < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("Product search index backfill completed: {} products indexed", total);
+            }
+        } catch (Exception e) {
+            log.error("Failed to backfill product search index", e);
+        }
+    }
+}
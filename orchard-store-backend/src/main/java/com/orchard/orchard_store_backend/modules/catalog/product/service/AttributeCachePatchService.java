@@ -0,0 +1,197 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeDefinitionChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeValueChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductListingChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Patch incremental product_variants.cached_attributes khi admin sửa attribute / attribute value.
+ *
+ * Thay vì sync lại toàn catalog, chỉ các variant đang dùng attribute / option (tìm qua bảng
+ * product_attributes: dòng cấp variant + variant của product có dòng cấp PRODUCT không bị override)
+ * được cập nhật bằng jsonb_set, theo từng batch ID; dòng đã đúng giá trị không bị ghi lại.
+ *
+ * Mỗi batch là một câu UPDATE (một transaction). Nếu worker dừng giữa chừng, sync toàn catalog
+ * (AttributeCacheSyncJobService) vẫn đưa dữ liệu về đúng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttributeCachePatchService {
+
+    /**
+     * Variant có cached_attributes lấy từ dòng product_attributes khớp điều kiện (%s), theo keyset
+     */
+    private static final String TARGET_VARIANTS_SQL_TEMPLATE = """
+        SELECT variant_id FROM (
+            SELECT pav.product_variant_id AS variant_id
+            FROM product_attributes pav
+            WHERE pav.%1$s = :sourceId AND pav.product_variant_id IS NOT NULL
+            UNION
+            SELECT pv.id
+            FROM product_attributes pav
+            JOIN product_variants pv ON pv.product_id = pav.product_id
+            WHERE pav.%1$s = :sourceId
+              AND pav.scope = 'PRODUCT'
+              AND NOT EXISTS (
+                  SELECT 1 FROM product_attributes o
+                  WHERE o.product_variant_id = pv.id AND o.attribute_type_id = pav.attribute_type_id
+              )
+        ) targets
+        WHERE variant_id > :afterId
+        ORDER BY variant_id
+        LIMIT :limit
+        """;
+
+    private static final String VALUE_TARGETS_SQL = TARGET_VARIANTS_SQL_TEMPLATE.formatted("attribute_option_id");
+
+    private static final String DEFINITION_TARGETS_SQL = TARGET_VARIANTS_SQL_TEMPLATE.formatted("attribute_type_id");
+
+    private static final String LOAD_VALUE_SQL = """
+        SELECT at.attribute_key, ao.value, ao.display_value
+        FROM attribute_options ao
+        JOIN attribute_types at ON at.id = ao.attribute_type_id
+        WHERE ao.id = :valueId
+        """;
+
+    private static final String LOAD_DEFINITION_SQL = """
+        SELECT attribute_key, attribute_type, data_type
+        FROM attribute_types
+        WHERE id = :attributeId
+        """;
+
+    private static final String PATCH_VALUE_SQL = """
+        UPDATE product_variants pv
+        SET cached_attributes = jsonb_set(
+                jsonb_set(pv.cached_attributes, ARRAY[CAST(:key AS TEXT), 'value'],
+                          COALESCE(to_jsonb(CAST(:value AS TEXT)), CAST('null' AS jsonb))),
+                ARRAY[CAST(:key AS TEXT), 'display'],
+                COALESCE(to_jsonb(CAST(:display AS TEXT)), CAST('null' AS jsonb)))
+        WHERE pv.id IN (:variantIds)
+          AND jsonb_typeof(pv.cached_attributes -> CAST(:key AS TEXT)) = 'object'
+          AND (pv.cached_attributes -> CAST(:key AS TEXT) ->> 'value' IS DISTINCT FROM CAST(:value AS TEXT)
+               OR pv.cached_attributes -> CAST(:key AS TEXT) ->> 'display' IS DISTINCT FROM CAST(:display AS TEXT))
+        RETURNING pv.product_id
+        """;
+
+    private static final String PATCH_DEFINITION_SQL = """
+        UPDATE product_variants pv
+        SET cached_attributes = jsonb_set(
+                jsonb_set(pv.cached_attributes, ARRAY[CAST(:key AS TEXT), 'type'], to_jsonb(CAST(:type AS TEXT))),
+                ARRAY[CAST(:key AS TEXT), 'dataType'], to_jsonb(CAST(:dataType AS TEXT)))
+        WHERE pv.id IN (:variantIds)
+          AND jsonb_typeof(pv.cached_attributes -> CAST(:key AS TEXT)) = 'object'
+          AND (pv.cached_attributes -> CAST(:key AS TEXT) ->> 'type' IS DISTINCT FROM CAST(:type AS TEXT)
+               OR pv.cached_attributes -> CAST(:key AS TEXT) ->> 'dataType' IS DISTINCT FROM CAST(:dataType AS TEXT))
+        RETURNING pv.product_id
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.attribute-cache.patch.batch-size:500}")
+    private int batchSize;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttributeValueChanged(AttributeValueChangedEvent event) {
+        try {
+            int patched = patchAttributeValue(event.getAttributeValueId());
+            log.info("Patched cached_attributes of {} variants for attribute value {}", patched, event.getAttributeValueId());
+        } catch (Exception e) {
+            log.error("Failed to patch cached_attributes for attribute value {}", event.getAttributeValueId(), e);
+        }
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttributeDefinitionChanged(AttributeDefinitionChangedEvent event) {
+        try {
+            int patched = patchAttributeDefinition(event.getAttributeId());
+            log.info("Patched cached_attributes of {} variants for attribute {}", patched, event.getAttributeId());
+        } catch (Exception e) {
+            log.error("Failed to patch cached_attributes for attribute {}", event.getAttributeId(), e);
+        }
+    }
+
+    /**
+     * Ghi value / display mới của option vào cached_attributes của các variant đang dùng nó
+     *
+     * @return Số variant đã thay đổi
+     */
+    public int patchAttributeValue(Long valueId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(LOAD_VALUE_SQL, new MapSqlParameterSource("valueId", valueId));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> row = rows.get(0);
+        MapSqlParameterSource patchParams = new MapSqlParameterSource()
+                .addValue("key", row.get("attribute_key"))
+                .addValue("value", row.get("value"))
+                .addValue("display", row.get("display_value"));
+        return patchInBatches(VALUE_TARGETS_SQL, valueId, PATCH_VALUE_SQL, patchParams);
+    }
+
+    /**
+     * Ghi attribute type / data type mới vào cached_attributes của các variant có attribute này
+     *
+     * @return Số variant đã thay đổi
+     */
+    public int patchAttributeDefinition(Long attributeId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(LOAD_DEFINITION_SQL, new MapSqlParameterSource("attributeId", attributeId));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> row = rows.get(0);
+        MapSqlParameterSource patchParams = new MapSqlParameterSource()
+                .addValue("key", row.get("attribute_key"))
+                .addValue("type", row.get("attribute_type"))
+                .addValue("dataType", row.get("data_type"));
+        return patchInBatches(DEFINITION_TARGETS_SQL, attributeId, PATCH_DEFINITION_SQL, patchParams);
+    }
+
+    private int patchInBatches(String targetsSql, Long sourceId, String patchSql, MapSqlParameterSource patchParams) {
+        long afterId = 0;
+        int patched = 0;
+        Set<Long> productIds = new HashSet<>();
+        while (true) {
+            List<Long> variantIds = jdbcTemplate.queryForList(targetsSql, new MapSqlParameterSource()
+                    .addValue("sourceId", sourceId)
+                    .addValue("afterId", afterId)
+                    .addValue("limit", batchSize), Long.class);
+            if (variantIds.isEmpty()) {
+                break;
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource(patchParams.getValues())
+                    .addValue("variantIds", variantIds);
+            List<Long> patchedProductIds = jdbcTemplate.queryForList(patchSql, params, Long.class);
+            patched += patchedProductIds.size();
+            productIds.addAll(patchedProductIds);
+
+            afterId = variantIds.get(variantIds.size() - 1);
+            if (variantIds.size() < batchSize) {
+                break;
+            }
+        }
+        if (!productIds.isEmpty()) {
+            // product_listing.attributes được gộp từ cached_attributes
+            eventPublisher.publishEvent(new ProductListingChangedEvent(productIds));
+        }
+        return patched;
+    }
+}
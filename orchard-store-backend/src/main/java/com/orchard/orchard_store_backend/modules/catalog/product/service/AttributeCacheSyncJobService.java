@@ -0,0 +1,174 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.AttributeCacheSyncStatusDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Job đồng bộ EAV -> product_variants.cached_attributes cho toàn catalog (bảng attribute_cache_sync_jobs, V24).
+ *
+ * - Admin yêu cầu sync (requestSync) -> job PENDING; AttributeCacheSyncJob nhận job và chạy theo chunk
+ * - Sau mỗi chunk ghi last_variant_id + heartbeat -> restart giữa chừng thì tiếp tục từ chunk kế tiếp
+ *   (job RUNNING có heartbeat quá hạn được nhận lại); chunk bị làm lại là idempotent
+ * - Job FAILED được tiếp tục (không chạy lại từ đầu) ở lần requestSync sau
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttributeCacheSyncJobService {
+
+    private static final String SELECT_COLUMNS = """
+        SELECT id, status, last_variant_id, processed_count, updated_count, error_message,
+               created_at, started_at, heartbeat_at, finished_at
+        FROM attribute_cache_sync_jobs
+        """;
+
+    private static final String ACTIVE_JOB_SQL = SELECT_COLUMNS + " WHERE status IN ('PENDING', 'RUNNING')";
+
+    private static final String LATEST_JOB_SQL = SELECT_COLUMNS + " ORDER BY id DESC LIMIT 1";
+
+    private static final String RESUME_FAILED_SQL = """
+        UPDATE attribute_cache_sync_jobs
+        SET status = 'PENDING', error_message = NULL, finished_at = NULL
+        WHERE id = ? AND status = 'FAILED'
+        """;
+
+    private static final String CLAIM_SQL = """
+        UPDATE attribute_cache_sync_jobs
+        SET status = 'RUNNING',
+            started_at = COALESCE(started_at, CURRENT_TIMESTAMP),
+            heartbeat_at = CURRENT_TIMESTAMP
+        WHERE id = (
+            SELECT id FROM attribute_cache_sync_jobs
+            WHERE status = 'PENDING'
+               OR (status = 'RUNNING' AND heartbeat_at < CURRENT_TIMESTAMP - make_interval(secs => ?))
+            ORDER BY id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING id, last_variant_id
+        """;
+
+    private static final String PROGRESS_SQL = """
+        UPDATE attribute_cache_sync_jobs
+        SET last_variant_id = ?,
+            processed_count = processed_count + ?,
+            updated_count = updated_count + ?,
+            heartbeat_at = CURRENT_TIMESTAMP
+        WHERE id = ? AND status = 'RUNNING'
+        """;
+
+    private static final String FINISH_SQL = """
+        UPDATE attribute_cache_sync_jobs
+        SET status = ?, error_message = ?, finished_at = CURRENT_TIMESTAMP, heartbeat_at = CURRENT_TIMESTAMP
+        WHERE id = ? AND status = 'RUNNING'
+        """;
+
+    private static final RowMapper<AttributeCacheSyncStatusDTO> STATUS_ROW_MAPPER = (rs, rowNum) -> AttributeCacheSyncStatusDTO.builder()
+            .id(rs.getLong("id"))
+            .status(rs.getString("status"))
+            .lastVariantId(rs.getLong("last_variant_id"))
+            .processedCount(rs.getLong("processed_count"))
+            .updatedCount(rs.getLong("updated_count"))
+            .errorMessage(rs.getString("error_message"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .startedAt(toLocalDateTime(rs.getTimestamp("started_at")))
+            .heartbeatAt(toLocalDateTime(rs.getTimestamp("heartbeat_at")))
+            .finishedAt(toLocalDateTime(rs.getTimestamp("finished_at")))
+            .build();
+
+    private final ProductVariantAttributeCacheService attributeCacheService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.attribute-cache.sync.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.attribute-cache.sync.stale-after-seconds:300}")
+    private int staleAfterSeconds;
+
+    /**
+     * Yêu cầu sync toàn catalog. Trả về job đang chạy nếu đã có; job FAILED gần nhất được tiếp tục.
+     */
+    public AttributeCacheSyncStatusDTO requestSync() {
+        Optional<AttributeCacheSyncStatusDTO> active = findActive();
+        if (active.isPresent()) {
+            return active.get();
+        }
+        Optional<AttributeCacheSyncStatusDTO> latest = getLatestStatus();
+        if (latest.isPresent() && "FAILED".equals(latest.get().getStatus())) {
+            jdbcTemplate.update(RESUME_FAILED_SQL, latest.get().getId());
+        } else {
+            try {
+                jdbcTemplate.update("INSERT INTO attribute_cache_sync_jobs (status) VALUES ('PENDING')");
+            } catch (DuplicateKeyException e) {
+                // Request đồng thời đã tạo job
+                log.debug("Attribute cache sync job already requested");
+            }
+        }
+        return findActive().orElseGet(() -> getLatestStatus().orElse(null));
+    }
+
+    public Optional<AttributeCacheSyncStatusDTO> getLatestStatus() {
+        return jdbcTemplate.query(LATEST_JOB_SQL, STATUS_ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Nhận job PENDING (hoặc RUNNING bị bỏ dở) và chạy tới khi xong.
+     *
+     * @return false nếu không có job nào để chạy
+     */
+    public boolean runNextJob() {
+        List<long[]> claimed = jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong("id"), rs.getLong("last_variant_id")},
+                staleAfterSeconds);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        long jobId = claimed.get(0)[0];
+        long lastVariantId = claimed.get(0)[1];
+        log.info("Attribute cache sync job {} started from variant {}", jobId, lastVariantId);
+
+        try {
+            while (true) {
+                ProductVariantAttributeCacheService.ChunkResult chunk = attributeCacheService.syncChunk(lastVariantId, chunkSize);
+                if (chunk.processed() == 0) {
+                    break;
+                }
+                lastVariantId = chunk.lastVariantId();
+                int progressed = jdbcTemplate.update(PROGRESS_SQL, lastVariantId, chunk.processed(), chunk.updated(), jobId);
+                if (progressed == 0) {
+                    // Job đã bị node khác nhận lại (heartbeat quá hạn) -> dừng
+                    log.warn("Attribute cache sync job {} was taken over, stopping", jobId);
+                    return true;
+                }
+                if (chunk.processed() < chunkSize) {
+                    break;
+                }
+            }
+            jdbcTemplate.update(FINISH_SQL, "COMPLETED", null, jobId);
+            log.info("Attribute cache sync job {} completed", jobId);
+        } catch (Exception e) {
+            log.error("Attribute cache sync job {} failed at variant {}", jobId, lastVariantId, e);
+            jdbcTemplate.update(FINISH_SQL, "FAILED", e.getMessage(), jobId);
+        }
+        return true;
+    }
+
+    private Optional<AttributeCacheSyncStatusDTO> findActive() {
+        return jdbcTemplate.query(ACTIVE_JOB_SQL, STATUS_ROW_MAPPER).stream().findFirst();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
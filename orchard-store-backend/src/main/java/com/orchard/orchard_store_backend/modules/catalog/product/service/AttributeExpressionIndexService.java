@@ -0,0 +1,200 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.attribute.event.AttributeFilterSettingsChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantAttributeQueryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đồng bộ expression index trên product_variants.cached_attributes với danh sách attribute is_filterable.
+ *
+ * Index cần có được mô tả bởi view attribute_expression_index_specs (V25, bỏ trigram ở V31). Service so sánh view với các
+ * index idx_pv_attr_* hiện có: tạo index còn thiếu, xóa index của attribute không còn filterable / đã xóa
+ * và index INVALID (CREATE CONCURRENTLY bị dừng giữa chừng). Index trùng tên nhưng pg_indexes.indexdef khác
+ * định nghĩa mong đợi (attribute đổi key hoặc data_type, id giữ nguyên) bị xóa và tạo lại.
+ *
+ * Định nghĩa mong đợi được Postgres chuẩn hóa bằng cách tạo cùng index trên một bảng tạm rỗng
+ * (LIKE product_variants) trong transaction bị rollback, rồi so sánh phần "USING ..." của indexdef. Sau mỗi lần đồng bộ, danh sách attribute có index
+ * của ProductVariantAttributeQueryRepository được làm mới để storefront search chuyển sang / rời khỏi index.
+ *
+ * ⚠️ CREATE / DROP INDEX CONCURRENTLY không chạy được trong transaction -> class KHÔNG @Transactional,
+ * mỗi câu lệnh JdbcTemplate là một auto-commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttributeExpressionIndexService {
+
+    private static final String INDEX_PREFIX = "idx_pv_attr_";
+
+    private static final String SPECS_SQL =
+            "SELECT index_name, index_definition FROM attribute_expression_index_specs";
+
+    private static final String EXISTING_INDEXES_SQL = """
+        SELECT c.relname AS index_name, i.indisvalid AS valid, pi.indexdef
+        FROM pg_index i
+        JOIN pg_class c ON c.oid = i.indexrelid
+        JOIN pg_namespace n ON n.oid = c.relnamespace
+        JOIN pg_indexes pi ON pi.schemaname = n.nspname AND pi.indexname = c.relname
+        WHERE i.indrelid = CAST('product_variants' AS regclass)
+          AND c.relname LIKE 'idx\\_pv\\_attr\\_%'
+        """;
+
+    private static final String PROBE_TABLE = "attribute_index_probe";
+
+    private static final String PROBE_INDEXES_SQL = """
+        SELECT indexname, indexdef FROM pg_indexes
+        WHERE tablename = 'attribute_index_probe' AND schemaname LIKE 'pg\\_temp\\_%'
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductVariantAttributeQueryRepository attributeQueries;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAttributeFilterSettingsChanged(AttributeFilterSettingsChangedEvent event) {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Failed to reconcile attribute expression indexes for attribute {}", event.getAttributeId(), e);
+        }
+    }
+
+    /**
+     * Tạo / xóa expression index cho khớp với attribute_expression_index_specs
+     *
+     * @return Số index đã tạo + đã xóa
+     */
+    public synchronized int reconcile() {
+        Map<String, String> specs = new HashMap<>();
+        jdbcTemplate.query(SPECS_SQL, rs -> {
+            specs.put(rs.getString("index_name"), rs.getString("index_definition"));
+        });
+
+        Map<String, String> expectedDefinitions = expectedIndexDefinitions(specs);
+
+        Set<String> validIndexes = new HashSet<>();
+        List<String> toDrop = new ArrayList<>();
+        jdbcTemplate.query(EXISTING_INDEXES_SQL, rs -> {
+            String indexName = rs.getString("index_name");
+            String expected = expectedDefinitions.get(indexName);
+            if (rs.getBoolean("valid") && specs.containsKey(indexName)
+                    && (expected == null || expected.equals(usingClause(rs.getString("indexdef"))))) {
+                validIndexes.add(indexName);
+            } else {
+                if (specs.containsKey(indexName) && rs.getBoolean("valid")) {
+                    log.info("Attribute expression index {} no longer matches its spec, recreating", indexName);
+                }
+                toDrop.add(indexName);
+            }
+        });
+
+        int changed = 0;
+        for (String indexName : toDrop) {
+            if (execute("DROP INDEX CONCURRENTLY IF EXISTS " + quoteIdentifier(indexName))) {
+                log.info("Dropped attribute expression index {}", indexName);
+                changed++;
+            }
+        }
+        for (Map.Entry<String, String> spec : specs.entrySet()) {
+            if (validIndexes.contains(spec.getKey())) {
+                continue;
+            }
+            if (execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + quoteIdentifier(spec.getKey()) + " ON " + spec.getValue())) {
+                log.info("Created attribute expression index {}", spec.getKey());
+                changed++;
+            }
+        }
+        attributeQueries.refreshIndexedAttributes();
+        return changed;
+    }
+
+    /**
+     * indexdef (phần "USING ...") Postgres sinh cho từng spec, dùng bảng tạm cùng cấu trúc product_variants.
+     * Lỗi khi dựng bảng tạm -> map rỗng, reconcile chỉ so sánh theo tên như trước.
+     */
+    private Map<String, String> expectedIndexDefinitions(Map<String, String> specs) {
+        if (specs.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return jdbcTemplate.execute((ConnectionCallback<Map<String, String>>) connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TEMP TABLE " + PROBE_TABLE + " (LIKE product_variants) ON COMMIT DROP");
+                    for (Map.Entry<String, String> spec : specs.entrySet()) {
+                        statement.execute("CREATE INDEX " + quoteIdentifier(spec.getKey()) + " ON "
+                                + probeDefinition(spec.getValue()));
+                    }
+                    Map<String, String> definitions = new HashMap<>();
+                    try (ResultSet rs = statement.executeQuery(PROBE_INDEXES_SQL)) {
+                        while (rs.next()) {
+                            definitions.put(rs.getString("indexname"), usingClause(rs.getString("indexdef")));
+                        }
+                    }
+                    return definitions;
+                } finally {
+                    connection.rollback();
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to build expected attribute index definitions, comparing by name only: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * "product_variants (...)" trong view -> cùng định nghĩa trên bảng tạm
+     */
+    private String probeDefinition(String definition) {
+        if (!definition.startsWith("product_variants ")) {
+            throw new IllegalArgumentException("Unexpected attribute index definition: " + definition);
+        }
+        return PROBE_TABLE + definition.substring("product_variants".length());
+    }
+
+    /**
+     * "CREATE INDEX name ON schema.table USING ..." -> "USING ..." (bỏ tên index và bảng)
+     */
+    private String usingClause(String indexdef) {
+        int using = indexdef == null ? -1 : indexdef.indexOf(" USING ");
+        return using < 0 ? indexdef : indexdef.substring(using + 1);
+    }
+
+    /**
+     * Một index lỗi (ví dụ node khác đang tạo cùng index) không chặn các index còn lại
+     */
+    private boolean execute(String ddl) {
+        try {
+            jdbcTemplate.execute(ddl);
+            return true;
+        } catch (Exception e) {
+            log.warn("Failed to execute attribute index DDL [{}]: {}", ddl, e.getMessage());
+            return false;
+        }
+    }
+
+    private String quoteIdentifier(String indexName) {
+        if (!indexName.startsWith(INDEX_PREFIX) || !indexName.matches("[a-z0-9_]+")) {
+            throw new IllegalArgumentException("Unexpected attribute index name: " + indexName);
+        }
+        return "\"" + indexName + "\"";
+    }
+}
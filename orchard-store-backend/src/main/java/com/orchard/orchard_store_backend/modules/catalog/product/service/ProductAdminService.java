@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.catalog.product.service;
 
 import com.github.slugify.Slugify;
+import com.orchard.orchard_store_backend.exception.OperationNotPermittedException;
 import com.orchard.orchard_store_backend.exception.ResourceAlreadyExistsException;
 import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.dto.ProductAttributeValueDTO;
@@ -23,6 +24,7 @@ import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductUpda
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductImage;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductImageMapper;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductMapper;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductImageRepository;
@@ -30,12 +32,20 @@ import com.orchard.orchard_store_backend.modules.catalog.product.repository.Prod
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service xử lý các logic nghiệp vụ phức tạp cho Product Admin.
@@ -43,6 +53,7 @@ import java.util.Map;
  * Bao gồm:
  * - Slug generation tự động
  * - Đồng bộ Attributes giữa EAV và JSONB
+ * - Update theo diff (merge variants / attributes / images thay vì xóa và tạo lại)
  * - Transaction management
  * - Validation và custom exceptions
  */
@@ -63,6 +74,7 @@ public class ProductAdminService {
     private final ProductAttributeValueRepository productAttributeValueRepository;
     private final ProductMapper productMapper;
     private final ProductImageMapper productImageMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Slugify instance để tạo slug từ tên
@@ -109,8 +121,11 @@ public class ProductAdminService {
         log.info("Đã tạo Product với ID: {}", savedProduct.getId());
 
         // 4. Tạo Variants với slug tự động và sync attributes
+        AttributeLookup attributeLookup = loadAttributeLookup(requestDTO.getVariants().stream()
+                .map(ProductCreateRequestDTO.ProductVariantCreateDTO::getAttributeValues)
+                .toList());
         for (ProductCreateRequestDTO.ProductVariantCreateDTO variantDTO : requestDTO.getVariants()) {
-            createVariantWithAttributes(savedProduct, variantDTO);
+            createVariantWithAttributes(savedProduct, variantDTO, attributeLookup);
         }
 
         // 5. Lưu Images nếu có
@@ -118,6 +133,8 @@ public class ProductAdminService {
             persistImages(savedProduct, requestDTO.getImages());
         }
 
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId(), ProductChangedEvent.ChangeType.UPSERTED));
+
         // 6. Load lại Product với đầy đủ relationships và trả về DTO
         return productMapper.toDetailDTO(
                 productRepository.findByIdWithDetails(savedProduct.getId())
@@ -130,10 +147,12 @@ public class ProductAdminService {
      * 
      * @param product Product entity
      * @param variantDTO Variant DTO từ request
+     * @param attributeLookup Attribute / option đã load sẵn cho cả request
      */
     private void createVariantWithAttributes(
             Product product,
-            ProductCreateRequestDTO.ProductVariantCreateDTO variantDTO
+            ProductCreateRequestDTO.ProductVariantCreateDTO variantDTO,
+            AttributeLookup attributeLookup
     ) {
         log.debug("Tạo Variant: SKU={}, Name={}", variantDTO.getSku(), variantDTO.getVariantName());
 
@@ -177,11 +196,12 @@ public class ProductAdminService {
 
         // 4. Lưu Variant trước (cần ID để tạo ProductAttributeValue)
         ProductVariant savedVariant = variantRepository.save(variant);
+        product.getVariants().add(savedVariant);
         log.debug("Đã tạo Variant với ID: {}", savedVariant.getId());
 
         // 5. Sync Attributes vào EAV và JSONB
         if (variantDTO.getAttributeValues() != null && !variantDTO.getAttributeValues().isEmpty()) {
-            syncAttributesToEAVAndJSONB(savedVariant, variantDTO.getAttributeValues());
+            syncAttributesToEAVAndJSONB(savedVariant, variantDTO.getAttributeValues(), attributeLookup);
         }
     }
 
@@ -190,19 +210,20 @@ public class ProductAdminService {
      * 
      * Logic:
      * 1. Tạo slug từ tên bằng slugify
-     * 2. Kiểm tra xem slug đã tồn tại chưa
-     * 3. Nếu tồn tại, thêm số đếm vào cuối (ví dụ: "product-name-2")
+     * 2. Load một lần các slug đang dùng dạng baseSlug / baseSlug-N
+     * 3. Nếu slug đã tồn tại, thêm số đếm nhỏ nhất còn trống vào cuối (ví dụ: "product-name-2")
      * 
      * @param name Tên để tạo slug
      * @return Slug unique
      */
     private String generateUniqueSlug(String name) {
         String baseSlug = slugify.slugify(name);
+        Set<String> usedSlugs = new HashSet<>(variantRepository.findSlugsWithBase(baseSlug));
         String slug = baseSlug;
         int counter = 1;
 
-        // Kiểm tra và tạo slug unique
-        while (variantRepository.existsBySlug(slug)) {
+        // Tạo slug unique
+        while (usedSlugs.contains(slug)) {
             slug = baseSlug + "-" + counter;
             counter++;
         }
@@ -234,41 +255,74 @@ public class ProductAdminService {
      */
     private void syncAttributesToEAVAndJSONB(
             ProductVariant variant,
-            List<ProductAttributeValueDTO> attributeValueDTOs
+            List<ProductAttributeValueDTO> attributeValueDTOs,
+            AttributeLookup attributeLookup
     ) {
         log.debug("Bắt đầu sync attributes cho Variant ID: {}", variant.getId());
 
+        // 1. Lưu vào EAV (một lần saveAll cho cả variant)
+        List<ProductAttributeValue> productAttributeValues = new ArrayList<>(attributeValueDTOs.size());
+        for (ProductAttributeValueDTO attrDTO : attributeValueDTOs) {
+            productAttributeValues.add(newVariantAttributeValue(variant, attrDTO, attributeLookup));
+        }
+        productAttributeValueRepository.saveAll(productAttributeValues);
+
+        // 2. Update cached_attributes (JSONB) của variant
+        variant.setCachedAttributes(buildCachedAttributes(attributeValueDTOs, attributeLookup));
+        variantRepository.save(variant);
+
+        log.debug("Đã sync {} attributes cho Variant ID: {}", attributeValueDTOs.size(), variant.getId());
+    }
+
+    /**
+     * Tạo ProductAttributeValue entity (EAV) cho variant
+     */
+    private ProductAttributeValue newVariantAttributeValue(
+            ProductVariant variant,
+            ProductAttributeValueDTO attrDTO,
+            AttributeLookup attributeLookup
+    ) {
+        return ProductAttributeValue.builder()
+                .product(variant.getProduct())
+                .productVariant(variant)
+                .attribute(attributeLookup.attribute(attrDTO.getAttributeId()))
+                .attributeValue(attributeLookup.value(attrDTO.getAttributeValueId()))
+                .customValue(attrDTO.getCustomValue())
+                .numericValue(attrDTO.getNumericValue())
+                .displayOrder(attrDTO.getDisplayOrder() != null ? attrDTO.getDisplayOrder() : 0)
+                .primary(attrDTO.getPrimary() != null ? attrDTO.getPrimary() : false)
+                .scope(ProductAttributeValue.Scope.VARIANT) // Attributes cho variant
+                .build();
+    }
+
+    /**
+     * Build JSONB structure cho cached_attributes từ danh sách attribute của variant.
+     * 
+     * Structure của cached_attributes:
+     * {
+     *   "attribute_key": {
+     *     "value": "...",
+     *     "display": "...",
+     *     "type": "...",
+     *     "dataType": "...",
+     *     "numericValue": ...
+     *   }
+     * }
+     */
+    private Map<String, Object> buildCachedAttributes(
+            List<ProductAttributeValueDTO> attributeValueDTOs,
+            AttributeLookup attributeLookup
+    ) {
         Map<String, Object> cachedAttributesMap = new HashMap<>();
+        if (attributeValueDTOs == null) {
+            return cachedAttributesMap;
+        }
 
         for (ProductAttributeValueDTO attrDTO : attributeValueDTOs) {
-            // 1. Load ProductAttribute và AttributeValue
-            ProductAttribute attribute = attributeRepository.findById(attrDTO.getAttributeId())
-                    .orElseThrow(() -> new ResourceNotFoundException("ProductAttribute", attrDTO.getAttributeId()));
-
-            AttributeValue attributeValue = null;
-            if (attrDTO.getAttributeValueId() != null) {
-                attributeValue = attributeValueRepository.findById(attrDTO.getAttributeValueId())
-                        .orElseThrow(() -> new ResourceNotFoundException("AttributeValue", attrDTO.getAttributeValueId()));
-            }
-
-            // 2. Tạo ProductAttributeValue entity (EAV)
-            ProductAttributeValue productAttributeValue = ProductAttributeValue.builder()
-                    .product(variant.getProduct())
-                    .productVariant(variant)
-                    .attribute(attribute)
-                    .attributeValue(attributeValue)
-                    .customValue(attrDTO.getCustomValue())
-                    .numericValue(attrDTO.getNumericValue())
-                    .displayOrder(attrDTO.getDisplayOrder() != null ? attrDTO.getDisplayOrder() : 0)
-                    .primary(attrDTO.getPrimary() != null ? attrDTO.getPrimary() : false)
-                    .scope(ProductAttributeValue.Scope.VARIANT) // Attributes cho variant
-                    .build();
-
-            productAttributeValueRepository.save(productAttributeValue);
-
-            // 3. Build JSONB structure cho cached_attributes
+            ProductAttribute attribute = attributeLookup.attribute(attrDTO.getAttributeId());
+            AttributeValue attributeValue = attributeLookup.value(attrDTO.getAttributeValueId());
             Map<String, Object> attributeData = new HashMap<>();
-            
+
             // Value: Lấy từ attributeValue hoặc customValue
             if (attributeValue != null) {
                 attributeData.put("value", attributeValue.getValue());
@@ -290,12 +344,37 @@ public class ProductAdminService {
             // Lưu vào cachedAttributesMap với key là attributeKey
             cachedAttributesMap.put(attribute.getAttributeKey(), attributeData);
         }
+        return cachedAttributesMap;
+    }
 
-        // 4. Update cached_attributes (JSONB) của variant
-        variant.setCachedAttributes(cachedAttributesMap);
-        variantRepository.save(variant);
+    /**
+     * Load một lần mọi ProductAttribute / AttributeValue được tham chiếu trong request (2 query)
+     * thay vì findById cho từng attribute của từng variant
+     */
+    private AttributeLookup loadAttributeLookup(List<List<ProductAttributeValueDTO>> attributeValueLists) {
+        Set<Long> attributeIds = new HashSet<>();
+        Set<Long> attributeValueIds = new HashSet<>();
+        for (List<ProductAttributeValueDTO> attributeValues : attributeValueLists) {
+            if (attributeValues == null) {
+                continue;
+            }
+            for (ProductAttributeValueDTO attrDTO : attributeValues) {
+                attributeIds.add(attrDTO.getAttributeId());
+                if (attrDTO.getAttributeValueId() != null) {
+                    attributeValueIds.add(attrDTO.getAttributeValueId());
+                }
+            }
+        }
 
-        log.debug("Đã sync {} attributes cho Variant ID: {}", attributeValueDTOs.size(), variant.getId());
+        Map<Long, ProductAttribute> attributes = new HashMap<>();
+        if (!attributeIds.isEmpty()) {
+            attributeRepository.findAllById(attributeIds).forEach(attribute -> attributes.put(attribute.getId(), attribute));
+        }
+        Map<Long, AttributeValue> attributeValues = new HashMap<>();
+        if (!attributeValueIds.isEmpty()) {
+            attributeValueRepository.findAllById(attributeValueIds).forEach(value -> attributeValues.put(value.getId(), value));
+        }
+        return new AttributeLookup(attributes, attributeValues);
     }
 
     /**
@@ -328,26 +407,43 @@ public class ProductAdminService {
             image.setProduct(product);
 
             // Link image với variant nếu có
-            if (imageDTO.getProductVariantId() != null) {
-                ProductVariant variant = variantRepository.findById(imageDTO.getProductVariantId())
-                        .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", imageDTO.getProductVariantId()));
-                image.setProductVariant(variant);
-            }
+            image.setProductVariant(resolveImageVariant(product, imageDTO.getProductVariantId()));
 
-            imageRepository.save(image);
+            product.getImages().add(imageRepository.save(image));
         }
 
         log.debug("Đã lưu {} images cho Product ID: {}", images.size(), product.getId());
     }
 
+    /**
+     * Variant được link với image: tìm trong variants đã load của product trước, sau đó mới query
+     */
+    private ProductVariant resolveImageVariant(Product product, Long variantId) {
+        if (variantId == null) {
+            return null;
+        }
+        return product.getVariants().stream()
+                .filter(variant -> variantId.equals(variant.getId()))
+                .findFirst()
+                .orElseGet(() -> variantRepository.findById(variantId)
+                        .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", variantId)));
+    }
+
     /**
      * Cập nhật Product với đầy đủ thông tin.
      * 
-     * Logic:
-     * 1. Load Product hiện tại
-     * 2. Update Product entity
-     * 3. Update/Create/Delete Variants
-     * 4. Update Images
+     * Merge theo diff thay vì xóa và tạo lại:
+     * 1. Load Product hiện tại (kèm variants)
+     * 2. Update Product entity (chỉ các field thay đổi)
+     * 3. Ghép variant trong request với variant hiện có theo ID, rồi theo SKU:
+     *    - Variant khớp: chỉ cập nhật cột thay đổi (ProductVariant dùng @DynamicUpdate), giữ nguyên ID / slug
+     *      (slug chỉ sinh lại khi đổi tên) -> cart / order tham chiếu variant không bị ảnh hưởng;
+     *      stock_quantity không bị ghi đè, status bỏ trống thì giữ nguyên
+     *    - Variant mới: tạo như createProduct
+     *    - Variant không còn trong request: chuyển DISCONTINUED (không xóa vì có thể đang được cart / order tham chiếu)
+     * 4. Diff EAV của các variant khớp (load một query, xóa một batch), cached_attributes chỉ tính lại
+     *    cho variant có attribute thay đổi
+     * 5. Merge Images theo ID, rồi theo imageUrl
      * 
      * @param productId ID của Product cần update
      * @param requestDTO ProductUpdateRequestDTO
@@ -360,41 +456,409 @@ public class ProductAdminService {
         Product product = productRepository.findByIdWithDetails(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", productId));
 
-        // 2. Validate và load Brand
-        Brand brand = brandRepository.findById(requestDTO.getBrandId())
-                .orElseThrow(() -> new ResourceNotFoundException("Brand", requestDTO.getBrandId()));
+        // 2. Validate và load Brand (chỉ khi đổi brand)
+        if (product.getBrand() == null || !requestDTO.getBrandId().equals(product.getBrand().getId())) {
+            Brand brand = brandRepository.findById(requestDTO.getBrandId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Brand", requestDTO.getBrandId()));
+            product.setBrand(brand);
+        }
 
         // 3. Update Product entity
-        product.setName(requestDTO.getName());
-        product.setBrand(brand);
+        if (!Objects.equals(product.getName(), requestDTO.getName())) {
+            product.setName(requestDTO.getName());
+        }
         if (requestDTO.getStatus() != null) {
-            product.setStatus(Product.Status.valueOf(requestDTO.getStatus().toUpperCase()));
+            Product.Status status = Product.Status.valueOf(requestDTO.getStatus().toUpperCase());
+            if (product.getStatus() != status) {
+                product.setStatus(status);
+            }
         }
 
-        Product savedProduct = productRepository.save(product);
+        // 4. Merge Variants
+        List<ProductUpdateRequestDTO.ProductVariantUpdateDTO> variantDTOs =
+                requestDTO.getVariants() != null ? requestDTO.getVariants() : List.of();
+        mergeVariants(product, variantDTOs);
 
-        // 4. Update Variants
-        // TODO: Implement logic để update variants (có thể cần xóa variants cũ và tạo mới, hoặc update từng variant)
-        // Hiện tại đơn giản hóa: xóa tất cả variants cũ và tạo mới
-        product.getVariants().clear();
-        for (ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO : requestDTO.getVariants()) {
-            createVariantWithAttributes(savedProduct, convertToCreateDTO(variantDTO));
-        }
+        // 5. Merge Images
+        mergeImages(product, requestDTO.getImages() != null ? requestDTO.getImages() : List.of());
 
-        // 5. Update Images
-        // TODO: Implement logic để update images (có thể cần xóa images cũ và tạo mới)
-        product.getImages().clear();
-        if (requestDTO.getImages() != null && !requestDTO.getImages().isEmpty()) {
-            persistImages(savedProduct, requestDTO.getImages());
-        }
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), ProductChangedEvent.ChangeType.UPSERTED));
 
         // 6. Load lại và trả về
         return productMapper.toDetailDTO(
-                productRepository.findByIdWithDetails(savedProduct.getId())
-                        .orElse(savedProduct)
+                productRepository.findByIdWithDetails(product.getId())
+                        .orElse(product)
         );
     }
 
+    /**
+     * Merge variants của request vào variants hiện có của product.
+     */
+    private void mergeVariants(Product product, List<ProductUpdateRequestDTO.ProductVariantUpdateDTO> variantDTOs) {
+        Map<Long, ProductVariant> variantsById = new LinkedHashMap<>();
+        for (ProductVariant variant : product.getVariants()) {
+            variantsById.put(variant.getId(), variant);
+        }
+
+        // 1. Ghép theo ID trước, sau đó theo SKU với các variant chưa được ghép
+        Map<Long, ProductUpdateRequestDTO.ProductVariantUpdateDTO> matched = new LinkedHashMap<>();
+        List<ProductUpdateRequestDTO.ProductVariantUpdateDTO> unmatched = new ArrayList<>();
+        for (ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO : variantDTOs) {
+            if (variantDTO.getId() == null) {
+                unmatched.add(variantDTO);
+                continue;
+            }
+            if (!variantsById.containsKey(variantDTO.getId())) {
+                throw new ResourceNotFoundException("ProductVariant", variantDTO.getId());
+            }
+            if (matched.putIfAbsent(variantDTO.getId(), variantDTO) != null) {
+                throw new OperationNotPermittedException("Variant ID " + variantDTO.getId() + " xuất hiện nhiều lần trong request");
+            }
+        }
+        Map<String, ProductVariant> unmatchedBySku = new HashMap<>();
+        for (ProductVariant variant : variantsById.values()) {
+            if (!matched.containsKey(variant.getId()) && variant.getSku() != null) {
+                unmatchedBySku.put(variant.getSku(), variant);
+            }
+        }
+        List<ProductUpdateRequestDTO.ProductVariantUpdateDTO> created = new ArrayList<>();
+        for (ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO : unmatched) {
+            ProductVariant variant = unmatchedBySku.remove(variantDTO.getSku());
+            if (variant != null) {
+                matched.put(variant.getId(), variantDTO);
+            } else {
+                created.add(variantDTO);
+            }
+        }
+
+        // 2. Validate SKUs: SKU mới / SKU đổi không được trùng
+        validateUpdatedSkus(variantsById, matched, created);
+
+        // 3. Load attribute / option và EAV hiện có của các variant khớp (mỗi loại một query)
+        AttributeLookup attributeLookup = loadAttributeLookup(variantDTOs.stream()
+                .map(ProductUpdateRequestDTO.ProductVariantUpdateDTO::getAttributeValues)
+                .toList());
+        Map<Long, List<ProductAttributeValue>> currentAttributes = matched.isEmpty()
+                ? Map.of()
+                : productAttributeValueRepository.findWithAttributeByProductVariantIdIn(matched.keySet()).stream()
+                        .collect(Collectors.groupingBy(pav -> pav.getProductVariant().getId()));
+
+        // 4. Cập nhật variant khớp
+        List<ProductAttributeValue> attributesToInsert = new ArrayList<>();
+        List<ProductAttributeValue> attributesToDelete = new ArrayList<>();
+        int changedVariants = 0;
+        int changedAttributeVariants = 0;
+        for (Map.Entry<Long, ProductUpdateRequestDTO.ProductVariantUpdateDTO> entry : matched.entrySet()) {
+            ProductVariant variant = variantsById.get(entry.getKey());
+            ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO = entry.getValue();
+            if (applyVariantChanges(variant, variantDTO)) {
+                changedVariants++;
+            }
+            boolean attributesChanged = mergeVariantAttributes(
+                    variant,
+                    variantDTO.getAttributeValues() != null ? variantDTO.getAttributeValues() : List.of(),
+                    currentAttributes.getOrDefault(variant.getId(), List.of()),
+                    attributeLookup,
+                    attributesToInsert,
+                    attributesToDelete
+            );
+            if (attributesChanged) {
+                // Chỉ tính lại cached_attributes (JSONB) cho variant có attribute thay đổi
+                variant.setCachedAttributes(buildCachedAttributes(variantDTO.getAttributeValues(), attributeLookup));
+                changedAttributeVariants++;
+            }
+        }
+
+        // 5. Variant không còn trong request -> DISCONTINUED
+        int discontinued = 0;
+        for (ProductVariant variant : variantsById.values()) {
+            if (!matched.containsKey(variant.getId()) && variant.getStatus() != ProductVariant.Status.DISCONTINUED) {
+                variant.setStatus(ProductVariant.Status.DISCONTINUED);
+                variant.setIsDefault(false);
+                discontinued++;
+            }
+        }
+
+        // 6. Ghi thay đổi EAV: xóa một batch, thêm bằng saveAll (update đi theo dirty checking)
+        if (!attributesToDelete.isEmpty()) {
+            productAttributeValueRepository.deleteAllInBatch(attributesToDelete);
+        }
+        if (!attributesToInsert.isEmpty()) {
+            productAttributeValueRepository.saveAll(attributesToInsert);
+        }
+
+        // 7. Tạo variant mới
+        for (ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO : created) {
+            createVariantWithAttributes(product, convertToCreateDTO(variantDTO), attributeLookup);
+        }
+
+        log.info("Merge variants cho Product ID {}: {} thay đổi, {} đổi attributes, {} tạo mới, {} ngừng bán",
+                product.getId(), changedVariants, changedAttributeVariants, created.size(), discontinued);
+    }
+
+    /**
+     * Validate SKUs khi update: SKU của variant mới và SKU bị đổi của variant hiện có không được trùng.
+     * 
+     * @throws ResourceAlreadyExistsException Nếu có SKU trùng
+     */
+    private void validateUpdatedSkus(
+            Map<Long, ProductVariant> variantsById,
+            Map<Long, ProductUpdateRequestDTO.ProductVariantUpdateDTO> matched,
+            List<ProductUpdateRequestDTO.ProductVariantUpdateDTO> created
+    ) {
+        Set<String> requestSkus = new HashSet<>();
+        for (Map.Entry<Long, ProductUpdateRequestDTO.ProductVariantUpdateDTO> entry : matched.entrySet()) {
+            String sku = entry.getValue().getSku();
+            if (!requestSkus.add(sku)) {
+                throw new ResourceAlreadyExistsException("ProductVariant", "SKU", sku);
+            }
+            if (!sku.equals(variantsById.get(entry.getKey()).getSku())
+                    && variantRepository.existsBySkuAndIdNot(sku, entry.getKey())) {
+                throw new ResourceAlreadyExistsException("ProductVariant", "SKU", sku);
+            }
+        }
+        for (ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO : created) {
+            if (!requestSkus.add(variantDTO.getSku()) || variantRepository.existsBySku(variantDTO.getSku())) {
+                throw new ResourceAlreadyExistsException("ProductVariant", "SKU", variantDTO.getSku());
+            }
+        }
+    }
+
+    /**
+     * Áp dụng thay đổi của request lên variant hiện có, chỉ set field có giá trị khác.
+     * Giá trị đích giống hệt khi tạo variant từ request (createVariantWithAttributes), riêng currencyCode,
+     * lowStockThreshold, status, displayOrder bỏ trống thì giữ nguyên.
+     *
+     * stockQuantity của request không được áp dụng: cột này do trigger trg_sync_variant_stock (tổng warehouse_stock)
+     * và StockDecrementEngine quản lý, giá trị trên form admin có thể đã cũ. Tồn kho đổi qua nghiệp vụ nhập / xuất kho.
+     * 
+     * @return true nếu variant có thay đổi
+     */
+    private boolean applyVariantChanges(ProductVariant variant, ProductUpdateRequestDTO.ProductVariantUpdateDTO variantDTO) {
+        boolean changed = false;
+
+        if (!Objects.equals(variant.getSku(), variantDTO.getSku())) {
+            variant.setSku(variantDTO.getSku());
+            changed = true;
+        }
+        if (!Objects.equals(variant.getVariantName(), variantDTO.getVariantName())) {
+            variant.setVariantName(variantDTO.getVariantName());
+            // Slug chỉ sinh lại khi đổi tên
+            variant.setSlug(generateUniqueSlug(variantDTO.getVariantName()));
+            changed = true;
+        }
+        if (!sameAmount(variant.getPrice(), variantDTO.getPrice())) {
+            variant.setPrice(variantDTO.getPrice());
+            changed = true;
+        }
+        if (!sameAmount(variant.getSalePrice(), variantDTO.getSalePrice())) {
+            variant.setSalePrice(variantDTO.getSalePrice());
+            changed = true;
+        }
+
+        // Category / Concentration: chỉ load khi đổi (so sánh ID trên proxy, không cần initialize)
+        Long currentCategoryId = variant.getCategory() != null ? variant.getCategory().getId() : null;
+        if (!Objects.equals(currentCategoryId, variantDTO.getCategoryId())) {
+            variant.setCategory(variantDTO.getCategoryId() == null ? null
+                    : categoryRepository.findById(variantDTO.getCategoryId())
+                            .orElseThrow(() -> new ResourceNotFoundException("Category", variantDTO.getCategoryId())));
+            changed = true;
+        }
+        Long currentConcentrationId = variant.getConcentration() != null ? variant.getConcentration().getId() : null;
+        if (!Objects.equals(currentConcentrationId, variantDTO.getConcentrationId())) {
+            variant.setConcentration(variantDTO.getConcentrationId() == null ? null
+                    : concentrationRepository.findById(variantDTO.getConcentrationId())
+                            .orElseThrow(() -> new ResourceNotFoundException("Concentration", variantDTO.getConcentrationId())));
+            changed = true;
+        }
+
+        if (!Objects.equals(variant.getBarcode(), variantDTO.getBarcode())) {
+            variant.setBarcode(variantDTO.getBarcode());
+            changed = true;
+        }
+        if (variantDTO.getCurrencyCode() != null && !variantDTO.getCurrencyCode().equals(variant.getCurrencyCode())) {
+            variant.setCurrencyCode(variantDTO.getCurrencyCode());
+            changed = true;
+        }
+        if (variantDTO.getLowStockThreshold() != null && !variantDTO.getLowStockThreshold().equals(variant.getLowStockThreshold())) {
+            variant.setLowStockThreshold(variantDTO.getLowStockThreshold());
+            changed = true;
+        }
+        Boolean isDefault = variantDTO.getIsDefault() != null ? variantDTO.getIsDefault() : false;
+        if (!Objects.equals(variant.getIsDefault(), isDefault)) {
+            variant.setIsDefault(isDefault);
+            changed = true;
+        }
+        if (variantDTO.getStatus() != null) {
+            ProductVariant.Status status = ProductVariant.Status.valueOf(variantDTO.getStatus().toUpperCase());
+            if (variant.getStatus() != status) {
+                variant.setStatus(status);
+                changed = true;
+            }
+        }
+        if (variantDTO.getDisplayOrder() != null && !variantDTO.getDisplayOrder().equals(variant.getDisplayOrder())) {
+            variant.setDisplayOrder(variantDTO.getDisplayOrder());
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Diff attribute (EAV) của một variant theo attributeId: update tại chỗ dòng thay đổi,
+     * gom dòng cần thêm / xóa vào attributesToInsert / attributesToDelete để ghi theo batch.
+     * 
+     * @return true nếu attribute của variant có thay đổi
+     */
+    private boolean mergeVariantAttributes(
+            ProductVariant variant,
+            List<ProductAttributeValueDTO> attributeValueDTOs,
+            List<ProductAttributeValue> currentAttributes,
+            AttributeLookup attributeLookup,
+            List<ProductAttributeValue> attributesToInsert,
+            List<ProductAttributeValue> attributesToDelete
+    ) {
+        boolean changed = false;
+        Map<Long, ProductAttributeValue> currentByAttributeId = new HashMap<>();
+        for (ProductAttributeValue pav : currentAttributes) {
+            if (currentByAttributeId.putIfAbsent(pav.getAttribute().getId(), pav) != null) {
+                // Dòng trùng attribute (dữ liệu cũ): bỏ
+                attributesToDelete.add(pav);
+                changed = true;
+            }
+        }
+
+        for (ProductAttributeValueDTO attrDTO : attributeValueDTOs) {
+            ProductAttributeValue existing = currentByAttributeId.remove(attrDTO.getAttributeId());
+            if (existing == null) {
+                attributesToInsert.add(newVariantAttributeValue(variant, attrDTO, attributeLookup));
+                changed = true;
+            } else if (applyAttributeChanges(existing, attrDTO, attributeLookup)) {
+                changed = true;
+            }
+        }
+
+        if (!currentByAttributeId.isEmpty()) {
+            attributesToDelete.addAll(currentByAttributeId.values());
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return true nếu dòng EAV có thay đổi
+     */
+    private boolean applyAttributeChanges(
+            ProductAttributeValue pav,
+            ProductAttributeValueDTO attrDTO,
+            AttributeLookup attributeLookup
+    ) {
+        boolean changed = false;
+
+        Long currentValueId = pav.getAttributeValue() != null ? pav.getAttributeValue().getId() : null;
+        if (!Objects.equals(currentValueId, attrDTO.getAttributeValueId())) {
+            pav.setAttributeValue(attributeLookup.value(attrDTO.getAttributeValueId()));
+            changed = true;
+        }
+        if (!Objects.equals(pav.getCustomValue(), attrDTO.getCustomValue())) {
+            pav.setCustomValue(attrDTO.getCustomValue());
+            changed = true;
+        }
+        if (!sameAmount(pav.getNumericValue(), attrDTO.getNumericValue())) {
+            pav.setNumericValue(attrDTO.getNumericValue());
+            changed = true;
+        }
+        Integer displayOrder = attrDTO.getDisplayOrder() != null ? attrDTO.getDisplayOrder() : 0;
+        if (!Objects.equals(pav.getDisplayOrder(), displayOrder)) {
+            pav.setDisplayOrder(displayOrder);
+            changed = true;
+        }
+        Boolean primary = attrDTO.getPrimary() != null ? attrDTO.getPrimary() : false;
+        if (!Objects.equals(pav.getPrimary(), primary)) {
+            pav.setPrimary(primary);
+            changed = true;
+        }
+        if (pav.getScope() != ProductAttributeValue.Scope.VARIANT) {
+            pav.setScope(ProductAttributeValue.Scope.VARIANT);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Merge images theo ID, rồi theo imageUrl: image khớp chỉ cập nhật field thay đổi, image mới được thêm,
+     * image không còn trong request bị xóa (orphanRemoval).
+     */
+    private void mergeImages(Product product, List<ProductImageDTO> imageDTOs) {
+        Map<Long, ProductImage> imagesById = new HashMap<>();
+        Map<String, ProductImage> imagesByUrl = new HashMap<>();
+        for (ProductImage image : product.getImages()) {
+            imagesById.put(image.getId(), image);
+            imagesByUrl.putIfAbsent(image.getImageUrl(), image);
+        }
+
+        Set<Long> keptImageIds = new HashSet<>();
+        List<ProductImageDTO> newImages = new ArrayList<>();
+        for (ProductImageDTO imageDTO : imageDTOs) {
+            ProductImage image = imageDTO.getId() != null ? imagesById.get(imageDTO.getId()) : null;
+            if (image == null) {
+                ProductImage byUrl = imagesByUrl.get(imageDTO.getImageUrl());
+                image = byUrl != null && !keptImageIds.contains(byUrl.getId()) ? byUrl : null;
+            }
+            if (image == null || !keptImageIds.add(image.getId())) {
+                newImages.add(imageDTO);
+                continue;
+            }
+            applyImageChanges(product, image, imageDTO);
+        }
+
+        int removed = product.getImages().size() - keptImageIds.size();
+        product.getImages().removeIf(image -> !keptImageIds.contains(image.getId()));
+        persistImages(product, newImages);
+
+        log.debug("Merge images cho Product ID {}: {} giữ lại, {} thêm mới, {} xóa",
+                product.getId(), keptImageIds.size(), newImages.size(), removed);
+    }
+
+    private void applyImageChanges(Product product, ProductImage image, ProductImageDTO imageDTO) {
+        if (!Objects.equals(image.getImageUrl(), imageDTO.getImageUrl())) {
+            image.setImageUrl(imageDTO.getImageUrl());
+        }
+        if (!Objects.equals(image.getThumbnailUrl(), imageDTO.getThumbnailUrl())) {
+            image.setThumbnailUrl(imageDTO.getThumbnailUrl());
+        }
+        if (!Objects.equals(image.getAltText(), imageDTO.getAltText())) {
+            image.setAltText(imageDTO.getAltText());
+        }
+        if (!Objects.equals(image.getImageType(), imageDTO.getImageType())) {
+            image.setImageType(imageDTO.getImageType());
+        }
+        if (!Objects.equals(image.getFileSizeBytes(), imageDTO.getFileSizeBytes())) {
+            image.setFileSizeBytes(imageDTO.getFileSizeBytes());
+        }
+        if (!Objects.equals(image.getWidth(), imageDTO.getWidth())) {
+            image.setWidth(imageDTO.getWidth());
+        }
+        if (!Objects.equals(image.getHeight(), imageDTO.getHeight())) {
+            image.setHeight(imageDTO.getHeight());
+        }
+        if (imageDTO.getDisplayOrder() != null && !imageDTO.getDisplayOrder().equals(image.getDisplayOrder())) {
+            image.setDisplayOrder(imageDTO.getDisplayOrder());
+        }
+        if (imageDTO.getIsPrimary() != null && !imageDTO.getIsPrimary().equals(image.getIsPrimary())) {
+            image.setIsPrimary(imageDTO.getIsPrimary());
+        }
+        Long currentVariantId = image.getProductVariant() != null ? image.getProductVariant().getId() : null;
+        if (!Objects.equals(currentVariantId, imageDTO.getProductVariantId())) {
+            image.setProductVariant(resolveImageVariant(product, imageDTO.getProductVariantId()));
+        }
+    }
+
+    private static boolean sameAmount(BigDecimal current, BigDecimal target) {
+        return current == null ? target == null : target != null && current.compareTo(target) == 0;
+    }
+
     /**
      * Lấy chi tiết Product theo ID (bao gồm variants, images, seoUrls).
      * 
@@ -425,6 +889,7 @@ public class ProductAdminService {
         product.setStatus(Product.Status.ARCHIVED);
         product.setArchivedAt(java.time.LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.DELETED));
 
         log.info("Đã xóa mềm Product ID: {}", productId);
     }
@@ -452,5 +917,29 @@ public class ProductAdminService {
                 .displayOrder(updateDTO.getDisplayOrder())
                 .build();
     }
-}
 
+    /**
+     * ProductAttribute / AttributeValue đã load sẵn cho một request
+     */
+    private record AttributeLookup(Map<Long, ProductAttribute> attributes, Map<Long, AttributeValue> values) {
+
+        ProductAttribute attribute(Long attributeId) {
+            ProductAttribute attribute = attributes.get(attributeId);
+            if (attribute == null) {
+                throw new ResourceNotFoundException("ProductAttribute", attributeId);
+            }
+            return attribute;
+        }
+
+        AttributeValue value(Long attributeValueId) {
+            if (attributeValueId == null) {
+                return null;
+            }
+            AttributeValue value = values.get(attributeValueId);
+            if (value == null) {
+                throw new ResourceNotFoundException("AttributeValue", attributeValueId);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFacetsDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFilterDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantAttributeQueryRepository;
+import com.orchard.orchard_store_backend.modules.catalog.product.util.ProductSearchQueryBuilder;
+import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Facet engine cho storefront product listing.
+ *
+ * Tính toàn bộ facet (brand, category, khoảng giá, cached_attributes) cho filter hiện tại trong MỘT câu SQL.
+ *
+ * Facet là disjunctive: số đếm của một nhóm được tính với mọi filter TRỪ filter của chính nhóm đó
+ * (đã chọn brand A thì facet brand vẫn hiện số lượng của brand B để chọn thêm).
+ * CTE "matched" giữ các variant trượt tối đa một nhóm filter, kèm cờ f0..fn cho từng nhóm
+ * (ProductSearchQueryBuilder.facetConditions); mỗi nhóm facet GROUP BY trên các dòng thỏa mọi cờ còn lại,
+ * sau đó UNION ALL lại. Kết quả cache ngắn hạn theo filter đã chuẩn hóa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class ProductFacetService {
+
+    private static final String CACHE_KEY_PREFIX = "store:facets:";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final CacheService cacheService;
+    private final ProductVariantAttributeQueryRepository attributeQueries;
+
+    @Value("${app.store.facets.cache-ttl-seconds:30}")
+    private long cacheTtlSeconds;
+
+    /**
+     * Ranh giới các khoảng giá (tăng dần)
+     */
+    @Value("${app.store.facets.price-buckets:500000,1000000,2000000,5000000}")
+    private BigDecimal[] priceBoundaries;
+
+    /**
+     * Lấy facet counts cho filter hiện tại (cache ngắn hạn).
+     */
+    public ProductFacetsDTO getFacets(ProductFilterDTO filter) {
+        String cacheKey = CACHE_KEY_PREFIX + DigestUtils.md5DigestAsHex(
+                normalize(filter).getBytes(StandardCharsets.UTF_8));
+
+        Optional<ProductFacetsDTO> cached = cacheService.getCached(cacheKey, ProductFacetsDTO.class);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        ProductFacetsDTO facets = computeFacets(filter);
+        cacheService.cache(cacheKey, facets, cacheTtlSeconds);
+        return facets;
+    }
+
+    private ProductFacetsDTO computeFacets(ProductFilterDTO filter) {
+        log.debug("Computing facets for filter: {}", filter);
+
+        ProductSearchQueryBuilder query = ProductSearchQueryBuilder.from(filter, attributeQueries);
+        MapSqlParameterSource params = new MapSqlParameterSource(query.params().getValues());
+        List<String> groups = new ArrayList<>(query.facetConditions().keySet());
+
+        StringBuilder flags = new StringBuilder();
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            flags.append(",\n               COALESCE(").append(query.facetConditions().get(groups.get(i)))
+                    .append(", FALSE) AS f").append(i);
+            misses.add("CASE WHEN f" + i + " THEN 0 ELSE 1 END");
+        }
+
+        String sql = """
+            WITH candidates AS (
+                SELECT pv.product_id, p.brand_id, pv.category_id,
+                       %s AS effective_price, pv.cached_attributes%s
+                FROM products p
+                JOIN product_variants pv ON pv.product_id = p.id
+                WHERE p.status = :status AND pv.status = 'ACTIVE'
+            ), matched AS (
+                SELECT * FROM candidates
+                WHERE %s
+            )
+            SELECT 'brand' AS facet, CAST(m.brand_id AS TEXT) AS value, b.name AS label,
+                   COUNT(DISTINCT m.product_id) AS cnt
+            FROM matched m JOIN brands b ON b.id = m.brand_id
+            WHERE %s
+            GROUP BY m.brand_id, b.name
+            UNION ALL
+            SELECT 'category', CAST(m.category_id AS TEXT), c.name, COUNT(DISTINCT m.product_id)
+            FROM matched m JOIN categories c ON c.id = m.category_id
+            WHERE %s
+            GROUP BY m.category_id, c.name
+            UNION ALL
+            SELECT 'price', CAST(pb.bucket AS TEXT), NULL, COUNT(DISTINCT pb.product_id)
+            FROM (SELECT m.product_id, %s AS bucket FROM matched m WHERE %s) pb
+            GROUP BY pb.bucket
+            UNION ALL
+            SELECT 'attr:' || kv.key, kv.value ->> 'value', MAX(kv.value ->> 'display'),
+                   COUNT(DISTINCT m.product_id)
+            FROM matched m
+            CROSS JOIN LATERAL jsonb_each(COALESCE(m.cached_attributes, CAST('{}' AS jsonb))) kv
+            WHERE jsonb_typeof(kv.value) = 'object'
+              AND kv.value ->> 'value' IS NOT NULL
+              AND %s
+            GROUP BY kv.key, kv.value ->> 'value'
+            """.formatted(
+                ProductSearchQueryBuilder.EFFECTIVE_PRICE_SQL,
+                flags,
+                misses.isEmpty() ? "TRUE" : String.join(" + ", misses) + " <= 1",
+                flagsExcept(groups, "brand"),
+                flagsExcept(groups, "category"),
+                priceBucketSql(params),
+                flagsExcept(groups, "price"),
+                attributeFlags(groups, params)
+        );
+
+        ProductFacetsDTO facets = new ProductFacetsDTO();
+        Map<Integer, Long> priceCounts = new HashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            String facet = rs.getString("facet");
+            String value = rs.getString("value");
+            String label = rs.getString("label");
+            long count = rs.getLong("cnt");
+            switch (facet) {
+                case "brand" -> facets.getBrands().add(new ProductFacetsDTO.FacetValue(value, label, count));
+                case "category" -> facets.getCategories().add(new ProductFacetsDTO.FacetValue(value, label, count));
+                case "price" -> priceCounts.put(Integer.parseInt(value), count);
+                default -> facets.getAttributes()
+                        .computeIfAbsent(facet.substring("attr:".length()), key -> new ArrayList<>())
+                        .add(new ProductFacetsDTO.FacetValue(value, label != null ? label : value, count));
+            }
+        });
+
+        Comparator<ProductFacetsDTO.FacetValue> byCountDesc =
+                Comparator.comparingLong(ProductFacetsDTO.FacetValue::count).reversed()
+                        .thenComparing(ProductFacetsDTO.FacetValue::value);
+        facets.getBrands().sort(byCountDesc);
+        facets.getCategories().sort(byCountDesc);
+        facets.getAttributes().values().forEach(values -> values.sort(byCountDesc));
+
+        for (int bucket = 0; bucket <= priceBoundaries.length; bucket++) {
+            Long count = priceCounts.get(bucket);
+            if (count != null) {
+                facets.getPriceBuckets().add(new ProductFacetsDTO.PriceBucket(
+                        bucket > 0 ? priceBoundaries[bucket - 1] : null,
+                        bucket < priceBoundaries.length ? priceBoundaries[bucket] : null,
+                        count
+                ));
+            }
+        }
+        return facets;
+    }
+
+    /**
+     * Các cờ filter (m.f<i>) phải thỏa cho một nhóm facet: mọi nhóm trừ chính nó
+     */
+    private String flagsExcept(List<String> groups, String group) {
+        List<String> required = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            if (!groups.get(i).equals(group)) {
+                required.add("m.f" + i);
+            }
+        }
+        return required.isEmpty() ? "TRUE" : String.join(" AND ", required);
+    }
+
+    /**
+     * Facet attribute gom mọi key trong một SELECT nên cờ cần thỏa phụ thuộc kv.key:
+     * CASE kv.key WHEN :facetKey0 THEN (mọi cờ trừ attr đó) ... ELSE (mọi cờ) END
+     */
+    private String attributeFlags(List<String> groups, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < groups.size(); i++) {
+            String group = groups.get(i);
+            if (group.startsWith("attr:")) {
+                params.addValue("facetKey" + i, group.substring("attr:".length()));
+                sql.append(" WHEN :facetKey").append(i).append(" THEN ").append(flagsExcept(groups, group));
+            }
+        }
+        String all = flagsExcept(groups, null);
+        return sql.isEmpty() ? all : "CASE kv.key" + sql + " ELSE " + all + " END";
+    }
+
+    /**
+     * CASE WHEN effective_price < :priceBound0 THEN 0 ... ELSE n END
+     */
+    private String priceBucketSql(MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder("CASE");
+        for (int i = 0; i < priceBoundaries.length; i++) {
+            sql.append(" WHEN m.effective_price < :priceBound").append(i).append(" THEN ").append(i);
+            params.addValue("priceBound" + i, priceBoundaries[i]);
+        }
+        return sql.append(" ELSE ").append(priceBoundaries.length).append(" END").toString();
+    }
+
+    /**
+     * Chuẩn hóa filter để các request tương đương dùng chung cache key
+     * (brand sắp xếp + bỏ trùng, attributes / khoảng attribute sắp xếp theo key và giá trị, số bỏ 0 thừa).
+     */
+    private String normalize(ProductFilterDTO filter) {
+        String brands = filter.getBrandIds() == null ? "" : filter.getBrandIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        String attributes = filter.getAttributes() == null ? "" : filter.getAttributes().entrySet().stream()
+                .filter(entry -> entry.getValue() != null && !entry.getValue().isEmpty())
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getKey() + "=" + entry.getValue().stream()
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .sorted()
+                        .collect(Collectors.joining("|")))
+                .collect(Collectors.joining(","));
+        String ranges = filter.getAttributeRanges() == null ? "" : filter.getAttributeRanges().entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getKey() + "=" + normalizePrice(entry.getValue().getMin())
+                        + ".." + normalizePrice(entry.getValue().getMax()))
+                .collect(Collectors.joining(","));
+        return "s=" + filter.getStatus()
+                + "|b=" + brands
+                + "|c=" + Objects.toString(filter.getCategoryId(), "")
+                + "|min=" + normalizePrice(filter.getMinPrice())
+                + "|max=" + normalizePrice(filter.getMaxPrice())
+                + "|a=" + attributes
+                + "|r=" + ranges;
+    }
+
+    private String normalizePrice(BigDecimal price) {
+        return price == null ? "" : price.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductListingChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Duy trì bảng read model product_listing (V23) cho listing storefront.
+ *
+ * - Cập nhật incremental: sau khi transaction commit, các product bị ảnh hưởng được tính lại bằng
+ *   refresh_product_listing() (ProductChangedEvent từ admin, ProductListingChangedEvent từ
+ *   inventory / review / pricing)
+ * - Rebuild toàn bộ: theo batch ID (keyset), dùng cho lệnh admin và job định kỳ để bù các thay đổi
+ *   không đi qua các service trên (ví dụ cập nhật trực tiếp trong DB)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductListingService {
+
+    private static final String REFRESH_SQL = "SELECT refresh_product_listing(CAST(ARRAY[:ids] AS BIGINT[]))";
+
+    private static final String NEXT_PRODUCT_IDS_SQL =
+            "SELECT id FROM products WHERE id > :afterId ORDER BY id LIMIT :limit";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Value("${app.store.listing.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    /**
+     * Tính lại các dòng listing của danh sách product
+     *
+     * @return Số dòng listing được ghi (product không còn ACTIVE bị xóa khỏi listing)
+     */
+    public int refresh(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return 0;
+        }
+        Integer upserted = jdbcTemplate.queryForObject(REFRESH_SQL,
+                new MapSqlParameterSource("ids", new ArrayList<>(productIds)), Integer.class);
+        return upserted != null ? upserted : 0;
+    }
+
+    /**
+     * Dựng lại toàn bộ product_listing, mỗi batch một câu lệnh (transaction) riêng
+     *
+     * @return Số dòng listing được ghi
+     */
+    public synchronized int rebuildAll() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(NEXT_PRODUCT_IDS_SQL, new MapSqlParameterSource()
+                    .addValue("afterId", afterId)
+                    .addValue("limit", rebuildBatchSize), Long.class);
+            if (ids.isEmpty()) {
+                break;
+            }
+            total += refresh(ids);
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < rebuildBatchSize) {
+                break;
+            }
+        }
+        log.info("Product listing rebuilt in {}ms: {} rows", System.currentTimeMillis() - start, total);
+        return total;
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        refreshQuietly(List.of(event.getProductId()));
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductListingChanged(ProductListingChangedEvent event) {
+        refreshQuietly(event.getProductIds());
+    }
+
+    private void refreshQuietly(Collection<Long> productIds) {
+        try {
+            refresh(productIds);
+        } catch (Exception e) {
+            // Job rebuild định kỳ sẽ sửa lại dòng bị lỡ
+            log.warn("Failed to refresh product listing for products {}: {}", productIds, e.getMessage());
+        }
+    }
+}
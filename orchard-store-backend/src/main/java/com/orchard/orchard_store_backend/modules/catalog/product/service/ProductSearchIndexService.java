@@ -0,0 +1,42 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Duy trì search document (products.search_text / search_vector).
+ *
+ * Cập nhật thường ngày do trigger trong DB đảm nhiệm (V22). Service này chỉ backfill các dòng
+ * chưa được index (dữ liệu có trước migration) theo từng batch nhỏ, mỗi batch một transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndexService {
+
+    private static final String BACKFILL_SQL = """
+        SELECT refresh_product_search(ARRAY(
+            SELECT id FROM products
+            WHERE search_vector IS NULL
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        ))
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Index một batch product chưa có search_vector.
+     *
+     * @return Số product đã index
+     */
+    @Transactional
+    public int backfillBatch(int batchSize) {
+        Integer updated = jdbcTemplate.queryForObject(BACKFILL_SQL, Integer.class, batchSize);
+        return updated != null ? updated : 0;
+    }
+}
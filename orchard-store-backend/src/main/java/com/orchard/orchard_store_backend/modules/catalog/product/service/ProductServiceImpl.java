@@ -13,13 +13,16 @@ import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductVari
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductImage;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductImageMapper;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductMapper;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductVariantMapper;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductImageRepository;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductListingRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -34,6 +37,7 @@ import java.util.Objects;
 public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
+    private final ProductListingRepository productListingRepository;
     private final BrandRepository brandRepository;
     private final ConcentrationRepository concentrationRepository;
     private final CategoryRepository categoryRepository;
@@ -42,11 +46,12 @@ public class ProductServiceImpl implements ProductService {
     private final ProductMapper productMapper;
     private final ProductVariantMapper productVariantMapper;
     private final ProductImageMapper productImageMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public Page<ProductDTO> getAllProducts(Pageable pageable) {
-        return productRepository.findAll(pageable)
-                .map(this::toDTO);
+        // Một câu SQL cho cả trang (brand, ảnh, khoảng giá) thay vì findByIdWithDetails cho từng dòng
+        return productListingRepository.findAll(pageable);
     }
 
     @Override
@@ -65,6 +70,7 @@ public class ProductServiceImpl implements ProductService {
         product.setBrand(brand);
 
         Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId(), ProductChangedEvent.ChangeType.UPSERTED));
         return toDTO(saved);
     }
 
@@ -83,6 +89,7 @@ public class ProductServiceImpl implements ProductService {
 
         persistVariants(saved, productDetailDTO.getVariants());
         persistImages(saved, productDetailDTO.getImages());
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId(), ProductChangedEvent.ChangeType.UPSERTED));
 
         return getProductDetailById(saved.getId());
     }
@@ -102,6 +109,7 @@ public class ProductServiceImpl implements ProductService {
         }
 
         Product updated = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(updated.getId(), ProductChangedEvent.ChangeType.UPSERTED));
         return toDTO(updated);
     }
 
@@ -111,6 +119,7 @@ public class ProductServiceImpl implements ProductService {
             throw new IllegalArgumentException("Product not found with id: " + id);
         }
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, ProductChangedEvent.ChangeType.DELETED));
     }
 
     private void persistVariants(Product product, List<ProductVariantDTO> variants) {
@@ -1,36 +1,37 @@
 package com.orchard.orchard_store_backend.modules.catalog.product.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDetailDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFilterDTO;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
-import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
 import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductMapper;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductListingRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductRepository;
-import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
-import com.orchard.orchard_store_backend.modules.catalog.product.specification.ProductSpecification;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantAttributeQueryRepository;
+import com.orchard.orchard_store_backend.modules.catalog.product.util.ProductSearchQueryBuilder;
+import com.orchard.orchard_store_backend.util.KeysetCursor;
+import com.orchard.orchard_store_backend.util.SqlSearchTerms;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service cho Public Product Store API.
  * 
  * Tập trung vào hiệu năng tìm kiếm với:
- * - JPA Specification cho filter cơ bản (Brand, Category, Price)
- * - Native Query JSONB cho filter Attributes
- * - Kết hợp cả hai nếu filter hỗn hợp
+ * - Một câu native SQL phân trang cho toàn bộ filter (Brand, Category, Price, JSONB Attributes)
+ * - Full-text (tsvector) + trigram cho tìm kiếm theo từ khóa
  */
 @Service
 @RequiredArgsConstructor
@@ -38,18 +39,50 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class ProductStoreService {
 
+    private static final String TEXT_SEARCH_WHERE = """
+        WHERE p.status = 'ACTIVE'
+          AND (
+              p.search_vector @@ to_tsquery('simple', f_unaccent(:tsQuery))
+              OR lower(f_unaccent(:term)) <% p.search_text
+          )
+          AND EXISTS (
+              SELECT 1 FROM product_variants pv
+              WHERE pv.product_id = p.id AND pv.status = 'ACTIVE'
+          )
+        """;
+
+    private static final String TEXT_SEARCH_PAGE_SQL = "SELECT " + ProductListingRepository.PAGE_COLUMNS + """
+        , ts_rank_cd(p.search_vector, to_tsquery('simple', f_unaccent(:tsQuery)))
+          + word_similarity(lower(f_unaccent(:term)), p.search_text) AS search_rank
+        FROM products p
+        """ + TEXT_SEARCH_WHERE + """
+        ORDER BY search_rank DESC, p.id DESC
+        LIMIT :limit OFFSET :offset
+        """;
+
+    private static final String TEXT_SEARCH_OUTER_ORDER_BY = "pg.search_rank DESC, pg.id DESC";
+
+    private static final String TEXT_SEARCH_COUNT_SQL = """
+        SELECT COUNT(*)
+        FROM products p
+        """ + TEXT_SEARCH_WHERE;
+
     private final ProductRepository productRepository;
-    private final ProductVariantRepository variantRepository;
+    private final ProductListingRepository productListingRepository;
     private final ProductMapper productMapper;
-    private final ObjectMapper objectMapper;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ProductVariantAttributeQueryRepository attributeQueries;
 
     /**
      * Tìm kiếm sản phẩm với bộ lọc mạnh mẽ.
      * 
      * Logic:
-     * 1. Nếu có filter Attributes -> Sử dụng Native Query JSONB
-     * 2. Nếu chỉ có filter cơ bản -> Sử dụng JPA Specification
-     * 3. Nếu có cả hai -> Kết hợp (Intersect ID list)
+     * 1. Build MỘT câu native SQL (ProductSearchQueryBuilder) gồm status, brand, category,
+     *    JSONB attributes (expression index / GIN index qua ProductVariantAttributeQueryRepository),
+     *    khoảng attribute số và khoảng giá -> Postgres làm filter + ORDER BY + LIMIT/OFFSET
+     *    (status ACTIVE: chạy trên bảng read model product_listing, xem ProductListingService)
+     * 2. COUNT(*) cùng WHERE clause (bỏ qua nếu trang đầu đã đủ biết tổng)
+     * 3. Brand name, ảnh, khoảng giá được lấy trong cùng câu lệnh (ProductListingRepository) -> không N+1
      * 
      * @param filter Filter parameters
      * @param pageable Pagination
@@ -58,191 +91,67 @@ public class ProductStoreService {
     public Page<ProductDTO> searchProducts(ProductFilterDTO filter, Pageable pageable) {
         log.debug("Searching products with filter: {}", filter);
 
-        // Case 1: Có filter Attributes -> Sử dụng Native Query JSONB
-        if (filter.getAttributes() != null && !filter.getAttributes().isEmpty()) {
-            return searchWithAttributes(filter, pageable);
-        }
-
-        // Case 2: Chỉ có filter cơ bản -> Sử dụng JPA Specification
-        return searchWithSpecification(filter, pageable);
-    }
-
-    /**
-     * Tìm kiếm với Attributes filter (sử dụng Native Query JSONB).
-     * 
-     * Strategy:
-     * 1. Tìm variants matching attributes bằng Native Query
-     * 2. Lấy product IDs từ variants
-     * 3. Nếu có filter cơ bản khác -> Kết hợp với Specification
-     * 4. Load products và map sang DTO
-     */
-    private Page<ProductDTO> searchWithAttributes(ProductFilterDTO filter, Pageable pageable) {
-        log.debug("Searching with attributes filter: {}", filter.getAttributes());
-
-        // 1. Build JSONB query string từ attributes
-        String attributesJson = buildAttributesJson(filter.getAttributes());
-        log.debug("Attributes JSON: {}", attributesJson);
-
-        // 2. Tìm variants matching attributes (Native Query với GIN index)
-        Page<ProductVariant> variants = variantRepository.findByMultipleAttributes(
-                attributesJson,
-                Pageable.unpaged() // Get all matching variants first
-        );
-
-        // 3. Extract product IDs từ variants
-        Set<Long> productIds = variants.getContent().stream()
-                .map(v -> v.getProduct().getId())
-                .collect(Collectors.toSet());
-
-        if (productIds.isEmpty()) {
-            return new PageImpl<>(Collections.emptyList(), pageable, 0);
-        }
-
-        // 4. Filter by price range nếu có
-        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
-            Set<Long> productIdsFromPrice = filterByPriceRange(filter.getMinPrice(), filter.getMaxPrice());
-            productIds.retainAll(productIdsFromPrice); // Intersect
-            if (productIds.isEmpty()) {
-                return new PageImpl<>(Collections.emptyList(), pageable, 0);
-            }
-        }
+        ProductSearchQueryBuilder query = ProductSearchQueryBuilder.from(filter, attributeQueries);
 
-        // 5. Nếu có filter cơ bản khác -> Kết hợp với Specification
-        if (hasBasicFilters(filter)) {
-            return searchWithCombinedFilters(filter, productIds, pageable);
+        if (query.supportsListing()) {
+            // Read model product_listing: filter + sort trên một bảng
+            List<ProductDTO> content = productListingRepository.findListingPage(
+                    query.selectListingPageSql(pageable),
+                    query.pagedParams(pageable)
+            );
+            return PageableExecutionUtils.getPage(content, pageable, () -> {
+                Long total = jdbcTemplate.queryForObject(query.listingCountSql(), query.params(), Long.class);
+                return total != null ? total : 0L;
+            });
         }
 
-        // 6. Load products by IDs và map sang DTO
-        List<Product> products = productRepository.findAllById(productIds);
-        
-        // Filter by status
-        products = products.stream()
-                .filter(p -> p.getStatus() == Product.Status.valueOf(filter.getStatus()))
-                .collect(Collectors.toList());
-
-        // Apply pagination manually
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), products.size());
-        List<Product> pagedProducts = start < products.size() 
-                ? products.subList(start, end) 
-                : Collections.emptyList();
-
-        return new PageImpl<>(
-                pagedProducts.stream()
-                        .map(productMapper::toDTO)
-                        .collect(Collectors.toList()),
-                pageable,
-                products.size()
+        List<ProductDTO> content = productListingRepository.findPage(
+                query.selectPageSql(pageable),
+                ProductSearchQueryBuilder.orderBy(pageable.getSort(), "pg"),
+                query.pagedParams(pageable)
         );
-    }
-
-    /**
-     * Tìm kiếm với Specification (filter cơ bản).
-     */
-    private Page<ProductDTO> searchWithSpecification(ProductFilterDTO filter, Pageable pageable) {
-        log.debug("Searching with specification filter");
-
-        // Build Specification
-        Specification<Product> spec = buildSpecification(filter);
 
-        // Query với Specification
-        Page<Product> products = productRepository.findAll(spec, pageable);
-
-        // Map sang DTO
-        return products.map(productMapper::toDTO);
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long total = jdbcTemplate.queryForObject(query.countSql(), query.params(), Long.class);
+            return total != null ? total : 0L;
+        });
     }
 
     /**
-     * Tìm kiếm với filter hỗn hợp (Attributes + Basic filters).
+     * Tìm kiếm sản phẩm với keyset (cursor) pagination - cùng filter với searchProducts.
      * 
-     * Strategy:
-     * 1. Filter products by IDs từ attributes query
-     * 2. Apply basic filters bằng Specification
-     * 3. Intersect results
-     */
-    private Page<ProductDTO> searchWithCombinedFilters(
-            ProductFilterDTO filter,
-            Set<Long> productIdsFromAttributes,
-            Pageable pageable
-    ) {
-        log.debug("Searching with combined filters (attributes + basic)");
-
-        // Build Specification cho basic filters
-        Specification<Product> spec = buildSpecification(filter);
-
-        // Add product IDs filter
-        spec = spec.and((root, query, cb) -> root.get("id").in(productIdsFromAttributes));
-
-        // Query
-        Page<Product> products = productRepository.findAll(spec, pageable);
-
-        return products.map(productMapper::toDTO);
-    }
-
-    /**
-     * Build JPA Specification từ filter.
-     */
-    private Specification<Product> buildSpecification(ProductFilterDTO filter) {
-        ProductSpecification.Builder builder = ProductSpecification.builder();
-
-        // Filter by Brand IDs - supports multiple brands with OR condition
-        if (filter.getBrandIds() != null && !filter.getBrandIds().isEmpty()) {
-            if (filter.getBrandIds().size() == 1) {
-                // Single brand: use brandId for backward compatibility
-                builder.brandId(filter.getBrandIds().get(0));
-            } else {
-                // Multiple brands: use brandIds for OR condition
-                builder.brandIds(filter.getBrandIds());
-            }
-        }
-
-        // Filter by Category
-        if (filter.getCategoryId() != null) {
-            builder.categoryId(filter.getCategoryId());
-        }
-
-        // Filter by Status
-        if (filter.getStatus() != null) {
-            builder.status(Product.Status.valueOf(filter.getStatus()));
-        } else {
-            builder.status(Product.Status.ACTIVE); // Default: only active products
-        }
-
-        // Filter by has active variants
-        builder.hasActiveVariants(true);
-
-        return builder.build();
-    }
-
-    /**
-     * Build JSONB query string từ attributes map.
+     * Không dùng OFFSET: trang sau seek theo (cột sort, id) của dòng cuối trang trước nên mọi trang
+     * đều nhanh như trang đầu. COUNT(*) chỉ chạy khi includeTotal = true.
      * 
-     * Format: {"color": {"value": "Red"}, "gender": {"value": "MALE"}}
+     * @param filter Filter parameters
+     * @param sort Sort (createdAt / name / id, mặc định createdAt DESC)
+     * @param cursor Cursor từ trang trước (null / rỗng = trang đầu)
+     * @param size Số sản phẩm mỗi trang
+     * @param includeTotal Có tính tổng số sản phẩm hay không
+     * @return CursorPage<ProductDTO>
      */
-    private String buildAttributesJson(Map<String, String> attributes) {
-        Map<String, Map<String, String>> jsonbStructure = new HashMap<>();
-        
-        for (Map.Entry<String, String> entry : attributes.entrySet()) {
-            Map<String, String> attributeValue = new HashMap<>();
-            attributeValue.put("value", entry.getValue());
-            jsonbStructure.put(entry.getKey(), attributeValue);
+    public CursorPage<ProductDTO> searchProductsKeyset(ProductFilterDTO filter, Sort sort, String cursor,
+                                                      int size, boolean includeTotal) {
+        log.debug("Keyset searching products with filter: {}", filter);
+
+        ProductSearchQueryBuilder query = ProductSearchQueryBuilder.from(filter, attributeQueries);
+        ProductSearchQueryBuilder.KeysetSort keysetSort = ProductSearchQueryBuilder.keysetSort(sort);
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor, keysetSort.key());
+        MapSqlParameterSource params = query.keysetParams(keysetSort, keysetCursor, size + 1);
+
+        List<ProductDTO> rows = query.supportsListing()
+                ? productListingRepository.findListingPage(query.selectListingKeysetPageSql(keysetSort, keysetCursor), params)
+                : productListingRepository.findPage(query.selectKeysetPageSql(keysetSort, keysetCursor),
+                        keysetSort.orderBy("pg"), params);
+
+        Long total = null;
+        if (includeTotal) {
+            String countSql = query.supportsListing() ? query.listingCountSql() : query.countSql();
+            total = jdbcTemplate.queryForObject(countSql, query.params(), Long.class);
         }
-
-        try {
-            return objectMapper.writeValueAsString(jsonbStructure);
-        } catch (Exception e) {
-            log.error("Error building attributes JSON", e);
-            throw new RuntimeException("Invalid attributes format", e);
-        }
-    }
-
-    /**
-     * Kiểm tra xem có filter cơ bản không (Brand, Category).
-     * Note: Price filter được xử lý riêng ở variant level.
-     */
-    private boolean hasBasicFilters(ProductFilterDTO filter) {
-        return (filter.getBrandIds() != null && !filter.getBrandIds().isEmpty())
-                || filter.getCategoryId() != null;
+        return CursorPage.of(rows, size,
+                product -> KeysetCursor.of(keysetSort.key(), keysetSort.valueOf(product), product.getId()),
+                total);
     }
 
     /**
@@ -262,7 +171,12 @@ public class ProductStoreService {
     }
 
     /**
-     * Full-text search theo tên sản phẩm.
+     * Full-text search sản phẩm (tên, brand, display value của attributes).
+     * 
+     * - search_vector @@ prefix tsquery ("cha" khớp "chanel"), dùng GIN index
+     * - Hoặc word similarity trigram trên search_text (chịu lỗi gõ sai: "chanell" khớp "chanel")
+     * - Không phân biệt dấu (unaccent) và hoa thường
+     * - Sắp xếp theo độ liên quan (ts_rank_cd + word_similarity), sort của pageable bị bỏ qua
      * 
      * @param keyword Từ khóa tìm kiếm
      * @param pageable Pagination
@@ -271,57 +185,26 @@ public class ProductStoreService {
     public Page<ProductDTO> searchProductsByName(String keyword, Pageable pageable) {
         log.debug("Full-text search with keyword: {}", keyword);
 
-        // Build Specification với LIKE query
-        Specification<Product> spec = (root, query, cb) -> {
-            if (keyword == null || keyword.trim().isEmpty()) {
-                return cb.conjunction(); // No filter
-            }
-
-            String searchPattern = "%" + keyword.toLowerCase() + "%";
-            return cb.and(
-                    cb.equal(root.get("status"), Product.Status.ACTIVE),
-                    cb.like(cb.lower(root.get("name")), searchPattern)
-            );
-        };
+        String term = keyword == null ? "" : keyword.trim();
+        String tsQuery = SqlSearchTerms.prefixTsQuery(term);
+        if (tsQuery.isEmpty()) {
+            return Page.empty(pageable);
+        }
 
-        // Add has active variants filter
-        spec = spec.and(ProductSpecification.builder()
-                .hasActiveVariants(true)
-                .build());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("tsQuery", tsQuery)
+                .addValue("term", term);
 
-        Page<Product> products = productRepository.findAll(spec, pageable);
+        MapSqlParameterSource pagedParams = new MapSqlParameterSource(params.getValues())
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
 
-        return products.map(productMapper::toDTO);
-    }
+        List<ProductDTO> content = productListingRepository.findPage(
+                TEXT_SEARCH_PAGE_SQL, TEXT_SEARCH_OUTER_ORDER_BY, pagedParams);
 
-    /**
-     * Filter by price range (helper method).
-     * 
-     * Note: Price filter được áp dụng ở variant level, không phải product level.
-     * Cần filter variants trước, sau đó lấy products.
-     */
-    private Set<Long> filterByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        // Query variants trong price range
-        List<ProductVariant> variants = variantRepository.findAll().stream()
-                .filter(v -> v.getStatus() == ProductVariant.Status.ACTIVE)
-                .filter(v -> {
-                    BigDecimal price = v.getSalePrice() != null && v.getSalePrice().compareTo(BigDecimal.ZERO) > 0
-                            ? v.getSalePrice()
-                            : v.getPrice();
-                    
-                    if (minPrice != null && price.compareTo(minPrice) < 0) {
-                        return false;
-                    }
-                    if (maxPrice != null && price.compareTo(maxPrice) > 0) {
-                        return false;
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
-
-        return variants.stream()
-                .map(v -> v.getProduct().getId())
-                .collect(Collectors.toSet());
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long total = jdbcTemplate.queryForObject(TEXT_SEARCH_COUNT_SQL, params, Long.class);
+            return total != null ? total : 0L;
+        });
     }
 }
-
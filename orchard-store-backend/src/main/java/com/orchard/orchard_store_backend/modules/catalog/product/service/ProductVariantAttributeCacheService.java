@@ -1,5 +1,7 @@
 package com.orchard.orchard_store_backend.modules.catalog.product.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.AttributeValue;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.ProductAttribute;
 import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.ProductAttributeValue;
@@ -8,16 +10,25 @@ import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductV
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service to sync product attributes from EAV model to JSONB cached_attributes column
  * for optimized filtering and searching.
+ *
+ * Đồng bộ toàn catalog chạy theo chunk (syncChunk): mỗi chunk prefetch attribute values của
+ * cả chunk trong 2 query (variant scope + product scope) và ghi cached_attributes bằng JDBC batch.
+ * Tiến độ / resume do AttributeCacheSyncJobService quản lý.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,8 +36,23 @@ import java.util.Map;
 @Transactional
 public class ProductVariantAttributeCacheService {
 
+    private static final String NEXT_CHUNK_SQL =
+            "SELECT id, product_id FROM product_variants WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * Chỉ ghi khi JSON thay đổi -> không sinh dead tuple / không kích hoạt trigger search cho dòng không đổi
+     */
+    private static final String UPDATE_CACHED_ATTRIBUTES_SQL = """
+        UPDATE product_variants
+        SET cached_attributes = CAST(? AS jsonb)
+        WHERE id = ?
+          AND cached_attributes IS DISTINCT FROM CAST(? AS jsonb)
+        """;
+
     private final ProductVariantRepository variantRepository;
     private final ProductAttributeValueRepository attributeValueRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
 
     /**
      * Sync attributes for a single variant from EAV to JSONB cache
@@ -59,85 +85,120 @@ public class ProductVariantAttributeCacheService {
     }
 
     /**
-     * Sync all variants (use with caution - can be slow for large datasets)
+     * Sync một chunk variant có id > afterVariantId (keyset), mỗi lần gọi là một transaction.
+     *
+     * @return Số variant đã xử lý / đã thay đổi và id variant cuối cùng của chunk
      */
-    public void syncAllVariants() {
-        List<ProductVariant> allVariants = variantRepository.findAll();
-        allVariants.forEach(variant -> {
-            Map<String, Object> cachedAttributes = buildCachedAttributes(variant);
-            variant.setCachedAttributes(cachedAttributes);
-        });
-        variantRepository.saveAll(allVariants);
-        log.info("Synced attributes for {} variants", allVariants.size());
+    public ChunkResult syncChunk(long afterVariantId, int chunkSize) {
+        List<long[]> variants = jdbcTemplate.query(NEXT_CHUNK_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong("id"), rs.getLong("product_id")},
+                afterVariantId, chunkSize);
+        if (variants.isEmpty()) {
+            return new ChunkResult(0, 0, afterVariantId);
+        }
+
+        Set<Long> variantIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (long[] variant : variants) {
+            variantIds.add(variant[0]);
+            productIds.add(variant[1]);
+        }
+
+        Map<Long, List<ProductAttributeValue>> variantAttributes = attributeValueRepository
+                .findWithAttributeByProductVariantIdIn(variantIds).stream()
+                .collect(Collectors.groupingBy(pav -> pav.getProductVariant().getId()));
+        Map<Long, List<ProductAttributeValue>> productAttributes = attributeValueRepository
+                .findWithAttributeByProductIdInAndScope(productIds, ProductAttributeValue.Scope.PRODUCT).stream()
+                .collect(Collectors.groupingBy(pav -> pav.getProduct().getId()));
+
+        List<Object[]> batchArgs = new ArrayList<>(variants.size());
+        for (long[] variant : variants) {
+            Map<String, Object> cachedAttributes = mergeCachedAttributes(
+                    variantAttributes.getOrDefault(variant[0], List.of()),
+                    productAttributes.getOrDefault(variant[1], List.of()));
+            String json = toJson(cachedAttributes);
+            batchArgs.add(new Object[]{json, variant[0], json});
+        }
+
+        int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_CACHED_ATTRIBUTES_SQL, batchArgs);
+        int updated = 0;
+        for (int count : updateCounts) {
+            if (count > 0) {
+                updated += count;
+            }
+        }
+        return new ChunkResult(variants.size(), updated, variants.get(variants.size() - 1)[0]);
     }
 
     /**
      * Build cached attributes map from EAV model
      */
     private Map<String, Object> buildCachedAttributes(ProductVariant variant) {
-        Map<String, Object> cachedAttributes = new HashMap<>();
-
         // Get variant-specific attributes
         List<ProductAttributeValue> variantAttributes = attributeValueRepository
                 .findByProductVariantId(variant.getId());
 
-        for (ProductAttributeValue pav : variantAttributes) {
-            ProductAttribute attribute = pav.getAttribute();
-            AttributeValue attributeValue = pav.getAttributeValue();
-
-            Map<String, Object> attrData = new HashMap<>();
-            attrData.put("type", attribute.getAttributeType().name());
-            attrData.put("dataType", attribute.getDataType().name());
-
-            if (attributeValue != null) {
-                attrData.put("value", attributeValue.getValue());
-                attrData.put("display", attributeValue.getDisplayValue());
-            } else if (pav.getCustomValue() != null) {
-                attrData.put("value", pav.getCustomValue());
-                attrData.put("display", pav.getCustomValue());
-            }
+        // Get product-level attributes (if variant doesn't have variant-specific override)
+        List<ProductAttributeValue> productAttributes = variant.getProduct() != null
+                ? attributeValueRepository.findByProductIdAndScope(variant.getProduct().getId(), ProductAttributeValue.Scope.PRODUCT)
+                : List.of();
 
-            if (pav.getNumericValue() != null) {
-                attrData.put("numericValue", pav.getNumericValue());
-            }
+        return mergeCachedAttributes(variantAttributes, productAttributes);
+    }
 
-            cachedAttributes.put(attribute.getAttributeKey(), attrData);
+    /**
+     * Gộp attribute của variant và attribute cấp product (variant được ưu tiên)
+     */
+    private Map<String, Object> mergeCachedAttributes(List<ProductAttributeValue> variantAttributes,
+                                                      List<ProductAttributeValue> productAttributes) {
+        Map<String, Object> cachedAttributes = new HashMap<>();
+
+        for (ProductAttributeValue pav : variantAttributes) {
+            cachedAttributes.put(pav.getAttribute().getAttributeKey(), toAttributeData(pav));
         }
 
-        // Get product-level attributes (if variant doesn't have variant-specific override)
-        if (variant.getProduct() != null) {
-            List<ProductAttributeValue> productAttributes = attributeValueRepository
-                    .findByProductIdAndScope(variant.getProduct().getId(), ProductAttributeValue.Scope.PRODUCT);
-
-            for (ProductAttributeValue pav : productAttributes) {
-                ProductAttribute attribute = pav.getAttribute();
-                
-                // Only add if variant doesn't already have this attribute
-                if (!cachedAttributes.containsKey(attribute.getAttributeKey())) {
-                    AttributeValue attributeValue = pav.getAttributeValue();
-
-                    Map<String, Object> attrData = new HashMap<>();
-                    attrData.put("type", attribute.getAttributeType().name());
-                    attrData.put("dataType", attribute.getDataType().name());
-
-                    if (attributeValue != null) {
-                        attrData.put("value", attributeValue.getValue());
-                        attrData.put("display", attributeValue.getDisplayValue());
-                    } else if (pav.getCustomValue() != null) {
-                        attrData.put("value", pav.getCustomValue());
-                        attrData.put("display", pav.getCustomValue());
-                    }
-
-                    if (pav.getNumericValue() != null) {
-                        attrData.put("numericValue", pav.getNumericValue());
-                    }
-
-                    cachedAttributes.put(attribute.getAttributeKey(), attrData);
-                }
-            }
+        for (ProductAttributeValue pav : productAttributes) {
+            // Only add if variant doesn't already have this attribute
+            cachedAttributes.putIfAbsent(pav.getAttribute().getAttributeKey(), toAttributeData(pav));
         }
 
         return cachedAttributes;
     }
-}
 
+    private Map<String, Object> toAttributeData(ProductAttributeValue pav) {
+        ProductAttribute attribute = pav.getAttribute();
+        AttributeValue attributeValue = pav.getAttributeValue();
+
+        Map<String, Object> attrData = new HashMap<>();
+        attrData.put("type", attribute.getAttributeType().name());
+        attrData.put("dataType", attribute.getDataType().name());
+
+        if (attributeValue != null) {
+            attrData.put("value", attributeValue.getValue());
+            attrData.put("display", attributeValue.getDisplayValue());
+        } else if (pav.getCustomValue() != null) {
+            attrData.put("value", pav.getCustomValue());
+            attrData.put("display", pav.getCustomValue());
+        }
+
+        if (pav.getNumericValue() != null) {
+            attrData.put("numericValue", pav.getNumericValue());
+        }
+
+        return attrData;
+    }
+
+    private String toJson(Map<String, Object> cachedAttributes) {
+        try {
+            return objectMapper.writeValueAsString(cachedAttributes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize cached attributes", e);
+        }
+    }
+
+    /**
+     * Kết quả sync một chunk
+     */
+    public record ChunkResult(int processed, int updated, long lastVariantId) {
+    }
+}
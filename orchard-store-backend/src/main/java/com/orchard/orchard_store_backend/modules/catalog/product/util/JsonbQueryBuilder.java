@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,43 @@ public class JsonbQueryBuilder {
         return toJsonString(query);
     }
 
+    /**
+     * Build JSON string for product_listing.attributes query (AND condition)
+     * Example: {"gender": ["MALE"], "fragrance_group": ["woody"]}
+     */
+    public static String buildListingAttributesQuery(Map<String, String> attributes) {
+        Map<String, Object> query = new HashMap<>();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            query.put(entry.getKey(), List.of(entry.getValue()));
+        }
+        return toJsonString(query);
+    }
+
+    /**
+     * Build one JSON string per value of an attribute (OR group)
+     * Example: color IN (Red, Blue) -> [{"color": {"value": "Red"}}, {"color": {"value": "Blue"}}]
+     * Dùng với cached_attributes @> ANY(ARRAY[...])
+     */
+    public static List<String> buildAttributeAlternatives(String attributeKey, List<String> values) {
+        List<String> alternatives = new ArrayList<>(values.size());
+        for (String value : values) {
+            alternatives.add(buildAttributeQuery(attributeKey, value));
+        }
+        return alternatives;
+    }
+
+    /**
+     * Build one product_listing.attributes JSON string per value of an attribute (OR group)
+     * Example: color IN (Red, Blue) -> [{"color": ["Red"]}, {"color": ["Blue"]}]
+     */
+    public static List<String> buildListingAttributeAlternatives(String attributeKey, List<String> values) {
+        List<String> alternatives = new ArrayList<>(values.size());
+        for (String value : values) {
+            alternatives.add(toJsonString(Map.of(attributeKey, List.of(value))));
+        }
+        return alternatives;
+    }
+
     /**
      * Build JSON string for attribute with display value
      */
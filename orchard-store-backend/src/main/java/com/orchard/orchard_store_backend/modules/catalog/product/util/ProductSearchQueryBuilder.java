@@ -0,0 +1,448 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.util;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductFilterDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductListingRepository;
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantAttributeQueryRepository;
+import com.orchard.orchard_store_backend.util.KeysetCursor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Build native SQL cho tìm kiếm sản phẩm storefront.
+ *
+ * Toàn bộ filter được đẩy xuống Postgres trong MỘT câu lệnh:
+ * - Product level: status, brand
+ * - Variant level (EXISTS trên cùng một variant ACTIVE): category, JSONB attributes, khoảng giá
+ *
+ * Điều kiện attribute lấy từ ProductVariantAttributeQueryRepository để planner dùng expression index của V25:
+ * - Attribute có index idx_pv_attr_val_*: ->> 'value' IN (...) với key literal
+ * - Attribute chưa có index: @> / @> ANY (GIN index trên cached_attributes)
+ * - Khoảng số (attributeRanges): CAST(->> 'numericValue' AS numeric) >= / <= (index idx_pv_attr_num_*)
+ *
+ * Giá hiệu lực của variant = sale_price nếu > 0, ngược lại là price.
+ *
+ * Usage:
+ * ProductSearchQueryBuilder query = ProductSearchQueryBuilder.from(filter, attributeQueries);
+ * listingRepository.findPage(query.selectPageSql(pageable), ProductSearchQueryBuilder.orderBy(pageable.getSort(), "pg"), query.pagedParams(pageable));
+ * jdbc.queryForObject(query.countSql(), query.params(), Long.class);
+ *
+ * Với status ACTIVE (storefront) có thể đọc thẳng từ bảng read model product_listing
+ * (selectListingPageSql / listingCountSql): filter variant được chuyển thành điều kiện trên cột đã gộp
+ * (category_ids, attributes, min/max price). Khi có từ 2 điều kiện variant trở lên, EXISTS trên
+ * product_variants vẫn được giữ để đảm bảo các điều kiện khớp trên CÙNG một variant; product_listing không có
+ * giá trị số của attribute nên khoảng attribute luôn đi qua EXISTS.
+ *
+ * facetConditions(): cùng các filter nhưng tách theo nhóm facet (brand, category, price, attr:<key>) để facet
+ * tính được từng nhóm với filter của chính nhóm đó bị bỏ ra (disjunctive faceting).
+ */
+public final class ProductSearchQueryBuilder {
+
+    /**
+     * Giá hiệu lực của variant pv
+     */
+    public static final String EFFECTIVE_PRICE_SQL =
+            "CASE WHEN pv.sale_price IS NOT NULL AND pv.sale_price > 0 THEN pv.sale_price ELSE pv.price END";
+
+    /**
+     * Các field được phép sort (property -> column) để không ghép chuỗi tùy ý từ request vào SQL
+     */
+    private static final Map<String, String> SORTABLE_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at",
+            "publishedAt", "published_at"
+    );
+
+    /**
+     * Các field dùng được cho keyset pagination (cột NOT NULL, property -> column)
+     */
+    private static final Map<String, String> KEYSET_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "createdAt", "created_at"
+    );
+
+    private final List<String> productConditions = new ArrayList<>();
+    private final List<String> variantConditions = new ArrayList<>();
+    private final List<String> listingConditions = new ArrayList<>();
+    private final Map<String, String> facetConditions = new LinkedHashMap<>();
+    private final MapSqlParameterSource params = new MapSqlParameterSource();
+    private ProductVariantAttributeQueryRepository attributeQueries;
+    private int variantPredicateCount;
+    private boolean listingNeedsVariantExists;
+    private boolean listingSupported;
+
+    private ProductSearchQueryBuilder() {
+    }
+
+    public static ProductSearchQueryBuilder from(ProductFilterDTO filter,
+                                                 ProductVariantAttributeQueryRepository attributeQueries) {
+        ProductSearchQueryBuilder builder = new ProductSearchQueryBuilder();
+        builder.attributeQueries = attributeQueries;
+
+        builder.productConditions.add("p.status = :status");
+        String status = filter.getStatus() != null ? filter.getStatus() : "ACTIVE";
+        builder.params.addValue("status", status);
+        // product_listing chỉ chứa product ACTIVE
+        builder.listingSupported = "ACTIVE".equals(status);
+
+        if (filter.getBrandIds() != null && !filter.getBrandIds().isEmpty()) {
+            builder.productConditions.add("p.brand_id IN (:brandIds)");
+            builder.listingConditions.add("p.brand_id IN (:brandIds)");
+            builder.facetConditions.put("brand", "p.brand_id IN (:brandIds)");
+            builder.params.addValue("brandIds", filter.getBrandIds());
+        }
+
+        builder.variantConditions.add("pv.product_id = p.id");
+        builder.variantConditions.add("pv.status = 'ACTIVE'");
+
+        if (filter.getCategoryId() != null) {
+            builder.variantConditions.add("pv.category_id = :categoryId");
+            builder.listingConditions.add("p.category_ids @> ARRAY[CAST(:categoryId AS BIGINT)]");
+            builder.facetConditions.put("category", "pv.category_id = :categoryId");
+            builder.variantPredicateCount++;
+            builder.params.addValue("categoryId", filter.getCategoryId());
+        }
+
+        if (filter.getAttributes() != null && !filter.getAttributes().isEmpty()) {
+            builder.addAttributeConditions(filter.getAttributes());
+        }
+
+        if (filter.getAttributeRanges() != null && !filter.getAttributeRanges().isEmpty()) {
+            builder.addAttributeRangeConditions(filter.getAttributeRanges());
+        }
+
+        List<String> priceConditions = new ArrayList<>();
+        if (filter.getMinPrice() != null) {
+            builder.variantConditions.add(EFFECTIVE_PRICE_SQL + " >= :minPrice");
+            priceConditions.add(EFFECTIVE_PRICE_SQL + " >= :minPrice");
+            builder.listingConditions.add("p.max_price >= :minPrice");
+            builder.variantPredicateCount++;
+            builder.params.addValue("minPrice", filter.getMinPrice());
+        }
+
+        if (filter.getMaxPrice() != null) {
+            builder.variantConditions.add(EFFECTIVE_PRICE_SQL + " <= :maxPrice");
+            priceConditions.add(EFFECTIVE_PRICE_SQL + " <= :maxPrice");
+            builder.listingConditions.add("p.min_price <= :maxPrice");
+            builder.variantPredicateCount++;
+            builder.params.addValue("maxPrice", filter.getMaxPrice());
+        }
+        if (!priceConditions.isEmpty()) {
+            builder.facetConditions.put("price", String.join(" AND ", priceConditions));
+        }
+
+        return builder;
+    }
+
+    /**
+     * Mỗi attribute là một nhóm OR, các nhóm AND với nhau:
+     * - Attribute có index idx_pv_attr_val_*: ->> 'value' IN (...) (btree expression index)
+     * - Nhóm một giá trị: gộp chung vào một @> (như trước)
+     * - Nhóm nhiều giá trị: @> ANY(ARRAY[...]) - GIN index vẫn dùng được (bitmap scan cho từng phần tử)
+     * Điều kiện trên product_listing không đổi (p.attributes @>).
+     */
+    private void addAttributeConditions(Map<String, List<String>> attributes) {
+        Map<String, String> singleValued = new TreeMap<>();
+        int group = 0;
+        for (Map.Entry<String, List<String>> entry : new TreeMap<>(attributes).entrySet()) {
+            List<String> values = entry.getValue() == null ? List.of() : entry.getValue().stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toList();
+            if (values.isEmpty()) {
+                continue;
+            }
+            variantPredicateCount++;
+            if (attributeQueries.hasValueIndex(entry.getKey())) {
+                String condition = attributeQueries.valueInCondition(entry.getKey(), values, "attrValues" + group, params);
+                variantConditions.add(condition);
+                facetConditions.put("attr:" + entry.getKey(), condition);
+                listingConditions.add("p.attributes @> ANY(" + jsonbArray("listingAttrGroup" + group,
+                        JsonbQueryBuilder.buildListingAttributeAlternatives(entry.getKey(), values)) + ")");
+                group++;
+                continue;
+            }
+            facetConditions.put("attr:" + entry.getKey(), "pv.cached_attributes @> ANY(" + jsonbArray(
+                    "facetAttr" + facetConditions.size(),
+                    JsonbQueryBuilder.buildAttributeAlternatives(entry.getKey(), values)) + ")");
+            if (values.size() == 1) {
+                singleValued.put(entry.getKey(), values.get(0));
+                continue;
+            }
+            variantConditions.add("pv.cached_attributes @> ANY(" + jsonbArray("attrGroup" + group,
+                    JsonbQueryBuilder.buildAttributeAlternatives(entry.getKey(), values)) + ")");
+            listingConditions.add("p.attributes @> ANY(" + jsonbArray("listingAttrGroup" + group,
+                    JsonbQueryBuilder.buildListingAttributeAlternatives(entry.getKey(), values)) + ")");
+            group++;
+        }
+
+        if (!singleValued.isEmpty()) {
+            variantConditions.add("pv.cached_attributes @> CAST(:attributesJson AS jsonb)");
+            params.addValue("attributesJson", JsonbQueryBuilder.buildMultipleAttributesQuery(singleValued));
+            listingConditions.add("p.attributes @> CAST(:listingAttributesJson AS jsonb)");
+            params.addValue("listingAttributesJson", JsonbQueryBuilder.buildListingAttributesQuery(singleValued));
+        }
+    }
+
+    /**
+     * Khoảng số theo attribute (AND với nhau và với nhóm giá trị của cùng attribute trong facet)
+     */
+    private void addAttributeRangeConditions(Map<String, ProductFilterDTO.AttributeRange> ranges) {
+        int index = 0;
+        for (Map.Entry<String, ProductFilterDTO.AttributeRange> entry : new TreeMap<>(ranges).entrySet()) {
+            ProductFilterDTO.AttributeRange range = entry.getValue();
+            if (range == null || (range.getMin() == null && range.getMax() == null)) {
+                continue;
+            }
+            String condition = attributeQueries.numericRangeCondition(
+                    entry.getKey(), range.getMin(), range.getMax(), "attrRange" + index, params);
+            variantConditions.add(condition);
+            facetConditions.merge("attr:" + entry.getKey(), condition, (values, bounds) -> values + " AND " + bounds);
+            variantPredicateCount++;
+            listingNeedsVariantExists = true;
+            index++;
+        }
+    }
+
+    /**
+     * ARRAY[CAST(:prefix_0 AS jsonb), ...] với mỗi phần tử là một bind parameter
+     */
+    private String jsonbArray(String paramPrefix, List<String> jsonValues) {
+        List<String> elements = new ArrayList<>(jsonValues.size());
+        for (int i = 0; i < jsonValues.size(); i++) {
+            String name = paramPrefix + "_" + i;
+            params.addValue(name, jsonValues.get(i));
+            elements.add("CAST(:" + name + " AS jsonb)");
+        }
+        return "ARRAY[" + String.join(", ", elements) + "]";
+    }
+
+    /**
+     * WHERE clause trên alias p (products)
+     */
+    public String whereClause() {
+        List<String> conditions = new ArrayList<>(productConditions);
+        conditions.add("EXISTS (SELECT 1 FROM product_variants pv WHERE "
+                + String.join(" AND ", variantConditions) + ")");
+        return "WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * WHERE clause trên alias p (product_listing), chuỗi rỗng nếu không có điều kiện
+     */
+    public String listingWhereClause() {
+        List<String> conditions = new ArrayList<>(listingConditions);
+        if (variantPredicateCount > 1 || listingNeedsVariantExists) {
+            conditions.add("EXISTS (SELECT 1 FROM product_variants pv WHERE "
+                    + String.join(" AND ", variantConditions) + ")");
+        }
+        return conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Filter có thể chạy trên product_listing hay không (chỉ status ACTIVE)
+     */
+    public boolean supportsListing() {
+        return listingSupported;
+    }
+
+    /**
+     * Điều kiện trên alias pv (product_variants), không gồm liên kết pv.product_id = p.id
+     */
+    public List<String> variantConditions() {
+        return variantConditions.subList(1, variantConditions.size());
+    }
+
+    /**
+     * Điều kiện trên alias p (products)
+     */
+    public List<String> productConditions() {
+        return List.copyOf(productConditions);
+    }
+
+    /**
+     * Điều kiện filter (alias p / pv) theo nhóm facet: "brand", "category", "price", "attr:<key>".
+     * Các nhóm AND với nhau và cùng status tương đương whereClause() trên từng variant.
+     */
+    public Map<String, String> facetConditions() {
+        return Collections.unmodifiableMap(facetConditions);
+    }
+
+    public MapSqlParameterSource params() {
+        return params;
+    }
+
+    /**
+     * Params kèm limit/offset cho selectPageSql
+     */
+    public MapSqlParameterSource pagedParams(Pageable pageable) {
+        MapSqlParameterSource paged = new MapSqlParameterSource(params.getValues());
+        paged.addValue("limit", pageable.getPageSize());
+        paged.addValue("offset", pageable.getOffset());
+        return paged;
+    }
+
+    /**
+     * Một trang products (các cột ProductListingRepository.PAGE_COLUMNS) đã filter + sort + limit/offset
+     */
+    public String selectPageSql(Pageable pageable) {
+        return "SELECT " + ProductListingRepository.PAGE_COLUMNS + " FROM products p " + whereClause()
+                + " ORDER BY " + orderBy(pageable.getSort(), "p")
+                + " LIMIT :limit OFFSET :offset";
+    }
+
+    public String countSql() {
+        return "SELECT COUNT(*) FROM products p " + whereClause();
+    }
+
+    /**
+     * Một trang product_listing (mọi cột) đã filter + sort + limit/offset
+     */
+    public String selectListingPageSql(Pageable pageable) {
+        return "SELECT p.* FROM product_listing p " + listingWhereClause()
+                + " ORDER BY " + orderBy(pageable.getSort(), "p")
+                + " LIMIT :limit OFFSET :offset";
+    }
+
+    public String listingCountSql() {
+        return "SELECT COUNT(*) FROM product_listing p " + listingWhereClause();
+    }
+
+    /**
+     * Một trang keyset trên products (các cột PAGE_COLUMNS): dòng sau cursor theo (cột sort, id), không OFFSET
+     */
+    public String selectKeysetPageSql(KeysetSort sort, KeysetCursor cursor) {
+        return "SELECT " + ProductListingRepository.PAGE_COLUMNS + " FROM products p "
+                + withSeek(whereClause(), sort, cursor)
+                + " ORDER BY " + sort.orderBy("p")
+                + " LIMIT :limit";
+    }
+
+    /**
+     * Một trang keyset trên product_listing (index (created_at DESC, id DESC) / (name, id))
+     */
+    public String selectListingKeysetPageSql(KeysetSort sort, KeysetCursor cursor) {
+        return "SELECT p.* FROM product_listing p "
+                + withSeek(listingWhereClause(), sort, cursor)
+                + " ORDER BY " + sort.orderBy("p")
+                + " LIMIT :limit";
+    }
+
+    /**
+     * Params kèm giá trị cursor và limit cho các câu keyset
+     */
+    public MapSqlParameterSource keysetParams(KeysetSort sort, KeysetCursor cursor, int limit) {
+        MapSqlParameterSource keysetParams = new MapSqlParameterSource(params.getValues());
+        keysetParams.addValue("limit", limit);
+        if (cursor != null) {
+            Object cursorValue = sort.parseValue(cursor);
+            if (cursorValue != null) {
+                keysetParams.addValue("cursorValue", cursorValue);
+            }
+            keysetParams.addValue("cursorId", cursor.id());
+        }
+        return keysetParams;
+    }
+
+    private String withSeek(String where, KeysetSort sort, KeysetCursor cursor) {
+        if (cursor == null) {
+            return where;
+        }
+        String seek;
+        if (cursor.value() == null) {
+            // Dòng cuối có cột sort null: null đứng sau cùng khi ASC, đứng đầu khi DESC (mặc định Postgres)
+            seek = sort.ascending()
+                    ? "(p." + sort.column() + " IS NULL AND p.id > :cursorId)"
+                    : "(p." + sort.column() + " IS NOT NULL OR p.id < :cursorId)";
+        } else {
+            seek = "(p." + sort.column() + ", p.id) " + (sort.ascending() ? ">" : "<") + " (:cursorValue, :cursorId)";
+        }
+        return where.isEmpty() ? "WHERE " + seek : where + " AND " + seek;
+    }
+
+    /**
+     * Sort cho keyset: field đầu tiên của sort thuộc KEYSET_COLUMNS (mặc định createdAt DESC), id cùng chiều
+     */
+    public static KeysetSort keysetSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            String column = KEYSET_COLUMNS.get(order.getProperty());
+            if (column != null) {
+                return new KeysetSort(order.getProperty(), column, order.isAscending());
+            }
+        }
+        return new KeysetSort("createdAt", "created_at", false);
+    }
+
+    /**
+     * Một cột sort + id (tie-breaker, cùng chiều) cho keyset pagination
+     */
+    public record KeysetSort(String property, String column, boolean ascending) {
+
+        /**
+         * Tên kiểu sort ghi vào cursor
+         */
+        public String key() {
+            return property + "," + (ascending ? "asc" : "desc");
+        }
+
+        public String orderBy(String alias) {
+            String direction = ascending ? " ASC" : " DESC";
+            return alias + "." + column + direction + ", " + alias + ".id" + direction;
+        }
+
+        /**
+         * Giá trị cột sort của một dòng (ghi vào cursor)
+         */
+        public Object valueOf(ProductDTO product) {
+            return switch (column) {
+                case "id" -> product.getId();
+                case "name" -> product.getName();
+                default -> product.getCreatedAt();
+            };
+        }
+
+        /**
+         * Giá trị cột sort trong cursor theo kiểu cột (null nếu dòng cuối có cột sort null)
+         *
+         * @throws IllegalArgumentException nếu giá trị không khớp kiểu cột
+         */
+        private Object parseValue(KeysetCursor cursor) {
+            return switch (column) {
+                case "id" -> cursor.longValue();
+                case "name" -> cursor.value();
+                default -> cursor.timestampValue();
+            };
+        }
+    }
+
+    /**
+     * ORDER BY theo sort của pageable trên alias cho trước (whitelist SORTABLE_COLUMNS)
+     */
+    public static String orderBy(Sort sort, String alias) {
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = SORTABLE_COLUMNS.get(order.getProperty());
+            if (column != null) {
+                orders.add(alias + "." + column + (order.isAscending() ? " ASC" : " DESC"));
+            }
+        }
+        if (orders.isEmpty()) {
+            orders.add(alias + ".created_at DESC");
+        }
+        // Tie-breaker để phân trang ổn định
+        orders.add(alias + ".id DESC");
+        return String.join(", ", orders);
+    }
+}
@@ -1,5 +1,6 @@
 package com.orchard.orchard_store_backend.modules.catalog.review.controller;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.catalog.review.dto.ReviewDTO;
 import com.orchard.orchard_store_backend.modules.catalog.review.service.ReviewService;
 import jakarta.validation.Valid;
@@ -51,6 +52,22 @@ public class ReviewController {
         return ResponseEntity.ok(reviews);
     }
 
+    /**
+     * Lấy reviews theo product ID với keyset (cursor) pagination (public)
+     * Trang tiếp theo: gửi lại nextCursor của trang trước; includeTotal=true để đếm tổng số review
+     */
+    @GetMapping("/product/{productId}/cursor")
+    public ResponseEntity<CursorPage<ReviewDTO>> getReviewsByProductCursor(
+            @PathVariable Long productId,
+            @RequestParam(required = false, defaultValue = "APPROVED") String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPage<ReviewDTO> reviews = reviewService.getReviewsByProductCursor(
+                productId, status, cursor, Math.max(1, Math.min(size, 100)), includeTotal);
+        return ResponseEntity.ok(reviews);
+    }
+
     /**
      * Lấy tất cả reviews theo product ID
      */
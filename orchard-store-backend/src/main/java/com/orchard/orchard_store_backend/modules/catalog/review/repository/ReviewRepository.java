@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,31 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     List<Review> findByProductIdAndStatusOrderByCreatedAtDesc(Long productId, Review.Status status);
 
+    // Keyset pagination (createdAt DESC, id DESC): trang đầu / các trang sau cursor, không COUNT
+    @Query("SELECT r FROM Review r WHERE r.product.id = :productId AND r.status = :status " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Review> findKeysetFirstPage(@Param("productId") Long productId,
+                                     @Param("status") Review.Status status,
+                                     Pageable pageable);
+
+    @Query("SELECT r FROM Review r WHERE r.product.id = :productId AND r.status = :status " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Review> findKeysetPageAfter(@Param("productId") Long productId,
+                                     @Param("status") Review.Status status,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    // Cursor dừng ở review createdAt null (đứng đầu khi DESC): tiếp các review null id nhỏ hơn, rồi mọi review có createdAt
+    @Query("SELECT r FROM Review r WHERE r.product.id = :productId AND r.status = :status " +
+           "AND (r.createdAt IS NOT NULL OR r.id < :id) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Review> findKeysetPageAfterNullCreatedAt(@Param("productId") Long productId,
+                                                  @Param("status") Review.Status status,
+                                                  @Param("id") Long id,
+                                                  Pageable pageable);
+
     // Tìm reviews theo user ID
     Page<Review> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
 
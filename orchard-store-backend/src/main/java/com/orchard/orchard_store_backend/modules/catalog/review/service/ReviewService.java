@@ -1,5 +1,6 @@
 package com.orchard.orchard_store_backend.modules.catalog.review.service;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.catalog.review.dto.ReviewDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -23,6 +24,11 @@ public interface ReviewService {
      */
     Page<ReviewDTO> getReviewsByProduct(Long productId, String status, Pageable pageable);
 
+    /**
+     * Lấy reviews theo product ID với keyset (cursor) pagination, mới nhất trước
+     */
+    CursorPage<ReviewDTO> getReviewsByProductCursor(Long productId, String status, String cursor, int size, boolean includeTotal);
+
     /**
      * Lấy tất cả reviews theo product ID
      */
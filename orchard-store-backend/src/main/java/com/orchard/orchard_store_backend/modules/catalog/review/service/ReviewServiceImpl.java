@@ -1,8 +1,10 @@
 package com.orchard.orchard_store_backend.modules.catalog.review.service;
 
+import com.orchard.orchard_store_backend.dto.CursorPage;
 import com.orchard.orchard_store_backend.modules.auth.entity.User;
 import com.orchard.orchard_store_backend.modules.auth.repository.UserRepository;
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductListingChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductRepository;
 import com.orchard.orchard_store_backend.modules.catalog.review.dto.ReviewDTO;
 import com.orchard.orchard_store_backend.modules.catalog.review.entity.Review;
@@ -12,13 +14,17 @@ import com.orchard.orchard_store_backend.modules.catalog.review.mapper.ReviewIma
 import com.orchard.orchard_store_backend.modules.catalog.review.mapper.ReviewMapper;
 import com.orchard.orchard_store_backend.modules.catalog.review.repository.ReviewHelpfulRepository;
 import com.orchard.orchard_store_backend.modules.catalog.review.repository.ReviewRepository;
+import com.orchard.orchard_store_backend.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,12 +33,15 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReviewServiceImpl implements ReviewService {
 
+    private static final String REVIEW_KEYSET_SORT = "createdAt,desc";
+
     private final ReviewRepository reviewRepository;
     private final ReviewHelpfulRepository reviewHelpfulRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final ReviewMapper reviewMapper;
     private final ReviewImageMapper reviewImageMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -79,6 +88,35 @@ public class ReviewServiceImpl implements ReviewService {
                 .map(reviewMapper::toDTO);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ReviewDTO> getReviewsByProductCursor(Long productId, String status, String cursor,
+                                                           int size, boolean includeTotal) {
+        Review.Status reviewStatus = (status != null && !status.isEmpty()) 
+                ? Review.Status.valueOf(status.toUpperCase()) 
+                : Review.Status.APPROVED;
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor, REVIEW_KEYSET_SORT);
+        Pageable limit = PageRequest.of(0, size + 1);
+
+        LocalDateTime cursorCreatedAt = keysetCursor != null ? keysetCursor.timestampValue() : null;
+
+        List<Review> reviews;
+        if (keysetCursor == null) {
+            reviews = reviewRepository.findKeysetFirstPage(productId, reviewStatus, limit);
+        } else if (cursorCreatedAt == null) {
+            reviews = reviewRepository.findKeysetPageAfterNullCreatedAt(productId, reviewStatus, keysetCursor.id(), limit);
+        } else {
+            reviews = reviewRepository.findKeysetPageAfter(productId, reviewStatus,
+                    cursorCreatedAt, keysetCursor.id(), limit);
+        }
+
+        Long total = includeTotal ? reviewRepository.countByProductIdAndStatus(productId, reviewStatus) : null;
+        return CursorPage.of(reviews, size,
+                        review -> KeysetCursor.of(REVIEW_KEYSET_SORT, review.getCreatedAt(), review.getId()),
+                        total)
+                .map(reviewMapper::toDTO);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<ReviewDTO> getAllReviewsByProduct(Long productId, String status) {
@@ -269,7 +307,8 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     private void updateProductRating(Long productId) {
-        // Product base no longer stores aggregate rating; aggregation handled at variant or analytics layer.
+        // Aggregate rating nằm ở product_stats (trigger V7); chỉ cần làm mới dòng product_listing sau commit
+        eventPublisher.publishEvent(ProductListingChangedEvent.of(productId));
     }
 }
 
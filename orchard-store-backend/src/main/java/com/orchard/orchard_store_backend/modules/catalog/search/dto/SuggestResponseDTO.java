@@ -0,0 +1,28 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kết quả autocomplete, nhóm theo loại gợi ý
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestResponseDTO {
+
+    @Builder.Default
+    private List<SuggestionDTO> queries = new ArrayList<>();
+
+    @Builder.Default
+    private List<SuggestionDTO> products = new ArrayList<>();
+
+    @Builder.Default
+    private List<SuggestionDTO> brands = new ArrayList<>();
+}
@@ -0,0 +1,36 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một gợi ý autocomplete
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionDTO {
+
+    /**
+     * PRODUCT | BRAND | QUERY
+     */
+    private String type;
+
+    /**
+     * Text hiển thị
+     */
+    private String text;
+
+    /**
+     * Product ID / Brand ID (null với QUERY)
+     */
+    private Long id;
+
+    /**
+     * Slug để điều hướng (variant slug với PRODUCT, brand slug với BRAND)
+     */
+    private String slug;
+}
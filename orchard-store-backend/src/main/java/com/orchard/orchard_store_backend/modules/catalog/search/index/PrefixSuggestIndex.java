@@ -0,0 +1,242 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Trie in-memory cho autocomplete, mỗi node giữ sẵn top-K entry của cả subtree.
+ *
+ * - Lookup: đi theo prefix (O(độ dài prefix)) rồi trả về top-K đã tính sẵn -> không duyệt subtree
+ * - Key được chuẩn hóa (lowercase, bỏ dấu tiếng Việt), mỗi entry được index theo cả chuỗi và theo
+ *   đầu mỗi từ ("Bleu de Chanel" khớp "ble", "de c", "chan")
+ * - Bộ nhớ có giới hạn: số entry tối đa, độ dài key tối đa, số từ được index mỗi entry
+ *
+ * Thread-safety: ghi được serialize (synchronized), đọc không lock - children là ConcurrentHashMap
+ * và top-K là list immutable gán qua volatile.
+ *
+ * @param <T> Payload của entry (ví dụ DTO gợi ý)
+ */
+public class PrefixSuggestIndex<T> {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final int topK;
+    private final int maxEntries;
+    private final int maxKeyLength;
+    private final int maxTokensPerEntry;
+
+    private final Comparator<Entry<T>> entryOrder = Comparator
+            .<Entry<T>>comparingLong(e -> e.score).reversed()
+            .thenComparing(e -> e.id);
+
+    private final Node<T> root = new Node<>();
+    private final Map<String, Entry<T>> entriesById = new HashMap<>();
+
+    public PrefixSuggestIndex(int topK, int maxEntries, int maxKeyLength, int maxTokensPerEntry) {
+        this.topK = topK;
+        this.maxEntries = maxEntries;
+        this.maxKeyLength = maxKeyLength;
+        this.maxTokensPerEntry = maxTokensPerEntry;
+    }
+
+    /**
+     * Thêm hoặc cập nhật entry.
+     *
+     * @param id ID duy nhất của entry trong index
+     * @param text Chuỗi hiển thị (được chuẩn hóa để làm key)
+     * @param score Điểm xếp hạng (cao hơn đứng trước)
+     * @param payload Dữ liệu trả về khi khớp
+     * @return false nếu index đã đầy và entry mới không được thêm
+     */
+    public synchronized boolean upsert(String id, String text, long score, T payload) {
+        Entry<T> previous = entriesById.get(id);
+        if (previous == null && entriesById.size() >= maxEntries) {
+            return false;
+        }
+        if (previous != null) {
+            removeInternal(previous);
+        }
+        List<String> keys = indexKeys(text);
+        if (keys.isEmpty()) {
+            return false;
+        }
+        Entry<T> entry = new Entry<>(id, score, payload, keys);
+        entriesById.put(id, entry);
+        for (String key : keys) {
+            insertPath(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Xóa entry khỏi index (không làm gì nếu không tồn tại).
+     */
+    public synchronized void remove(String id) {
+        Entry<T> entry = entriesById.remove(id);
+        if (entry != null) {
+            removeInternal(entry);
+        }
+    }
+
+    /**
+     * Top-K payload có key bắt đầu bằng prefix (đã xếp theo score giảm dần).
+     */
+    public List<T> lookup(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        Node<T> node = root;
+        for (int i = 0; i < key.length() && i < maxKeyLength; i++) {
+            node = node.children.get(key.charAt(i));
+            if (node == null) {
+                return List.of();
+            }
+        }
+        List<Entry<T>> top = node.top;
+        List<T> result = new ArrayList<>(Math.min(limit, top.size()));
+        for (int i = 0; i < top.size() && result.size() < limit; i++) {
+            result.add(top.get(i).payload);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * Chuẩn hóa để so khớp: lowercase, bỏ dấu (kể cả đ -> d), gộp ký tự phân cách thành một khoảng trắng.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        String stripped = DIACRITICS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    private List<String> indexKeys(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(truncate(normalized));
+        int tokens = 1;
+        for (int i = 0; i < normalized.length() && tokens < maxTokensPerEntry; i++) {
+            if (normalized.charAt(i) == ' ' && i + 1 < normalized.length()) {
+                keys.add(truncate(normalized.substring(i + 1)));
+                tokens++;
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    private String truncate(String key) {
+        return key.length() > maxKeyLength ? key.substring(0, maxKeyLength) : key;
+    }
+
+    private void insertPath(String key, Entry<T> entry) {
+        Node<T> node = root;
+        offerTop(node, entry);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node<>());
+            offerTop(node, entry);
+        }
+        node.terminals.add(entry);
+    }
+
+    private void removeInternal(Entry<T> entry) {
+        for (String key : entry.keys) {
+            removePath(key, entry);
+        }
+    }
+
+    /**
+     * Bỏ entry khỏi node cuối rồi tính lại top-K từ dưới lên:
+     * top(node) = top-K của (terminals của node ∪ top của các node con).
+     */
+    private void removePath(String key, Entry<T> entry) {
+        List<Node<T>> path = new ArrayList<>(key.length() + 1);
+        Node<T> node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.get(key.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path.add(node);
+        }
+        node.terminals.remove(entry);
+
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node<T> current = path.get(depth);
+            if (!current.top.contains(entry)) {
+                // Các node phía trên chỉ có thể chứa entry nếu node này chứa nó
+                break;
+            }
+            recomputeTop(current);
+            if (depth > 0 && current.terminals.isEmpty() && current.children.isEmpty()) {
+                path.get(depth - 1).children.remove(key.charAt(depth - 1));
+            }
+        }
+    }
+
+    private void offerTop(Node<T> node, Entry<T> entry) {
+        List<Entry<T>> top = node.top;
+        if (top.contains(entry)) {
+            // Nhiều key của cùng entry có chung prefix
+            return;
+        }
+        if (top.size() >= topK && entryOrder.compare(entry, top.get(top.size() - 1)) >= 0) {
+            return;
+        }
+        List<Entry<T>> updated = new ArrayList<>(top.size() + 1);
+        updated.addAll(top);
+        updated.add(entry);
+        updated.sort(entryOrder);
+        node.top = List.copyOf(updated.size() > topK ? updated.subList(0, topK) : updated);
+    }
+
+    private void recomputeTop(Node<T> node) {
+        Set<Entry<T>> candidates = new LinkedHashSet<>(node.terminals);
+        for (Node<T> child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        List<Entry<T>> sorted = new ArrayList<>(candidates);
+        sorted.sort(entryOrder);
+        node.top = List.copyOf(sorted.size() > topK ? sorted.subList(0, topK) : sorted);
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new ConcurrentHashMap<>();
+        private final List<Entry<T>> terminals = new ArrayList<>(1);
+        private volatile List<Entry<T>> top = List.of();
+    }
+
+    private static final class Entry<T> {
+        private final String id;
+        private final long score;
+        private final T payload;
+        private final List<String> keys;
+
+        private Entry(String id, long score, T payload, List<String> keys) {
+            this.id = id;
+            this.score = score;
+            this.payload = payload;
+            this.keys = keys;
+        }
+    }
+}
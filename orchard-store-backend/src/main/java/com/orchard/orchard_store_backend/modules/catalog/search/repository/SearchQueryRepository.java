@@ -0,0 +1,9 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.repository;
+
+import com.orchard.orchard_store_backend.modules.catalog.search.entity.SearchQuery;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SearchQueryRepository extends JpaRepository<SearchQuery, Long> {
+}
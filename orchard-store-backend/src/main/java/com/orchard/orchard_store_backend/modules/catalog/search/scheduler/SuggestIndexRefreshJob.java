@@ -0,0 +1,29 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.scheduler;
+
+import com.orchard.orchard_store_backend.modules.catalog.search.service.ProductSuggestService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job dựng lại index autocomplete
+ *
+ * Chạy ngay khi khởi động, sau đó định kỳ để lấy thay đổi từ node khác và từ khóa phổ biến mới.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestIndexRefreshJob {
+
+    private final ProductSuggestService productSuggestService;
+
+    @Scheduled(fixedDelayString = "${app.search.suggest.refresh-interval-ms:600000}", initialDelay = 0)
+    public void refreshSuggestIndex() {
+        try {
+            productSuggestService.rebuildIndex();
+        } catch (Exception e) {
+            log.error("Failed to rebuild suggest index", e);
+        }
+    }
+}
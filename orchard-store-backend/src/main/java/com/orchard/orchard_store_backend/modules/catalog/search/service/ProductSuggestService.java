@@ -0,0 +1,22 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.search.dto.SuggestResponseDTO;
+
+/**
+ * Autocomplete (search-as-you-type) cho storefront: tên sản phẩm, brand và từ khóa phổ biến
+ */
+public interface ProductSuggestService {
+
+    /**
+     * Gợi ý theo prefix, đọc hoàn toàn từ index in-memory (không query DB)
+     *
+     * @param prefix Chuỗi người dùng đang gõ
+     * @param limit Số gợi ý tối đa mỗi nhóm
+     */
+    SuggestResponseDTO suggest(String prefix, int limit);
+
+    /**
+     * Dựng lại toàn bộ index từ DB (khởi động + định kỳ để đồng bộ thay đổi từ node khác)
+     */
+    void rebuildIndex();
+}
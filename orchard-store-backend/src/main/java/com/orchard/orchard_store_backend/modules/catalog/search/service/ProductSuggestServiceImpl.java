@@ -0,0 +1,199 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductChangedEvent;
+import com.orchard.orchard_store_backend.modules.catalog.search.dto.SuggestResponseDTO;
+import com.orchard.orchard_store_backend.modules.catalog.search.dto.SuggestionDTO;
+import com.orchard.orchard_store_backend.modules.catalog.search.index.PrefixSuggestIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Autocomplete từ 3 trie in-memory (PrefixSuggestIndex): sản phẩm, brand, từ khóa phổ biến (search_queries).
+ *
+ * - Lookup không chạm DB, chỉ đi theo prefix trong trie -> dưới 1ms
+ * - Product được cập nhật từng dòng qua ProductChangedEvent (sau commit)
+ * - Toàn bộ index được dựng lại định kỳ (SuggestIndexRefreshJob) để lấy thay đổi từ node khác,
+ *   đổi tên brand và từ khóa phổ biến mới; index mới được dựng riêng rồi mới thay thế index cũ
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSuggestServiceImpl implements ProductSuggestService {
+
+    private static final int TOP_K = 10;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int MAX_TOKENS_PER_ENTRY = 4;
+
+    private static final String PRODUCT_SELECT = """
+        SELECT p.id, p.name, v.slug,
+               COALESCE(ps.total_sold, 0) * 10 + COALESCE(ps.total_views, 0) AS score
+        FROM products p
+        JOIN LATERAL (
+            SELECT pv.slug FROM product_variants pv
+            WHERE pv.product_id = p.id AND pv.status = 'ACTIVE'
+            ORDER BY pv.id
+            LIMIT 1
+        ) v ON TRUE
+        LEFT JOIN product_stats ps ON ps.product_id = p.id
+        WHERE p.status = 'ACTIVE'
+        """;
+
+    private static final String PRODUCTS_SQL = PRODUCT_SELECT + " ORDER BY score DESC, p.id LIMIT ?";
+
+    private static final String PRODUCT_BY_ID_SQL = PRODUCT_SELECT + " AND p.id = ?";
+
+    private static final String BRANDS_SQL = """
+        SELECT b.id, b.name, b.slug, COUNT(p.id) AS product_count
+        FROM brands b
+        JOIN products p ON p.brand_id = b.id AND p.status = 'ACTIVE'
+        WHERE b.status = 'ACTIVE'
+        GROUP BY b.id, b.name, b.slug
+        ORDER BY product_count DESC, b.id
+        LIMIT ?
+        """;
+
+    private static final String POPULAR_QUERIES_SQL = """
+        SELECT lower(trim(query_text)) AS query, COUNT(*) AS searches
+        FROM search_queries
+        WHERE created_at >= CURRENT_TIMESTAMP - make_interval(days => ?)
+          AND results_count > 0
+        GROUP BY lower(trim(query_text))
+        HAVING COUNT(*) >= ?
+        ORDER BY searches DESC
+        LIMIT ?
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.suggest.max-products:50000}")
+    private int maxProducts;
+
+    @Value("${app.search.suggest.max-brands:5000}")
+    private int maxBrands;
+
+    @Value("${app.search.suggest.max-queries:5000}")
+    private int maxQueries;
+
+    @Value("${app.search.suggest.query-window-days:30}")
+    private int queryWindowDays;
+
+    @Value("${app.search.suggest.query-min-count:2}")
+    private int queryMinCount;
+
+    private volatile PrefixSuggestIndex<SuggestionDTO> productIndex = new PrefixSuggestIndex<>(TOP_K, 0, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+    private volatile PrefixSuggestIndex<SuggestionDTO> brandIndex = new PrefixSuggestIndex<>(TOP_K, 0, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+    private volatile PrefixSuggestIndex<SuggestionDTO> queryIndex = new PrefixSuggestIndex<>(TOP_K, 0, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+
+    /**
+     * Product thay đổi trong lúc rebuild - được áp dụng lại lên index mới sau khi thay thế
+     */
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuilding;
+
+    @Override
+    public SuggestResponseDTO suggest(String prefix, int limit) {
+        int size = Math.max(1, Math.min(limit, TOP_K));
+        return SuggestResponseDTO.builder()
+                .queries(queryIndex.lookup(prefix, size))
+                .products(productIndex.lookup(prefix, size))
+                .brands(brandIndex.lookup(prefix, size))
+                .build();
+    }
+
+    @Override
+    public synchronized void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        changedDuringRebuild.clear();
+        try {
+            PrefixSuggestIndex<SuggestionDTO> products = new PrefixSuggestIndex<>(TOP_K, maxProducts, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+            jdbcTemplate.query(PRODUCTS_SQL, rs -> {
+                upsertProduct(products, rs.getLong("id"), rs.getString("name"), rs.getString("slug"), rs.getLong("score"));
+            }, maxProducts);
+
+            PrefixSuggestIndex<SuggestionDTO> brands = new PrefixSuggestIndex<>(TOP_K, maxBrands, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+            jdbcTemplate.query(BRANDS_SQL, rs -> {
+                long id = rs.getLong("id");
+                String name = rs.getString("name");
+                brands.upsert(String.valueOf(id), name, rs.getLong("product_count"), SuggestionDTO.builder()
+                        .type("BRAND")
+                        .id(id)
+                        .text(name)
+                        .slug(rs.getString("slug"))
+                        .build());
+            }, maxBrands);
+
+            PrefixSuggestIndex<SuggestionDTO> queries = new PrefixSuggestIndex<>(TOP_K, maxQueries, MAX_KEY_LENGTH, MAX_TOKENS_PER_ENTRY);
+            jdbcTemplate.query(POPULAR_QUERIES_SQL, rs -> {
+                String query = rs.getString("query");
+                queries.upsert(query, query, rs.getLong("searches"), SuggestionDTO.builder()
+                        .type("QUERY")
+                        .text(query)
+                        .build());
+            }, queryWindowDays, queryMinCount, maxQueries);
+
+            productIndex = products;
+            brandIndex = brands;
+            queryIndex = queries;
+            log.info("Suggest index rebuilt in {}ms: {} products, {} brands, {} queries",
+                    System.currentTimeMillis() - start, products.size(), brands.size(), queries.size());
+        } finally {
+            rebuilding = false;
+        }
+
+        for (Long productId : changedDuringRebuild) {
+            refreshProduct(productId);
+        }
+        changedDuringRebuild.clear();
+    }
+
+    /**
+     * Cập nhật incremental trie sản phẩm khi product thay đổi (sau khi transaction commit)
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        try {
+            if (rebuilding) {
+                changedDuringRebuild.add(event.getProductId());
+            }
+            if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+                productIndex.remove(String.valueOf(event.getProductId()));
+            } else {
+                refreshProduct(event.getProductId());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to update suggest index for product {}: {}", event.getProductId(), e.getMessage());
+        }
+    }
+
+    private void refreshProduct(Long productId) {
+        PrefixSuggestIndex<SuggestionDTO> index = productIndex;
+        List<Boolean> found = jdbcTemplate.query(PRODUCT_BY_ID_SQL, (rs, rowNum) ->
+                upsertProduct(index, rs.getLong("id"), rs.getString("name"), rs.getString("slug"), rs.getLong("score")),
+                productId);
+        if (found.isEmpty()) {
+            // Không còn ACTIVE hoặc không còn variant ACTIVE
+            index.remove(String.valueOf(productId));
+        }
+    }
+
+    private boolean upsertProduct(PrefixSuggestIndex<SuggestionDTO> index, long id, String name, String slug, long score) {
+        return index.upsert(String.valueOf(id), name, score, SuggestionDTO.builder()
+                .type("PRODUCT")
+                .id(id)
+                .text(name)
+                .slug(slug)
+                .build());
+    }
+}
@@ -0,0 +1,21 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.service;
+
+import java.util.Map;
+
+/**
+ * Ghi nhận các lượt tìm kiếm của storefront vào bảng search_queries
+ */
+public interface SearchQueryService {
+
+    /**
+     * Ghi nhận một lượt tìm kiếm (bất đồng bộ, không block request tìm kiếm)
+     *
+     * @param queryText Từ khóa người dùng nhập
+     * @param resultsCount Tổng số kết quả
+     * @param filtersApplied Filter đi kèm (optional)
+     * @param userAgent User-Agent của request
+     * @param ipAddress IP của client
+     */
+    void recordSearch(String queryText, long resultsCount, Map<String, Object> filtersApplied,
+                      String userAgent, String ipAddress);
+}
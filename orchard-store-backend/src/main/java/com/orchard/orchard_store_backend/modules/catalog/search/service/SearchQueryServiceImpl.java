@@ -0,0 +1,53 @@
+package com.orchard.orchard_store_backend.modules.catalog.search.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.search.entity.SearchQuery;
+import com.orchard.orchard_store_backend.modules.catalog.search.repository.SearchQueryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchQueryServiceImpl implements SearchQueryService {
+
+    private static final int MAX_QUERY_LENGTH = 500;
+    private static final int MAX_IP_LENGTH = 45;
+
+    private final SearchQueryRepository searchQueryRepository;
+
+    @Override
+    @Async
+    @Transactional
+    public void recordSearch(String queryText, long resultsCount, Map<String, Object> filtersApplied,
+                             String userAgent, String ipAddress) {
+        try {
+            String normalized = queryText == null ? "" : queryText.trim();
+            if (normalized.isEmpty()) {
+                return;
+            }
+            SearchQuery searchQuery = SearchQuery.builder()
+                    .queryText(truncate(normalized, MAX_QUERY_LENGTH))
+                    .resultsCount((int) Math.min(resultsCount, Integer.MAX_VALUE))
+                    .filtersApplied(filtersApplied)
+                    .userAgent(userAgent)
+                    .ipAddress(truncate(ipAddress, MAX_IP_LENGTH))
+                    .build();
+            searchQueryRepository.save(searchQuery);
+        } catch (Exception e) {
+            // Ghi log tìm kiếm là best effort, không ảnh hưởng kết quả trả về
+            log.warn("Failed to record search query: {}", e.getMessage());
+        }
+    }
+
+    private String truncate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        return value.substring(0, maxLength);
+    }
+}
@@ -1,51 +1,36 @@
 package com.orchard.orchard_store_backend.modules.customer.listener;
 
 import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
-import com.orchard.orchard_store_backend.modules.customer.service.CustomerService;
+import com.orchard.orchard_store_backend.modules.customer.service.OrderPaidOutboxProcessor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 /**
  * Event Listener xử lý các sự kiện liên quan đến Customer
- * Sử dụng @Async để xử lý bất đồng bộ, không block transaction đặt hàng
+ * Chỉ hẹn lượt xử lý outbox trên outboxTaskScheduler, không block transaction đặt hàng
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class CustomerEventListener {
 
-    private final CustomerService customerService;
+    private final OrderPaidOutboxProcessor orderPaidOutboxProcessor;
 
     /**
-     * Lắng nghe sự kiện OrderPaidEvent và xử lý bất đồng bộ
-     * - Tính lại CustomerLifetimeValue
-     * - Kiểm tra và nâng hạng VIP nếu đủ điều kiện
+     * Lắng nghe sự kiện OrderPaidEvent sau khi transaction của order commit
+     * Event đã nằm trong order_event_outbox; ở đây chỉ hẹn processor xử lý sau cửa sổ gộp
+     * (tính lại CustomerLifetimeValue, nâng hạng VIP) thay vì chờ OrderPaidOutboxJob
      */
-    @Async
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleOrderPaid(OrderPaidEvent event) {
         try {
-            log.info("Processing OrderPaidEvent for orderId: {}, customerId: {}, amount: {}", 
-                    event.getOrderId(), event.getCustomerId(), event.getAmount());
-
-            // Đảm bảo customer record tồn tại
-            Long customerId = customerService.findOrCreateCustomer(
-                    event.getCustomerEmail(),
-                    event.getCustomerPhone(),
-                    event.getCustomerName()
-            );
-
-            // Cập nhật lifetime value và kiểm tra VIP tier
-            customerService.updateLifetimeValueAndVipTier(customerId, event.getOrderId(), event.getAmount());
-
-            log.info("Successfully processed OrderPaidEvent for orderId: {}", event.getOrderId());
+            orderPaidOutboxProcessor.scheduleDispatch();
         } catch (Exception e) {
-            log.error("Error processing OrderPaidEvent for orderId: {}", event.getOrderId(), e);
-            // Có thể thêm retry logic hoặc dead letter queue ở đây
+            // Event vẫn trong outbox, OrderPaidOutboxJob sẽ xử lý lại
+            log.error("Error scheduling order event outbox dispatch for orderId: {}", event.getOrderId(), e);
         }
     }
 }
-
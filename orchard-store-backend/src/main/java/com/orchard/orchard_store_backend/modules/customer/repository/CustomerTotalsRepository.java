@@ -0,0 +1,76 @@
+package com.orchard.orchard_store_backend.modules.customer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cập nhật tổng mua hàng / VIP tier của customers bằng câu UPDATE nguyên tử (total = total + ?) thay vì
+ * load entity -> cộng trong Java -> save: không mất cập nhật khi nhiều lượt xử lý cùng customer chạy song song,
+ * và RETURNING trả luôn giá trị mới (không cần load lại customer).
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerTotalsRepository {
+
+    private static final String ADD_PAID_ORDERS_SQL = """
+        UPDATE customers
+        SET total_purchase_amount = COALESCE(total_purchase_amount, 0) + :amount,
+            total_orders_paid_count = COALESCE(total_orders_paid_count, 0) + :paidCount,
+            last_order_amount = :lastOrderAmount,
+            last_order_date = CURRENT_TIMESTAMP,
+            first_order_date = COALESCE(first_order_date, CURRENT_TIMESTAMP),
+            updated_at = CURRENT_TIMESTAMP
+        WHERE id = :id
+        RETURNING total_purchase_amount, total_orders_count, total_orders_paid_count,
+                  current_vip_tier_id, current_vip_tier_name
+        """;
+
+    private static final String UPDATE_TIER_SQL = """
+        UPDATE customers
+        SET current_vip_tier_id = :tierId, current_vip_tier_name = :tierName, updated_at = CURRENT_TIMESTAMP
+        WHERE id = :id
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Cộng dồn paidCount đơn đã thanh toán (tổng tiền amount) vào customer
+     *
+     * @return Giá trị sau cập nhật, rỗng nếu customer không tồn tại
+     */
+    public Optional<Totals> addPaidOrders(Long customerId, BigDecimal amount, int paidCount, BigDecimal lastOrderAmount) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", customerId)
+                .addValue("amount", amount)
+                .addValue("paidCount", paidCount)
+                .addValue("lastOrderAmount", lastOrderAmount);
+        List<Totals> rows = jdbcTemplate.query(ADD_PAID_ORDERS_SQL, params, (rs, rowNum) -> new Totals(
+                rs.getBigDecimal("total_purchase_amount"),
+                rs.getInt("total_orders_count"),
+                rs.getInt("total_orders_paid_count"),
+                rs.getObject("current_vip_tier_id", Long.class),
+                rs.getString("current_vip_tier_name")
+        ));
+        return rows.stream().findFirst();
+    }
+
+    public void updateTier(Long customerId, Long tierId, String tierName) {
+        jdbcTemplate.update(UPDATE_TIER_SQL, new MapSqlParameterSource()
+                .addValue("id", customerId)
+                .addValue("tierId", tierId)
+                .addValue("tierName", tierName));
+    }
+
+    /**
+     * Tổng mua hàng và VIP tier hiện tại của customer
+     */
+    public record Totals(BigDecimal totalPurchaseAmount, int totalOrdersCount, int totalOrdersPaidCount,
+                         Long vipTierId, String vipTierName) {
+    }
+}
@@ -2,26 +2,35 @@ package com.orchard.orchard_store_backend.modules.customer.repository;
 
 import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MemberPricingTierRepository extends JpaRepository<MemberPricingTier, Long> {
     
     Optional<MemberPricingTier> findByTierName(String tierName);
+
+    /**
+     * Lấy toàn bộ tier đã sắp xếp theo tier_level ASC (bảng nhỏ, load một lần rồi xử lý trong bộ nhớ)
+     */
+    List<MemberPricingTier> findAllByOrderByTierLevelAsc();
     
     /**
      * Tìm tier cao nhất mà customer đạt được dựa trên tổng tiền đã mua
-     * Sắp xếp theo tier_level DESC để lấy tier cao nhất
+     * Sắp xếp theo tier_level DESC để lấy tier cao nhất (cùng level: min_purchase_amount nhỏ hơn - như MemberTierTable)
+     */
+    default Optional<MemberPricingTier> findHighestTierByPurchaseAmount(BigDecimal totalPurchase) {
+        return findFirstByStatusAndMinPurchaseAmountLessThanEqualOrderByTierLevelDescMinPurchaseAmountAsc(
+                "ACTIVE", totalPurchase);
+    }
+
+    /**
+     * Giới hạn 1 dòng: nhiều tier cùng đạt ngưỡng là trường hợp bình thường
      */
-    @Query("SELECT t FROM MemberPricingTier t " +
-           "WHERE t.minPurchaseAmount <= :totalPurchase " +
-           "AND t.status = 'ACTIVE' " +
-           "ORDER BY t.tierLevel DESC")
-    Optional<MemberPricingTier> findHighestTierByPurchaseAmount(@Param("totalPurchase") BigDecimal totalPurchase);
+    Optional<MemberPricingTier> findFirstByStatusAndMinPurchaseAmountLessThanEqualOrderByTierLevelDescMinPurchaseAmountAsc(
+            String status, BigDecimal totalPurchase);
 }
 
@@ -0,0 +1,218 @@
+package com.orchard.orchard_store_backend.modules.customer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Truy cập bảng order_event_outbox (xem V30__add_order_event_outbox.sql) bằng JDBC.
+ *
+ * claimDue chỉ chọn partition_key có event đầu tiên chưa xong (PENDING / PROCESSING) đã đến hạn, rồi claim
+ * mọi event đang chờ của partition đó: event lỗi đang chờ retry chặn các event sau của cùng customer -> xử lý
+ * đúng thứ tự theo customer, song song giữa các customer; các event đang chờ của một customer được gộp
+ * vào một lần cập nhật.
+ *
+ * Khóa theo nhóm: event đầu (head) của partition là khóa của cả nhóm. Claim khóa các head đến hạn bằng
+ * FOR UPDATE SKIP LOCKED và chỉ claim event của partition có head đã khóa được -> hai node không bao giờ
+ * claim hai phần khác nhau của cùng một customer. Node đến sau bỏ qua head đang bị khóa; nếu node trước đã
+ * commit, head được kiểm tra lại trên phiên bản mới (PROCESSING, lease chưa hết) nên partition không còn đến hạn.
+ * Các event còn lại của nhóm khóa bằng FOR UPDATE không SKIP LOCKED: bỏ qua một event giữa nhóm sẽ làm sai thứ tự.
+ *
+ * Cửa sổ gộp: partition chỉ được claim khi head PENDING đã nằm trong outbox ít nhất flushWindowSeconds -> các đơn
+ * của cùng customer đến trong cửa sổ đó được claim cùng head và cộng dồn một lần.
+ *
+ * Claim trả về locked_until của lease; markDone / markFailed / release chỉ cập nhật dòng còn PROCESSING với
+ * đúng lease đó. Worker xử lý quá lâu (lease hết hạn, event đã được worker khác claim lại) không thể ghi đè
+ * trạng thái; markDone thất bại thì throw LeaseLostException để transaction cộng dồn customer bị rollback
+ * (không cộng hai lần).
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderEventOutboxRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO order_event_outbox (event_type, idempotency_key, partition_key, payload)
+        VALUES (:eventType, :idempotencyKey, :partitionKey, CAST(:payload AS jsonb))
+        ON CONFLICT (idempotency_key) DO NOTHING
+        """;
+
+    private static final String CLAIM_SQL = """
+        WITH heads AS (
+            SELECT DISTINCT ON (partition_key) id
+            FROM order_event_outbox
+            WHERE status IN ('PENDING', 'PROCESSING')
+            ORDER BY partition_key, id
+        ), locked_heads AS (
+            SELECT h.partition_key
+            FROM order_event_outbox h
+            WHERE h.id IN (SELECT id FROM heads)
+              AND ((h.status = 'PENDING' AND h.next_attempt_at <= CURRENT_TIMESTAMP
+                    AND h.created_at <= CURRENT_TIMESTAMP - make_interval(secs => :flushWindowSeconds))
+                   OR (h.status = 'PROCESSING' AND h.locked_until < CURRENT_TIMESTAMP))
+            ORDER BY h.id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        ), claimed AS (
+            UPDATE order_event_outbox o
+            SET status = 'PROCESSING',
+                locked_until = CURRENT_TIMESTAMP + make_interval(secs => :leaseSeconds)
+            WHERE o.id IN (
+                SELECT e.id FROM order_event_outbox e
+                WHERE e.partition_key IN (SELECT partition_key FROM locked_heads)
+                  AND (e.status = 'PENDING' OR (e.status = 'PROCESSING' AND e.locked_until < CURRENT_TIMESTAMP))
+                ORDER BY e.id
+                LIMIT :limit
+                FOR UPDATE
+            )
+            RETURNING o.id, o.event_type, o.idempotency_key, o.partition_key, CAST(o.payload AS TEXT) AS payload,
+                      o.attempts, o.locked_until
+        )
+        -- Thứ tự RETURNING của UPDATE không được đảm bảo -> sắp xếp lại theo id
+        SELECT * FROM claimed ORDER BY id
+        """;
+
+    private static final String MARK_DONE_SQL = """
+        UPDATE order_event_outbox
+        SET status = 'DONE', processed_at = CURRENT_TIMESTAMP, locked_until = NULL, last_error = NULL
+        WHERE status = 'PROCESSING' AND (id, locked_until) IN (:leases)
+        """;
+
+    private static final String RELEASE_SQL = """
+        UPDATE order_event_outbox
+        SET status = 'PENDING', locked_until = NULL
+        WHERE status = 'PROCESSING' AND (id, locked_until) IN (:leases)
+        """;
+
+    private static final String MARK_FAILED_SQL = """
+        UPDATE order_event_outbox
+        SET attempts = attempts + 1,
+            status = CASE WHEN :dead THEN 'DEAD' ELSE 'PENDING' END,
+            next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => :delaySeconds),
+            locked_until = NULL,
+            last_error = :error
+        WHERE id = :id AND status = 'PROCESSING' AND locked_until = :lease
+        """;
+
+    private static final String PURGE_DONE_SQL = """
+        DELETE FROM order_event_outbox
+        WHERE status = 'DONE' AND created_at < :before
+        """;
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Ghi event vào outbox trong transaction hiện tại
+     *
+     * @return false nếu idempotency key đã tồn tại (event trùng, bị bỏ qua)
+     */
+    public boolean insert(String eventType, String idempotencyKey, String partitionKey, String payloadJson) {
+        return jdbcTemplate.update(INSERT_SQL, new MapSqlParameterSource()
+                .addValue("eventType", eventType)
+                .addValue("idempotencyKey", idempotencyKey)
+                .addValue("partitionKey", partitionKey)
+                .addValue("payload", payloadJson)) > 0;
+    }
+
+    /**
+     * Claim tối đa limit event của các partition có event đầu tiên đến hạn (status -> PROCESSING, lease leaseSeconds),
+     * theo thứ tự id -> event cùng partition được trả về liền theo thứ tự ghi
+     *
+     * @param flushWindowSeconds Tuổi tối thiểu của head PENDING để partition được claim (cửa sổ gộp)
+     */
+    public List<OutboxEvent> claimDue(int limit, long leaseSeconds, long flushWindowSeconds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("limit", limit)
+                .addValue("leaseSeconds", leaseSeconds)
+                .addValue("flushWindowSeconds", flushWindowSeconds);
+        return jdbcTemplate.query(CLAIM_SQL, params, (rs, rowNum) -> new OutboxEvent(
+                rs.getLong("id"),
+                rs.getString("event_type"),
+                rs.getString("idempotency_key"),
+                rs.getString("partition_key"),
+                rs.getString("payload"),
+                rs.getInt("attempts"),
+                rs.getObject("locked_until", LocalDateTime.class)
+        ));
+    }
+
+    /**
+     * Đánh dấu DONE - gọi trong transaction xử lý event để kết quả và trạng thái outbox commit cùng nhau
+     *
+     * @throws LeaseLostException nếu có event không còn giữ lease của lần claim (transaction phải rollback)
+     */
+    public void markDone(Collection<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        int updated = jdbcTemplate.update(MARK_DONE_SQL, new MapSqlParameterSource("leases", leases(events)));
+        if (updated != events.size()) {
+            throw new LeaseLostException("Lease expired for " + (events.size() - updated) + " of " + events.size()
+                    + " order event(s) starting at id " + events.iterator().next().id());
+        }
+    }
+
+    /**
+     * Trả event đã claim về PENDING mà không tính là một lần thử (bỏ qua event đã mất lease)
+     */
+    public void release(Collection<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(RELEASE_SQL, new MapSqlParameterSource("leases", leases(events)));
+    }
+
+    /**
+     * Ghi nhận lỗi: retry sau delaySeconds, hoặc DEAD (bỏ qua nếu event đã mất lease)
+     */
+    public void markFailed(OutboxEvent event, boolean dead, long delaySeconds, String error) {
+        jdbcTemplate.update(MARK_FAILED_SQL, new MapSqlParameterSource()
+                .addValue("id", event.id())
+                .addValue("lease", event.lockedUntil())
+                .addValue("dead", dead)
+                .addValue("delaySeconds", delaySeconds)
+                .addValue("error", error != null && error.length() > MAX_ERROR_LENGTH
+                        ? error.substring(0, MAX_ERROR_LENGTH) : error));
+    }
+
+    /**
+     * Xóa event DONE cũ hơn mốc (event DEAD được giữ lại để kiểm tra / xử lý tay)
+     */
+    public int purgeDone(LocalDateTime before) {
+        return jdbcTemplate.update(PURGE_DONE_SQL, new MapSqlParameterSource("before", before));
+    }
+
+    /**
+     * (id, locked_until) của từng event cho điều kiện (id, locked_until) IN (...)
+     */
+    private List<Object[]> leases(Collection<OutboxEvent> events) {
+        return events.stream()
+                .map(event -> new Object[]{event.id(), event.lockedUntil()})
+                .toList();
+    }
+
+    /**
+     * Event đã claim, chờ xử lý
+     *
+     * @param lockedUntil Lease của lần claim - định danh lần claim này khi ghi kết quả
+     */
+    public record OutboxEvent(long id, String eventType, String idempotencyKey, String partitionKey,
+                              String payload, int attempts, LocalDateTime lockedUntil) {
+    }
+
+    /**
+     * Event không còn giữ lease của lần claim (đã hết hạn và có thể đã được worker khác claim lại)
+     */
+    public static class LeaseLostException extends RuntimeException {
+
+        public LeaseLostException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.orchard.orchard_store_backend.modules.customer.scheduler;
+
+import com.orchard.orchard_store_backend.modules.customer.service.OrderPaidOutboxProcessor;
+import com.orchard.orchard_store_backend.config.SchedulerConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job cho order_event_outbox
+ *
+ * Event mới được xử lý ngay sau commit (CustomerEventListener); job này xử lý các event retry đến hạn,
+ * event có lease hết hạn (node chết giữa chừng) và dọn event DONE cũ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPaidOutboxJob {
+
+    private final OrderPaidOutboxProcessor orderPaidOutboxProcessor;
+
+    @Scheduled(fixedDelayString = "${app.customer.order-events.poll-interval-ms:5000}", initialDelay = 15000,
+            scheduler = SchedulerConfig.OUTBOX_SCHEDULER)
+    public void dispatchDueEvents() {
+        try {
+            orderPaidOutboxProcessor.dispatchDue();
+        } catch (Exception e) {
+            log.error("Failed to dispatch order event outbox", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.customer.order-events.cleanup-interval-ms:3600000}", initialDelay = 90000)
+    public void cleanupOutbox() {
+        try {
+            int purged = orderPaidOutboxProcessor.purgeProcessed();
+            if (purged > 0) {
+                log.info("Order event outbox cleanup: {} purged", purged);
+            }
+        } catch (Exception e) {
+            log.error("Failed to clean up order event outbox", e);
+        }
+    }
+}
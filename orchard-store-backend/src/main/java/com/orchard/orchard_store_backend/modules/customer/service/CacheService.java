@@ -1,28 +1,113 @@
 package com.orchard.orchard_store_backend.modules.customer.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
 
 /**
  * Service để quản lý cache với JSON serialization/deserialization
  * Hỗ trợ caching cho các DTO và Page objects
+ *
+ * Cache 2 tầng:
+ * - L1: Caffeine trong process, giữ object đã deserialize cùng kiểu của nó (bỏ round-trip Redis và bỏ parse JSON
+ *   mỗi lần hit). Đọc key với kiểu khác kiểu đang giữ được tính là miss L1 và thay entry bằng bản đọc từ Redis.
+ *   Object trả về dùng chung giữa các lần đọc -> caller KHÔNG được sửa nó (copy trước khi sửa)
+ * - L2: Redis, dùng chung giữa các node; JSON chỉ dùng ở tầng này
+ *
+ * Mỗi lần ghi/xóa key sẽ publish lên channel {@link #INVALIDATION_CHANNEL} để các node khác bỏ bản L1 cũ.
+ * Lượt đọc Redis chỉ được đưa vào L1 nếu generation của key không đổi trong lúc đọc, nên giá trị cũ đọc được
+ * trước một lần evict / ghi mới không quay lại L1 sau đó.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class CacheService {
+public class CacheService implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate";
+
+    private static final String MESSAGE_SEPARATOR = "|";
+    private static final char MESSAGE_KEYS = 'K';
+    private static final char MESSAGE_PATTERN = 'P';
+    private static final String KEY_SEPARATOR = "\n";
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int GENERATION_STRIPES = 1024;
 
     private final RedisService redisService;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Định danh node để bỏ qua message invalidation do chính node này publish
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${app.cache.l1.max-weight:33554432}")
+    private long l1MaxWeight;
+
+    @Value("${app.cache.l1.max-ttl-seconds:60}")
+    private long l1MaxTtlSeconds;
+
+    private Cache<String, LocalEntry> localCache;
+
+    /**
+     * Generation theo key (chia stripe theo hash để không phải giữ một counter cho mỗi key): tăng sau mỗi lần
+     * key bị ghi / xóa ở Redis. Hai key chung stripe chỉ làm bỏ lỡ một lần put L1, không sai dữ liệu.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @PostConstruct
+    public void initLocalCache() {
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(l1MaxWeight)
+                .weigher((String key, LocalEntry entry) -> entry.weight)
+                .expireAfter(new Expiry<String, LocalEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, LocalEntry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        // Export hit/miss/eviction qua Actuator (/actuator/metrics/cache.gets, cache.evictions, ...)
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "cacheService.l1");
+    }
 
     /**
      * Cache một object với TTL
@@ -30,12 +115,17 @@ public class CacheService {
      * @param key Cache key
      * @param value Object cần cache
      * @param ttlSeconds TTL (seconds)
+     * @param tags Tag để xóa hàng loạt qua {@link #evictTag(String)} (optional)
      * @param <T> Type of object
      */
-    public <T> void cache(String key, T value, long ttlSeconds) {
+    public <T> void cache(String key, T value, long ttlSeconds, String... tags) {
         try {
             String json = objectMapper.writeValueAsString(value);
             redisService.setValue(key, json, ttlSeconds);
+            redisService.tagKey(key, ttlSeconds, tags);
+            bumpGeneration(key);
+            localCache.invalidate(key);
+            publishInvalidation(key);
             log.debug("Cached value for key: {} (TTL: {}s)", key, ttlSeconds);
         } catch (Exception e) {
             log.warn("Failed to cache value for key {}: {}", key, e.getMessage());
@@ -52,11 +142,10 @@ public class CacheService {
      */
     public <T> Optional<T> getCached(String key, Class<T> type) {
         try {
-            String cached = redisService.getValue(key);
-            if (cached != null && !cached.isEmpty()) {
-                T value = objectMapper.readValue(cached, type);
+            T cached = getValue(key, objectMapper.constructType(type));
+            if (cached != null) {
                 log.debug("Cache hit for key: {}", key);
-                return Optional.of(value);
+                return Optional.of(cached);
             }
         } catch (Exception e) {
             log.warn("Failed to get cached value for key {}: {}", key, e.getMessage());
@@ -75,11 +164,10 @@ public class CacheService {
      */
     public <T> Optional<T> getCached(String key, TypeReference<T> typeReference) {
         try {
-            String cached = redisService.getValue(key);
-            if (cached != null && !cached.isEmpty()) {
-                T value = objectMapper.readValue(cached, typeReference);
+            T cached = getValue(key, objectMapper.getTypeFactory().constructType(typeReference));
+            if (cached != null) {
                 log.debug("Cache hit for key: {}", key);
-                return Optional.of(value);
+                return Optional.of(cached);
             }
         } catch (Exception e) {
             log.warn("Failed to get cached value for key {}: {}", key, e.getMessage());
@@ -94,9 +182,10 @@ public class CacheService {
      * @param key Cache key
      * @param page Page object
      * @param ttlSeconds TTL (seconds)
+     * @param tags Tag để xóa hàng loạt qua {@link #evictTag(String)} (optional)
      * @param <T> Type of content
      */
-    public <T> void cachePage(String key, Page<T> page, long ttlSeconds) {
+    public <T> void cachePage(String key, Page<T> page, long ttlSeconds, String... tags) {
         try {
             // Create a serializable wrapper for Page with metadata
             PageWrapper<T> wrapper = new PageWrapper<>(
@@ -108,6 +197,10 @@ public class CacheService {
             );
             String json = objectMapper.writeValueAsString(wrapper);
             redisService.setValue(key, json, ttlSeconds);
+            redisService.tagKey(key, ttlSeconds, tags);
+            bumpGeneration(key);
+            localCache.invalidate(key);
+            publishInvalidation(key);
             log.debug("Cached page for key: {} (TTL: {}s)", key, ttlSeconds);
         } catch (Exception e) {
             log.warn("Failed to cache page for key {}: {}", key, e.getMessage());
@@ -125,26 +218,14 @@ public class CacheService {
      */
     public <T> Optional<Page<T>> getCachedPage(String key, Pageable pageable, Class<T> contentType) {
         try {
-            String cached = redisService.getValue(key);
-            if (cached != null && !cached.isEmpty()) {
-                // Parse JSON to get wrapper with content and metadata
-                com.fasterxml.jackson.databind.JsonNode jsonNode = objectMapper.readTree(cached);
-                
-                // Get content list
-                com.fasterxml.jackson.databind.JsonNode contentNode = jsonNode.get("content");
-                List<T> content = objectMapper.convertValue(
-                    contentNode,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, contentType)
-                );
-                
-                // Get metadata
-                long totalElements = jsonNode.has("totalElements") ? jsonNode.get("totalElements").asLong() : content.size();
-                
+            PageWrapper<T> cached = getValue(key,
+                    objectMapper.getTypeFactory().constructParametricType(PageWrapper.class, contentType));
+            if (cached != null) {
                 // Reconstruct Page from content and metadata
                 Page<T> page = new PageImpl<>(
-                    content,
+                    cached.getContent(),
                     pageable,
-                    totalElements
+                    cached.getTotalElements()
                 );
                 log.debug("Cache hit for page key: {}", key);
                 return Optional.of(page);
@@ -164,27 +245,174 @@ public class CacheService {
     public void evict(String key) {
         try {
             redisService.deleteKey(key);
+            bumpGeneration(key);
+            localCache.invalidate(key);
+            publishInvalidation(key);
             log.debug("Evicted cache for key: {}", key);
         } catch (Exception e) {
             log.warn("Failed to evict cache for key {}: {}", key, e.getMessage());
+            bumpGeneration(key);
+            localCache.invalidate(key);
         }
     }
 
     /**
      * Xóa tất cả cache matching pattern (sử dụng wildcard)
-     * Note: Redis không hỗ trợ wildcard delete trực tiếp, cần scan keys
+     * Dùng SCAN + UNLINK theo batch, không dùng KEYS nên không block Redis
      *
      * @param pattern Pattern (ví dụ: "category:list:*")
      */
     public void evictPattern(String pattern) {
         try {
-            // Note: This is a simplified implementation
-            // For production, consider using Redis SCAN command for better performance
-            log.debug("Evicting cache pattern: {}", pattern);
-            // Implementation would require RedisTemplate with keys() method
-            // For now, we'll log and let individual services handle pattern eviction
+            long deleted = redisService.deleteByPattern(pattern, SCAN_BATCH_SIZE);
+            invalidateLocalPattern(pattern);
+            publish(MESSAGE_PATTERN, pattern);
+            log.debug("Evicted {} keys for cache pattern: {}", deleted, pattern);
         } catch (Exception e) {
             log.warn("Failed to evict cache pattern {}: {}", pattern, e.getMessage());
+            invalidateLocalPattern(pattern);
+        }
+    }
+
+    /**
+     * Xóa tất cả cache đã gắn tag (ví dụ: mọi trang category list khi category thay đổi)
+     *
+     * @param tag Tag đã truyền vào cache/cachePage
+     */
+    public void evictTag(String tag) {
+        try {
+            Set<String> keys = redisService.deleteTag(tag, SCAN_BATCH_SIZE);
+            if (keys.isEmpty()) {
+                return;
+            }
+            invalidateLocal(keys);
+            publish(MESSAGE_KEYS, String.join(KEY_SEPARATOR, keys));
+            log.debug("Evicted {} keys for cache tag: {}", keys.size(), tag);
+        } catch (Exception e) {
+            log.warn("Failed to evict cache tag {}: {}", tag, e.getMessage());
+        }
+    }
+
+    /**
+     * Nhận message invalidation từ node khác và bỏ bản L1 tương ứng
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0) {
+            return;
+        }
+        String sourceNode = body.substring(0, separator);
+        if (nodeId.equals(sourceNode) || body.length() < separator + 3) {
+            return;
+        }
+        char type = body.charAt(separator + 1);
+        String payload = body.substring(separator + 3);
+        if (type == MESSAGE_PATTERN) {
+            invalidateLocalPattern(payload);
+        } else {
+            invalidateLocal(Arrays.asList(payload.split(KEY_SEPARATOR)));
+        }
+    }
+
+    /**
+     * Giá trị của key theo kiểu type: L1 nếu đang giữ đúng kiểu đó, không thì đọc Redis, deserialize một lần
+     * và đưa object vào L1.
+     * Generation được chụp trước khi đọc Redis; nếu key bị ghi / xóa trong lúc đọc thì bản vừa put bị gỡ ra
+     * (evict / cache tăng generation SAU khi đổi Redis và TRƯỚC khi đụng tới L1).
+     *
+     * @return null nếu không có trong cache
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getValue(String key, JavaType type) throws JsonProcessingException {
+        LocalEntry local = localCache.getIfPresent(key);
+        if (local != null && local.type.equals(type)) {
+            return (T) local.value;
+        }
+        long generation = generation(key);
+        String cached = redisService.getValue(key);
+        if (cached == null || cached.isEmpty()) {
+            return null;
+        }
+        T value = objectMapper.readValue(cached, type);
+        if (value == null) {
+            return null;
+        }
+        LocalEntry entry = new LocalEntry(type, value, cached.length(), TimeUnit.SECONDS.toNanos(l1MaxTtlSeconds));
+        localCache.put(key, entry);
+        if (generation(key) != generation) {
+            localCache.asMap().remove(key, entry);
+        }
+        return value;
+    }
+
+    private void invalidateLocal(Collection<String> keys) {
+        keys.forEach(this::bumpGeneration);
+        localCache.invalidateAll(keys);
+    }
+
+    /**
+     * Bỏ các entry L1 khớp glob pattern của Redis (hỗ trợ * và ?).
+     * Không biết trước các key bị ảnh hưởng nên tăng generation của mọi stripe.
+     */
+    private void invalidateLocalPattern(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern compiled = Pattern.compile(regex.toString());
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        localCache.asMap().keySet().removeIf(key -> compiled.matcher(key).matches());
+    }
+
+    private long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    private void bumpGeneration(String key) {
+        generations.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private void publishInvalidation(String key) {
+        try {
+            publish(MESSAGE_KEYS, key);
+        } catch (Exception e) {
+            log.warn("Failed to publish cache invalidation for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Message format: {nodeId}|{K|P}|{payload} - K: danh sách key (ngăn cách bởi \n), P: glob pattern
+     */
+    private void publish(char type, String payload) {
+        redisService.publish(INVALIDATION_CHANNEL, nodeId + MESSAGE_SEPARATOR + type + MESSAGE_SEPARATOR + payload);
+    }
+
+    /**
+     * Entry L1: object đã deserialize và kiểu của nó, weight ~ độ dài JSON gốc và TTL riêng
+     */
+    private static final class LocalEntry {
+        private final JavaType type;
+        private final Object value;
+        private final int weight;
+        private final long ttlNanos;
+
+        private LocalEntry(JavaType type, Object value, int jsonLength, long ttlNanos) {
+            this.type = type;
+            this.value = value;
+            this.weight = Math.max(jsonLength, 1);
+            this.ttlNanos = ttlNanos;
         }
     }
 
@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.customer.service;
 
 import com.orchard.orchard_store_backend.exception.ResourceNotFoundException;
+import com.orchard.orchard_store_backend.modules.auth.service.EmailService;
 import com.orchard.orchard_store_backend.modules.customer.entity.Customer;
 import com.orchard.orchard_store_backend.modules.customer.exception.InvalidOtpException;
 import com.orchard.orchard_store_backend.modules.customer.exception.RateLimitExceededException;
@@ -19,7 +20,7 @@ import java.util.Collections;
  * Service xử lý authentication cho Customer bằng OTP Email (Passwordless).
  *
  * Flow:
- * 1. Customer nhập email -> sendLoginOtp() -> Tạo OTP, lưu Redis, gửi email (log)
+ * 1. Customer nhập email -> sendLoginOtp() -> Tạo OTP, lưu Redis, đưa email OTP vào outbox
  * 2. Customer nhập OTP -> verifyLoginOtp() -> Verify OTP, generate JWT token
  */
 @Service
@@ -31,6 +32,7 @@ public class CustomerAuthService {
     private final CustomerRepository customerRepository;
     private final RedisService redisService;
     private final JwtTokenProvider jwtTokenProvider;
+    private final EmailService emailService;
 
     private static final String OTP_KEY_PREFIX = "auth:otp:";
     private static final String OTP_RATE_LIMIT_KEY_PREFIX = "otp_limit:";
@@ -53,7 +55,7 @@ public class CustomerAuthService {
         checkRateLimit(email);
 
         // 2. Tìm customer hoặc tạo mới (đảm bảo customer tồn tại trước khi gửi OTP)
-        customerRepository.findByEmail(email)
+        Customer customer = customerRepository.findByEmail(email)
                 .orElseGet(() -> createGuestCustomer(email));
 
         // 3. Generate OTP
@@ -64,8 +66,9 @@ public class CustomerAuthService {
         redisService.setValue(redisKey, otpCode, OTP_TTL_SECONDS);
         log.debug("OTP saved to Redis key: {}, TTL: {} seconds", redisKey, OTP_TTL_SECONDS);
 
-        // 5. Giả lập gửi email (log ra console)
-        log.info("Sending OTP [{}] to [{}]", otpCode, email);
+        // 5. Đưa email OTP vào outbox (gửi bất đồng bộ sau commit, request trả về ngay)
+        emailService.sendOtpEmail(email, otpCode, customer.getFullName());
+        log.info("OTP email queued for [{}]", email);
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.orchard.orchard_store_backend.modules.customer.service;
 
-import java.math.BigDecimal;
+import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
+
+import java.util.List;
 
 public interface CustomerService {
     
@@ -10,9 +12,10 @@ public interface CustomerService {
     Long findOrCreateCustomer(String email, String phone, String name);
     
     /**
-     * Cập nhật lifetime value và kiểm tra nâng hạng VIP
+     * Cộng dồn nhiều đơn đã thanh toán của cùng customer (theo thứ tự thanh toán) bằng một lần cập nhật,
+     * rồi kiểm tra nâng hạng VIP một lần
      */
-    void updateLifetimeValueAndVipTier(Long customerId, Long orderId, BigDecimal orderAmount);
+    void updateLifetimeValueAndVipTier(Long customerId, List<OrderPaidEvent> paidOrders);
     
     /**
      * Tính lại và cập nhật VIP tier cho customer
@@ -4,10 +4,12 @@ import com.orchard.orchard_store_backend.modules.customer.entity.Customer;
 import com.orchard.orchard_store_backend.modules.customer.entity.CustomerLifetimeValue;
 import com.orchard.orchard_store_backend.modules.customer.entity.CustomerVipHistory;
 import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
+import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
 import com.orchard.orchard_store_backend.modules.customer.repository.CustomerLifetimeValueRepository;
 import com.orchard.orchard_store_backend.modules.customer.repository.CustomerRepository;
+import com.orchard.orchard_store_backend.modules.customer.repository.CustomerTotalsRepository;
+import com.orchard.orchard_store_backend.modules.customer.repository.CustomerTotalsRepository.Totals;
 import com.orchard.orchard_store_backend.modules.customer.repository.CustomerVipHistoryRepository;
-import com.orchard.orchard_store_backend.modules.customer.repository.MemberPricingTierRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,11 +17,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Service xử lý logic tính toán CustomerLifetimeValue và VIP tier
- * Được gọi bất đồng bộ từ CustomerEventListener để không block transaction đặt hàng
+ * Được gọi bất đồng bộ từ OrderPaidOutboxProcessor để không block transaction đặt hàng
  */
 @Service
 @RequiredArgsConstructor
@@ -28,7 +32,8 @@ import java.util.Optional;
 public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerRepository customerRepository;
-    private final MemberPricingTierRepository tierRepository;
+    private final CustomerTotalsRepository customerTotalsRepository;
+    private final MemberTierTable tierTable;
     private final CustomerLifetimeValueRepository lifetimeValueRepository;
     private final CustomerVipHistoryRepository vipHistoryRepository;
 
@@ -66,95 +71,92 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public void updateLifetimeValueAndVipTier(Long customerId, Long orderId, BigDecimal orderAmount) {
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new IllegalArgumentException("Customer not found: " + customerId));
-
-        // Cập nhật lifetime value
-        BigDecimal newTotal = customer.getTotalPurchaseAmount().add(orderAmount);
-        customer.setTotalPurchaseAmount(newTotal);
-        customer.setTotalOrdersPaidCount(customer.getTotalOrdersPaidCount() + 1);
-        customer.setLastOrderDate(LocalDateTime.now());
-        customer.setLastOrderAmount(orderAmount);
-        
-        // Cập nhật first_order_date nếu đây là đơn đầu tiên
-        if (customer.getFirstOrderDate() == null) {
-            customer.setFirstOrderDate(LocalDateTime.now());
+    public void updateLifetimeValueAndVipTier(Long customerId, List<OrderPaidEvent> paidOrders) {
+        if (paidOrders.isEmpty()) {
+            return;
         }
+        BigDecimal amount = paidOrders.stream()
+                .map(OrderPaidEvent::getAmount)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        OrderPaidEvent lastOrder = paidOrders.get(paidOrders.size() - 1);
+
+        // Ghi thay đổi đang chờ của entity Customer (findOrCreateCustomer) trước khi UPDATE bằng JDBC
+        customerRepository.flush();
+
+        // Một UPDATE nguyên tử cho cả nhóm đơn (total = total + amount), RETURNING giá trị mới
+        Totals totals = customerTotalsRepository
+                .addPaidOrders(customerId, amount, paidOrders.size(), lastOrder.getAmount())
+                .orElseThrow(() -> new IllegalArgumentException("Customer not found: " + customerId));
 
-        customerRepository.save(customer);
-
-        // Kiểm tra và nâng hạng VIP (truyền orderId để lưu vào history)
-        updateVipTierWithOrderId(customerId, orderId);
+        // Kiểm tra và nâng hạng VIP (orderId của đơn cuối nhóm được lưu vào history)
+        Totals current = upgradeVipTier(customerId, totals, lastOrder.getOrderId());
 
-        // Lưu snapshot vào customer_lifetime_value
-        saveLifetimeValueSnapshot(customer, orderId);
+        // Một snapshot customer_lifetime_value cho mỗi lần cập nhật (không phải mỗi đơn)
+        saveLifetimeValueSnapshot(customerId, current);
     }
 
     @Override
     public void updateVipTier(Long customerId) {
-        updateVipTierWithOrderId(customerId, null);
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new IllegalArgumentException("Customer not found: " + customerId));
+        upgradeVipTier(customerId, new Totals(
+                Optional.ofNullable(customer.getTotalPurchaseAmount()).orElse(BigDecimal.ZERO),
+                Optional.ofNullable(customer.getTotalOrdersCount()).orElse(0),
+                Optional.ofNullable(customer.getTotalOrdersPaidCount()).orElse(0),
+                customer.getCurrentVipTierId(),
+                customer.getCurrentVipTierName()
+        ), null);
     }
 
     /**
-     * Cập nhật VIP tier với orderId (để lưu vào history)
+     * Nâng VIP tier theo tổng mua hàng (tra bảng tier trong bộ nhớ, chỉ upgrade, không downgrade)
+     *
+     * @return Totals với tier sau khi xét nâng hạng
      */
-    private void updateVipTierWithOrderId(Long customerId, Long orderId) {
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new IllegalArgumentException("Customer not found: " + customerId));
-
-        BigDecimal totalPurchase = customer.getTotalPurchaseAmount();
-        Long oldTierId = customer.getCurrentVipTierId();
+    private Totals upgradeVipTier(Long customerId, Totals totals, Long orderId) {
+        Long oldTierId = totals.vipTierId();
 
         // Tìm tier cao nhất mà customer đạt được (tier_level DESC)
-        Optional<MemberPricingTier> newTier = tierRepository
-                .findHighestTierByPurchaseAmount(totalPurchase);
-
-        Long newTierId = newTier.map(MemberPricingTier::getId).orElse(null);
-        String newTierName = newTier.map(MemberPricingTier::getTierName).orElse(null);
+        Optional<MemberPricingTier> newTier = tierTable.highestTierFor(totals.totalPurchaseAmount());
+        if (newTier.isEmpty() || newTier.get().getId().equals(oldTierId) || !isTierUpgrade(oldTierId, newTier.get())) {
+            return totals;
+        }
 
-        // Chỉ upgrade nếu tier mới cao hơn tier cũ
-        if (newTierId != null && !newTierId.equals(oldTierId)) {
-            // Kiểm tra tier level để đảm bảo chỉ upgrade, không downgrade
-            if (oldTierId == null || isTierUpgrade(oldTierId, newTierId)) {
-                customer.setCurrentVipTierId(newTierId);
-                customer.setCurrentVipTierName(newTierName);
-                customerRepository.save(customer);
+        MemberPricingTier tier = newTier.get();
+        customerTotalsRepository.updateTier(customerId, tier.getId(), tier.getTierName());
 
-                // Lưu lịch sử upgrade
-                saveVipHistory(customer, oldTierId, newTierId, newTierName, orderId);
+        // Lưu lịch sử upgrade
+        saveVipHistory(customerId, oldTierId, tier.getId(), tier.getTierName(), totals.totalPurchaseAmount(), orderId);
 
-                log.info("Customer {} upgraded to VIP tier: {} (Total purchase: {})", 
-                        customerId, newTierName, totalPurchase);
-            }
-        }
+        log.info("Customer {} upgraded to VIP tier: {} (Total purchase: {})",
+                customerId, tier.getTierName(), totals.totalPurchaseAmount());
+        return new Totals(totals.totalPurchaseAmount(), totals.totalOrdersCount(), totals.totalOrdersPaidCount(),
+                tier.getId(), tier.getTierName());
     }
 
     /**
      * Kiểm tra xem có phải upgrade tier không (tier mới có level cao hơn)
      */
-    private boolean isTierUpgrade(Long oldTierId, Long newTierId) {
-        Optional<MemberPricingTier> oldTier = tierRepository.findById(oldTierId);
-        Optional<MemberPricingTier> newTier = tierRepository.findById(newTierId);
-        
-        if (oldTier.isEmpty() || newTier.isEmpty()) {
-            return true; // Nếu không tìm thấy tier cũ, coi như upgrade
+    private boolean isTierUpgrade(Long oldTierId, MemberPricingTier newTier) {
+        Optional<MemberPricingTier> oldTier = tierTable.findById(oldTierId);
+        if (oldTier.isEmpty()) {
+            return true; // Chưa có tier hoặc không tìm thấy tier cũ, coi như upgrade
         }
-        
-        return newTier.get().getTierLevel() > oldTier.get().getTierLevel();
+        return newTier.getTierLevel() > oldTier.get().getTierLevel();
     }
 
     /**
      * Lưu snapshot vào customer_lifetime_value
      */
-    private void saveLifetimeValueSnapshot(Customer customer, Long orderId) {
+    private void saveLifetimeValueSnapshot(Long customerId, Totals totals) {
         CustomerLifetimeValue snapshot = CustomerLifetimeValue.builder()
-                .customer(customer)
-                .totalPurchaseAmount(customer.getTotalPurchaseAmount())
-                .totalOrdersCount(customer.getTotalOrdersCount())
-                .totalOrdersPaidCount(customer.getTotalOrdersPaidCount())
-                .vipTierId(customer.getCurrentVipTierId())
-                .vipTierName(customer.getCurrentVipTierName())
+                .customer(customerRepository.getReferenceById(customerId))
+                .totalPurchaseAmount(totals.totalPurchaseAmount())
+                .totalOrdersCount(totals.totalOrdersCount())
+                .totalOrdersPaidCount(totals.totalOrdersPaidCount())
+                .vipTierId(totals.vipTierId())
+                .vipTierName(totals.vipTierName())
                 .periodType(CustomerLifetimeValue.PeriodType.SNAPSHOT)
                 .calculatedAt(LocalDateTime.now())
                 .build();
@@ -165,19 +167,18 @@ public class CustomerServiceImpl implements CustomerService {
     /**
      * Lưu lịch sử thay đổi VIP tier
      */
-    private void saveVipHistory(Customer customer, Long oldTierId, Long newTierId, 
-                                String newTierName, Long orderId) {
+    private void saveVipHistory(Long customerId, Long oldTierId, Long newTierId,
+                                String newTierName, BigDecimal totalPurchase, Long orderId) {
         CustomerVipHistory history = CustomerVipHistory.builder()
-                .customer(customer)
+                .customer(customerRepository.getReferenceById(customerId))
                 .oldTierId(oldTierId)
                 .newTierId(newTierId)
                 .newTierName(newTierName)
                 .triggerType(CustomerVipHistory.TriggerType.PURCHASE_AMOUNT)
-                .triggerValue(customer.getTotalPurchaseAmount())
+                .triggerValue(totalPurchase)
                 .orderId(orderId)
                 .build();
 
         vipHistoryRepository.save(history);
     }
 }
-
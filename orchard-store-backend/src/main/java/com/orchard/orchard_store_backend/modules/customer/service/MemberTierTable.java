@@ -0,0 +1,112 @@
+package com.orchard.orchard_store_backend.modules.customer.service;
+
+import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
+import com.orchard.orchard_store_backend.modules.customer.repository.MemberPricingTierRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bảng member_pricing_tiers giữ trong bộ nhớ (bảng nhỏ, hầu như không đổi), reload sau refresh-seconds.
+ *
+ * Tier ACTIVE được sắp xếp theo min_purchase_amount; best[i] là tier có tier_level cao nhất trong các tier
+ * [0..i] -> tìm tier đạt được bằng binary search, cùng kết quả với
+ * MemberPricingTierRepository.findHighestTierByPurchaseAmount nhưng không cần query.
+ *
+ * Chưa có API sửa tier: thay đổi trực tiếp trong database có hiệu lực sau tối đa refresh-seconds.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MemberTierTable {
+
+    private final MemberPricingTierRepository tierRepository;
+
+    @Value("${app.customer.tier-table.refresh-seconds:300}")
+    private long refreshSeconds;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Tier cao nhất (theo tier_level) có min_purchase_amount <= totalPurchase
+     */
+    public Optional<MemberPricingTier> highestTierFor(BigDecimal totalPurchase) {
+        Snapshot current = current();
+        BigDecimal[] thresholds = current.thresholds();
+        int low = 0;
+        int high = thresholds.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid].compareTo(totalPurchase) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? Optional.empty() : Optional.of(current.best()[found]);
+    }
+
+    /**
+     * Tier theo ID (kể cả tier không còn ACTIVE)
+     */
+    public Optional<MemberPricingTier> findById(Long tierId) {
+        return tierId == null ? Optional.empty() : Optional.ofNullable(current().byId().get(tierId));
+    }
+
+    /**
+     * Tier đầu tiên (theo tier_level, mọi status) có tier_level lớn hơn level
+     */
+    public Optional<MemberPricingTier> nextTierAbove(int level) {
+        return current().byLevel().stream()
+                .filter(tier -> tier.getTierLevel() > level)
+                .findFirst();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null || current.loadedAt() + refreshSeconds * 1000 < System.currentTimeMillis()) {
+            current = load();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        List<MemberPricingTier> tiers = tierRepository.findAllByOrderByTierLevelAsc();
+        Map<Long, MemberPricingTier> byId = new HashMap<>();
+        tiers.forEach(tier -> byId.put(tier.getId(), tier));
+
+        List<MemberPricingTier> active = tiers.stream()
+                .filter(tier -> "ACTIVE".equals(tier.getStatus()))
+                .sorted(Comparator.comparing(MemberTierTable::minPurchase)
+                        .thenComparing(MemberPricingTier::getTierLevel))
+                .toList();
+        BigDecimal[] thresholds = new BigDecimal[active.size()];
+        MemberPricingTier[] best = new MemberPricingTier[active.size()];
+        for (int i = 0; i < active.size(); i++) {
+            MemberPricingTier tier = active.get(i);
+            thresholds[i] = minPurchase(tier);
+            best[i] = i > 0 && best[i - 1].getTierLevel() >= tier.getTierLevel() ? best[i - 1] : tier;
+        }
+        log.debug("Loaded {} member tiers ({} active)", tiers.size(), active.size());
+        return new Snapshot(thresholds, best, Map.copyOf(byId), List.copyOf(tiers), System.currentTimeMillis());
+    }
+
+    private static BigDecimal minPurchase(MemberPricingTier tier) {
+        return Optional.ofNullable(tier.getMinPurchaseAmount()).orElse(BigDecimal.ZERO);
+    }
+
+    private record Snapshot(BigDecimal[] thresholds, MemberPricingTier[] best,
+                            Map<Long, MemberPricingTier> byId, List<MemberPricingTier> byLevel, long loadedAt) {
+    }
+}
@@ -0,0 +1,271 @@
+package com.orchard.orchard_store_backend.modules.customer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
+import com.orchard.orchard_store_backend.modules.customer.repository.OrderEventOutboxRepository;
+import com.orchard.orchard_store_backend.modules.customer.repository.OrderEventOutboxRepository.LeaseLostException;
+import com.orchard.orchard_store_backend.modules.customer.repository.OrderEventOutboxRepository.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox cho OrderPaidEvent.
+ *
+ * - enqueue: ghi event vào order_event_outbox trong transaction của order (idempotency key theo orderId)
+ * - dispatchDue: claim event theo batch, gom theo customer (partition) -> các đơn đang chờ của một customer
+ *   được cộng dồn bằng MỘT câu UPDATE (total = total + tổng) trong MỘT transaction cùng việc đánh dấu DONE;
+ *   lỗi thì retry với exponential backoff, hết max-attempts -> DEAD
+ *
+ * Cửa sổ gộp (flush-window-seconds): partition chỉ được claim khi event đầu của nó đã chờ hết cửa sổ, và lượt
+ * dispatch sau commit được hẹn sau cửa sổ (một lượt hẹn mỗi node tại một thời điểm) thay vì chạy ngay ->
+ * customer B2B đặt hàng trăm đơn liên tục chỉ tốn vài lần cập nhật thay vì mỗi đơn một lần.
+ *
+ * Kết quả chỉ được ghi khi event còn giữ lease của lần claim: quá lease-seconds mà chưa xong, markDone throw
+ * LeaseLostException -> transaction cộng dồn rollback, event thuộc về worker đã claim lại (không cộng hai lần).
+ *
+ * Được kích hoạt sau commit của order (CustomerEventListener -> scheduleDispatch) và định kỳ bởi OrderPaidOutboxJob.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPaidOutboxProcessor {
+
+    static final String ORDER_PAID = "ORDER_PAID";
+
+    private final OrderEventOutboxRepository outboxRepository;
+    private final CustomerService customerService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    // Bean "outboxTaskScheduler" (SchedulerConfig), chọn theo tên tham số constructor
+    private final TaskScheduler outboxTaskScheduler;
+
+    @Value("${app.customer.order-events.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.customer.order-events.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${app.customer.order-events.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.customer.order-events.retry-base-delay-seconds:10}")
+    private long retryBaseDelaySeconds;
+
+    @Value("${app.customer.order-events.retry-max-delay-seconds:3600}")
+    private long retryMaxDelaySeconds;
+
+    @Value("${app.customer.order-events.done-retention-days:7}")
+    private long doneRetentionDays;
+
+    @Value("${app.customer.order-events.flush-window-seconds:2}")
+    private long flushWindowSeconds;
+
+    /**
+     * Chỉ một lượt dispatch mỗi node tại một thời điểm (lượt đang chạy lặp tới khi hết event đến hạn)
+     */
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    /**
+     * Đã có lượt dispatch được hẹn sau cửa sổ gộp (các commit tiếp theo trong cửa sổ không hẹn thêm)
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Ghi OrderPaidEvent vào outbox - phải được gọi trong transaction cập nhật order
+     *
+     * @return false nếu event của order này đã có trong outbox
+     */
+    public boolean enqueue(OrderPaidEvent event) {
+        boolean inserted = outboxRepository.insert(ORDER_PAID, ORDER_PAID + ":" + event.getOrderId(),
+                partitionKey(event), toJson(event));
+        if (!inserted) {
+            log.info("OrderPaidEvent for orderId {} already queued, skipping duplicate", event.getOrderId());
+        }
+        return inserted;
+    }
+
+    /**
+     * Hẹn một lượt dispatch sau cửa sổ gộp (gọi sau khi order commit). Event commit trong lúc đã có lượt hẹn
+     * được lượt đó claim nếu cùng partition, không thì được OrderPaidOutboxJob xử lý ở lần poll sau.
+     */
+    public void scheduleDispatch() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            outboxTaskScheduler.schedule(() -> {
+                flushScheduled.set(false);
+                try {
+                    dispatchDue();
+                } catch (Exception e) {
+                    // Event vẫn trong outbox, OrderPaidOutboxJob sẽ xử lý lại
+                    log.error("Failed to dispatch order event outbox", e);
+                }
+            }, Instant.now().plusSeconds(flushWindowSeconds));
+        } catch (RuntimeException e) {
+            flushScheduled.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Xử lý mọi event đang đến hạn
+     *
+     * @return Số event xử lý thành công (0 nếu node này đang có lượt dispatch khác)
+     */
+    public int dispatchDue() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int processed = 0;
+            while (true) {
+                List<OutboxEvent> claimed = outboxRepository.claimDue(batchSize, leaseSeconds, flushWindowSeconds);
+                if (claimed.isEmpty()) {
+                    break;
+                }
+                Map<String, List<OutboxEvent>> byPartition = new LinkedHashMap<>();
+                for (OutboxEvent event : claimed) {
+                    byPartition.computeIfAbsent(event.partitionKey(), key -> new ArrayList<>()).add(event);
+                }
+                for (List<OutboxEvent> events : byPartition.values()) {
+                    processed += processPartition(events);
+                }
+            }
+            return processed;
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    /**
+     * Xóa event DONE cũ
+     */
+    public int purgeProcessed() {
+        return outboxRepository.purgeDone(LocalDateTime.now().minusDays(doneRetentionDays));
+    }
+
+    /**
+     * Xử lý các event đã claim của một customer (theo thứ tự id): gộp thành một lần cập nhật customer.
+     * Nếu lượt gộp lỗi, xử lý lại từng event để chỉ event lỗi bị retry / DEAD; các event sau nó được trả về PENDING
+     * (bị chặn sau event lỗi cho tới khi event đó xong) để giữ thứ tự.
+     *
+     * @return Số event xử lý thành công
+     */
+    private int processPartition(List<OutboxEvent> events) {
+        List<OutboxEvent> valid = new ArrayList<>(events.size());
+        List<OrderPaidEvent> payloads = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            try {
+                payloads.add(objectMapper.readValue(event.payload(), OrderPaidEvent.class));
+                valid.add(event);
+            } catch (JsonProcessingException e) {
+                // Payload hỏng: retry cũng không khỏi
+                markFailed(event, true, e);
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+        if (valid.size() > 1) {
+            try {
+                apply(valid, payloads);
+                return valid.size();
+            } catch (LeaseLostException e) {
+                log.warn("Lease lost while applying events for {}, leaving them to the new owner: {}",
+                        valid.get(0).partitionKey(), e.getMessage());
+                outboxRepository.release(valid);
+                return 0;
+            } catch (Exception e) {
+                log.warn("Failed to apply {} aggregated events for {}, retrying one by one: {}",
+                        valid.size(), valid.get(0).partitionKey(), e.getMessage());
+            }
+        }
+        for (int i = 0; i < valid.size(); i++) {
+            OutboxEvent event = valid.get(i);
+            try {
+                apply(List.of(event), List.of(payloads.get(i)));
+            } catch (LeaseLostException e) {
+                log.warn("Lease lost while applying {}, leaving it to the new owner: {}",
+                        event.idempotencyKey(), e.getMessage());
+                outboxRepository.release(valid.subList(i + 1, valid.size()));
+                return i;
+            } catch (Exception e) {
+                markFailed(event, event.attempts() + 1 >= maxAttempts, e);
+                outboxRepository.release(valid.subList(i + 1, valid.size()));
+                return i;
+            }
+        }
+        return valid.size();
+    }
+
+    /**
+     * Một transaction: cập nhật customer cho cả nhóm đơn + đánh dấu DONE
+     */
+    private void apply(List<OutboxEvent> events, List<OrderPaidEvent> payloads) {
+        // Thông tin liên hệ mới nhất (đơn cuối) được dùng để tìm / cập nhật customer
+        OrderPaidEvent latest = payloads.get(payloads.size() - 1);
+        transactionTemplate.executeWithoutResult(status -> {
+            Long customerId = customerService.findOrCreateCustomer(
+                    latest.getCustomerEmail(),
+                    latest.getCustomerPhone(),
+                    latest.getCustomerName()
+            );
+            customerService.updateLifetimeValueAndVipTier(customerId, payloads);
+            // Throw nếu đã mất lease -> rollback cả phần cập nhật customer
+            outboxRepository.markDone(events);
+        });
+        log.info("Processed {} order event(s) for {} (last: {})",
+                events.size(), latest.getCustomerId() != null ? latest.getCustomerId() : events.get(0).partitionKey(),
+                events.get(events.size() - 1).idempotencyKey());
+    }
+
+    private void markFailed(OutboxEvent event, boolean dead, Exception error) {
+        int attempt = event.attempts() + 1;
+        long delay = Math.min(retryMaxDelaySeconds, retryBaseDelaySeconds << Math.min(attempt - 1, 20));
+        if (dead) {
+            log.error("{} moved to dead letter after {} attempts", event.idempotencyKey(), attempt, error);
+        } else {
+            log.warn("Failed to process {}, retry in {}s: {}", event.idempotencyKey(), delay, error.getMessage());
+        }
+        outboxRepository.markFailed(event, dead, delay, error.getMessage());
+    }
+
+    /**
+     * Khóa thứ tự: cùng customer -> cùng partition (customerId; đơn guest: phone, rồi email - như findOrCreateCustomer)
+     */
+    private String partitionKey(OrderPaidEvent event) {
+        if (event.getCustomerId() != null) {
+            return "customer:" + event.getCustomerId();
+        }
+        if (event.getCustomerPhone() != null && !event.getCustomerPhone().isBlank()) {
+            return "phone:" + event.getCustomerPhone().trim();
+        }
+        if (event.getCustomerEmail() != null && !event.getCustomerEmail().isBlank()) {
+            return "email:" + event.getCustomerEmail().trim().toLowerCase(Locale.ROOT);
+        }
+        return "order:" + event.getOrderId();
+    }
+
+    private String toJson(OrderPaidEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize OrderPaidEvent", e);
+        }
+    }
+}
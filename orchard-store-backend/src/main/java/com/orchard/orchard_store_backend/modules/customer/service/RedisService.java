@@ -1,9 +1,21 @@
 package com.orchard.orchard_store_backend.modules.customer.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -13,6 +25,28 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class RedisService {
 
+    private static final String TAG_KEY_PREFIX = "cache:tag:";
+
+    /**
+     * SADD member vào tag set, TTL của tag set chỉ được nới ra (không bao giờ rút ngắn):
+     * set mới nhận TTL của member; set đã có TTL chỉ tăng lên nếu member sống lâu hơn;
+     * member không hết hạn (ttl <= 0) -> tag set cũng không hết hạn.
+     * KEYS[1] = tag set, ARGV[1] = member, ARGV[2] = TTL (seconds) của member.
+     */
+    private static final byte[] TAG_KEY_SCRIPT = """
+        local existed = redis.call('EXISTS', KEYS[1])
+        redis.call('SADD', KEYS[1], ARGV[1])
+        local ttl = tonumber(ARGV[2])
+        if ttl <= 0 then
+            return redis.call('PERSIST', KEYS[1])
+        end
+        local current = redis.call('TTL', KEYS[1])
+        if existed == 0 or (current >= 0 and current < ttl) then
+            return redis.call('EXPIRE', KEYS[1], ttl)
+        end
+        return 0
+        """.getBytes(StandardCharsets.UTF_8);
+
     private final StringRedisTemplate stringRedisTemplate;
 
     /**
@@ -40,6 +74,126 @@ public class RedisService {
         stringRedisTemplate.delete(key);
     }
 
+    /**
+     * Xóa tất cả key khớp pattern bằng SCAN (cursor, không block Redis như KEYS)
+     * và UNLINK theo từng batch (giải phóng bộ nhớ ở background thread của Redis).
+     *
+     * @param pattern Glob pattern, ví dụ "category:list:*"
+     * @param batchSize Số key mỗi lần SCAN / UNLINK
+     * @return Số key đã xóa
+     */
+    public long deleteByPattern(String pattern, int batchSize) {
+        Long deleted = stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            long count = 0;
+            List<byte[]> batch = new ArrayList<>(batchSize);
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= batchSize) {
+                        count += unlinkBatch(connection, batch);
+                    }
+                }
+            }
+            count += unlinkBatch(connection, batch);
+            return count;
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * Duyệt các key khớp pattern bằng SCAN và lấy TTL còn lại (PTTL, pipelined theo batch).
+     * Key không có TTL trả về -1, key đã biến mất giữa SCAN và PTTL bị bỏ qua.
+     *
+     * @param pattern Glob pattern, ví dụ "jwt:blacklist:*"
+     * @param batchSize Số key mỗi lần SCAN / PTTL
+     * @return key -> TTL còn lại (milliseconds)
+     */
+    public Map<String, Long> scanWithTtl(String pattern, int batchSize) {
+        List<String> keys = new ArrayList<>();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    keys.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                }
+            }
+            return null;
+        });
+
+        Map<String, Long> result = new HashMap<>(keys.size());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            List<Object> ttls = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : chunk) {
+                    connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                Object ttl = ttls.get(i);
+                if (ttl instanceof Long millis && millis != -2L) {
+                    result.put(chunk.get(i), millis);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gắn key vào các tag (Redis SET "cache:tag:{tag}"), pipelined, mỗi tag một lần chạy TAG_KEY_SCRIPT.
+     * TTL của tag set không ngắn hơn TTL của member sống lâu nhất -> tag set không hết hạn trước các key
+     * của nó (nếu không, deleteTag sẽ bỏ sót key còn sống).
+     */
+    public void tagKey(String key, long ttlSeconds, String... tags) {
+        if (tags == null || tags.length == 0) {
+            return;
+        }
+        byte[] member = key.getBytes(StandardCharsets.UTF_8);
+        byte[] ttl = Long.toString(ttlSeconds).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String tag : tags) {
+                byte[] tagKey = (TAG_KEY_PREFIX + tag).getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(TAG_KEY_SCRIPT, ReturnType.INTEGER, 1, tagKey, member, ttl);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Xóa mọi key thuộc tag - O(số key trong tag), không dùng KEYS/SCAN toàn keyspace.
+     * Chỉ SREM những member đã xóa để key được gắn tag đồng thời không bị mất khỏi tag.
+     *
+     * @return Các key đã xóa
+     */
+    public Set<String> deleteTag(String tag, int batchSize) {
+        String tagKey = TAG_KEY_PREFIX + tag;
+        Set<String> members = stringRedisTemplate.opsForSet().members(tagKey);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<String> keys = new ArrayList<>(members);
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[][] raw = chunk.stream()
+                        .map(k -> k.getBytes(StandardCharsets.UTF_8))
+                        .toArray(byte[][]::new);
+                connection.keyCommands().unlink(raw);
+                connection.setCommands().sRem(tagKey.getBytes(StandardCharsets.UTF_8), raw);
+                return null;
+            });
+        }
+        return members;
+    }
+
+    /**
+     * Publish message lên Redis pub/sub channel.
+     */
+    public void publish(String channel, String message) {
+        stringRedisTemplate.convertAndSend(channel, message);
+    }
+
     /**
      * Increment counter cho key. Nếu key mới -> set TTL.
      *
@@ -65,5 +219,13 @@ public class RedisService {
                 ? stringRedisTemplate.getConnectionFactory().getConnection().ping()
                 : "DOWN";
     }
-}
 
+    private long unlinkBatch(RedisConnection connection, List<byte[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Long unlinked = connection.keyCommands().unlink(batch.toArray(new byte[0][]));
+        batch.clear();
+        return unlinked != null ? unlinked : 0;
+    }
+}
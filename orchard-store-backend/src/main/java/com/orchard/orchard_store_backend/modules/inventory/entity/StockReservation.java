@@ -0,0 +1,85 @@
+package com.orchard.orchard_store_backend.modules.inventory.entity;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Giữ hàng tạm thời (bảng stock_reservations - migration V6).
+ * Trigger trg_sync_reserved_quantity tự đồng bộ warehouse_stock.reserved_quantity khi status thay đổi.
+ */
+@Entity
+@Table(name = "stock_reservations", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"product_variant_id", "warehouse_id", "reference_id", "reservation_type"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "product_variant_id", nullable = false)
+    private ProductVariant productVariant;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "warehouse_id", nullable = false)
+    private Warehouse warehouse;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reservation_type", nullable = false, length = 20)
+    private ReservationType reservationType;
+
+    @Column(name = "reference_id")
+    private Long referenceId;
+
+    /**
+     * Token ngẫu nhiên của phiên checkout (reservation_type = CHECKOUT)
+     */
+    @Column(name = "checkout_token", length = 64)
+    private String checkoutToken;
+
+    @Column(name = "owner_customer_id")
+    private Long ownerCustomerId;
+
+    @Column(name = "owner_session_id")
+    private String ownerSessionId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    @Builder.Default
+    private Status status = Status.ACTIVE;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum ReservationType {
+        CART,
+        CHECKOUT,
+        ORDER
+    }
+
+    public enum Status {
+        ACTIVE,
+        EXPIRED,
+        CONSUMED,
+        RELEASED
+    }
+}
@@ -0,0 +1,49 @@
+package com.orchard.orchard_store_backend.modules.inventory.scheduler;
+
+import com.orchard.orchard_store_backend.modules.inventory.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Scheduled job để expire các stock reservation quá hạn (khách bỏ ngang checkout)
+ *
+ * Mỗi batch chạy trong một transaction riêng để không giữ lock lâu,
+ * lặp lại cho đến khi batch cuối không đầy.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationExpiryJob {
+
+    private static final int MAX_BATCHES_PER_RUN = 100;
+
+    private final StockReservationService stockReservationService;
+
+    @Value("${app.inventory.reservation.sweep-batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.inventory.reservation.sweep-interval-ms:60000}")
+    public void expireReservations() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int total = 0;
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                int expired = stockReservationService.expireReservations(now, batchSize);
+                total += expired;
+                if (expired < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("Stock reservation sweep completed: {} reservations expired", total);
+            }
+        } catch (Exception e) {
+            log.error("Failed to expire stock reservations", e);
+        }
+    }
+}
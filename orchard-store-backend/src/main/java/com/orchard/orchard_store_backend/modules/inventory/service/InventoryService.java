@@ -3,10 +3,17 @@ package com.orchard.orchard_store_backend.modules.inventory.service;
 import com.orchard.orchard_store_backend.modules.inventory.dto.InventoryTransactionDTO;
 
 import java.util.List;
+import java.util.Map;
 
 public interface InventoryService {
     List<InventoryTransactionDTO> getTransactionsForVariant(Long variantId);
     InventoryTransactionDTO createTransaction(InventoryTransactionDTO dto);
     void adjustStock(Long variantId, int quantity, InventoryTransactionDTO.InventoryTransactionType type, String referenceType, Long referenceId, String notes);
+
+    /**
+     * Trừ tồn kho nguyên tử cho nhiều variant trong một câu lệnh (xem {@link StockDecrementEngine}).
+     * Chỉ các dòng thành công mới được ghi inventory transaction; caller quyết định rollback khi có dòng thất bại.
+     */
+    List<StockDecrementEngine.LineResult> decrementStock(Map<Long, Integer> quantities, String referenceType, Long referenceId, String notes);
 }
 
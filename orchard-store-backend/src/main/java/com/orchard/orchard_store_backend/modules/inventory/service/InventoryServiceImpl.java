@@ -1,16 +1,22 @@
 package com.orchard.orchard_store_backend.modules.inventory.service;
 
 import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.modules.catalog.product.event.ProductListingChangedEvent;
 import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantRepository;
 import com.orchard.orchard_store_backend.modules.inventory.dto.InventoryTransactionDTO;
 import com.orchard.orchard_store_backend.modules.inventory.entity.InventoryTransaction;
 import com.orchard.orchard_store_backend.modules.inventory.mapper.InventoryTransactionMapper;
 import com.orchard.orchard_store_backend.modules.inventory.repository.InventoryTransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,6 +28,11 @@ public class InventoryServiceImpl implements InventoryService {
     private final InventoryTransactionMapper inventoryTransactionMapper;
     private final StockAlertService stockAlertService;
     private final PreOrderService preOrderService;
+    private final StockDecrementEngine stockDecrementEngine;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Override
     public List<InventoryTransactionDTO> getTransactionsForVariant(Long variantId) {
@@ -77,11 +88,55 @@ public class InventoryServiceImpl implements InventoryService {
         postStockUpdate(variant);
     }
 
+    @Override
+    @Transactional
+    public List<StockDecrementEngine.LineResult> decrementStock(Map<Long, Integer> quantities, String referenceType, Long referenceId, String notes) {
+        entityManager.flush();
+        List<StockDecrementEngine.LineResult> results = stockDecrementEngine.decrementAll(quantities);
+
+        List<Long> decrementedIds = results.stream()
+                .filter(StockDecrementEngine.LineResult::success)
+                .map(StockDecrementEngine.LineResult::variantId)
+                .collect(Collectors.toList());
+        if (decrementedIds.isEmpty()) {
+            return results;
+        }
+
+        // Entity trong persistence context đã stale sau câu UPDATE native -> detach rồi load lại một lần
+        decrementedIds.forEach(id -> entityManager.detach(productVariantRepository.getReferenceById(id)));
+        Map<Long, ProductVariant> variants = productVariantRepository.findAllById(decrementedIds)
+                .stream()
+                .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+
+        List<InventoryTransaction> transactions = results.stream()
+                .filter(StockDecrementEngine.LineResult::success)
+                .map(result -> InventoryTransaction.builder()
+                        .productVariant(variants.get(result.variantId()))
+                        .transactionType(InventoryTransaction.TransactionType.OUT)
+                        .quantity(result.quantity())
+                        .referenceType(referenceType)
+                        .referenceId(referenceId)
+                        .stockBefore(result.stockBefore())
+                        .stockAfter(result.stockAfter())
+                        .notes(notes)
+                        .build())
+                .collect(Collectors.toList());
+        inventoryTransactionRepository.saveAll(transactions);
+        variants.values().forEach(stockAlertService::evaluateVariantStock);
+        eventPublisher.publishEvent(new ProductListingChangedEvent(variants.values().stream()
+                .map(variant -> variant.getProduct().getId())
+                .collect(Collectors.toSet())));
+        return results;
+    }
+
     private int[] adjustVariantStock(ProductVariant variant, int quantity, InventoryTransactionDTO.InventoryTransactionType type) {
+        if (type == InventoryTransactionDTO.InventoryTransactionType.OUT) {
+            return decrementVariantStock(variant, quantity);
+        }
         int stockBefore = variant.getStockQuantity();
         switch (type) {
             case IN -> variant.setStockQuantity(variant.getStockQuantity() + quantity);
-            case OUT, DAMAGED -> variant.setStockQuantity(Math.max(0, variant.getStockQuantity() - quantity));
+            case DAMAGED -> variant.setStockQuantity(Math.max(0, variant.getStockQuantity() - quantity));
             case ADJUSTMENT -> variant.setStockQuantity(Math.max(0, quantity));
             case RESERVE -> variant.setReservedQuantity(variant.getReservedQuantity() + quantity);
             case RELEASE -> variant.setReservedQuantity(Math.max(0, variant.getReservedQuantity() - quantity));
@@ -93,8 +148,22 @@ public class InventoryServiceImpl implements InventoryService {
         return new int[]{stockBefore, variant.getStockQuantity()};
     }
 
+    /**
+     * Xuất kho qua câu UPDATE có điều kiện, không bán vượt phần tồn kho khả dụng (stock - reserved).
+     */
+    private int[] decrementVariantStock(ProductVariant variant, int quantity) {
+        entityManager.flush();
+        StockDecrementEngine.LineResult result = stockDecrementEngine.decrement(variant.getId(), quantity);
+        if (!result.success()) {
+            throw new IllegalStateException("Sản phẩm " + variant.getVariantName() + " không đủ tồn kho");
+        }
+        entityManager.refresh(variant);
+        return new int[]{result.stockBefore(), result.stockAfter()};
+    }
+
     private void postStockUpdate(ProductVariant variant) {
         stockAlertService.evaluateVariantStock(variant);
+        eventPublisher.publishEvent(ProductListingChangedEvent.of(variant.getProduct().getId()));
         if (variant.getAvailableQuantity() > 0) {
             preOrderService.processRestock(variant);
         }
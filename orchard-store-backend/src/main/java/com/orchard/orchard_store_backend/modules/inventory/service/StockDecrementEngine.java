@@ -0,0 +1,102 @@
+package com.orchard.orchard_store_backend.modules.inventory.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Trừ tồn kho nguyên tử bằng câu UPDATE có điều kiện thay vì read-modify-write trên entity.
+ *
+ * Điều kiện {@code stock_quantity - reserved_quantity >= qty} được kiểm tra ngay trong câu UPDATE,
+ * nên hai checkout đồng thời trên cùng một SKU không thể bán vượt tồn kho hoặc ghi đè lên nhau.
+ * Đơn nhiều dòng được gộp thành MỘT câu lệnh (UNNEST mảng id/quantity), các dòng không đủ hàng
+ * sẽ không có trong RETURNING và được báo về là thất bại.
+ *
+ * stock_status không được set ở đây: trigger trg_update_stock_status (V1, BEFORE UPDATE OF stock_quantity)
+ * tính lại nó từ stock_quantity mới.
+ *
+ * ⚠️ Câu lệnh chạy qua JDBC nên các ProductVariant đang nằm trong persistence context sẽ bị stale,
+ * caller phải flush trước và load lại entity sau khi gọi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockDecrementEngine {
+
+    private static final String DECREMENT_SQL = """
+        UPDATE product_variants pv
+        SET stock_quantity = COALESCE(pv.stock_quantity, 0) - req.qty,
+            updated_at = CURRENT_TIMESTAMP
+        FROM (SELECT UNNEST(?::bigint[]) AS id, UNNEST(?::integer[]) AS qty) req
+        WHERE pv.id = req.id
+          AND COALESCE(pv.stock_quantity, 0) - COALESCE(pv.reserved_quantity, 0) >= req.qty
+        RETURNING pv.id, pv.stock_quantity
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Trừ tồn kho cho một variant.
+     */
+    public LineResult decrement(Long variantId, int quantity) {
+        return decrementAll(Map.of(variantId, quantity)).get(0);
+    }
+
+    /**
+     * Trừ tồn kho cho nhiều variant trong một câu lệnh.
+     *
+     * @param quantities variantId -> số lượng cần trừ (các dòng trùng variant phải được cộng dồn trước)
+     * @return kết quả cho từng variant, theo thứ tự variantId tăng dần
+     */
+    public List<LineResult> decrementAll(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+
+        // Sắp xếp theo id để các đơn đồng thời lấy row lock theo cùng một thứ tự
+        TreeMap<Long, Integer> sorted = new TreeMap<>(quantities);
+        Long[] ids = sorted.keySet().toArray(new Long[0]);
+        Integer[] qtys = sorted.values().toArray(new Integer[0]);
+
+        Map<Long, Integer> stockAfterById = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DECREMENT_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", ids));
+            ps.setArray(2, connection.createArrayOf("integer", qtys));
+            return ps;
+        }, rs -> {
+            stockAfterById.put(rs.getLong(1), rs.getInt(2));
+        });
+
+        List<LineResult> results = new ArrayList<>(sorted.size());
+        sorted.forEach((variantId, quantity) -> {
+            Integer stockAfter = stockAfterById.get(variantId);
+            if (stockAfter != null) {
+                results.add(new LineResult(variantId, quantity, true, stockAfter + quantity, stockAfter));
+            } else {
+                log.warn("Insufficient stock for variant {} (requested {})", variantId, quantity);
+                results.add(new LineResult(variantId, quantity, false, null, null));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Kết quả trừ tồn kho của một dòng. stockBefore/stockAfter chỉ có giá trị khi success = true.
+     */
+    public record LineResult(
+            Long variantId,
+            int quantity,
+            boolean success,
+            Integer stockBefore,
+            Integer stockAfter
+    ) {}
+}
@@ -0,0 +1,61 @@
+package com.orchard.orchard_store_backend.modules.inventory.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface StockReservationService {
+
+    /**
+     * Giữ hàng cho một phiên checkout.
+     *
+     * @param quantities variantId -> số lượng cần giữ
+     * @param owner      chủ phiên checkout; chỉ chủ này mới consume / release được reservation
+     * @return kết quả giữ hàng; các variant không đủ hàng nằm trong {@link ReservationResult#rejectedVariantIds()}
+     */
+    ReservationResult reserveForCheckout(Map<Long, Integer> quantities, CheckoutOwner owner);
+
+    /**
+     * Chuyển các reservation ACTIVE của phiên checkout sang CONSUMED khi đặt hàng.
+     * Token không thuộc owner được xử lý như không có reservation.
+     *
+     * @return variantId -> số lượng đã được giữ (đã trả lại vào phần khả dụng để trừ kho)
+     */
+    Map<Long, Integer> consumeCheckout(String token, CheckoutOwner owner);
+
+    /**
+     * Giải phóng các reservation ACTIVE của phiên checkout (khách bỏ ngang).
+     * Token không thuộc owner được bỏ qua.
+     */
+    Map<Long, Integer> releaseCheckout(String token, CheckoutOwner owner);
+
+    /**
+     * Expire tối đa batchSize reservation quá hạn (một transaction cho mỗi batch).
+     *
+     * @return số reservation đã expire trong batch
+     */
+    int expireReservations(LocalDateTime now, int batchSize);
+
+    /**
+     * Chủ phiên checkout: customer đã đăng nhập (customerId lấy từ principal) hoặc session của khách vãng lai.
+     * Reservation có customer chỉ khớp theo customer; reservation của guest khớp theo session.
+     */
+    record CheckoutOwner(Long customerId, String sessionId) {
+        public boolean isEmpty() {
+            return customerId == null && (sessionId == null || sessionId.isBlank());
+        }
+    }
+
+    /**
+     * @param token token ngẫu nhiên (không đoán được) trả cho client để tham chiếu phiên checkout
+     */
+    record ReservationResult(
+            String token,
+            LocalDateTime expiresAt,
+            List<Long> rejectedVariantIds
+    ) {
+        public boolean isFullyReserved() {
+            return rejectedVariantIds.isEmpty();
+        }
+    }
+}
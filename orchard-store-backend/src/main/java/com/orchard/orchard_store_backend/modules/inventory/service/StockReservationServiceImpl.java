@@ -0,0 +1,195 @@
+package com.orchard.orchard_store_backend.modules.inventory.service;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ hàng trong lúc khách thanh toán mà không cần giữ transaction DB dài.
+ *
+ * - reserveForCheckout: chọn kho còn đủ hàng và insert reservation trong MỘT câu lệnh
+ * - consume / release / expire: đổi status ACTIVE -> CONSUMED / RELEASED / EXPIRED
+ * - phiên checkout được tham chiếu bằng token ngẫu nhiên gắn với customer / session, consume và release kiểm tra chủ
+ *
+ * Số lượng chỉ do chuỗi trigger cập nhật: trg_sync_reserved_quantity (V6) đổi warehouse_stock.reserved_quantity,
+ * trg_sync_variant_stock (V1) đặt product_variants.stock_quantity = tổng available_quantity các kho.
+ * Service không ghi product_variants.reserved_quantity, nếu không mỗi đơn vị đang giữ bị trừ hai lần.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    /**
+     * Mỗi variant giữ hàng ở một kho còn đủ available_quantity (kho nhiều hàng nhất), row warehouse_stock được khóa
+     * FOR UPDATE trước khi insert. Không có kho nào đủ -> variant không có trong RETURNING (bị từ chối).
+     * Nếu row vừa bị transaction khác đổi, Postgres kiểm tra lại điều kiện trên bản mới sau khi chờ lock:
+     * không còn đủ hàng thì variant đó bị từ chối thay vì vi phạm chk_warehouse_stock_reserved.
+     */
+    private static final String RESERVE_SQL = """
+        WITH req AS (
+            SELECT UNNEST(?::bigint[]) AS variant_id, UNNEST(?::integer[]) AS qty
+        )
+        INSERT INTO stock_reservations (product_variant_id, warehouse_id, reservation_type, checkout_token,
+                                        owner_customer_id, owner_session_id, quantity, expires_at, status)
+        SELECT req.variant_id, ws.warehouse_id, 'CHECKOUT', ?, ?, ?, req.qty, ?, 'ACTIVE'
+        FROM req
+        CROSS JOIN LATERAL (
+            SELECT w.warehouse_id FROM warehouse_stock w
+            WHERE w.product_variant_id = req.variant_id AND w.available_quantity >= req.qty
+            ORDER BY w.available_quantity DESC, w.warehouse_id
+            LIMIT 1
+            FOR UPDATE
+        ) ws
+        RETURNING product_variant_id
+        """;
+
+    /**
+     * Đổi status các reservation được chọn bởi %s; trigger trả reserved_quantity về warehouse_stock.
+     */
+    private static final String TRANSITION_SQL_TEMPLATE = """
+        UPDATE stock_reservations sr
+        SET status = ?
+        WHERE sr.status = 'ACTIVE'
+          AND sr.id IN (%s)
+        RETURNING sr.product_variant_id, sr.quantity
+        """;
+
+    // Token chỉ có hiệu lực với đúng chủ: customer nếu reservation gắn customer, ngược lại session của guest
+    private static final String BY_TOKEN_SQL = TRANSITION_SQL_TEMPLATE.formatted("""
+        SELECT id FROM stock_reservations
+        WHERE checkout_token = ? AND reservation_type = 'CHECKOUT' AND status = 'ACTIVE'
+          AND (owner_customer_id = ?
+               OR (owner_customer_id IS NULL AND owner_session_id = ?))""");
+
+    // Dùng partial index idx_stock_reservations_expires (expires_at WHERE status = 'ACTIVE')
+    private static final String EXPIRE_SQL = TRANSITION_SQL_TEMPLATE.formatted("""
+        SELECT id FROM stock_reservations
+        WHERE status = 'ACTIVE' AND expires_at < ?
+        ORDER BY expires_at
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED""");
+
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.inventory.reservation.ttl-minutes:15}")
+    private long reservationTtlMinutes;
+
+    @Override
+    @Transactional
+    public ReservationResult reserveForCheckout(Map<Long, Integer> quantities, CheckoutOwner owner) {
+        if (owner == null || owner.isEmpty()) {
+            throw new IllegalArgumentException("Cần customer hoặc session để giữ hàng cho checkout");
+        }
+        String token = newToken();
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(reservationTtlMinutes);
+        if (quantities.isEmpty()) {
+            return new ReservationResult(token, expiresAt, List.of());
+        }
+
+        TreeMap<Long, Integer> sorted = new TreeMap<>(quantities);
+        Long[] ids = sorted.keySet().toArray(new Long[0]);
+        Integer[] qtys = sorted.values().toArray(new Integer[0]);
+
+        Set<Long> reservedIds = new HashSet<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RESERVE_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", ids));
+            ps.setArray(2, connection.createArrayOf("integer", qtys));
+            ps.setString(3, token);
+            ps.setObject(4, owner.customerId(), Types.BIGINT);
+            ps.setString(5, owner.customerId() == null ? owner.sessionId() : null);
+            ps.setTimestamp(6, Timestamp.valueOf(expiresAt));
+            return ps;
+        }, rs -> {
+            reservedIds.add(rs.getLong(1));
+        });
+
+        List<Long> rejected = sorted.keySet().stream()
+                .filter(id -> !reservedIds.contains(id))
+                .collect(Collectors.toList());
+        if (!rejected.isEmpty()) {
+            log.warn("Checkout reservation: insufficient stock for variants {}", rejected);
+        }
+        return new ReservationResult(token, expiresAt, rejected);
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Integer> consumeCheckout(String token, CheckoutOwner owner) {
+        return transitionByToken(token, owner, "CONSUMED");
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Integer> releaseCheckout(String token, CheckoutOwner owner) {
+        return transitionByToken(token, owner, "RELEASED");
+    }
+
+    @Override
+    @Transactional
+    public int expireReservations(LocalDateTime now, int batchSize) {
+        Map<Long, Integer> released = new HashMap<>();
+        int[] count = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXPIRE_SQL);
+            ps.setString(1, "EXPIRED");
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setInt(3, batchSize);
+            return ps;
+        }, rs -> {
+            released.merge(rs.getLong(1), rs.getInt(2), Integer::sum);
+            count[0]++;
+        });
+        if (count[0] > 0) {
+            log.debug("Expired {} stock reservations on {} variants", count[0], released.size());
+        }
+        return count[0];
+    }
+
+    private Map<Long, Integer> transitionByToken(String token, CheckoutOwner owner, String status) {
+        Map<Long, Integer> released = new HashMap<>();
+        if (token == null || token.isBlank() || owner == null || owner.isEmpty()) {
+            return released;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BY_TOKEN_SQL);
+            ps.setString(1, status);
+            ps.setString(2, token);
+            ps.setObject(3, owner.customerId(), Types.BIGINT);
+            ps.setString(4, owner.sessionId());
+            return ps;
+        }, rs -> {
+            released.merge(rs.getLong(1), rs.getInt(2), Integer::sum);
+        });
+        return released;
+    }
+
+    /**
+     * 128-bit ngẫu nhiên, base64url (22 ký tự)
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        TOKEN_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
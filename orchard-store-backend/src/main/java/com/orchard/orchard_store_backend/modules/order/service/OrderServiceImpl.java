@@ -1,6 +1,7 @@
 package com.orchard.orchard_store_backend.modules.order.service;
 
 import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
+import com.orchard.orchard_store_backend.modules.customer.service.OrderPaidOutboxProcessor;
 import com.orchard.orchard_store_backend.modules.order.entity.Order;
 import com.orchard.orchard_store_backend.modules.order.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service xử lý đơn hàng
- * Publish OrderPaidEvent khi order được thanh toán thành công
+ * Ghi OrderPaidEvent vào outbox (cùng transaction với order) khi order được thanh toán thành công
  */
 @Service
 @RequiredArgsConstructor
@@ -21,6 +22,7 @@ public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
     private final ApplicationEventPublisher eventPublisher;
+    private final OrderPaidOutboxProcessor orderPaidOutboxProcessor;
 
     @Override
     public void updatePaymentStatus(Long orderId, String paymentStatus) {
@@ -35,7 +37,7 @@ public class OrderServiceImpl implements OrderService {
             order.setPaidAt(java.time.LocalDateTime.now());
             orderRepository.save(order);
 
-            // Publish event để trigger tính toán VIP (xử lý bất đồng bộ)
+            // Ghi event vào outbox để trigger tính toán VIP (xử lý bất đồng bộ, có retry)
             OrderPaidEvent event = new OrderPaidEvent(
                     order.getId(),
                     order.getCustomerId(),
@@ -45,8 +47,10 @@ public class OrderServiceImpl implements OrderService {
                     order.getCustomerName()
             );
 
+            orderPaidOutboxProcessor.enqueue(event);
+            // Đánh thức processor ngay sau commit (job định kỳ vẫn xử lý nếu lần này lỗi)
             eventPublisher.publishEvent(event);
-            log.info("Published OrderPaidEvent for orderId: {}, amount: {}", orderId, order.getTotalAmount());
+            log.info("Queued OrderPaidEvent for orderId: {}, amount: {}", orderId, order.getTotalAmount());
         } else {
             orderRepository.save(order);
         }
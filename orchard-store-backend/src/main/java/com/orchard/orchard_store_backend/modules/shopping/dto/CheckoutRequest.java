@@ -51,6 +51,11 @@ public class CheckoutRequest {
     private String paymentMethod;
     private String shippingMethod;
 
+    /**
+     * Reference giữ hàng trả về từ bước bắt đầu checkout (optional).
+     */
+    private String reservationReference;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
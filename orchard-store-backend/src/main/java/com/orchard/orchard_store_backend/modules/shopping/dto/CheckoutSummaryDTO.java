@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +32,9 @@ public class CheckoutSummaryDTO {
     private BigDecimal spendToNextTier;
     private Double progressPercent;
 
+    private String reservationReference;
+    private LocalDateTime reservationExpiresAt;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -6,9 +6,10 @@ import com.orchard.orchard_store_backend.modules.catalog.product.repository.Prod
 import com.orchard.orchard_store_backend.modules.customer.entity.Customer;
 import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
 import com.orchard.orchard_store_backend.modules.customer.repository.CustomerRepository;
-import com.orchard.orchard_store_backend.modules.customer.repository.MemberPricingTierRepository;
-import com.orchard.orchard_store_backend.modules.inventory.dto.InventoryTransactionDTO;
+import com.orchard.orchard_store_backend.modules.customer.service.MemberTierTable;
 import com.orchard.orchard_store_backend.modules.inventory.service.InventoryService;
+import com.orchard.orchard_store_backend.modules.inventory.service.StockDecrementEngine;
+import com.orchard.orchard_store_backend.modules.inventory.service.StockReservationService;
 import com.orchard.orchard_store_backend.modules.order.entity.Order;
 import com.orchard.orchard_store_backend.modules.order.entity.OrderItem;
 import com.orchard.orchard_store_backend.modules.order.repository.OrderRepository;
@@ -28,8 +29,11 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,8 +43,9 @@ public class CheckoutService {
 
     private final ProductVariantRepository productVariantRepository;
     private final CustomerRepository customerRepository;
-    private final MemberPricingTierRepository memberPricingTierRepository;
+    private final MemberTierTable memberTierTable;
     private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
     private final OrderRepository orderRepository;
     private final CartService cartService;
     private final PromotionService promotionService;
@@ -48,20 +53,74 @@ public class CheckoutService {
 
     @Transactional(readOnly = true)
     public CheckoutSummaryDTO calculateCheckout(CheckoutRequest request) {
-        return calculate(request).summary;
+        return calculate(request, loadContext(request)).summary;
     }
 
-    private CalculationResult calculate(CheckoutRequest request) {
+    /**
+     * Bắt đầu checkout: tính tổng tiền và giữ hàng trong thời gian khách thanh toán.
+     * Nếu request đã có reservationReference (khách quay lại bước checkout) thì giải phóng reservation cũ trước.
+     */
+    @Transactional
+    public CheckoutSummaryDTO startCheckout(CheckoutRequest request) {
+        CheckoutContext context = loadContext(request);
+        CheckoutSummaryDTO summary = calculate(request, context).summary;
+
+        StockReservationService.CheckoutOwner owner = checkoutOwner(request);
+        stockReservationService.releaseCheckout(request.getReservationReference(), owner);
+        StockReservationService.ReservationResult reservation =
+                stockReservationService.reserveForCheckout(collectQuantities(request.getItems()), owner);
+        if (!reservation.isFullyReserved()) {
+            ProductVariant variant = context.getVariant(reservation.rejectedVariantIds().get(0));
+            throw new IllegalStateException("Sản phẩm " + variant.getVariantName() + " không đủ tồn kho");
+        }
+
+        summary.setReservationReference(reservation.token());
+        summary.setReservationExpiresAt(reservation.expiresAt());
+        return summary;
+    }
+
+    /**
+     * Khách bỏ ngang checkout: trả hàng đang giữ về tồn kho khả dụng ngay, không chờ sweeper.
+     * Chỉ reservation thuộc customer / session của request mới được giải phóng.
+     */
+    @Transactional
+    public void abandonCheckout(String reservationReference, Long customerId, String sessionId) {
+        stockReservationService.releaseCheckout(reservationReference,
+                new StockReservationService.CheckoutOwner(customerId, sessionId));
+    }
+
+    /**
+     * Load toàn bộ dữ liệu cần cho checkout trong một lần:
+     * variants (kèm product) bằng một câu IN query và customer; bảng tier đọc từ MemberTierTable (trong bộ nhớ).
+     * Các bước calculate / validate / build / adjust dùng chung context này
+     * nên số câu query không phụ thuộc vào số dòng trong đơn hàng.
+     */
+    private CheckoutContext loadContext(CheckoutRequest request) {
         if (CollectionUtils.isEmpty(request.getItems())) {
             throw new IllegalArgumentException("Danh sách sản phẩm không được để trống");
         }
 
+        Set<Long> variantIds = request.getItems().stream()
+                .map(CheckoutItemDTO::getProductVariantId)
+                .collect(Collectors.toSet());
+        Map<Long, ProductVariant> variants = productVariantRepository.findAllWithProductByIdIn(variantIds)
+                .stream()
+                .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+
+        Customer customer = null;
+        if (request.getCustomer() != null && request.getCustomer().getCustomerId() != null) {
+            customer = customerRepository.findById(request.getCustomer().getCustomerId()).orElse(null);
+        }
+
+        return new CheckoutContext(variants, customer, resolveVipContext(customer));
+    }
+
+    private CalculationResult calculate(CheckoutRequest request, CheckoutContext context) {
         List<CheckoutSummaryDTO.ItemSummary> items = new ArrayList<>();
         BigDecimal subtotal = BigDecimal.ZERO;
 
         for (CheckoutItemDTO item : request.getItems()) {
-            ProductVariant variant = productVariantRepository.findById(item.getProductVariantId())
-                    .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", item.getProductVariantId()));
+            ProductVariant variant = context.getVariant(item.getProductVariantId());
 
             BigDecimal unitPrice = resolveUnitPrice(variant);
             BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(item.getQuantity()));
@@ -78,7 +137,7 @@ public class CheckoutService {
                     .build());
         }
 
-        VipContext vipContext = resolveVipContext(request);
+        VipContext vipContext = context.vipContext;
         BigDecimal vipDiscountAmount = subtotal
                 .multiply(vipContext.discountRate)
                 .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
@@ -116,22 +175,26 @@ public class CheckoutService {
 
     @Transactional
     public Order placeOrder(CheckoutRequest request) {
-        CalculationResult calc = calculate(request);
+        CheckoutContext context = loadContext(request);
+        CalculationResult calc = calculate(request, context);
         CheckoutSummaryDTO summary = calc.summary;
         PromotionValidationResult promoResult = calc.promotionResult;
 
-        Customer customer = resolveOrCreateCustomer(request);
-        VipContext vipContext = resolveVipContext(request);
+        Customer customer = resolveOrCreateCustomer(request, context);
 
-        validateInventory(request.getItems());
+        // Hàng đang giữ cho phiên checkout này được trả lại phần khả dụng trước khi trừ kho
+        Map<Long, Integer> heldQuantities = stockReservationService.consumeCheckout(
+                request.getReservationReference(), checkoutOwner(request));
 
-        Order order = buildOrderEntity(request, summary, customer, vipContext, promoResult);
-        List<OrderItem> orderItems = buildOrderItems(request.getItems(), order);
+        validateInventory(request.getItems(), context, heldQuantities);
+
+        Order order = buildOrderEntity(request, summary, customer, context.vipContext, promoResult);
+        List<OrderItem> orderItems = buildOrderItems(request.getItems(), order, context);
         order.setOrderItems(orderItems);
 
         Order savedOrder = orderRepository.save(order);
 
-        adjustInventory(orderItems, savedOrder.getId());
+        adjustInventory(orderItems, savedOrder.getId(), context);
 
         cartService.clearCart(request.getSessionId(), customer != null ? customer.getId() : null);
 
@@ -151,30 +214,52 @@ public class CheckoutService {
         return savedOrder;
     }
 
-    private void validateInventory(List<CheckoutItemDTO> items) {
+    private void validateInventory(List<CheckoutItemDTO> items, CheckoutContext context, Map<Long, Integer> heldQuantities) {
         for (CheckoutItemDTO item : items) {
-            ProductVariant variant = productVariantRepository.findById(item.getProductVariantId())
-                    .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", item.getProductVariantId()));
-            Integer stock = Optional.ofNullable(variant.getStockQuantity()).orElse(0);
-            if (stock < item.getQuantity()) {
+            ProductVariant variant = context.getVariant(item.getProductVariantId());
+            int available = variant.getAvailableQuantity() + heldQuantities.getOrDefault(variant.getId(), 0);
+            if (available < item.getQuantity()) {
                 throw new IllegalStateException("Sản phẩm " + variant.getVariantName() + " không đủ tồn kho");
             }
         }
     }
 
-    private void adjustInventory(List<OrderItem> orderItems, Long orderId) {
-        orderItems.forEach(item -> {
-            if (item.getProductVariant() != null) {
-                inventoryService.adjustStock(
-                        item.getProductVariant().getId(),
-                        item.getQuantity(),
-                        InventoryTransactionDTO.InventoryTransactionType.OUT,
-                        "ORDER",
-                        orderId,
-                        "Checkout order " + orderId
-                );
-            }
-        });
+    /**
+     * Trừ tồn kho cho cả đơn trong một câu UPDATE có điều kiện.
+     * validateInventory chỉ là kiểm tra sớm; đảm bảo không bán vượt nằm ở câu UPDATE này,
+     * nếu có dòng nào không đủ hàng thì ném exception để rollback toàn bộ đơn.
+     */
+    private void adjustInventory(List<OrderItem> orderItems, Long orderId, CheckoutContext context) {
+        Map<Long, Integer> quantities = orderItems.stream()
+                .filter(item -> item.getProductVariant() != null)
+                .collect(Collectors.toMap(item -> item.getProductVariant().getId(), OrderItem::getQuantity, Integer::sum));
+
+        List<StockDecrementEngine.LineResult> results = inventoryService.decrementStock(
+                quantities,
+                "ORDER",
+                orderId,
+                "Checkout order " + orderId
+        );
+
+        results.stream()
+                .filter(result -> !result.success())
+                .findFirst()
+                .ifPresent(result -> {
+                    throw new IllegalStateException("Sản phẩm " + context.getVariant(result.variantId()).getVariantName() + " không đủ tồn kho");
+                });
+    }
+
+    private Map<Long, Integer> collectQuantities(List<CheckoutItemDTO> items) {
+        return items.stream()
+                .collect(Collectors.toMap(CheckoutItemDTO::getProductVariantId, CheckoutItemDTO::getQuantity, Integer::sum));
+    }
+
+    /**
+     * Chủ phiên checkout: customerId (đã đăng nhập) hoặc sessionId (guest)
+     */
+    private StockReservationService.CheckoutOwner checkoutOwner(CheckoutRequest request) {
+        Long customerId = request.getCustomer() != null ? request.getCustomer().getCustomerId() : null;
+        return new StockReservationService.CheckoutOwner(customerId, request.getSessionId());
     }
 
     private Order buildOrderEntity(CheckoutRequest request,
@@ -218,11 +303,10 @@ public class CheckoutService {
                 .build();
     }
 
-    private List<OrderItem> buildOrderItems(List<CheckoutItemDTO> items, Order order) {
+    private List<OrderItem> buildOrderItems(List<CheckoutItemDTO> items, Order order, CheckoutContext context) {
         return items.stream()
                 .map(item -> {
-                    ProductVariant variant = productVariantRepository.findById(item.getProductVariantId())
-                            .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", item.getProductVariantId()));
+                    ProductVariant variant = context.getVariant(item.getProductVariantId());
 
                     BigDecimal unitPrice = resolveUnitPrice(variant);
                     BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(item.getQuantity()));
@@ -243,27 +327,18 @@ public class CheckoutService {
                 .collect(Collectors.toList());
     }
 
-    private VipContext resolveVipContext(CheckoutRequest request) {
+    private VipContext resolveVipContext(Customer customer) {
         VipContext context = new VipContext();
 
-        if (request.getCustomer() != null && request.getCustomer().getCustomerId() != null) {
-            Customer customer = customerRepository.findById(request.getCustomer().getCustomerId())
+        if (customer != null) {
+            BigDecimal totalPurchase = Optional.ofNullable(customer.getTotalPurchaseAmount()).orElse(BigDecimal.ZERO);
+            MemberPricingTier currentTier = customer.getCurrentVipTierId() != null
+                    ? memberTierTable.findById(customer.getCurrentVipTierId()).orElse(null)
+                    : memberTierTable.highestTierFor(totalPurchase).orElse(null);
+            MemberPricingTier nextTier = memberTierTable
+                    .nextTierAbove(currentTier != null ? currentTier.getTierLevel() : 0)
                     .orElse(null);
-            if (customer != null) {
-                BigDecimal totalPurchase = Optional.ofNullable(customer.getTotalPurchaseAmount()).orElse(BigDecimal.ZERO);
-                MemberPricingTier currentTier = null;
-                if (customer.getCurrentVipTierId() != null) {
-                    currentTier = memberPricingTierRepository.findById(customer.getCurrentVipTierId()).orElse(null);
-                } else {
-                    currentTier = memberPricingTierRepository.findHighestTierByPurchaseAmount(totalPurchase).orElse(null);
-                }
-                List<MemberPricingTier> tiers = memberPricingTierRepository.findAll()
-                        .stream()
-                        .sorted((a, b) -> Integer.compare(a.getTierLevel(), b.getTierLevel()))
-                        .collect(Collectors.toList());
-                MemberPricingTier nextTier = resolveNextTier(currentTier, tiers);
-                fillVipContext(context, currentTier, nextTier, totalPurchase);
-            }
+            fillVipContext(context, currentTier, nextTier, totalPurchase);
         }
 
         return context;
@@ -297,15 +372,7 @@ public class CheckoutService {
         }
     }
 
-    private MemberPricingTier resolveNextTier(MemberPricingTier currentTier, List<MemberPricingTier> tiers) {
-        int currentLevel = currentTier != null ? currentTier.getTierLevel() : 0;
-        return tiers.stream()
-                .filter(tier -> tier.getTierLevel() > currentLevel)
-                .findFirst()
-                .orElse(null);
-    }
-
-    private Customer resolveOrCreateCustomer(CheckoutRequest request) {
+    private Customer resolveOrCreateCustomer(CheckoutRequest request, CheckoutContext context) {
         if (request.getCustomer() == null) {
             return null;
         }
@@ -313,8 +380,10 @@ public class CheckoutService {
         CheckoutRequest.CheckoutCustomerInfo info = request.getCustomer();
 
         if (info.getCustomerId() != null) {
-            return customerRepository.findById(info.getCustomerId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Customer", info.getCustomerId()));
+            if (context.customer == null) {
+                throw new ResourceNotFoundException("Customer", info.getCustomerId());
+            }
+            return context.customer;
         }
 
         return customerRepository.findByEmail(info.getEmail())
@@ -349,6 +418,26 @@ public class CheckoutService {
         private Double progressPercent = 100.0;
     }
 
+    private static class CheckoutContext {
+        private final Map<Long, ProductVariant> variants;
+        private final Customer customer;
+        private final VipContext vipContext;
+
+        private CheckoutContext(Map<Long, ProductVariant> variants, Customer customer, VipContext vipContext) {
+            this.variants = variants;
+            this.customer = customer;
+            this.vipContext = vipContext;
+        }
+
+        private ProductVariant getVariant(Long variantId) {
+            ProductVariant variant = variants.get(variantId);
+            if (variant == null) {
+                throw new ResourceNotFoundException("ProductVariant", variantId);
+            }
+            return variant;
+        }
+    }
+
     private static class CalculationResult {
         private final CheckoutSummaryDTO summary;
         private final PromotionValidationResult promotionResult;
@@ -15,6 +15,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * JWT Authentication Filter
@@ -36,7 +37,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
+            // Parse + verify một lần (cache theo hash của token), không parse lại cho từng claim
+            Optional<JwtPrincipal> principal = StringUtils.hasText(jwt)
+                    ? tokenProvider.resolvePrincipal(jwt)
+                    : Optional.empty();
+
+            if (principal.isPresent()) {
                 // Check if token is blacklisted
                 if (tokenBlacklistService.isTokenBlacklisted(jwt)) {
                     logger.warn("Blacklisted token detected");
@@ -46,7 +52,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
                 
                 // Get authentication from token (includes authorities)
-                var authentication = tokenProvider.getAuthentication(jwt);
+                var authentication = tokenProvider.getAuthentication(principal.get());
                 
                 // Set details if it's a UsernamePasswordAuthenticationToken
                 if (authentication instanceof UsernamePasswordAuthenticationToken) {
@@ -0,0 +1,35 @@
+package com.orchard.orchard_store_backend.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Kết quả parse + verify JWT một lần duy nhất (immutable, an toàn để cache dùng chung giữa các request)
+ *
+ * @param userId Claim userId
+ * @param email Subject của token
+ * @param roles Claim roles (ROLE_*)
+ * @param permissions Claim authorities (resource:action)
+ * @param grantedAuthorities roles + permissions đã dựng sẵn cho SecurityContext
+ * @param expiresAt Thời điểm token hết hạn
+ */
+public record JwtPrincipal(
+        Long userId,
+        String email,
+        List<String> roles,
+        List<String> permissions,
+        List<GrantedAuthority> grantedAuthorities,
+        Instant expiresAt
+) {
+    public JwtPrincipal {
+        roles = List.copyOf(roles);
+        permissions = List.copyOf(permissions);
+        grantedAuthorities = List.copyOf(grantedAuthorities);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt == null || !expiresAt.isAfter(now);
+    }
+}
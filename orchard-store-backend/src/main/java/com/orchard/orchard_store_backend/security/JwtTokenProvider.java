@@ -1,9 +1,14 @@
 package com.orchard.orchard_store_backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.orchard.orchard_store_backend.config.properties.JwtProperties;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -11,6 +16,11 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -18,20 +28,58 @@ import java.util.stream.Collectors;
 /**
  * JWT Token Provider for generating and validating JWT tokens
  * Embeds userId, email, and authorities (roles + permissions) into token claims
+ *
+ * SecretKey và JwtParser được tạo một lần lúc khởi động. Token đã verify được cache theo SHA-256 của token
+ * (bounded, hết hạn không muộn hơn exp của token) để request lặp lại bỏ qua bước verify HMAC.
  */
 @Component
 public class JwtTokenProvider {
     
     @Autowired
     private JwtProperties jwtProperties;
-    
-    private SecretKey getSigningKey() {
+
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    private Cache<String, JwtPrincipal> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
         try {
             // Use UTF-8 encoding explicitly to avoid encoding issues
-            return Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            signingKey = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
         } catch (Exception e) {
             throw new RuntimeException("Failed to create signing key", e);
         }
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getVerifiedCacheMaxSize())
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtPrincipal principal, long currentTime) {
+                        long untilExpiry = Duration.between(Instant.now(), principal.expiresAt()).toNanos();
+                        long cacheTtl = Duration.ofMillis(jwtProperties.getVerifiedCacheTtlMs()).toNanos();
+                        return Math.max(0, Math.min(untilExpiry, cacheTtl));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+    
+    private SecretKey getSigningKey() {
+        return signingKey;
     }
     
     /**
@@ -155,9 +203,7 @@ public class JwtTokenProvider {
     }
     
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -166,12 +212,34 @@ public class JwtTokenProvider {
      * Validate token signature and expiration
      */
     public Boolean validateToken(String token) {
+        return resolvePrincipal(token).isPresent();
+    }
+
+    /**
+     * Parse + verify token đúng một lần và trả về principal immutable.
+     * Token đã verify trước đó được lấy từ cache, không verify chữ ký lại.
+     *
+     * @return Optional.empty() nếu token sai chữ ký, sai định dạng hoặc đã hết hạn
+     */
+    public Optional<JwtPrincipal> resolvePrincipal(String token) {
+        String cacheKey = hashToken(token);
+        Instant now = Instant.now();
+        JwtPrincipal cached = verifiedTokens.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached.isExpired(now) ? Optional.empty() : Optional.of(cached);
+        }
+
+        JwtPrincipal principal;
         try {
-            getAllClaimsFromToken(token);
-            return !isTokenExpired(token);
+            principal = toPrincipal(getAllClaimsFromToken(token));
         } catch (Exception e) {
-            return false;
+            return Optional.empty();
+        }
+        if (principal.isExpired(now)) {
+            return Optional.empty();
         }
+        verifiedTokens.put(cacheKey, principal);
+        return Optional.of(principal);
     }
     
     /**
@@ -179,25 +247,58 @@ public class JwtTokenProvider {
      * Used by JwtAuthenticationFilter to set SecurityContext
      */
     public Authentication getAuthentication(String token) {
-        String email = getEmailFromToken(token);
-        List<String> roles = getRolesFromToken(token);
-        List<String> permissions = getAuthoritiesFromToken(token);
-        
+        return resolvePrincipal(token)
+                .map(this::getAuthentication)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid JWT token"));
+    }
+
+    /**
+     * Dựng Authentication từ principal đã verify (mỗi request một instance mới vì details là mutable)
+     */
+    public Authentication getAuthentication(JwtPrincipal principal) {
+        return new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
+                principal.email(),
+                null,
+                principal.grantedAuthorities()
+        );
+    }
+
+    private JwtPrincipal toPrincipal(Claims claims) {
+        List<String> roles = toStringList(claims.get("roles"));
+        List<String> permissions = toStringList(claims.get("authorities"));
+
         // Combine roles and permissions into authorities
-        Collection<GrantedAuthority> authorities = new ArrayList<>();
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size() + permissions.size());
         roles.forEach(role -> authorities.add(new SimpleGrantedAuthority(role)));
         permissions.forEach(permission -> authorities.add(new SimpleGrantedAuthority(permission)));
-        
-        return new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
-                email,
-                null,
-                authorities
+
+        Object userId = claims.get("userId");
+        Date expiration = claims.getExpiration();
+        return new JwtPrincipal(
+                userId instanceof Number number ? number.longValue() : null,
+                claims.getSubject(),
+                roles,
+                permissions,
+                authorities,
+                expiration != null ? expiration.toInstant() : null
         );
     }
-    
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+
+    private List<String> toStringList(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).collect(Collectors.toList());
+        }
+        return Collections.emptyList();
     }
+
+    private String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
 }
 
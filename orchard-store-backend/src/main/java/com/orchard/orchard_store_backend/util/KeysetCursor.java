@@ -0,0 +1,99 @@
+package com.orchard.orchard_store_backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cursor cho keyset (seek) pagination: giá trị các cột sort + id của dòng cuối trang trước.
+ *
+ * Client nhận cursor dạng chuỗi base64url (opaque) và gửi lại nguyên vẹn để lấy trang tiếp theo;
+ * query dùng WHERE (sort_key, id) > / < (cursor) thay cho OFFSET nên trang sâu không chậm dần.
+ * Cursor ghi lại kiểu sort đã tạo ra nó -> cursor của kiểu sort khác bị từ chối.
+ *
+ * @param sort   Kiểu sort (ví dụ "createdAt,desc")
+ * @param values Giá trị các cột sort (dạng chuỗi, null nếu cột null; parse qua timestampValue() / longValue())
+ * @param id     ID của dòng cuối (tie-breaker)
+ */
+public record KeysetCursor(String sort, List<String> values, long id) {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static KeysetCursor of(String sort, Object value, long id) {
+        return new KeysetCursor(sort, Collections.singletonList(value != null ? value.toString() : null), id);
+    }
+
+    /**
+     * Giá trị cột sort đầu tiên
+     */
+    public String value() {
+        return values.get(0);
+    }
+
+    /**
+     * Giá trị cột sort đầu tiên dạng timestamp (null nếu dòng cuối có cột sort null)
+     *
+     * @throws IllegalArgumentException nếu giá trị không phải timestamp
+     */
+    public LocalDateTime timestampValue() {
+        return parse(LocalDateTime::parse);
+    }
+
+    /**
+     * Giá trị cột sort đầu tiên dạng số (null nếu dòng cuối có cột sort null)
+     *
+     * @throws IllegalArgumentException nếu giá trị không phải số
+     */
+    public Long longValue() {
+        return parse(Long::valueOf);
+    }
+
+    private <T> T parse(Function<String, T> parser) {
+        String value = value();
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+    }
+
+    public String encode() {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(this);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode keyset cursor", e);
+        }
+    }
+
+    /**
+     * Giải mã cursor do encode() tạo ra
+     *
+     * @return null nếu cursor rỗng (trang đầu tiên)
+     * @throws IllegalArgumentException nếu cursor không hợp lệ hoặc thuộc kiểu sort khác
+     */
+    public static KeysetCursor decode(String cursor, String expectedSort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        KeysetCursor decoded;
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            decoded = objectMapper.readValue(json, KeysetCursor.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+        if (decoded.values() == null || decoded.values().isEmpty() || !expectedSort.equals(decoded.sort())) {
+            throw new IllegalArgumentException("Cursor không hợp lệ cho kiểu sắp xếp hiện tại");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,135 @@
+package com.orchard.orchard_store_backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orchard.orchard_store_backend.dto.EstimatedPage;
+import com.orchard.orchard_store_backend.modules.customer.service.CacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Chiến lược đếm tổng cho các trang admin trên bảng lớn.
+ *
+ * - Kết quả nhỏ (<= exact-threshold): COUNT chính xác, nhưng chạy trên subquery có LIMIT threshold + 1
+ *   nên không bao giờ quét quá threshold + 1 dòng
+ * - Kết quả lớn: lấy số dòng planner ước lượng (EXPLAIN), trả về EstimatedPage ("10,000+")
+ * - View không filter: tổng được cache ngắn hạn (cache-ttl-seconds) theo cache key
+ * - Trang cuối / trang duy nhất: tổng suy ra từ content, không đếm (như PageableExecutionUtils)
+ *
+ * rowsSql là câu SELECT các dòng cần đếm (không ORDER BY / LIMIT), ví dụ
+ * "SELECT 1 FROM login_history WHERE user_id = :userId".
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageCountService {
+
+    private static final String CACHE_KEY_PREFIX = "page:count:";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CacheService cacheService;
+
+    @Value("${app.paging.count.exact-threshold:10000}")
+    private long exactThreshold;
+
+    @Value("${app.paging.count.cache-ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    /**
+     * Tạo Page với tổng theo chiến lược threshold (xem count)
+     */
+    public <T> Page<T> page(List<T> content, Pageable pageable, String rowsSql, MapSqlParameterSource params) {
+        return toPage(content, pageable, () -> count(rowsSql, params));
+    }
+
+    /**
+     * Tạo Page cho view không filter: tổng được cache theo cacheKey
+     */
+    public <T> Page<T> cachedPage(List<T> content, Pageable pageable, String cacheKey,
+                                  String rowsSql, MapSqlParameterSource params) {
+        return toPage(content, pageable, () -> cachedCount(cacheKey, rowsSql, params));
+    }
+
+    /**
+     * Đếm chính xác tới exactThreshold dòng; vượt ngưỡng thì dùng ước lượng của planner
+     */
+    public Count count(String rowsSql, MapSqlParameterSource params) {
+        MapSqlParameterSource cappedParams = new MapSqlParameterSource(params.getValues())
+                .addValue("countCap", exactThreshold + 1);
+        Long capped = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (" + rowsSql + " LIMIT :countCap) counted", cappedParams, Long.class);
+        long exact = capped != null ? capped : 0L;
+        if (exact <= exactThreshold) {
+            return new Count(exact, false);
+        }
+        // Không bao giờ trả về số nhỏ hơn số dòng đã thấy thật
+        return new Count(Math.max(estimate(rowsSql, params), exactThreshold + 1), true);
+    }
+
+    /**
+     * count() có cache (Redis + L1 qua CacheService) - chỉ dùng cho view không filter
+     */
+    public Count cachedCount(String cacheKey, String rowsSql, MapSqlParameterSource params) {
+        String key = CACHE_KEY_PREFIX + cacheKey;
+        Optional<Count> cached = cacheService.getCached(key, Count.class);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Count count = count(rowsSql, params);
+        cacheService.cache(key, count, cacheTtlSeconds);
+        return count;
+    }
+
+    /**
+     * Xóa tổng đã cache (gọi khi dữ liệu của view thay đổi rõ rệt: tạo / xóa dòng)
+     */
+    public void evictCachedCount(String cacheKey) {
+        cacheService.evict(CACHE_KEY_PREFIX + cacheKey);
+    }
+
+    /**
+     * Số dòng planner ước lượng cho rowsSql ("Plan Rows" của node gốc), 0 nếu không đọc được
+     */
+    private long estimate(String rowsSql, MapSqlParameterSource params) {
+        try {
+            String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + rowsSql, params, String.class);
+            JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asLong(0);
+        } catch (Exception e) {
+            log.warn("Failed to estimate row count: {}", e.getMessage());
+            return 0L;
+        }
+    }
+
+    private <T> Page<T> toPage(List<T> content, Pageable pageable, Supplier<Count> counter) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content, pageable, content.size());
+        }
+        if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            return new PageImpl<>(content, pageable, pageable.getOffset() + content.size());
+        }
+        Count count = counter.get();
+        long total = Math.max(count.total(), pageable.getOffset() + content.size());
+        return count.estimated()
+                ? new EstimatedPage<>(content, pageable, total)
+                : new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Tổng số dòng và cờ cho biết đó là số ước lượng
+     */
+    public record Count(long total, boolean estimated) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.orchard.orchard_store_backend.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Chuẩn hóa từ khóa tìm kiếm của người dùng trước khi bind vào SQL full-text / LIKE
+ */
+public final class SqlSearchTerms {
+
+    private SqlSearchTerms() {
+    }
+
+    /**
+     * "Nước hoa Chanel" -> "nước:* & hoa:* & chanel:*" (bỏ dấu được làm trong SQL bằng f_unaccent).
+     * Chỉ giữ chữ và số nên không thể inject cú pháp tsquery.
+     *
+     * @return Chuỗi rỗng nếu term không có chữ / số
+     */
+    public static String prefixTsQuery(String term) {
+        return Arrays.stream(term.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    /**
+     * Escape \, % và _ để value được so khớp nguyên văn trong LIKE (escape mặc định của Postgres là \)
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
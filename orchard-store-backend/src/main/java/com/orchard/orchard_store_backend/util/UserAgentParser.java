@@ -1,5 +1,9 @@
 package com.orchard.orchard_store_backend.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.regex.Matcher;
@@ -16,6 +20,46 @@ public class UserAgentParser {
             "(Windows|Mac OS X|Linux|Android|iOS|iPad|iPhone|Windows Phone)"
     );
     
+    private static final UserAgentInfo UNKNOWN_USER_AGENT = new UserAgentInfo("Unknown", "Unknown", "UNKNOWN");
+
+    /**
+     * UA dài bất thường (thường là rác / tấn công) không được đưa vào cache
+     */
+    private static final int MAX_CACHED_USER_AGENT_LENGTH = 500;
+
+    /**
+     * Số User-Agent khác nhau được nhớ kết quả parse (LRU)
+     */
+    @Value("${app.login-history.user-agent-cache-size:1000}")
+    private long userAgentCacheSize;
+
+    private Cache<String, UserAgentInfo> parsedUserAgents;
+
+    @PostConstruct
+    public void init() {
+        parsedUserAgents = Caffeine.newBuilder()
+                .maximumSize(userAgentCacheSize)
+                .build();
+    }
+
+    /**
+     * Browser / OS / device type của User-Agent, có memoize: số UA khác nhau thực tế rất ít
+     * so với số lần đăng nhập nên phần lớn lần gọi không phải chạy regex.
+     */
+    public UserAgentInfo parse(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return UNKNOWN_USER_AGENT;
+        }
+        if (userAgent.length() > MAX_CACHED_USER_AGENT_LENGTH) {
+            return parseUncached(userAgent);
+        }
+        return parsedUserAgents.get(userAgent, this::parseUncached);
+    }
+
+    private UserAgentInfo parseUncached(String userAgent) {
+        return new UserAgentInfo(parseBrowser(userAgent), parseOS(userAgent), parseDeviceType(userAgent));
+    }
+
     public String parseBrowser(String userAgent) {
         if (userAgent == null || userAgent.isEmpty()) {
             return "Unknown";
@@ -108,5 +152,10 @@ public class UserAgentParser {
         
         return ipAddress;
     }
-}
 
+    /**
+     * Kết quả parse User-Agent
+     */
+    public record UserAgentInfo(String browser, String os, String deviceType) {
+    }
+}
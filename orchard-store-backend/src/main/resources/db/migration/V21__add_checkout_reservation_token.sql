@@ -0,0 +1,10 @@
+-- Reservation CHECKOUT được tham chiếu bằng token ngẫu nhiên (128-bit) gắn với chủ sở hữu (customer hoặc session):
+-- checkout bắt đầu trước khi có order id, và reference tuần tự đoán được thì ai cũng có thể giải phóng / dùng hàng đang giữ của người khác
+ALTER TABLE stock_reservations
+    ADD COLUMN checkout_token VARCHAR(64),
+    ADD COLUMN owner_customer_id BIGINT,
+    ADD COLUMN owner_session_id VARCHAR(255);
+
+CREATE INDEX idx_stock_reservations_checkout_token
+    ON stock_reservations(checkout_token)
+    WHERE status = 'ACTIVE' AND reservation_type = 'CHECKOUT';
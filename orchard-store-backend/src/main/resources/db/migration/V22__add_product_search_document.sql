@@ -0,0 +1,160 @@
+-- V22__add_product_search_document.sql
+-- Full-text + trigram search cho sản phẩm (thay cho LOWER(name) LIKE '%kw%')
+--
+-- - products.search_text: tên sản phẩm + tên brand + display value các attribute của variant ACTIVE
+--   (lowercase, bỏ dấu tiếng Việt) -> dùng cho trigram (typo tolerance)
+-- - products.search_vector: tsvector có trọng số (A = tên, B = brand, C = attributes) -> ranking + prefix
+-- - Trigger giữ 2 cột này luôn cập nhật khi products / product_variants / brands thay đổi
+--
+-- ⚠️ Lưu ý:
+-- - Migration KHÔNG backfill dữ liệu cũ trong một transaction lớn. ProductSearchIndexBackfillJob
+--   điền các dòng search_vector IS NULL theo từng batch.
+-- - Dùng text search config 'simple' (không stemming) vì dữ liệu là tiếng Việt + tên thương hiệu.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() chỉ là STABLE nên không dùng được trong index/generated column -> wrapper IMMUTABLE
+CREATE OR REPLACE FUNCTION f_unaccent(input TEXT)
+RETURNS TEXT
+LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$
+    SELECT public.unaccent('public.unaccent'::regdictionary, input)
+$$;
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_text TEXT;
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector TSVECTOR;
+
+-- Tính lại search document cho danh sách product
+CREATE OR REPLACE FUNCTION refresh_product_search(p_ids BIGINT[])
+RETURNS INTEGER
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    updated_count INTEGER;
+BEGIN
+    UPDATE products p
+    SET search_text = lower(f_unaccent(concat_ws(' ', p.name, doc.brand_name, doc.attribute_text))),
+        search_vector =
+            setweight(to_tsvector('simple', lower(f_unaccent(coalesce(p.name, '')))), 'A') ||
+            setweight(to_tsvector('simple', lower(f_unaccent(coalesce(doc.brand_name, '')))), 'B') ||
+            setweight(to_tsvector('simple', lower(f_unaccent(coalesce(doc.attribute_text, '')))), 'C')
+    FROM (
+        SELECT pp.id,
+               b.name AS brand_name,
+               (
+                   SELECT string_agg(DISTINCT kv.value ->> 'display', ' ')
+                   FROM product_variants pv
+                   CROSS JOIN LATERAL jsonb_each(COALESCE(pv.cached_attributes, '{}'::jsonb)) kv
+                   WHERE pv.product_id = pp.id
+                     AND pv.status = 'ACTIVE'
+                     AND jsonb_typeof(kv.value) = 'object'
+                     AND kv.value ->> 'display' IS NOT NULL
+               ) AS attribute_text
+        FROM products pp
+        LEFT JOIN brands b ON b.id = pp.brand_id
+        WHERE pp.id = ANY(p_ids)
+    ) doc
+    WHERE p.id = doc.id;
+
+    GET DIAGNOSTICS updated_count = ROW_COUNT;
+    RETURN updated_count;
+END;
+$$;
+
+-- products: tên / brand thay đổi (trigger chỉ fire theo các cột này nên UPDATE search_* bên trong không đệ quy)
+CREATE OR REPLACE FUNCTION trg_products_search_refresh()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM refresh_product_search(ARRAY[NEW.id]);
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_products_search_refresh ON products;
+CREATE TRIGGER trg_products_search_refresh
+    AFTER INSERT OR UPDATE OF name, brand_id ON products
+    FOR EACH ROW
+    EXECUTE FUNCTION trg_products_search_refresh();
+
+-- product_variants: attributes / status thay đổi -> tính lại product cha (statement-level, gộp theo product)
+CREATE OR REPLACE FUNCTION trg_variants_search_refresh()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM refresh_product_search(ARRAY(SELECT DISTINCT product_id FROM old_rows));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM refresh_product_search(ARRAY(
+            SELECT DISTINCT n.product_id
+            FROM new_rows n
+            JOIN old_rows o ON o.id = n.id
+            WHERE n.cached_attributes IS DISTINCT FROM o.cached_attributes
+               OR n.status IS DISTINCT FROM o.status
+               OR n.product_id IS DISTINCT FROM o.product_id
+            UNION
+            SELECT DISTINCT o.product_id
+            FROM new_rows n
+            JOIN old_rows o ON o.id = n.id
+            WHERE n.product_id IS DISTINCT FROM o.product_id
+        ));
+    ELSE
+        PERFORM refresh_product_search(ARRAY(SELECT DISTINCT product_id FROM new_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_variants_search_refresh_ins ON product_variants;
+CREATE TRIGGER trg_variants_search_refresh_ins
+    AFTER INSERT ON product_variants
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION trg_variants_search_refresh();
+
+DROP TRIGGER IF EXISTS trg_variants_search_refresh_upd ON product_variants;
+CREATE TRIGGER trg_variants_search_refresh_upd
+    AFTER UPDATE ON product_variants
+    REFERENCING NEW TABLE AS new_rows OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION trg_variants_search_refresh();
+
+DROP TRIGGER IF EXISTS trg_variants_search_refresh_del ON product_variants;
+CREATE TRIGGER trg_variants_search_refresh_del
+    AFTER DELETE ON product_variants
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION trg_variants_search_refresh();
+
+-- brands: đổi tên -> tính lại các product của brand
+CREATE OR REPLACE FUNCTION trg_brands_search_refresh()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF NEW.name IS DISTINCT FROM OLD.name THEN
+        PERFORM refresh_product_search(ARRAY(SELECT id FROM products WHERE brand_id = NEW.id));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_brands_search_refresh ON brands;
+CREATE TRIGGER trg_brands_search_refresh
+    AFTER UPDATE OF name ON brands
+    FOR EACH ROW
+    EXECUTE FUNCTION trg_brands_search_refresh();
+
+-- Indexes
+CREATE INDEX IF NOT EXISTS idx_products_search_vector
+    ON products USING GIN (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_products_search_text_trgm
+    ON products USING GIN (search_text gin_trgm_ops);
+
+-- Backfill job tìm các dòng chưa index
+CREATE INDEX IF NOT EXISTS idx_products_search_pending
+    ON products (id) WHERE search_vector IS NULL;
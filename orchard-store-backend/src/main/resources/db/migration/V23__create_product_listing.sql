@@ -0,0 +1,142 @@
+-- V23__create_product_listing.sql
+-- Bảng read model cho listing storefront: mỗi product ACTIVE (có ít nhất một variant ACTIVE) một dòng
+--
+-- Thay cho việc JOIN products / product_variants / product_images / brands / product_stats ở mỗi request:
+-- - Khoảng giá hiệu lực, tồn kho, category của các variant ACTIVE
+-- - Ảnh primary (fallback ảnh đầu tiên), brand name
+-- - Rating, số review, số lượng đã bán (product_stats)
+-- - attributes: cached_attributes của các variant ACTIVE được gộp thành {key: [value, ...]}
+--
+-- ⚠️ Lưu ý:
+-- - Bảng KHÔNG được cập nhật bằng trigger: ProductListingService gọi refresh_product_listing()
+--   sau khi transaction của admin / inventory / review / pricing commit, và rebuild toàn bộ định kỳ.
+-- - Cột id trùng tên với products.id để dùng chung điều kiện / ORDER BY của ProductSearchQueryBuilder.
+
+CREATE TABLE IF NOT EXISTS product_listing (
+    id BIGINT PRIMARY KEY REFERENCES products(id) ON DELETE CASCADE,
+    name VARCHAR(255) NOT NULL,
+    brand_id BIGINT NOT NULL,
+    brand_name VARCHAR(255),
+    min_price DECIMAL(15,2),
+    max_price DECIMAL(15,2),
+    total_stock INTEGER NOT NULL DEFAULT 0,
+    category_ids BIGINT[] NOT NULL DEFAULT '{}',
+    attributes JSONB NOT NULL DEFAULT '{}'::jsonb,
+    primary_image_url TEXT,
+    thumbnail_url TEXT,
+    average_rating DECIMAL(3,2) NOT NULL DEFAULT 0,
+    total_reviews INTEGER NOT NULL DEFAULT 0,
+    total_sold INTEGER NOT NULL DEFAULT 0,
+    published_at TIMESTAMP,
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Tính lại các dòng listing cho danh sách product (upsert dòng còn hợp lệ, xóa dòng không còn ACTIVE)
+CREATE OR REPLACE FUNCTION refresh_product_listing(p_ids BIGINT[])
+RETURNS INTEGER
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    upserted_count INTEGER;
+BEGIN
+    DELETE FROM product_listing pl
+    WHERE pl.id = ANY(p_ids)
+      AND NOT EXISTS (
+          SELECT 1 FROM products p
+          WHERE p.id = pl.id
+            AND p.status = 'ACTIVE'
+            AND EXISTS (
+                SELECT 1 FROM product_variants pv
+                WHERE pv.product_id = p.id AND pv.status = 'ACTIVE'
+            )
+      );
+
+    INSERT INTO product_listing (
+        id, name, brand_id, brand_name, min_price, max_price, total_stock, category_ids, attributes,
+        primary_image_url, thumbnail_url, average_rating, total_reviews, total_sold,
+        published_at, created_at, updated_at, refreshed_at
+    )
+    SELECT p.id, p.name, p.brand_id, b.name,
+           v.min_price, v.max_price, v.total_stock, v.category_ids,
+           COALESCE(attrs.attributes, '{}'::jsonb),
+           img.image_url, img.thumbnail_url,
+           COALESCE(ps.average_rating, 0), COALESCE(ps.total_reviews, 0), COALESCE(ps.total_sold, 0),
+           p.published_at, p.created_at, p.updated_at, CURRENT_TIMESTAMP
+    FROM products p
+    JOIN brands b ON b.id = p.brand_id
+    JOIN LATERAL (
+        SELECT COUNT(*) AS variant_count,
+               MIN(CASE WHEN pv.sale_price IS NOT NULL AND pv.sale_price > 0 THEN pv.sale_price ELSE pv.price END) AS min_price,
+               MAX(CASE WHEN pv.sale_price IS NOT NULL AND pv.sale_price > 0 THEN pv.sale_price ELSE pv.price END) AS max_price,
+               COALESCE(SUM(pv.stock_quantity), 0) AS total_stock,
+               COALESCE(array_agg(DISTINCT pv.category_id) FILTER (WHERE pv.category_id IS NOT NULL), '{}') AS category_ids
+        FROM product_variants pv
+        WHERE pv.product_id = p.id AND pv.status = 'ACTIVE'
+    ) v ON v.variant_count > 0
+    LEFT JOIN LATERAL (
+        SELECT jsonb_object_agg(a.key, a.attr_values) AS attributes
+        FROM (
+            SELECT kv.key, jsonb_agg(DISTINCT COALESCE(kv.value -> 'value', kv.value -> 'numericValue')) AS attr_values
+            FROM product_variants pv
+            CROSS JOIN LATERAL jsonb_each(COALESCE(pv.cached_attributes, '{}'::jsonb)) kv
+            WHERE pv.product_id = p.id
+              AND pv.status = 'ACTIVE'
+              AND jsonb_typeof(kv.value) = 'object'
+              AND COALESCE(kv.value -> 'value', kv.value -> 'numericValue') IS NOT NULL
+            GROUP BY kv.key
+        ) a
+    ) attrs ON TRUE
+    LEFT JOIN LATERAL (
+        SELECT pi.image_url, COALESCE(pi.thumbnail_url, pi.image_url) AS thumbnail_url
+        FROM product_images pi
+        WHERE pi.product_id = p.id
+        ORDER BY pi.is_primary DESC NULLS LAST, pi.display_order NULLS LAST, pi.id
+        LIMIT 1
+    ) img ON TRUE
+    LEFT JOIN product_stats ps ON ps.product_id = p.id
+    WHERE p.id = ANY(p_ids)
+      AND p.status = 'ACTIVE'
+    ON CONFLICT (id) DO UPDATE SET
+        name = EXCLUDED.name,
+        brand_id = EXCLUDED.brand_id,
+        brand_name = EXCLUDED.brand_name,
+        min_price = EXCLUDED.min_price,
+        max_price = EXCLUDED.max_price,
+        total_stock = EXCLUDED.total_stock,
+        category_ids = EXCLUDED.category_ids,
+        attributes = EXCLUDED.attributes,
+        primary_image_url = EXCLUDED.primary_image_url,
+        thumbnail_url = EXCLUDED.thumbnail_url,
+        average_rating = EXCLUDED.average_rating,
+        total_reviews = EXCLUDED.total_reviews,
+        total_sold = EXCLUDED.total_sold,
+        published_at = EXCLUDED.published_at,
+        created_at = EXCLUDED.created_at,
+        updated_at = EXCLUDED.updated_at,
+        refreshed_at = EXCLUDED.refreshed_at;
+
+    GET DIAGNOSTICS upserted_count = ROW_COUNT;
+    RETURN upserted_count;
+END;
+$$;
+
+-- Indexes cho listing (sort mặc định created_at DESC, id DESC)
+CREATE INDEX IF NOT EXISTS idx_product_listing_created
+    ON product_listing (created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_brand
+    ON product_listing (brand_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_min_price
+    ON product_listing (min_price);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_categories
+    ON product_listing USING GIN (category_ids);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_attributes
+    ON product_listing USING GIN (attributes jsonb_path_ops);
+
+-- Dữ liệu ban đầu (bảng mới, chỉ đọc các bảng nguồn nên không chặn ghi)
+SELECT refresh_product_listing(ARRAY(SELECT id FROM products WHERE status = 'ACTIVE'));
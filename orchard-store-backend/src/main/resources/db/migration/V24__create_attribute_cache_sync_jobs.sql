@@ -0,0 +1,25 @@
+-- V24__create_attribute_cache_sync_jobs.sql
+-- Theo dõi tiến độ đồng bộ EAV -> product_variants.cached_attributes toàn catalog
+--
+-- - Job chạy theo từng chunk variant (keyset theo id), sau mỗi chunk ghi lại last_variant_id + heartbeat
+-- - Node bị restart giữa chừng: job RUNNING có heartbeat quá hạn được node khác (hoặc chính nó) nhận lại
+--   và tiếp tục từ last_variant_id
+-- - Tối đa một job PENDING/RUNNING tại một thời điểm
+
+CREATE TABLE IF NOT EXISTS attribute_cache_sync_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING'
+        CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED')),
+    last_variant_id BIGINT NOT NULL DEFAULT 0,
+    processed_count BIGINT NOT NULL DEFAULT 0,
+    updated_count BIGINT NOT NULL DEFAULT 0,
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    started_at TIMESTAMP,
+    heartbeat_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_attribute_cache_sync_jobs_active
+    ON attribute_cache_sync_jobs ((1))
+    WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,55 @@
+-- V25__add_attribute_expression_indexes.sql
+-- Expression index (partial, variant ACTIVE) cho từng attribute is_filterable trên product_variants.cached_attributes
+--
+-- GIN index idx_variants_cached_attributes_gin chỉ phục vụ @> (so khớp chính xác). Các filter dạng
+-- khoảng số / IN / LIKE đọc giá trị bằng ->> nên cần index trên đúng biểu thức đó, với key là hằng số:
+-- - NUMBER / DECIMAL: btree ((cached_attributes -> 'key' ->> 'numericValue')::numeric)  -> BETWEEN, <, >
+-- - Kiểu khác:        btree (cached_attributes -> 'key' ->> 'value')                   -> =, IN
+-- - is_searchable:    GIN trigram lower(cached_attributes -> 'key' ->> 'value')         -> LIKE '%...%'
+--
+-- ⚠️ Lưu ý:
+-- - View attribute_expression_index_specs là nguồn duy nhất mô tả các index cần có. Migration này tạo
+--   index cho các attribute hiện có; attribute tạo / sửa về sau được AttributeExpressionIndexService
+--   đồng bộ (CREATE / DROP INDEX CONCURRENTLY) theo view.
+-- - Tên index theo id attribute (idx_pv_attr_<kind>_<id>), không phụ thuộc attribute_key.
+-- - Query phải viết key dạng literal (ProductVariantAttributeQueryRepository) thì planner mới dùng index.
+
+CREATE OR REPLACE VIEW attribute_expression_index_specs AS
+SELECT at.id AS attribute_id,
+       at.attribute_key,
+       'idx_pv_attr_num_' || at.id AS index_name,
+       format('product_variants (((cached_attributes -> %L ->> ''numericValue'')::numeric)) WHERE status = ''ACTIVE''',
+              at.attribute_key) AS index_definition
+FROM attribute_types at
+WHERE at.is_filterable = TRUE
+  AND at.data_type IN ('NUMBER', 'DECIMAL')
+UNION ALL
+SELECT at.id,
+       at.attribute_key,
+       'idx_pv_attr_val_' || at.id,
+       format('product_variants ((cached_attributes -> %L ->> ''value'')) WHERE status = ''ACTIVE''',
+              at.attribute_key)
+FROM attribute_types at
+WHERE at.is_filterable = TRUE
+  AND at.data_type NOT IN ('NUMBER', 'DECIMAL')
+UNION ALL
+SELECT at.id,
+       at.attribute_key,
+       'idx_pv_attr_trgm_' || at.id,
+       format('product_variants USING GIN (lower(cached_attributes -> %L ->> ''value'') gin_trgm_ops) WHERE status = ''ACTIVE''',
+              at.attribute_key)
+FROM attribute_types at
+WHERE at.is_filterable = TRUE
+  AND at.is_searchable = TRUE
+  AND at.data_type NOT IN ('NUMBER', 'DECIMAL');
+
+-- Index cho các attribute hiện có (migration chạy trong transaction nên không dùng CONCURRENTLY)
+DO $$
+DECLARE
+    spec RECORD;
+BEGIN
+    FOR spec IN SELECT index_name, index_definition FROM attribute_expression_index_specs LOOP
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %s', spec.index_name, spec.index_definition);
+    END LOOP;
+END;
+$$;
@@ -0,0 +1,19 @@
+-- V26__add_keyset_pagination_indexes.sql
+-- Index cho keyset (cursor) pagination: WHERE (sort_key, id) < (cursor) ORDER BY sort_key, id LIMIT n
+-- chỉ đọc đúng n dòng từ index thay vì bỏ qua OFFSET dòng.
+--
+-- - users: createdAt DESC, id DESC (GET /api/admin/users/cursor)
+-- - reviews: theo product + status, createdAt DESC, id DESC (GET /api/reviews/product/{id}/cursor)
+-- - product_listing: sort theo tên (sort createdAt đã có idx_product_listing_created từ V23)
+--
+-- Danh mục (GET /api/admin/categories/cursor) sort theo COALESCE(level, display_order) nên không có index
+-- tương ứng; bảng categories nhỏ.
+
+CREATE INDEX IF NOT EXISTS idx_users_created_keyset
+    ON users (created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_reviews_product_status_created_keyset
+    ON reviews (product_id, status, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_name_keyset
+    ON product_listing (name, id);
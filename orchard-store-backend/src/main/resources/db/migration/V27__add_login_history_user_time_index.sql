@@ -0,0 +1,6 @@
+-- V27__add_login_history_user_time_index.sql
+-- Lịch sử đăng nhập của một user (trang admin): WHERE user_id = ? ORDER BY login_at DESC LIMIT/OFFSET
+-- đọc thẳng theo thứ tự index thay vì lấy mọi dòng của user rồi sort.
+-- Phần đếm tổng (PageCountService) có LIMIT nên chỉ quét tối đa exact-threshold + 1 entry của index.
+
+CREATE INDEX IF NOT EXISTS idx_login_history_user_login_at ON login_history(user_id, login_at DESC);
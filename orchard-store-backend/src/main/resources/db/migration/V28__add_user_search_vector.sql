@@ -0,0 +1,34 @@
+-- V28__add_user_search_vector.sql
+-- Tìm kiếm user (trang admin) bằng một cột tsvector generated + trigram cho email / số điện thoại
+--
+-- V9 tạo GIN index riêng cho to_tsvector(email), to_tsvector(full_name), to_tsvector(phone) nhưng
+-- query lại tìm trên biểu thức ghép (và ts_rank tính lại mỗi dòng) -> không khớp index nào, luôn seq scan.
+--
+-- - users.search_vector: STORED generated column (A = họ tên, B = email + các phần của email, C = phone),
+--   text search config 'simple', lowercase + bỏ dấu (f_unaccent, V22) -> một GIN index duy nhất
+-- - Trigram GIN trên lower(email) và phone: LIKE '%...%' với chuỗi con bất kỳ ("0912", "gmail")
+--
+-- ⚠️ Lưu ý:
+-- - ADD COLUMN ... GENERATED STORED viết lại bảng users (khóa ACCESS EXCLUSIVE trong lúc migrate).
+-- - Cột do database tính, entity User không map cột này.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', lower(f_unaccent(coalesce(full_name, '')))), 'A') ||
+        setweight(to_tsvector('simple', lower(coalesce(email, '') || ' '
+            || regexp_replace(coalesce(email, ''), '[@._+-]+', ' ', 'g'))), 'B') ||
+        setweight(to_tsvector('simple', coalesce(phone, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_users_search_vector ON users USING GIN (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_users_email_trgm ON users USING GIN (lower(email) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_users_phone_trgm ON users USING GIN (phone gin_trgm_ops);
+
+-- Index của V9 không còn query nào dùng
+DROP INDEX IF EXISTS idx_users_email_gin;
+DROP INDEX IF EXISTS idx_users_fullname_gin;
+DROP INDEX IF EXISTS idx_users_phone_gin;
+DROP INDEX IF EXISTS idx_users_search_combined_gin;
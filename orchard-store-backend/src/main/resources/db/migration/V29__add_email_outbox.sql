@@ -0,0 +1,34 @@
+-- V29__add_email_outbox.sql
+-- Outbox cho email gửi đi (OTP, đặt lại mật khẩu, ...)
+--
+-- Request chỉ INSERT một dòng (cùng transaction với nghiệp vụ) rồi trả về ngay; EmailOutboxDispatcher
+-- claim các dòng đến hạn (FOR UPDATE SKIP LOCKED, nhiều node chạy song song không gửi trùng),
+-- render template và gửi qua SMTP theo batch.
+--
+-- Vòng đời: PENDING -> SENDING -> SENT
+--                           \-> PENDING (retry, next_attempt_at lùi theo backoff) -> ... -> DEAD
+-- - SENDING quá locked_until (node chết giữa chừng) được claim lại -> at-least-once
+-- - expires_at (ví dụ OTP hết hạn sau 5 phút): quá hạn mà chưa gửi được thì chuyển DEAD, không gửi nữa
+-- - params lưu biến của template (JSON), nội dung HTML được render lúc gửi
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    template VARCHAR(50) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    params JSONB NOT NULL DEFAULT '{}'::jsonb,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DEAD')),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_until TIMESTAMP,
+    expires_at TIMESTAMP,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP
+);
+
+-- Claim: dòng PENDING đến hạn / dòng SENDING hết lease (partial index nhỏ, chỉ chứa dòng đang chờ)
+CREATE INDEX IF NOT EXISTS idx_email_outbox_pending ON email_outbox(next_attempt_at, id) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_email_outbox_sending ON email_outbox(locked_until) WHERE status = 'SENDING';
+
+-- Dọn dòng SENT / DEAD cũ
+CREATE INDEX IF NOT EXISTS idx_email_outbox_status_created ON email_outbox(status, created_at);
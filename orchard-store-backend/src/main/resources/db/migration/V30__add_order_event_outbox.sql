@@ -0,0 +1,33 @@
+-- V30__add_order_event_outbox.sql
+-- Transactional outbox cho OrderPaidEvent (tính lifetime value + nâng hạng VIP)
+--
+-- OrderServiceImpl ghi event vào bảng này trong CÙNG transaction cập nhật order -> event không mất khi
+-- node restart hay thread pool async đầy. OrderPaidOutboxProcessor claim event theo batch và xử lý mỗi event
+-- trong một transaction cùng với việc đánh dấu DONE (cập nhật customer và outbox commit / rollback cùng nhau).
+--
+-- - idempotency_key UNIQUE ("ORDER_PAID:<orderId>"): order chuyển sang PAID nhiều lần chỉ sinh một event
+-- - partition_key (customer): chỉ event đầu tiên chưa xong của mỗi partition được claim -> thứ tự theo customer
+-- - Lỗi: retry với backoff (next_attempt_at), hết số lần thử -> DEAD (dead letter, xem last_error)
+
+CREATE TABLE IF NOT EXISTS order_event_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    partition_key VARCHAR(255) NOT NULL,
+    payload JSONB NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'PROCESSING', 'DONE', 'DEAD')),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_until TIMESTAMP,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    processed_at TIMESTAMP,
+    CONSTRAINT uk_order_event_outbox_idempotency UNIQUE (idempotency_key)
+);
+
+-- Event đầu tiên chưa xong của mỗi partition (DISTINCT ON partition_key ORDER BY partition_key, id)
+CREATE INDEX IF NOT EXISTS idx_order_event_outbox_open
+    ON order_event_outbox(partition_key, id) WHERE status IN ('PENDING', 'PROCESSING');
+
+-- Dọn event DONE cũ
+CREATE INDEX IF NOT EXISTS idx_order_event_outbox_status_created ON order_event_outbox(status, created_at);
@@ -0,0 +1,37 @@
+-- V31__drop_attribute_trigram_indexes.sql
+-- Bỏ trigram index idx_pv_attr_trgm_* (V25) khỏi attribute_expression_index_specs
+--
+-- Không query nào lọc attribute bằng LIKE '%...%' (storefront search chỉ dùng khoảng số / IN / @>), nên
+-- index GIN trigram trên mỗi attribute is_searchable chỉ tốn chỗ và làm chậm mỗi lần ghi cached_attributes.
+-- AttributeExpressionIndexService xóa index idx_pv_attr_* không còn trong view, nhưng xóa luôn ở đây để
+-- không phải chờ lần reconcile đầu tiên.
+
+CREATE OR REPLACE VIEW attribute_expression_index_specs AS
+SELECT at.id AS attribute_id,
+       at.attribute_key,
+       'idx_pv_attr_num_' || at.id AS index_name,
+       format('product_variants (((cached_attributes -> %L ->> ''numericValue'')::numeric)) WHERE status = ''ACTIVE''',
+              at.attribute_key) AS index_definition
+FROM attribute_types at
+WHERE at.is_filterable = TRUE
+  AND at.data_type IN ('NUMBER', 'DECIMAL')
+UNION ALL
+SELECT at.id,
+       at.attribute_key,
+       'idx_pv_attr_val_' || at.id,
+       format('product_variants ((cached_attributes -> %L ->> ''value'')) WHERE status = ''ACTIVE''',
+              at.attribute_key)
+FROM attribute_types at
+WHERE at.is_filterable = TRUE
+  AND at.data_type NOT IN ('NUMBER', 'DECIMAL');
+
+DO $$
+DECLARE
+    idx RECORD;
+BEGIN
+    FOR idx IN SELECT indexname FROM pg_indexes
+               WHERE tablename = 'product_variants' AND indexname LIKE 'idx\_pv\_attr\_trgm\_%' LOOP
+        EXECUTE format('DROP INDEX IF EXISTS %I', idx.indexname);
+    END LOOP;
+END;
+$$;
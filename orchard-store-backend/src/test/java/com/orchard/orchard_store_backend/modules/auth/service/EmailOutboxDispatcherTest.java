@@ -0,0 +1,253 @@
+package com.orchard.orchard_store_backend.modules.auth.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.orchard.orchard_store_backend.modules.auth.event.EmailQueuedEvent;
+import com.orchard.orchard_store_backend.modules.auth.repository.EmailOutboxRepository;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Outbox email end-to-end: Postgres thật (email_outbox của V29) + SMTP GreenMail.
+ *
+ * - Enqueue chỉ ghi outbox, không chạm SMTP; email tới hộp thư sau khi dispatcher chạy
+ * - Lỗi SMTP: retry với backoff (base, 2 * base), hết max-attempts -> DEAD
+ * - Email OTP quá expires_at không được gửi, cleanup chuyển DEAD
+ * - params bị xóa về '{}' khi SENT / DEAD
+ * - Worker đã mất lease không ghi đè được dòng đã được claim lại
+ *
+ * Dispatcher claim / mark bằng auto-commit (CURRENT_TIMESTAMP phải chạy theo thời gian thực) -> không @Transactional.
+ */
+@JdbcTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostgresTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmailOutboxDispatcherTest {
+
+    private static final long RETRY_BASE_DELAY_SECONDS = 30;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final List<EmailQueuedEvent> queuedEvents = new ArrayList<>();
+
+    private EmailOutboxRepository repository;
+    private JavaMailSenderImpl mailSender;
+    private EmailServiceImpl emailService;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V29__add_email_outbox.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        jdbcTemplate.execute("TRUNCATE email_outbox");
+
+        repository = new EmailOutboxRepository(namedParameterJdbcTemplate, new ObjectMapper());
+
+        emailService = new EmailServiceImpl();
+        ReflectionTestUtils.setField(emailService, "emailOutboxRepository", repository);
+        ReflectionTestUtils.setField(emailService, "eventPublisher",
+                (ApplicationEventPublisher) event -> queuedEvents.add((EmailQueuedEvent) event));
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+
+        dispatcher = new EmailOutboxDispatcher(repository, mailSender);
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "no-reply@orchard.local");
+        ReflectionTestUtils.setField(dispatcher, "workers", 2);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseDelaySeconds", RETRY_BASE_DELAY_SECONDS);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxDelaySeconds", 3600L);
+        ReflectionTestUtils.setField(dispatcher, "sentRetentionHours", 24L);
+        ReflectionTestUtils.setField(dispatcher, "deadRetentionDays", 7L);
+        ReflectionTestUtils.setField(dispatcher, "transportIdleSeconds", 30L);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void enqueueReturnsBeforeDeliveryAndDispatcherDelivers() throws Exception {
+        emailService.sendOtpEmail("customer@orchard.local", "123456", "Lan");
+
+        long id = lastQueuedId();
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+        assertThat(row(id)).containsEntry("status", "PENDING");
+
+        assertThat(dispatcher.dispatchDue()).isEqualTo(1);
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(1);
+        assertThat(received[0].getAllRecipients()[0].toString()).isEqualTo("customer@orchard.local");
+        assertThat(received[0].getSubject()).isEqualTo(EmailTemplate.LOGIN_OTP.getSubject());
+        assertThat(row(id))
+                .containsEntry("status", "SENT")
+                .containsEntry("params", "{}");
+    }
+
+    @Test
+    void failedSendIsRetriedWithExponentialBackoff() throws Exception {
+        emailService.sendPasswordResetSuccessEmail("admin@orchard.local", "Admin");
+        long id = lastQueuedId();
+
+        mailSender.setPort(unusedPort());
+        assertThat(dispatcher.dispatchDue()).isZero();
+        Map<String, Object> first = row(id);
+        assertThat(first).containsEntry("status", "PENDING").containsEntry("attempts", 1);
+        assertThat(first.get("last_error")).isNotNull();
+        assertThat(first.get("params")).isNotEqualTo("{}");
+        assertThat(delaySeconds(first)).isBetween(RETRY_BASE_DELAY_SECONDS - 5.0, RETRY_BASE_DELAY_SECONDS + 1.0);
+
+        // Chưa đến hạn -> lượt sau không claim
+        assertThat(dispatcher.dispatchDue()).isZero();
+        assertThat(row(id)).containsEntry("attempts", 1);
+
+        makeDue(id);
+        assertThat(dispatcher.dispatchDue()).isZero();
+        Map<String, Object> second = row(id);
+        assertThat(second).containsEntry("status", "PENDING").containsEntry("attempts", 2);
+        assertThat(delaySeconds(second)).isBetween(2 * RETRY_BASE_DELAY_SECONDS - 5.0, 2 * RETRY_BASE_DELAY_SECONDS + 1.0);
+
+        // SMTP hoạt động lại
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        makeDue(id);
+        assertThat(dispatcher.dispatchDue()).isEqualTo(1);
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(row(id)).containsEntry("status", "SENT").containsEntry("params", "{}");
+    }
+
+    @Test
+    void emailIsDeadAfterMaxAttempts() throws Exception {
+        emailService.sendPasswordResetSuccessEmail("admin@orchard.local", "Admin");
+        long id = lastQueuedId();
+
+        mailSender.setPort(unusedPort());
+        for (int attempt = 0; attempt < 3; attempt++) {
+            makeDue(id);
+            assertThat(dispatcher.dispatchDue()).isZero();
+        }
+
+        assertThat(row(id))
+                .containsEntry("status", "DEAD")
+                .containsEntry("attempts", 3)
+                .containsEntry("params", "{}");
+
+        // DEAD không bao giờ được claim lại
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        makeDue(id);
+        assertThat(dispatcher.dispatchDue()).isZero();
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    void expiredOtpIsNeverSent() {
+        emailService.sendOtpEmail("customer@orchard.local", "654321", "Lan");
+        long id = lastQueuedId();
+        jdbcTemplate.update("UPDATE email_outbox SET expires_at = CURRENT_TIMESTAMP - INTERVAL '1 second' WHERE id = ?", id);
+
+        assertThat(dispatcher.dispatchDue()).isZero();
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+        assertThat(row(id)).containsEntry("status", "PENDING");
+
+        dispatcher.cleanup();
+
+        assertThat(row(id))
+                .containsEntry("status", "DEAD")
+                .containsEntry("last_error", "Expired before delivery")
+                .containsEntry("params", "{}");
+    }
+
+    @Test
+    void staleWorkerCannotOverwriteReclaimedEmail() {
+        emailService.sendOtpEmail("customer@orchard.local", "111222", "Lan");
+        long id = lastQueuedId();
+
+        List<EmailOutboxRepository.OutboxEmail> stale = repository.claimDue(10, 120);
+        // Lease hết hạn, node khác claim lại và gửi xong
+        jdbcTemplate.update("UPDATE email_outbox SET locked_until = CURRENT_TIMESTAMP - INTERVAL '1 second' WHERE id = ?", id);
+        List<EmailOutboxRepository.OutboxEmail> reclaimed = repository.claimDue(10, 120);
+        assertThat(reclaimed).hasSize(1);
+        assertThat(reclaimed.get(0).lockedUntil()).isAfter(stale.get(0).lockedUntil());
+        assertThat(repository.markSent(reclaimed)).isEqualTo(1);
+
+        // Worker cũ báo lỗi / báo gửi xong muộn: không đưa dòng về PENDING, không tăng attempts
+        repository.markFailed(List.of(new EmailOutboxRepository.Failure(id, stale.get(0).lockedUntil(), false, 30, "timeout")));
+        assertThat(repository.markSent(stale)).isZero();
+
+        assertThat(row(id))
+                .containsEntry("status", "SENT")
+                .containsEntry("attempts", 0)
+                .containsEntry("last_error", null);
+    }
+
+    private long lastQueuedId() {
+        assertThat(queuedEvents).isNotEmpty();
+        return queuedEvents.get(queuedEvents.size() - 1).getOutboxId();
+    }
+
+    private Map<String, Object> row(long id) {
+        return jdbcTemplate.queryForMap("""
+            SELECT status, attempts, CAST(params AS TEXT) AS params, last_error,
+                   EXTRACT(EPOCH FROM next_attempt_at - CURRENT_TIMESTAMP) AS delay_seconds
+            FROM email_outbox WHERE id = ?
+            """, id);
+    }
+
+    private double delaySeconds(Map<String, Object> row) {
+        return ((Number) row.get("delay_seconds")).doubleValue();
+    }
+
+    private void makeDue(long id) {
+        jdbcTemplate.update("UPDATE email_outbox SET next_attempt_at = CURRENT_TIMESTAMP WHERE id = ?", id);
+    }
+
+    /**
+     * Port không có server lắng nghe -> connect bị từ chối ngay
+     */
+    private int unusedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
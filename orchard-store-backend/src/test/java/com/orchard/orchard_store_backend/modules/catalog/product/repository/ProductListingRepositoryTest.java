@@ -0,0 +1,107 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.repository;
+
+import com.orchard.orchard_store_backend.modules.catalog.brand.entity.Brand;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductImage;
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import com.orchard.orchard_store_backend.support.StatementCountingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Listing admin: mỗi trang đúng MỘT câu SQL (brand, ảnh, khoảng giá đi cùng câu đó),
+ * không phụ thuộc số ảnh / variant của từng product.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostgresTestConfiguration.class, StatementCountingDataSource.Configuration.class})
+class ProductListingRepositoryTest {
+
+    private static final int PRODUCT_COUNT = 8;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private StatementCountingDataSource countingDataSource;
+    private ProductListingRepository listingRepository;
+
+    @BeforeEach
+    void setUp() {
+        countingDataSource = (StatementCountingDataSource) dataSource;
+        listingRepository = new ProductListingRepository(new NamedParameterJdbcTemplate(dataSource));
+
+        Brand brand = entityManager.persist(Brand.builder().name("Orchard").slug("orchard").build());
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            Product product = entityManager.persist(Product.builder().name("Product " + i).brand(brand).build());
+            for (int v = 0; v < 4; v++) {
+                entityManager.persist(ProductVariant.builder()
+                        .product(product)
+                        .variantName("Product " + i + " / " + v)
+                        .slug("product-" + i + "-" + v)
+                        .sku("SKU-" + i + "-" + v)
+                        .price(BigDecimal.valueOf(100_000L * (v + 1)))
+                        .build());
+            }
+            for (int img = 0; img < 3; img++) {
+                entityManager.persist(ProductImage.builder()
+                        .product(product)
+                        .imageUrl("https://cdn.orchard.local/" + i + "/" + img + ".jpg")
+                        .isPrimary(img == 1)
+                        .displayOrder(img)
+                        .build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void listingPageIsOneStatement() {
+        AtomicReference<Page<ProductDTO>> page = new AtomicReference<>();
+
+        // Trang cuối chưa đầy -> không cần câu COUNT
+        long statements = countingDataSource.count(() ->
+                page.set(listingRepository.findAll(PageRequest.of(0, 50, Sort.by("name")))));
+
+        assertThat(statements).isEqualTo(1);
+        assertThat(page.get().getContent()).hasSize(PRODUCT_COUNT);
+        ProductDTO first = page.get().getContent().get(0);
+        assertThat(first.getBrandName()).isEqualTo("Orchard");
+        assertThat(first.getPrimaryImageUrl()).endsWith("/1.jpg");
+        assertThat(first.getMinPrice()).isEqualByComparingTo("100000");
+        assertThat(first.getMaxPrice()).isEqualByComparingTo("400000");
+    }
+
+    @Test
+    void fullPageAddsOnlyTheCountStatement() {
+        long small = countingDataSource.count(() -> listingRepository.findAll(PageRequest.of(0, 2)));
+        long large = countingDataSource.count(() -> listingRepository.findAll(PageRequest.of(0, PRODUCT_COUNT - 1)));
+
+        // Trang + COUNT(*), không đổi theo số dòng trong trang
+        assertThat(small).isEqualTo(2);
+        assertThat(large).isEqualTo(small);
+    }
+}
@@ -0,0 +1,151 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.product.repository.ProductVariantAttributeQueryRepository;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Expression index của V25 trên Postgres thật:
+ * - Điều kiện do ProductVariantAttributeQueryRepository sinh ra (storefront search dùng chung) được planner
+ *   chạy bằng Index Scan / Bitmap Index Scan trên idx_pv_attr_*
+ * - reconcile() không đụng tới index đúng định nghĩa, tạo lại index có indexdef lệch spec
+ *
+ * CREATE INDEX CONCURRENTLY không chạy trong transaction -> test không @Transactional.
+ */
+@JdbcTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostgresTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AttributeExpressionIndexServiceTest {
+
+    private static final String SCHEMA_SQL = """
+        CREATE EXTENSION IF NOT EXISTS pg_trgm;
+        DROP TABLE IF EXISTS product_variants, attribute_types CASCADE;
+        CREATE TABLE attribute_types (
+            id BIGSERIAL PRIMARY KEY,
+            attribute_key VARCHAR(100) NOT NULL,
+            data_type VARCHAR(20) NOT NULL,
+            is_filterable BOOLEAN DEFAULT TRUE,
+            is_searchable BOOLEAN DEFAULT FALSE
+        );
+        CREATE TABLE product_variants (
+            id BIGSERIAL PRIMARY KEY,
+            status VARCHAR(20) NOT NULL,
+            cached_attributes JSONB
+        );
+        INSERT INTO attribute_types (attribute_key, data_type) VALUES ('color', 'SELECT'), ('longevity', 'NUMBER');
+        INSERT INTO product_variants (status, cached_attributes)
+        SELECT CASE WHEN g % 10 = 0 THEN 'INACTIVE' ELSE 'ACTIVE' END,
+               jsonb_build_object(
+                   'color', jsonb_build_object('value', 'c' || (g % 50)),
+                   'longevity', jsonb_build_object('value', CAST(g % 24 AS TEXT), 'numericValue', g % 24))
+        FROM generate_series(1, 20000) g;
+        """;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private ProductVariantAttributeQueryRepository attributeQueries;
+    private AttributeExpressionIndexService indexService;
+    private long colorId;
+    private long longevityId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(SCHEMA_SQL);
+        // View attribute_expression_index_specs + index cho attribute hiện có, đúng như migration
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V25__add_attribute_expression_indexes.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V31__drop_attribute_trigram_indexes.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        jdbcTemplate.execute("ANALYZE product_variants");
+
+        colorId = jdbcTemplate.queryForObject("SELECT id FROM attribute_types WHERE attribute_key = 'color'", Long.class);
+        longevityId = jdbcTemplate.queryForObject("SELECT id FROM attribute_types WHERE attribute_key = 'longevity'", Long.class);
+
+        attributeQueries = new ProductVariantAttributeQueryRepository(new NamedParameterJdbcTemplate(dataSource));
+        indexService = new AttributeExpressionIndexService(jdbcTemplate, attributeQueries);
+    }
+
+    @Test
+    void valueInConditionUsesValueIndex() throws Exception {
+        assertThat(attributeQueries.hasValueIndex("color")).isTrue();
+        assertThat(attributeQueries.hasValueIndex("longevity")).isFalse();
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String condition = attributeQueries.valueInCondition("color", List.of("c1", "c2", "c3"), "values", params);
+
+        assertThat(explain(condition, params))
+                .containsAnyOf("Index Scan", "Bitmap Index Scan")
+                .contains("idx_pv_attr_val_" + colorId);
+    }
+
+    @Test
+    void numericRangeConditionUsesNumericIndex() throws Exception {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String condition = attributeQueries.numericRangeCondition(
+                "longevity", BigDecimal.valueOf(6), BigDecimal.valueOf(7), "range", params);
+
+        assertThat(explain(condition, params))
+                .containsAnyOf("Index Scan", "Bitmap Index Scan")
+                .contains("idx_pv_attr_num_" + longevityId);
+    }
+
+    @Test
+    void reconcileKeepsMatchingIndexesAndRecreatesStaleOnes() {
+        assertThat(indexService.reconcile()).isZero();
+
+        // Cùng id (cùng tên index) nhưng đổi key -> index cũ vẫn trên 'color'
+        jdbcTemplate.update("UPDATE attribute_types SET attribute_key = 'colour' WHERE id = ?", colorId);
+
+        assertThat(indexService.reconcile()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT indexdef FROM pg_indexes WHERE indexname = ?", String.class, "idx_pv_attr_val_" + colorId))
+                .contains("'colour'")
+                .doesNotContain("'color'");
+        assertThat(attributeQueries.hasValueIndex("colour")).isTrue();
+        assertThat(indexService.reconcile()).isZero();
+    }
+
+    /**
+     * EXPLAIN trên một connection riêng với enable_seqscan = off: plan chỉ dùng index nếu biểu thức khớp index
+     */
+    private String explain(String condition, MapSqlParameterSource params) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true));
+            jdbc.getJdbcTemplate().execute("SET enable_seqscan = off");
+            try {
+                return String.join("\n", jdbc.queryForList(
+                        "EXPLAIN SELECT pv.id FROM product_variants pv WHERE pv.status = 'ACTIVE' AND " + condition,
+                        params, String.class));
+            } finally {
+                jdbc.getJdbcTemplate().execute("RESET enable_seqscan");
+            }
+        }
+    }
+}
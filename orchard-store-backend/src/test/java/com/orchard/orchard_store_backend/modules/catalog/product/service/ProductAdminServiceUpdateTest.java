@@ -0,0 +1,253 @@
+package com.orchard.orchard_store_backend.modules.catalog.product.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.attribute.dto.ProductAttributeValueDTO;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.AttributeValue;
+import com.orchard.orchard_store_backend.modules.catalog.attribute.entity.ProductAttribute;
+import com.orchard.orchard_store_backend.modules.catalog.brand.entity.Brand;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductCreateRequestDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.dto.ProductUpdateRequestDTO;
+import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductImageMapper;
+import com.orchard.orchard_store_backend.modules.catalog.product.mapper.ProductMapper;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * updateProduct merge theo diff trên Postgres thật:
+ * - Variant khớp (theo ID hoặc SKU) giữ ID / slug, không ghi đè stock_quantity, status bỏ trống giữ nguyên
+ * - Variant không còn trong request -> DISCONTINUED, variant mới được tạo
+ * - EAV diff theo attribute (update tại chỗ / thêm / xóa), cached_attributes chỉ ghi lại khi attribute đổi
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostgresTestConfiguration.class, ProductAdminService.class})
+class ProductAdminServiceUpdateTest {
+
+    // Đánh dấu cached_attributes của variant; merge ghi lại JSONB thì dấu này mất
+    private static final String SENTINEL_JSON = "{\"sentinel\": \"kept\"}";
+
+    @Autowired
+    private ProductAdminService productAdminService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private ProductMapper productMapper;
+
+    @MockitoBean
+    private ProductImageMapper productImageMapper;
+
+    private Long brandId;
+    private Long productId;
+    private Long colorId;
+    private Long volumeId;
+    private Long redId;
+    private Long blueId;
+    private Long roseId;
+    private Long oudId;
+    private Long ambreId;
+
+    @BeforeEach
+    void setUp() {
+        brandId = entityManager.persist(Brand.builder().name("Orchard").slug("orchard").build()).getId();
+        ProductAttribute color = entityManager.persist(ProductAttribute.builder()
+                .attributeKey("color").attributeName("Màu")
+                .attributeType(ProductAttribute.AttributeType.SELECT)
+                .build());
+        ProductAttribute volume = entityManager.persist(ProductAttribute.builder()
+                .attributeKey("volume").attributeName("Dung tích")
+                .attributeType(ProductAttribute.AttributeType.RANGE)
+                .dataType(ProductAttribute.AttributeDataType.NUMBER)
+                .build());
+        colorId = color.getId();
+        volumeId = volume.getId();
+        redId = entityManager.persist(AttributeValue.builder().attribute(color).value("red").displayValue("Đỏ").build()).getId();
+        blueId = entityManager.persist(AttributeValue.builder().attribute(color).value("blue").displayValue("Xanh").build()).getId();
+
+        productAdminService.createProduct(ProductCreateRequestDTO.builder()
+                .name("Orchard Eau de Parfum")
+                .brandId(brandId)
+                .status("ACTIVE")
+                .variants(List.of(
+                        createVariant("ROSE-50", "Rose 50ml", "INACTIVE", List.of(select(colorId, redId), number(volumeId, 50))),
+                        createVariant("OUD-50", "Oud 50ml", "ACTIVE", List.of(select(colorId, blueId))),
+                        createVariant("AMBRE-50", "Ambre 50ml", "ACTIVE", List.of())))
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        productId = jdbcTemplate.queryForObject("SELECT id FROM products WHERE name = 'Orchard Eau de Parfum'", Long.class);
+        roseId = variantIdBySku("ROSE-50");
+        oudId = variantIdBySku("OUD-50");
+        ambreId = variantIdBySku("AMBRE-50");
+    }
+
+    @Test
+    void priceEditKeepsVariantIdentityStockAndStatus() {
+        String slugBefore = variantColumn(roseId, "slug");
+        // Checkout vừa trừ kho (StockDecrementEngine), form admin vẫn mang số cũ
+        jdbcTemplate.update("UPDATE product_variants SET stock_quantity = 7 WHERE id = ?", roseId);
+
+        ProductUpdateRequestDTO.ProductVariantUpdateDTO rose = updateVariant(roseId, "ROSE-50", "Rose 50ml",
+                List.of(select(colorId, redId), number(volumeId, 50)));
+        rose.setPrice(BigDecimal.valueOf(1_450_000));
+        rose.setStockQuantity(20);
+        rose.setStatus(null);
+
+        update(rose,
+                updateVariant(oudId, "OUD-50", "Oud 50ml", List.of(select(colorId, blueId))),
+                updateVariant(ambreId, "AMBRE-50", "Ambre 50ml", List.of()));
+
+        assertThat(variantIdBySku("ROSE-50")).isEqualTo(roseId);
+        assertThat(variantColumn(roseId, "slug")).isEqualTo(slugBefore);
+        assertThat(jdbcTemplate.queryForObject("SELECT price FROM product_variants WHERE id = ?", BigDecimal.class, roseId))
+                .isEqualByComparingTo("1450000");
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_quantity FROM product_variants WHERE id = ?", Integer.class, roseId))
+                .isEqualTo(7);
+        assertThat(variantColumn(roseId, "status")).isEqualTo("INACTIVE");
+    }
+
+    @Test
+    void variantsMatchBySkuAndOmittedOnesAreDiscontinued() {
+        ProductUpdateRequestDTO.ProductVariantUpdateDTO oudWithoutId =
+                updateVariant(null, "OUD-50", "Oud 50ml", List.of(select(colorId, blueId)));
+        ProductUpdateRequestDTO.ProductVariantUpdateDTO newVariant =
+                updateVariant(null, "MUSK-50", "Musk 50ml", List.of(select(colorId, redId)));
+        newVariant.setStockQuantity(5);
+
+        update(updateVariant(roseId, "ROSE-50", "Rose 50ml", List.of(select(colorId, redId), number(volumeId, 50))),
+                oudWithoutId,
+                newVariant);
+
+        assertThat(variantIdBySku("OUD-50")).isEqualTo(oudId);
+        assertThat(variantColumn(ambreId, "status")).isEqualTo("DISCONTINUED");
+        assertThat(variantColumn(variantIdBySku("MUSK-50"), "status")).isEqualTo("ACTIVE");
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_quantity FROM product_variants WHERE sku = 'MUSK-50'", Integer.class))
+                .isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM product_variants WHERE product_id = ?", Integer.class, productId)).isEqualTo(4);
+    }
+
+    @Test
+    void attributesAreDiffedAndCachedAttributesRewrittenOnlyWhenChanged() {
+        Map<Long, Long> roseRowsBefore = attributeRows(roseId);
+        Map<Long, Long> oudRowsBefore = attributeRows(oudId);
+        jdbcTemplate.update("UPDATE product_variants SET cached_attributes = CAST(? AS jsonb) WHERE id IN (?, ?)",
+                SENTINEL_JSON, roseId, oudId);
+
+        // Rose: red -> blue, bỏ volume; Oud: giữ nguyên
+        update(updateVariant(roseId, "ROSE-50", "Rose 50ml", List.of(select(colorId, blueId))),
+                updateVariant(oudId, "OUD-50", "Oud 50ml", List.of(select(colorId, blueId))),
+                updateVariant(ambreId, "AMBRE-50", "Ambre 50ml", List.of()));
+
+        Map<Long, Long> roseRowsAfter = attributeRows(roseId);
+        assertThat(roseRowsAfter).containsOnlyKeys(colorId);
+        // Dòng color được update tại chỗ (cùng id), dòng volume bị xóa
+        assertThat(roseRowsAfter.get(colorId)).isEqualTo(roseRowsBefore.get(colorId));
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT attribute_option_id FROM product_attributes WHERE id = ?", Long.class, roseRowsAfter.get(colorId)))
+                .isEqualTo(blueId);
+        assertThat(attributeRows(oudId)).isEqualTo(oudRowsBefore);
+
+        assertThat(cachedAttribute(roseId, "sentinel")).isNull();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT cached_attributes -> 'color' ->> 'value' FROM product_variants WHERE id = ?", String.class, roseId))
+                .isEqualTo("blue");
+        assertThat(cachedAttribute(roseId, "volume")).isNull();
+        assertThat(cachedAttribute(oudId, "sentinel")).isEqualTo("kept");
+    }
+
+    private void update(ProductUpdateRequestDTO.ProductVariantUpdateDTO... variants) {
+        productAdminService.updateProduct(productId, ProductUpdateRequestDTO.builder()
+                .name("Orchard Eau de Parfum")
+                .brandId(brandId)
+                .variants(List.of(variants))
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private ProductCreateRequestDTO.ProductVariantCreateDTO createVariant(
+            String sku, String name, String status, List<ProductAttributeValueDTO> attributes) {
+        return ProductCreateRequestDTO.ProductVariantCreateDTO.builder()
+                .sku(sku)
+                .variantName(name)
+                .price(BigDecimal.valueOf(1_200_000))
+                .stockQuantity(10)
+                .status(status)
+                .attributeValues(attributes)
+                .build();
+    }
+
+    private ProductUpdateRequestDTO.ProductVariantUpdateDTO updateVariant(
+            Long id, String sku, String name, List<ProductAttributeValueDTO> attributes) {
+        return ProductUpdateRequestDTO.ProductVariantUpdateDTO.builder()
+                .id(id)
+                .sku(sku)
+                .variantName(name)
+                .price(BigDecimal.valueOf(1_200_000))
+                .stockQuantity(0)
+                .attributeValues(attributes)
+                .build();
+    }
+
+    private static ProductAttributeValueDTO select(Long attributeId, Long optionId) {
+        return ProductAttributeValueDTO.builder().attributeId(attributeId).attributeValueId(optionId).build();
+    }
+
+    private static ProductAttributeValueDTO number(Long attributeId, int value) {
+        return ProductAttributeValueDTO.builder()
+                .attributeId(attributeId)
+                .customValue(String.valueOf(value))
+                .numericValue(BigDecimal.valueOf(value))
+                .build();
+    }
+
+    private Long variantIdBySku(String sku) {
+        return jdbcTemplate.queryForObject("SELECT id FROM product_variants WHERE sku = ?", Long.class, sku);
+    }
+
+    private String variantColumn(Long variantId, String column) {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM product_variants WHERE id = ?", String.class, variantId);
+    }
+
+    private String cachedAttribute(Long variantId, String key) {
+        return jdbcTemplate.queryForObject(
+                "SELECT cached_attributes ->> ? FROM product_variants WHERE id = ?", String.class, key, variantId);
+    }
+
+    /**
+     * attribute_type_id -> id dòng EAV của variant
+     */
+    private Map<Long, Long> attributeRows(Long variantId) {
+        return jdbcTemplate.query("SELECT attribute_type_id, id FROM product_attributes WHERE product_variant_id = ?",
+                rs -> {
+                    Map<Long, Long> rows = new HashMap<>();
+                    while (rs.next()) {
+                        rows.put(rs.getLong(1), rs.getLong(2));
+                    }
+                    return rows;
+                }, variantId);
+    }
+}
@@ -0,0 +1,140 @@
+package com.orchard.orchard_store_backend.modules.customer.service;
+
+import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
+import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
+import com.orchard.orchard_store_backend.modules.customer.repository.CustomerTotalsRepository;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cộng dồn một nhóm đơn đã thanh toán của cùng customer (một lượt của OrderPaidOutboxProcessor) trên Postgres thật:
+ * một lần cộng tổng / số đơn, last_order_amount của đơn cuối, nâng hạng tối đa một lần theo tổng mới
+ * (history ghi orderId của đơn cuối nhóm) và một snapshot customer_lifetime_value mỗi nhóm.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostgresTestConfiguration.class, CustomerServiceImpl.class, CustomerTotalsRepository.class, MemberTierTable.class})
+class CustomerServiceImplAggregationTest {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long silverId;
+    private Long goldId;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        tier("BRONZE", 1, "0");
+        silverId = tier("SILVER", 2, "1000000");
+        goldId = tier("GOLD", 3, "5000000");
+        entityManager.flush();
+        customerId = customerService.findOrCreateCustomer("b2b@orchard.vn", "0900000001", "B2B");
+    }
+
+    @Test
+    void aggregatesPaidOrdersOfOneBatch() {
+        customerService.updateLifetimeValueAndVipTier(customerId, List.of(
+                paid(1L, "400000"),
+                paid(2L, null),
+                paid(3L, "700000")));
+
+        assertCustomer("1100000.00", 3, "700000.00", silverId);
+        assertThat(history()).singleElement().satisfies(row -> {
+            assertThat(row).containsEntry("old_tier_id", null)
+                    .containsEntry("new_tier_id", silverId)
+                    .containsEntry("order_id", 3L);
+            assertThat((BigDecimal) row.get("trigger_value")).isEqualByComparingTo("1100000");
+        });
+        assertThat(snapshotTiers()).containsExactly(silverId);
+
+        // Nhóm không vượt ngưỡng mới: không thêm history, vẫn một snapshot
+        customerService.updateLifetimeValueAndVipTier(customerId, List.of(paid(4L, "100000")));
+        assertCustomer("1200000.00", 4, "100000.00", silverId);
+        assertThat(history()).hasSize(1);
+        assertThat(snapshotTiers()).containsExactly(silverId, silverId);
+    }
+
+    @Test
+    void upgradesOnceWhenBatchCrossesSeveralTiers() {
+        customerService.updateLifetimeValueAndVipTier(customerId, List.of(
+                paid(5L, "900000"),
+                paid(6L, "2000000"),
+                paid(7L, "2500000")));
+
+        assertCustomer("5400000.00", 3, "2500000.00", goldId);
+        // Bỏ qua SILVER: một bản ghi history thẳng lên GOLD, gắn với đơn cuối nhóm
+        assertThat(history()).singleElement().satisfies(row -> assertThat(row)
+                .containsEntry("old_tier_id", null)
+                .containsEntry("new_tier_id", goldId)
+                .containsEntry("order_id", 7L));
+        assertThat(snapshotTiers()).containsExactly(goldId);
+    }
+
+    @Test
+    void emptyBatchChangesNothing() {
+        customerService.updateLifetimeValueAndVipTier(customerId, List.of());
+
+        assertCustomer("0.00", 0, null, null);
+        assertThat(history()).isEmpty();
+        assertThat(snapshotTiers()).isEmpty();
+    }
+
+    private OrderPaidEvent paid(Long orderId, String amount) {
+        return new OrderPaidEvent(orderId, customerId, amount != null ? new BigDecimal(amount) : null,
+                "b2b@orchard.vn", "0900000001", "B2B");
+    }
+
+    private void assertCustomer(String totalPurchase, int paidCount, String lastOrderAmount, Long tierId) {
+        Map<String, Object> customer = jdbcTemplate.queryForMap("""
+                SELECT total_purchase_amount, total_orders_paid_count, last_order_amount, current_vip_tier_id
+                FROM customers WHERE id = ?
+                """, customerId);
+        assertThat(customer)
+                .containsEntry("total_purchase_amount", new BigDecimal(totalPurchase))
+                .containsEntry("total_orders_paid_count", paidCount)
+                .containsEntry("last_order_amount", lastOrderAmount != null ? new BigDecimal(lastOrderAmount) : null)
+                .containsEntry("current_vip_tier_id", tierId);
+    }
+
+    private List<Map<String, Object>> history() {
+        return jdbcTemplate.queryForList(
+                "SELECT old_tier_id, new_tier_id, order_id, trigger_value FROM customer_vip_history WHERE customer_id = ? ORDER BY id",
+                customerId);
+    }
+
+    private List<Long> snapshotTiers() {
+        return jdbcTemplate.queryForList(
+                "SELECT vip_tier_id FROM customer_lifetime_value WHERE customer_id = ? ORDER BY id", Long.class, customerId);
+    }
+
+    private Long tier(String name, int level, String minPurchase) {
+        return entityManager.persist(MemberPricingTier.builder()
+                .tierName(name)
+                .tierLevel(level)
+                .minPurchaseAmount(new BigDecimal(minPurchase))
+                .build()).getId();
+    }
+}
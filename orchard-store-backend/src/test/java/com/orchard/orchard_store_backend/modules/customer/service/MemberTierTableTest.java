@@ -0,0 +1,104 @@
+package com.orchard.orchard_store_backend.modules.customer.service;
+
+import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
+import com.orchard.orchard_store_backend.modules.customer.repository.MemberPricingTierRepository;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MemberTierTable (binary search trong bộ nhớ) phải cho cùng kết quả với
+ * MemberPricingTierRepository.findHighestTierByPurchaseAmount trên Postgres thật:
+ * tier INACTIVE bị bỏ qua, cùng tier_level thì tier có min_purchase_amount nhỏ hơn thắng,
+ * ngưỡng cao hơn nhưng level thấp hơn không thắng.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostgresTestConfiguration.class)
+class MemberTierTableTest {
+
+    @Autowired
+    private MemberPricingTierRepository tierRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private MemberTierTable tierTable;
+
+    private Long bronzeId;
+    private Long silverId;
+    private Long goldPromoId;
+    private Long platinumId;
+
+    @BeforeEach
+    void setUp() {
+        bronzeId = tier("BRONZE", 1, "0", "ACTIVE");
+        // Cùng ngưỡng với SILVER nhưng level thấp hơn
+        tier("STARTER", 1, "1000000", "ACTIVE");
+        silverId = tier("SILVER", 2, "1000000", "ACTIVE");
+        // INACTIVE: không bao giờ được chọn dù đạt ngưỡng và level cao nhất
+        platinumId = tier("PLATINUM", 4, "3000000", "INACTIVE");
+        // Cùng level 3: GOLD_PROMO ngưỡng thấp hơn nên thắng GOLD
+        goldPromoId = tier("GOLD_PROMO", 3, "4000000", "ACTIVE");
+        tier("GOLD", 3, "5000000", "ACTIVE");
+        // Ngưỡng cao nhất nhưng level thấp: không vượt tier level 3
+        tier("LEGACY", 2, "6000000", "ACTIVE");
+        entityManager.flush();
+        entityManager.clear();
+
+        tierTable = new MemberTierTable(tierRepository);
+        ReflectionTestUtils.setField(tierTable, "refreshSeconds", 300L);
+    }
+
+    @Test
+    void highestTierMatchesRepositoryQuery() {
+        List<String> amounts = List.of("-1", "0", "999999.99", "1000000", "2999999.99", "3000000", "3999999.99",
+                "4000000", "4999999.99", "5000000", "6000000", "1000000000");
+        for (String amount : amounts) {
+            BigDecimal total = new BigDecimal(amount);
+            assertThat(tierTable.highestTierFor(total).map(MemberPricingTier::getId))
+                    .as("total purchase %s", amount)
+                    .isEqualTo(tierRepository.findHighestTierByPurchaseAmount(total).map(MemberPricingTier::getId));
+        }
+    }
+
+    @Test
+    void resolvesTiesAndSkipsInactiveTiers() {
+        assertThat(tierTable.highestTierFor(new BigDecimal("-1"))).isEmpty();
+        assertThat(tierTable.highestTierFor(BigDecimal.ZERO)).get().extracting(MemberPricingTier::getId).isEqualTo(bronzeId);
+        assertThat(tierTable.highestTierFor(new BigDecimal("1000000"))).get()
+                .extracting(MemberPricingTier::getId).isEqualTo(silverId);
+        assertThat(tierTable.highestTierFor(new BigDecimal("3500000"))).get()
+                .extracting(MemberPricingTier::getId).isEqualTo(silverId);
+        assertThat(tierTable.highestTierFor(new BigDecimal("5000000"))).get()
+                .extracting(MemberPricingTier::getId).isEqualTo(goldPromoId);
+        assertThat(tierTable.highestTierFor(new BigDecimal("7000000"))).get()
+                .extracting(MemberPricingTier::getId).isEqualTo(goldPromoId);
+
+        // findById vẫn thấy tier INACTIVE (tier hiện tại của customer cũ)
+        assertThat(tierTable.findById(platinumId)).isPresent();
+    }
+
+    private Long tier(String name, int level, String minPurchase, String status) {
+        return entityManager.persist(MemberPricingTier.builder()
+                .tierName(name)
+                .tierLevel(level)
+                .minPurchaseAmount(new BigDecimal(minPurchase))
+                .status(status)
+                .build()).getId();
+    }
+}
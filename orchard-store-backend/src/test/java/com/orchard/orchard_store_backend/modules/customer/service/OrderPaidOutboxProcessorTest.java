@@ -0,0 +1,319 @@
+package com.orchard.orchard_store_backend.modules.customer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orchard.orchard_store_backend.modules.customer.event.OrderPaidEvent;
+import com.orchard.orchard_store_backend.modules.customer.repository.OrderEventOutboxRepository;
+import com.orchard.orchard_store_backend.modules.customer.repository.OrderEventOutboxRepository.OutboxEvent;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Outbox OrderPaidEvent trên Postgres thật (order_event_outbox của V30):
+ *
+ * - Event của một customer được xử lý theo thứ tự ghi và gộp vào một lần cập nhật; event lỗi chặn các event
+ *   sau của cùng customer, không chặn customer khác
+ * - Hai lượt claim đồng thời không bao giờ chia nhau một partition
+ * - Mất lease giữa chừng: markDone throw LeaseLostException, phần cập nhật customer rollback, event thuộc về
+ *   worker đã claim lại
+ * - Lỗi lặp lại: retry với backoff, hết max-attempts -> DEAD
+ *
+ * Claim / mark chạy auto-commit (CURRENT_TIMESTAMP phải chạy theo thời gian thực) -> không @Transactional.
+ */
+@JdbcTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostgresTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderPaidOutboxProcessorTest {
+
+    private static final long RETRY_BASE_DELAY_SECONDS = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private OrderEventOutboxRepository repository;
+    private RecordingCustomerService customerService;
+    private OrderPaidOutboxProcessor processor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V30__add_order_event_outbox.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        jdbcTemplate.execute("TRUNCATE order_event_outbox");
+        // Phần "cập nhật customer" của fake service: chỉ còn lại nếu transaction xử lý event commit
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS applied_orders (order_id BIGINT NOT NULL)");
+        jdbcTemplate.execute("TRUNCATE applied_orders");
+
+        repository = new OrderEventOutboxRepository(namedParameterJdbcTemplate);
+        customerService = new RecordingCustomerService(jdbcTemplate);
+        processor = new OrderPaidOutboxProcessor(repository, customerService, new TransactionTemplate(transactionManager),
+                new ObjectMapper(), new ThreadPoolTaskScheduler());
+        ReflectionTestUtils.setField(processor, "batchSize", 100);
+        ReflectionTestUtils.setField(processor, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(processor, "maxAttempts", 2);
+        ReflectionTestUtils.setField(processor, "retryBaseDelaySeconds", RETRY_BASE_DELAY_SECONDS);
+        ReflectionTestUtils.setField(processor, "retryMaxDelaySeconds", 3600L);
+        ReflectionTestUtils.setField(processor, "flushWindowSeconds", 0L);
+    }
+
+    @Test
+    void processesEachCustomerInOrderAsOneBatch() {
+        enqueue(1L, 10L, "100");
+        enqueue(2L, 20L, "200");
+        enqueue(3L, 10L, "300");
+        enqueue(4L, 10L, "400");
+
+        assertThat(processor.dispatchDue()).isEqualTo(4);
+
+        assertThat(customerService.batches).containsExactlyInAnyOrder(List.of(1L, 3L, 4L), List.of(2L));
+        assertThat(appliedOrders()).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+        assertThat(statuses()).containsOnlyKeys("DONE");
+
+        // Enqueue lại cùng order: idempotency key trùng, không xử lý hai lần
+        assertThat(enqueue(1L, 10L, "100")).isFalse();
+        assertThat(processor.dispatchDue()).isZero();
+    }
+
+    @Test
+    void flushWindowHoldsYoungPartitions() {
+        ReflectionTestUtils.setField(processor, "flushWindowSeconds", 60L);
+        enqueue(1L, 10L, "100");
+        enqueue(2L, 10L, "200");
+
+        assertThat(processor.dispatchDue()).isZero();
+
+        jdbcTemplate.update("UPDATE order_event_outbox SET created_at = created_at - INTERVAL '2 minutes'");
+        assertThat(processor.dispatchDue()).isEqualTo(2);
+        assertThat(customerService.batches).containsExactly(List.of(1L, 2L));
+    }
+
+    @Test
+    void concurrentClaimersNeverSplitAPartition() throws Exception {
+        enqueue(1L, 10L, "100");
+        enqueue(2L, 10L, "200");
+        enqueue(3L, 20L, "300");
+        enqueue(4L, 20L, "400");
+
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Claimer 1 giữ transaction mở: limit 1 -> chỉ khóa head của customer 10 và claim một event của nó
+            Future<List<OutboxEvent>> first = executor.submit(() -> new TransactionTemplate(transactionManager)
+                    .execute(status -> {
+                        List<OutboxEvent> events = repository.claimDue(1, 120, 0);
+                        claimed.countDown();
+                        await(commit);
+                        return events;
+                    }));
+            assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // Claimer 2 bỏ qua head đang bị khóa và không lấy event còn lại của customer 10
+            List<OutboxEvent> second = repository.claimDue(100, 120, 0);
+            commit.countDown();
+
+            assertThat(ids(first.get(10, TimeUnit.SECONDS))).containsExactly(1L);
+            assertThat(ids(second)).containsExactly(3L, 4L);
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+
+        // Head của customer 10 đang PROCESSING (lease còn hạn) -> event 2 chờ phía sau, không bị claim
+        assertThat(repository.claimDue(100, 120, 0)).isEmpty();
+        assertThat(status(2L)).isEqualTo("PENDING");
+    }
+
+    @Test
+    void lostLeaseRollsBackCustomerUpdate() {
+        ReflectionTestUtils.setField(processor, "leaseSeconds", 1L);
+        enqueue(1L, 10L, "100");
+        enqueue(2L, 10L, "200");
+
+        List<OutboxEvent> reclaimed = new ArrayList<>();
+        TransactionTemplate otherWorker = new TransactionTemplate(transactionManager);
+        otherWorker.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        customerService.onApply = payloads -> {
+            if (!reclaimed.isEmpty()) {
+                return;
+            }
+            // Xử lý quá lease -> worker khác claim lại (transaction riêng, commit ngay)
+            sleep(1500);
+            reclaimed.addAll(otherWorker.execute(status -> repository.claimDue(100, 120, 0)));
+        };
+
+        assertThat(processor.dispatchDue()).isZero();
+
+        assertThat(ids(reclaimed)).containsExactly(1L, 2L);
+        // Cộng dồn customer của worker cũ đã rollback; event thuộc về worker mới, không bị trả về PENDING
+        assertThat(appliedOrders()).isEmpty();
+        assertThat(statuses()).containsExactly(Map.entry("PROCESSING", 2));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(attempts) FROM order_event_outbox", Integer.class)).isZero();
+
+        // Worker mới vẫn hoàn tất được bằng lease của nó
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> repository.markDone(reclaimed));
+        assertThat(statuses()).containsExactly(Map.entry("DONE", 2));
+    }
+
+    @Test
+    void failingHeadRetriesThenGoesDeadWithoutBlockingOthers() {
+        customerService.failingOrders.add(1L);
+        enqueue(1L, 10L, "100");
+        enqueue(2L, 10L, "200");
+        enqueue(3L, 20L, "300");
+
+        // Nhóm [1, 2] lỗi -> xử lý từng event: 1 retry sau backoff, 2 trả về PENDING phía sau; customer 20 không bị ảnh hưởng
+        assertThat(processor.dispatchDue()).isEqualTo(1);
+        assertThat(appliedOrders()).containsExactly(3L);
+        Map<String, Object> failed = row(1L);
+        assertThat(failed).containsEntry("status", "PENDING").containsEntry("attempts", 1);
+        assertThat((String) failed.get("last_error")).contains("order 1");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT next_attempt_at > CURRENT_TIMESTAMP + INTERVAL '5 seconds' FROM order_event_outbox WHERE id = ?",
+                Boolean.class, eventId(1L))).isTrue();
+        assertThat(row(2L)).containsEntry("status", "PENDING").containsEntry("attempts", 0);
+
+        // Chưa tới hạn retry: event 2 vẫn bị chặn sau event 1
+        assertThat(processor.dispatchDue()).isZero();
+
+        // Tới hạn, lỗi lần 2 = max-attempts -> DEAD; event 2 được xử lý ngay trong cùng lượt
+        jdbcTemplate.update("UPDATE order_event_outbox SET next_attempt_at = CURRENT_TIMESTAMP WHERE id = ?", eventId(1L));
+        assertThat(processor.dispatchDue()).isEqualTo(1);
+        assertThat(row(1L)).containsEntry("status", "DEAD").containsEntry("attempts", 2);
+        assertThat(row(2L)).containsEntry("status", "DONE");
+        assertThat(appliedOrders()).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    private boolean enqueue(Long orderId, Long customerId, String amount) {
+        return processor.enqueue(new OrderPaidEvent(orderId, customerId, new BigDecimal(amount),
+                "c" + customerId + "@orchard.local", null, null));
+    }
+
+    private long eventId(Long orderId) {
+        return jdbcTemplate.queryForObject("SELECT id FROM order_event_outbox WHERE idempotency_key = ?", Long.class,
+                OrderPaidOutboxProcessor.ORDER_PAID + ":" + orderId);
+    }
+
+    private Map<String, Object> row(Long orderId) {
+        return jdbcTemplate.queryForMap("SELECT status, attempts, last_error FROM order_event_outbox WHERE id = ?",
+                eventId(orderId));
+    }
+
+    private String status(Long orderId) {
+        return (String) row(orderId).get("status");
+    }
+
+    private Map<String, Integer> statuses() {
+        Map<String, Integer> counts = new TreeMap<>();
+        jdbcTemplate.query("SELECT status, COUNT(*) AS n FROM order_event_outbox GROUP BY status",
+                (RowCallbackHandler) rs -> counts.put(rs.getString("status"), rs.getInt("n")));
+        return counts;
+    }
+
+    private List<Long> appliedOrders() {
+        return jdbcTemplate.queryForList("SELECT order_id FROM applied_orders ORDER BY order_id", Long.class);
+    }
+
+    private List<Long> ids(List<OutboxEvent> events) {
+        List<Long> orderIds = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            orderIds.add(Long.parseLong(event.idempotencyKey().substring(event.idempotencyKey().indexOf(':') + 1)));
+        }
+        return orderIds;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * CustomerService giả: ghi các đơn của mỗi lần cộng dồn vào applied_orders (trong transaction của processor)
+     * và ném lỗi cho các order nằm trong failingOrders
+     */
+    private static final class RecordingCustomerService implements CustomerService {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final List<List<Long>> batches = new ArrayList<>();
+        private final Set<Long> failingOrders = new HashSet<>();
+        private Consumer<List<OrderPaidEvent>> onApply = payloads -> { };
+
+        private RecordingCustomerService(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public Long findOrCreateCustomer(String email, String phone, String name) {
+            return 1L;
+        }
+
+        @Override
+        public void updateLifetimeValueAndVipTier(Long customerId, List<OrderPaidEvent> paidOrders) {
+            List<Long> orderIds = paidOrders.stream().map(OrderPaidEvent::getOrderId).toList();
+            for (Long orderId : orderIds) {
+                if (failingOrders.contains(orderId)) {
+                    throw new IllegalStateException("Cannot apply order " + orderId);
+                }
+            }
+            orderIds.forEach(orderId -> jdbcTemplate.update("INSERT INTO applied_orders (order_id) VALUES (?)", orderId));
+            onApply.accept(paidOrders);
+            batches.add(orderIds);
+        }
+
+        @Override
+        public void updateVipTier(Long customerId) {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.orchard.orchard_store_backend.modules.inventory.service;
+
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Giữ hàng cho checkout trên Postgres thật với đúng chuỗi trigger của V1 / V6:
+ * stock_reservations -> warehouse_stock.reserved_quantity -> product_variants.stock_quantity (tổng available_quantity).
+ *
+ * Mỗi bước kiểm tra stock_quantity, reserved_quantity của variant và warehouse_stock: một đơn vị đang giữ
+ * chỉ bị trừ khỏi phần khả dụng đúng một lần, consume / release / expire trả lại đúng một lần.
+ */
+@JdbcTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostgresTestConfiguration.class)
+class StockReservationServiceImplTest {
+
+    private static final String SCHEMA_SQL = """
+        DROP TABLE IF EXISTS stock_reservations, warehouse_stock, product_variants, warehouses CASCADE;
+        CREATE TABLE warehouses (
+            id BIGSERIAL PRIMARY KEY,
+            code VARCHAR(50) UNIQUE NOT NULL
+        );
+        CREATE TABLE product_variants (
+            id BIGSERIAL PRIMARY KEY,
+            stock_quantity INTEGER DEFAULT 0,
+            reserved_quantity INTEGER DEFAULT 0,
+            low_stock_threshold INTEGER DEFAULT 3,
+            allow_backorder BOOLEAN DEFAULT FALSE,
+            allow_out_of_stock_purchase BOOLEAN DEFAULT FALSE,
+            stock_status VARCHAR(20) DEFAULT 'IN_STOCK',
+            updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+        );
+        """;
+
+    private static final StockReservationService.CheckoutOwner OWNER =
+            new StockReservationService.CheckoutOwner(42L, null);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private StockReservationServiceImpl reservationService;
+    private long variantId;
+    private long mainWarehouseId;
+    private long smallWarehouseId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String v1 = new ClassPathResource("db/migration/V1__init_schema.sql").getContentAsString(StandardCharsets.UTF_8);
+        jdbcTemplate.execute(SCHEMA_SQL);
+        // Bảng và trigger lấy nguyên văn từ migration để test chạy đúng logic production
+        jdbcTemplate.execute(section(v1, "CREATE TABLE warehouse_stock", "CREATE INDEX idx_warehouse_stock_variant"));
+        jdbcTemplate.execute(section(v1, "-- 6.7. Bảng stock_reservations", "-- PHẦN 7"));
+        jdbcTemplate.execute(section(v1, "-- 15.1. Function", "-- 15.3. Function"));
+        jdbcTemplate.execute(section(v1, "-- 15.6. Function", "-- 15.8. Function"));
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V21__add_checkout_reservation_token.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+
+        mainWarehouseId = jdbcTemplate.queryForObject("INSERT INTO warehouses (code) VALUES ('MAIN') RETURNING id", Long.class);
+        smallWarehouseId = jdbcTemplate.queryForObject("INSERT INTO warehouses (code) VALUES ('SMALL') RETURNING id", Long.class);
+        variantId = jdbcTemplate.queryForObject("INSERT INTO product_variants DEFAULT VALUES RETURNING id", Long.class);
+        jdbcTemplate.update("INSERT INTO warehouse_stock (product_variant_id, warehouse_id, quantity) VALUES (?, ?, 10), (?, ?, 3)",
+                variantId, mainWarehouseId, variantId, smallWarehouseId);
+
+        reservationService = new StockReservationServiceImpl(jdbcTemplate);
+        ReflectionTestUtils.setField(reservationService, "reservationTtlMinutes", 15L);
+    }
+
+    @Test
+    void reserveThenConsumeCountsHeldUnitsOnce() {
+        assertVariant(13, 0, "IN_STOCK");
+
+        StockReservationService.ReservationResult reservation =
+                reservationService.reserveForCheckout(Map.of(variantId, 4), OWNER);
+
+        assertThat(reservation.isFullyReserved()).isTrue();
+        assertWarehouse(mainWarehouseId, 10, 4);
+        assertWarehouse(smallWarehouseId, 3, 0);
+        assertVariant(9, 0, "IN_STOCK");
+
+        assertThat(reservationService.consumeCheckout(reservation.token(), OWNER)).containsExactly(Map.entry(variantId, 4));
+        assertWarehouse(mainWarehouseId, 10, 0);
+        assertVariant(13, 0, "IN_STOCK");
+        assertThat(reservationStatus(reservation.token())).isEqualTo("CONSUMED");
+
+        // Consume lần hai không trả hàng thêm lần nữa
+        assertThat(reservationService.consumeCheckout(reservation.token(), OWNER)).isEmpty();
+        assertVariant(13, 0, "IN_STOCK");
+    }
+
+    @Test
+    void releaseOnlyByOwnerReturnsStock() {
+        StockReservationService.ReservationResult reservation =
+                reservationService.reserveForCheckout(Map.of(variantId, 11), OWNER);
+        assertThat(reservation.isFullyReserved()).isFalse();
+
+        reservation = reservationService.reserveForCheckout(Map.of(variantId, 10), OWNER);
+        assertThat(reservation.isFullyReserved()).isTrue();
+        assertWarehouse(mainWarehouseId, 10, 10);
+        assertVariant(3, 0, "LOW_STOCK");
+
+        StockReservationService.CheckoutOwner stranger = new StockReservationService.CheckoutOwner(7L, null);
+        assertThat(reservationService.releaseCheckout(reservation.token(), stranger)).isEmpty();
+        assertWarehouse(mainWarehouseId, 10, 10);
+
+        assertThat(reservationService.releaseCheckout(reservation.token(), OWNER)).containsExactly(Map.entry(variantId, 10));
+        assertWarehouse(mainWarehouseId, 10, 0);
+        assertVariant(13, 0, "IN_STOCK");
+        assertThat(reservationStatus(reservation.token())).isEqualTo("RELEASED");
+    }
+
+    @Test
+    void reservationFailsWhenNoWarehouseHoldsEnoughStock() {
+        long unstocked = jdbcTemplate.queryForObject("INSERT INTO product_variants DEFAULT VALUES RETURNING id", Long.class);
+
+        // 11 > kho lớn nhất (10): không tách sang nhiều kho, không rơi về kho mặc định
+        StockReservationService.ReservationResult reservation =
+                reservationService.reserveForCheckout(Map.of(variantId, 11, unstocked, 1), OWNER);
+
+        assertThat(reservation.rejectedVariantIds()).containsExactlyInAnyOrder(variantId, unstocked);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservations", Integer.class)).isZero();
+        assertWarehouse(mainWarehouseId, 10, 0);
+        assertWarehouse(smallWarehouseId, 3, 0);
+        assertVariant(13, 0, "IN_STOCK");
+    }
+
+    @Test
+    void expiredReservationsGiveStockBack() {
+        reservationService.reserveForCheckout(Map.of(variantId, 3), OWNER);
+        reservationService.reserveForCheckout(Map.of(variantId, 3), new StockReservationService.CheckoutOwner(null, "guest-session"));
+        assertWarehouse(mainWarehouseId, 10, 6);
+        assertWarehouse(smallWarehouseId, 3, 0);
+        assertVariant(7, 0, "IN_STOCK");
+
+        assertThat(reservationService.expireReservations(LocalDateTime.now().plusMinutes(16), 1)).isEqualTo(1);
+        assertThat(reservationService.expireReservations(LocalDateTime.now().plusMinutes(16), 10)).isEqualTo(1);
+
+        assertWarehouse(mainWarehouseId, 10, 0);
+        assertVariant(13, 0, "IN_STOCK");
+    }
+
+    private void assertVariant(int stockQuantity, int reservedQuantity, String stockStatus) {
+        Map<String, Object> variant = jdbcTemplate.queryForMap(
+                "SELECT stock_quantity, reserved_quantity, stock_status FROM product_variants WHERE id = ?", variantId);
+        assertThat(variant)
+                .containsEntry("stock_quantity", stockQuantity)
+                .containsEntry("reserved_quantity", reservedQuantity)
+                .containsEntry("stock_status", stockStatus);
+    }
+
+    private void assertWarehouse(long warehouseId, int quantity, int reservedQuantity) {
+        Map<String, Object> stock = jdbcTemplate.queryForMap(
+                "SELECT quantity, reserved_quantity, available_quantity FROM warehouse_stock WHERE product_variant_id = ? AND warehouse_id = ?",
+                variantId, warehouseId);
+        assertThat(stock)
+                .containsEntry("quantity", quantity)
+                .containsEntry("reserved_quantity", reservedQuantity)
+                .containsEntry("available_quantity", quantity - reservedQuantity);
+    }
+
+    private String reservationStatus(String token) {
+        return jdbcTemplate.queryForObject("SELECT status FROM stock_reservations WHERE checkout_token = ?", String.class, token);
+    }
+
+    private static String section(String script, String from, String to) {
+        int start = script.indexOf(from);
+        return script.substring(start, script.indexOf(to, start));
+    }
+}
@@ -0,0 +1,147 @@
+package com.orchard.orchard_store_backend.modules.shopping.service;
+
+import com.orchard.orchard_store_backend.modules.catalog.brand.entity.Brand;
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.Product;
+import com.orchard.orchard_store_backend.modules.catalog.product.entity.ProductVariant;
+import com.orchard.orchard_store_backend.modules.customer.entity.Customer;
+import com.orchard.orchard_store_backend.modules.customer.entity.MemberPricingTier;
+import com.orchard.orchard_store_backend.modules.customer.service.MemberTierTable;
+import com.orchard.orchard_store_backend.modules.inventory.service.InventoryService;
+import com.orchard.orchard_store_backend.modules.inventory.service.StockReservationService;
+import com.orchard.orchard_store_backend.modules.notification.service.NotificationService;
+import com.orchard.orchard_store_backend.modules.promotion.service.PromotionService;
+import com.orchard.orchard_store_backend.modules.promotion.service.PromotionService.PromotionValidationResult;
+import com.orchard.orchard_store_backend.modules.shopping.dto.CheckoutItemDTO;
+import com.orchard.orchard_store_backend.modules.shopping.dto.CheckoutRequest;
+import com.orchard.orchard_store_backend.modules.shopping.dto.CheckoutSummaryDTO;
+import com.orchard.orchard_store_backend.support.PostgresTestConfiguration;
+import com.orchard.orchard_store_backend.support.StatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Số câu SQL của checkout không phụ thuộc số dòng trong đơn:
+ * variants + product (một câu IN), customer; bảng tier nằm trong bộ nhớ (MemberTierTable).
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostgresTestConfiguration.class, CheckoutService.class, MemberTierTable.class})
+class CheckoutServiceQueryCountTest {
+
+    private static final int LINE_COUNT = 30;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private InventoryService inventoryService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private PromotionService promotionService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    private final List<Long> variantIds = new ArrayList<>();
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        Brand brand = entityManager.persist(Brand.builder().name("Orchard").slug("orchard").build());
+        Product product = entityManager.persist(Product.builder().name("Eau de Test").brand(brand).build());
+        for (int i = 0; i < LINE_COUNT; i++) {
+            ProductVariant variant = entityManager.persist(ProductVariant.builder()
+                    .product(product)
+                    .variantName("Variant " + i)
+                    .slug("variant-" + i)
+                    .sku("SKU-" + i)
+                    .price(BigDecimal.valueOf(100_000 + i))
+                    .stockQuantity(100)
+                    .build());
+            variantIds.add(variant.getId());
+        }
+        for (int level = 1; level <= 3; level++) {
+            entityManager.persist(MemberPricingTier.builder()
+                    .tierName("TIER_" + level)
+                    .tierDisplayName("Tier " + level)
+                    .tierLevel(level)
+                    .minPurchaseAmount(BigDecimal.valueOf(level * 1_000_000L))
+                    .discountPercentage(BigDecimal.valueOf(level))
+                    .build());
+        }
+        customerId = entityManager.persist(Customer.builder()
+                .phone("0900000000")
+                .fullName("Test Customer")
+                .totalPurchaseAmount(BigDecimal.valueOf(2_500_000))
+                .build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        when(promotionService.validatePromotion(any(), any(), any())).thenReturn(PromotionValidationResult.empty());
+    }
+
+    @Test
+    void calculateCheckoutIssuesSameStatementCountForOneAndManyLines() {
+        StatementCounter counter = new StatementCounter(entityManagerFactory);
+        // Lần đầu load bảng tier vào MemberTierTable, các lần sau không query
+        calculate(1);
+        entityManager.clear();
+
+        long singleLine = counter.count(() -> calculate(1));
+        entityManager.clear();
+        long manyLines = counter.count(() -> calculate(LINE_COUNT));
+
+        assertThat(singleLine).isPositive().isLessThanOrEqualTo(2);
+        assertThat(manyLines).isEqualTo(singleLine);
+    }
+
+    private void calculate(int lines) {
+        List<CheckoutItemDTO> items = variantIds.subList(0, lines).stream()
+                .map(id -> CheckoutItemDTO.builder().productVariantId(id).quantity(2).build())
+                .toList();
+        CheckoutRequest request = CheckoutRequest.builder()
+                .items(new ArrayList<>(items))
+                .customer(CheckoutRequest.CheckoutCustomerInfo.builder()
+                        .customerId(customerId)
+                        .fullName("Test Customer")
+                        .email("customer@example.com")
+                        .phone("0900000000")
+                        .build())
+                .build();
+
+        CheckoutSummaryDTO summary = checkoutService.calculateCheckout(request);
+
+        assertThat(summary.getItems()).hasSize(lines);
+    }
+}
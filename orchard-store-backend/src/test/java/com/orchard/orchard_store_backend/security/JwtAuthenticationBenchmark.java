@@ -0,0 +1,115 @@
+package com.orchard.orchard_store_backend.security;
+
+import com.orchard.orchard_store_backend.config.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí xác thực JWT cho mỗi request:
+ * - legacyPerRequestParsing: cách cũ - dựng SecretKey + parser mỗi lần, verify token 5 lần
+ *   (validateToken, isTokenExpired, getEmailFromToken, getRolesFromToken, getAuthoritiesFromToken)
+ * - singleParse: verify đúng một lần với key / parser dựng sẵn (lần đầu gặp token)
+ * - cachedPrincipal: token đã verify, lấy principal từ cache (các request sau cùng token)
+ *
+ * Không chạy trong mvn test. Chạy bằng main() từ IDE, hoặc:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.orchard.orchard_store_backend.security.JwtAuthenticationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtTokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setExpirationMs(3_600_000L);
+        properties.setLongLivedExpirationMs(3_600_000L);
+
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtProperties", properties);
+        tokenProvider.init();
+
+        token = tokenProvider.generateAccessToken(42L, "benchmark@orchard.local", List.of(
+                new SimpleGrantedAuthority("ROLE_ADMIN"),
+                new SimpleGrantedAuthority("product:read"),
+                new SimpleGrantedAuthority("product:write")));
+        // Đưa token vào cache cho cachedPrincipal
+        tokenProvider.resolvePrincipal(token);
+    }
+
+    @Benchmark
+    public Object legacyPerRequestParsing() {
+        boolean valid = legacyClaims(token) != null;
+        boolean expired = legacyClaims(token).getExpiration().before(new Date());
+        String email = legacyClaims(token).getSubject();
+        List<?> roles = legacyClaims(token).get("roles", List.class);
+        List<?> permissions = legacyClaims(token).get("authorities", List.class);
+
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        roles.forEach(role -> authorities.add(new SimpleGrantedAuthority(role.toString())));
+        permissions.forEach(permission -> authorities.add(new SimpleGrantedAuthority(permission.toString())));
+        return valid && !expired ? List.of(email, authorities) : null;
+    }
+
+    @Benchmark
+    public Object singleParse() {
+        return tokenProvider.getClaimFromToken(token, claims -> claims);
+    }
+
+    @Benchmark
+    public Authentication cachedPrincipal() {
+        return tokenProvider.resolvePrincipal(token)
+                .map(tokenProvider::getAuthentication)
+                .orElseThrow();
+    }
+
+    private Claims legacyClaims(String jwt) {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthenticationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
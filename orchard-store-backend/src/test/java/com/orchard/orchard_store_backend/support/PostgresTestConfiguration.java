@@ -0,0 +1,20 @@
+package com.orchard.orchard_store_backend.support;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * PostgreSQL thật (Testcontainers) cho các test cần đúng SQL / planner của Postgres
+ * (jsonb, FOR UPDATE SKIP LOCKED, EXPLAIN...). Datasource được trỏ tới container qua @ServiceConnection.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class PostgresTestConfiguration {
+
+    @Bean
+    @ServiceConnection
+    PostgreSQLContainer<?> postgresContainer() {
+        return new PostgreSQLContainer<>("postgres:16-alpine");
+    }
+}
@@ -0,0 +1,27 @@
+package com.orchard.orchard_store_backend.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Đếm số câu SQL Hibernate gửi xuống DB (Statistics#getPrepareStatementCount).
+ * Cần hibernate.generate_statistics=true.
+ */
+public final class StatementCounter {
+
+    private final Statistics statistics;
+
+    public StatementCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Số câu SQL được chuẩn bị trong khi chạy action
+     */
+    public long count(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+}